@@ -0,0 +1,105 @@
+package com.elec5619.backend.config;
+
+import com.elec5619.backend.util.DatabaseDialect;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Migrates the high-volume tables from IDENTITY columns to pooled sequences.
+ * Hibernate's schema update creates the sequences but leaves existing columns alone,
+ * so this aligns each sequence above the current maximum ID and makes the column
+ * default draw from it. Plain SQL inserts (mock data, JDBC batch writes, the agent SDK)
+ * then keep working alongside Hibernate's pooled ID blocks.
+ * Runs once Hibernate has finished updating the schema, on both H2 and PostgreSQL.
+ */
+@Component
+public class IdSequenceMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdSequenceMigration.class);
+
+    /**
+     * Allocation size shared by the @SequenceGenerator mappings of the migrated entities.
+     */
+    public static final int ALLOCATION_SIZE = 50;
+
+    private static final List<String[]> SEQUENCES = List.of(
+            new String[]{"server_metrics", "metric_id", "server_metrics_seq"},
+            new String[]{"alert_event", "event_id", "alert_event_seq"}
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdSequenceMigration(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        // The EntityManagerFactory dependency ensures Hibernate's schema update has already run
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        DatabaseDialect dialect;
+        try {
+            dialect = DatabaseDialect.detect(jdbcTemplate);
+        } catch (Exception e) {
+            logger.warn("Skipping ID sequence migration, database unavailable: {}", e.getMessage());
+            return;
+        }
+        if (dialect == DatabaseDialect.OTHER) {
+            logger.info("Skipping ID sequence migration for unsupported database");
+            return;
+        }
+        for (String[] entry : SEQUENCES) {
+            try {
+                migrateTable(dialect, entry[0], entry[1], entry[2]);
+            } catch (Exception e) {
+                logger.error("Failed to migrate ID sequence for table {}: {}", entry[0], e.getMessage(), e);
+            }
+        }
+    }
+
+    private void migrateTable(DatabaseDialect dialect, String table, String column, String sequence) {
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + sequence
+                + " START WITH 1 INCREMENT BY " + ALLOCATION_SIZE);
+
+        // Make sure the next pooled block starts above every existing row
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(" + column + ") FROM " + table, Long.class);
+        long required = (maxId != null ? maxId : 0) + ALLOCATION_SIZE;
+        long next = nextSequenceValue(dialect, sequence);
+        if (next < required) {
+            jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + required);
+            logger.info("Restarted sequence {} at {} (max {} = {})", sequence, required, column, maxId);
+        }
+
+        // Legacy IDENTITY columns must become plain columns defaulting to the sequence
+        if (dialect == DatabaseDialect.POSTGRESQL) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + column + " DROP IDENTITY IF EXISTS");
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + column
+                    + " SET DEFAULT nextval('" + sequence + "')");
+        } else {
+            try {
+                jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + column + " DROP IDENTITY");
+            } catch (Exception e) {
+                logger.debug("Column {}.{} has no identity to drop", table, column);
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + column
+                    + " SET DEFAULT NEXT VALUE FOR " + sequence);
+        }
+    }
+
+    private long nextSequenceValue(DatabaseDialect dialect, String sequence) {
+        if (dialect == DatabaseDialect.POSTGRESQL) {
+            return jdbcTemplate.queryForObject(
+                    "SELECT CASE WHEN is_called THEN last_value + " + ALLOCATION_SIZE + " ELSE last_value END FROM " + sequence,
+                    Long.class);
+        }
+        Long next = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = UPPER(?)",
+                Long.class, sequence);
+        return next != null ? next : 1;
+    }
+}
@@ -0,0 +1,92 @@
+package com.elec5619.backend.config;
+
+import com.elec5619.backend.service.MetricsRetentionService;
+import com.elec5619.backend.util.DatabaseDialect;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+
+/**
+ * Converts {@code server_metrics} into a table range-partitioned by day on PostgreSQL.
+ * Hibernate's schema update creates a plain table, so on first start the existing table
+ * is renamed, a partitioned table with the same columns and defaults is created with one
+ * partition per retained day plus a default partition, and the rows are copied over,
+ * all in one transaction. The primary key becomes (metric_id, collected_at) since
+ * PostgreSQL requires unique keys to include the partition column.
+ * Runs after IdSequenceMigration so the ID column default is carried over. H2 keeps a
+ * plain table and relies on batched deletes for retention.
+ */
+@Component
+public class MetricsPartitionMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsPartitionMigration.class);
+
+    private static final String TABLE = MetricsRetentionService.TABLE;
+
+    private static final String LEGACY_TABLE = TABLE + "_unpartitioned";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MetricsRetentionService retentionService;
+    private final TransactionTemplate transactionTemplate;
+
+    public MetricsPartitionMigration(JdbcTemplate jdbcTemplate, MetricsRetentionService retentionService,
+                                     PlatformTransactionManager transactionManager,
+                                     IdSequenceMigration idSequenceMigration) {
+        // The IdSequenceMigration dependency ensures the ID default is in place before the table is copied
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionService = retentionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void migrate() {
+        if (!retentionService.isPartitioningEnabled()) {
+            return;
+        }
+        try {
+            if (DatabaseDialect.detect(jdbcTemplate) != DatabaseDialect.POSTGRESQL) {
+                logger.info("Skipping metrics partitioning, only supported on PostgreSQL");
+                return;
+            }
+            if (!retentionService.isPartitioned()) {
+                transactionTemplate.executeWithoutResult(status -> convertToPartitioned());
+            }
+            retentionService.ensurePartitions();
+        } catch (Exception e) {
+            logger.error("Failed to partition {}, retention will delete rows in batches: {}", TABLE, e.getMessage(), e);
+        }
+    }
+
+    private void convertToPartitioned() {
+        long started = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        // Older rows than the retention horizon go to the default partition and are deleted by retention
+        LocalDate firstDay = today.minusDays(retentionService.getLongestRetentionDays());
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(collected_at) FROM " + TABLE, Timestamp.class);
+        if (oldest != null && oldest.toLocalDateTime().toLocalDate().isAfter(firstDay)) {
+            firstDay = oldest.toLocalDateTime().toLocalDate();
+        }
+
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_TABLE);
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_TABLE + " INCLUDING DEFAULTS)"
+                + " PARTITION BY RANGE (collected_at)");
+        jdbcTemplate.execute("CREATE TABLE " + MetricsRetentionService.DEFAULT_PARTITION
+                + " PARTITION OF " + TABLE + " DEFAULT");
+        retentionService.createPartitions(firstDay, today.plusDays(retentionService.getPremakeDays()));
+
+        int copied = jdbcTemplate.update("INSERT INTO " + TABLE + " SELECT * FROM " + LEGACY_TABLE);
+        jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT " + TABLE + "_pkey PRIMARY KEY (metric_id, collected_at)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_server_metrics_server_time ON " + TABLE
+                + " (server_id, collected_at)");
+        logger.info("Partitioned {} by day from {}: copied {} rows in {} ms",
+                TABLE, firstDay, copied, System.currentTimeMillis() - started);
+    }
+}
@@ -0,0 +1,188 @@
+package com.elec5619.backend.config;
+
+import com.elec5619.backend.util.DatabaseDialect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes connections of read-only transactions to a read replica and everything else to
+ * the primary database, so dashboard reads draw from their own pool instead of competing
+ * with metric ingestion and alert evaluation for primary connections.
+ *
+ * The replica is probed periodically for its replication lag. While the lag exceeds the
+ * configured bound, the probe fails, or the replica refuses a connection, read-only
+ * transactions fall back to the primary until a later probe succeeds. The routing key is
+ * read when the connection is first needed, so this must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} that delays it
+ * until the transaction's read-only flag is set.
+ *
+ * Repository reads outside a read-write transaction are read-only transactions too and
+ * also go to the replica. Reads that must see recent writes, such as the lookups of known
+ * servers on ingest and the loads of the alert rule index, the active alert registry and
+ * the alert rule states, run in a read-write {@link org.springframework.transaction.support.TransactionTemplate}
+ * to stay on the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String POSTGRESQL_LAG_SQL =
+            "SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+                    + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private static final String LIVENESS_SQL = "SELECT 0";
+
+    /**
+     * Lookup keys of the target data sources.
+     */
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final double maxLagSeconds;
+    private volatile String lagSql;
+
+    // The replica is only used once a probe has found it within the lag bound
+    private volatile boolean replicaUsable;
+    private volatile double lastLagSeconds = Double.NaN;
+
+    private final LongAdder replicaRoutes = new LongAdder();
+    private final LongAdder primaryFallbacks = new LongAdder();
+
+    /**
+     * @param lagSql query returning the replica's lag in seconds, or blank to pick one for the
+     *               replica's database (PostgreSQL replay lag, otherwise a liveness check)
+     */
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, double maxLagSeconds, String lagSql) {
+        this.primary = primary;
+        this.replica = replica;
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+        this.maxLagSeconds = maxLagSeconds;
+        this.lagSql = lagSql == null || lagSql.isBlank() ? null : lagSql;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkReplicaLag();
+        if (!replicaUsable) {
+            logger.warn("Replica not usable at startup, read-only transactions use the primary");
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Route.PRIMARY;
+        }
+        if (!replicaUsable) {
+            primaryFallbacks.increment();
+            return Route.PRIMARY;
+        }
+        return Route.REPLICA;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (determineCurrentLookupKey() != Route.REPLICA) {
+            return primary.getConnection();
+        }
+        try {
+            Connection connection = replica.getConnection();
+            replicaRoutes.increment();
+            return connection;
+        } catch (SQLException e) {
+            markUnusable("connection failed: " + e.getMessage());
+            primaryFallbacks.increment();
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (determineCurrentLookupKey() != Route.REPLICA) {
+            return primary.getConnection(username, password);
+        }
+        try {
+            Connection connection = replica.getConnection(username, password);
+            replicaRoutes.increment();
+            return connection;
+        } catch (SQLException e) {
+            markUnusable("connection failed: " + e.getMessage());
+            primaryFallbacks.increment();
+            return primary.getConnection(username, password);
+        }
+    }
+
+    /**
+     * Probe the replica's lag and decide whether read-only transactions may use it.
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval-ms:5000}",
+            initialDelayString = "${app.datasource.replica.lag-check-interval-ms:5000}")
+    public void checkReplicaLag() {
+        double lag;
+        try {
+            if (lagSql == null) {
+                lagSql = DatabaseDialect.detect(replicaJdbcTemplate) == DatabaseDialect.POSTGRESQL
+                        ? POSTGRESQL_LAG_SQL : LIVENESS_SQL;
+            }
+            Double result = replicaJdbcTemplate.queryForObject(lagSql, Double.class);
+            lag = result != null ? result : 0;
+        } catch (Exception e) {
+            lastLagSeconds = Double.NaN;
+            markUnusable("lag check failed: " + e.getMessage());
+            return;
+        }
+        lastLagSeconds = lag;
+        if (lag > maxLagSeconds) {
+            markUnusable(String.format("lag %.1fs exceeds %.1fs", lag, maxLagSeconds));
+        } else if (!replicaUsable) {
+            replicaUsable = true;
+            logger.info("Routing read-only transactions to the replica, lag {}s", lag);
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    /**
+     * Replication lag in seconds found by the last probe, or NaN if it failed.
+     */
+    public double getLastLagSeconds() {
+        return lastLagSeconds;
+    }
+
+    public long getReplicaRoutes() {
+        return replicaRoutes.sum();
+    }
+
+    public long getPrimaryFallbacks() {
+        return primaryFallbacks.sum();
+    }
+
+    // ======= Internal =======
+
+    private void markUnusable(String reason) {
+        if (replicaUsable) {
+            replicaUsable = false;
+            logger.warn("Falling back to the primary for read-only transactions, replica {}", reason);
+        }
+    }
+}
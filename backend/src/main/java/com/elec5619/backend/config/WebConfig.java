@@ -20,6 +20,7 @@ public class WebConfig implements WebMvcConfigurer {
                 .excludePathPatterns(
                     "/api/auth/**",                      // 排除认证相关请求（登录、注册）
                     "/api/servers/metrics/collect",     // 排除Agent推送接口（无需JWT）
+                    "/api/servers/metrics/collect/batch", // 排除Agent批量推送接口（无需JWT）
                     "/swagger-ui/**",                    // 排除Swagger UI
                     "/v3/api-docs/**",                   // 排除API文档
                     "/api-docs/**"                       // 排除API文档
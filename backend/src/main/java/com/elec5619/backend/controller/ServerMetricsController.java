@@ -1,23 +1,53 @@
 package com.elec5619.backend.controller;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import jakarta.validation.Valid;
+
+import com.elec5619.backend.dto.AlertEvaluationStatsDto;
+import com.elec5619.backend.dto.MetricsBatchResultDto;
+import com.elec5619.backend.dto.MetricsHotTierStatsDto;
+import com.elec5619.backend.dto.MetricsLastValueCacheStatsDto;
+import com.elec5619.backend.dto.MetricsPercentileSummaryDto;
+import com.elec5619.backend.dto.MetricsIngestStatsDto;
+import com.elec5619.backend.dto.MetricsQueryDto;
+import com.elec5619.backend.dto.MetricsRangeCacheStatsDto;
+import com.elec5619.backend.dto.MetricsRankedServerDto;
+import com.elec5619.backend.dto.MetricsSeriesDto;
 import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.entity.ServerStatus;
 import com.elec5619.backend.service.ServerMetricsService;
+import com.elec5619.backend.util.MetricAggregate;
+import com.elec5619.backend.util.MetricColumns;
+import com.elec5619.backend.util.MetricValues;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 /**
  * REST Controller for server metrics operations.
@@ -28,9 +58,17 @@ import com.elec5619.backend.service.ServerMetricsService;
 @CrossOrigin(origins = "*")
 public class ServerMetricsController {
 
+    private static final String METRIC_COLUMNS_HEADER = "X-Metric-Columns";
+
     @Autowired
     private ServerMetricsService serverMetricsService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.metrics.batch.max-items:5000}")
+    private int maxBatchItems;
+
     /**
      * Get the latest metrics for a specific server
      */
@@ -42,28 +80,41 @@ public class ServerMetricsController {
     }
 
     /**
-     * Get all metrics for a specific server (with pagination)
+     * Get all metrics for a specific server (with keyset pagination, newest first).
+     * The next page is requested with the collectedAt and metricId of the last row as
+     * {@code beforeTime} and {@code beforeId}.
      */
     @GetMapping("/{serverId}/metrics")
     public ResponseEntity<List<ServerMetrics>> getServerMetrics(
             @PathVariable Long serverId,
             @RequestParam(defaultValue = "100") int limit,
-            @RequestParam(defaultValue = "0") int offset) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeTime,
+            @RequestParam(required = false) Long beforeId) {
         
         // Limit the number of records to prevent large responses
-        int maxLimit = Math.min(limit, 1000); // Maximum 1000 records
-        List<ServerMetrics> metrics = serverMetricsService.getMetricsForServer(serverId, maxLimit, offset);
+        int maxLimit = Math.max(1, Math.min(limit, 1000)); // Maximum 1000 records
+        List<ServerMetrics> metrics = serverMetricsService.getMetricsForServer(serverId, maxLimit, beforeTime, beforeId);
         return ResponseEntity.ok(metrics);
     }
 
     /**
-     * Get metrics for a specific server within a time range
+     * Get metrics for a specific server within a time range.
+     * With {@code step} (seconds), returns per-bucket averages read from the coarsest rollup
+     * tier that satisfies the requested resolution. With {@code maxPoints} instead, returns at
+     * most that many raw samples chosen to keep the minimum and maximum of every metric.
+     * With {@code format=columnar} or {@code format=binary}, or the matching Accept header,
+     * returns the compact columnar representation instead of one object per sample
+     * (see {@link MetricColumns}).
      */
     @GetMapping("/{serverId}/metrics/range")
-    public ResponseEntity<List<ServerMetrics>> getServerMetricsInRange(
+    public ResponseEntity<?> getServerMetricsInRange(
             @PathVariable Long serverId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long step,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws IOException {
         
         // Validate time range
         if (startTime.isAfter(endTime)) {
@@ -74,38 +125,146 @@ public class ServerMetricsController {
         if (java.time.Duration.between(startTime, endTime).toDays() > 30) {
             return ResponseEntity.badRequest().build();
         }
+
+        if ((step != null && step <= 0) || (maxPoints != null && maxPoints <= 0)) {
+            return ResponseEntity.badRequest().build();
+        }
         
-        List<ServerMetrics> metrics = serverMetricsService.getMetricsForServer(serverId, startTime, endTime);
-        return ResponseEntity.ok(metrics);
+        String representation = format != null ? format.toLowerCase() : representationOf(accept);
+        if (!"json".equals(representation) && !"columnar".equals(representation) && !"binary".equals(representation)) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        List<ServerMetrics> metrics;
+        if (step != null) {
+            metrics = serverMetricsService.getMetricsForServer(serverId, startTime, endTime, step);
+        } else if (maxPoints != null) {
+            // Limit the downsampled size like page sizes (max 10000 points)
+            metrics = serverMetricsService.getDownsampledMetrics(serverId, startTime, endTime,
+                    Math.min(maxPoints, 10_000));
+        } else {
+            metrics = serverMetricsService.getMetricsForServer(serverId, startTime, endTime);
+        }
+        if ("json".equals(representation)) {
+            return ResponseEntity.ok(metrics);
+        }
+
+        MetricColumns columns = MetricColumns.of(metrics);
+        if ("binary".equals(representation)) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(MetricColumns.BINARY_MEDIA_TYPE))
+                    .header(METRIC_COLUMNS_HEADER, MetricColumns.BINARY_COLUMNS)
+                    .body(columns.toBinary());
+        }
+        ByteArrayOutputStream json = new ByteArrayOutputStream(64 + columns.size() * 64);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+            columns.writeJson(generator, serverId);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(MetricColumns.JSON_MEDIA_TYPE))
+                .body(json.toByteArray());
+    }
+
+    /**
+     * Representation of a range response requested by the Accept header: columnar, binary or json.
+     */
+    private static String representationOf(String accept) {
+        if (accept != null && accept.contains(MetricColumns.BINARY_MEDIA_TYPE)) {
+            return "binary";
+        }
+        if (accept != null && accept.contains(MetricColumns.JSON_MEDIA_TYPE)) {
+            return "columnar";
+        }
+        return "json";
     }
 
     /**
      * Get metrics for all servers within a time range
      */
-    @GetMapping("/metrics/range")
-    public ResponseEntity<List<ServerMetrics>> getAllMetricsInRange(
+    @GetMapping(value = "/metrics/range", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> getAllMetricsInRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         
-        List<ServerMetrics> metrics = serverMetricsService.getAllMetrics(startTime, endTime);
-        return ResponseEntity.ok(metrics);
+        return streamMetrics(startTime, endTime, accept);
+    }
+
+    /**
+     * Aggregate metrics of one or more servers into time buckets on the server side.
+     * Returns one array of bucket start times and one value array per server, metric and
+     * function (avg, min, max, p95, last, count) instead of raw samples.
+     */
+    @PostMapping("/metrics/query")
+    public ResponseEntity<MetricsSeriesDto> queryMetrics(@Valid @RequestBody MetricsQueryDto query) {
+        if (query.getStartTime().isAfter(query.getEndTime())) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Same limit as raw range queries (max 30 days)
+        if (java.time.Duration.between(query.getStartTime(), query.getEndTime()).toDays() > 30) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok(serverMetricsService.queryMetrics(query));
     }
 
     /**
      * Get recent metrics for all servers (last hour)
      */
-    @GetMapping("/metrics/recent")
-    public ResponseEntity<List<ServerMetrics>> getRecentMetrics() {
+    @GetMapping(value = "/metrics/recent", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> getRecentMetrics(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
         LocalDateTime now = LocalDateTime.now();
         
-        List<ServerMetrics> metrics = serverMetricsService.getAllMetrics(oneHourAgo, now);
-        return ResponseEntity.ok(metrics);
+        return streamMetrics(oneHourAgo, now, accept);
+    }
+
+    /**
+     * Write the metrics of all servers in the range as they are read from the database,
+     * as a JSON array or, when the client accepts it, as NDJSON (one sample per line).
+     * Only one sample is held in memory at a time.
+     */
+    private ResponseEntity<StreamingResponseBody> streamMetrics(LocalDateTime startTime, LocalDateTime endTime,
+                                                                String accept) {
+        boolean ndjson = accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE);
+        ObjectWriter writer = objectMapper.writerFor(ServerMetrics.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                if (!ndjson) {
+                    generator.writeStartArray();
+                }
+                serverMetricsService.streamAllMetrics(startTime, endTime, metrics -> {
+                    try {
+                        writer.writeValue(generator, metrics);
+                        if (ndjson) {
+                            generator.writeRaw('\n');
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (!ndjson) {
+                    generator.writeEndArray();
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     /**
      * Collect metrics from agent (Agent推送接口)
-     * This endpoint receives metrics data from monitoring agents running on servers
+     * This endpoint receives metrics data from monitoring agents running on servers.
+     * Besides the built-in fields, a sample may carry any metrics as a {@code metrics: {name: value}} map.
+     * The sample is queued for asynchronous writing, so the response does not wait on the database.
      */
     @PostMapping("/metrics/collect")
     public ResponseEntity<?> collectMetrics(@RequestBody ServerMetrics metrics) {
@@ -114,17 +273,131 @@ public class ServerMetricsController {
             return ResponseEntity.badRequest().body("Server ID is required");
         }
         
-        // Save metrics
-        ServerMetrics savedMetrics = serverMetricsService.saveMetrics(metrics);
+        // Queue metrics for writing
+        if (!serverMetricsService.acceptMetrics(metrics)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Metrics ingestion queue is full, please retry later");
+        }
         
         return ResponseEntity.ok().body(new Object() {
             public final String message = "Metrics received successfully";
-            public final Long metricId = savedMetrics.getMetricId();
-            public final Long serverId = savedMetrics.getServerId();
-            public final String timestamp = savedMetrics.getCollectedAt().toString();
+            public final Long serverId = metrics.getServerId();
+            public final String timestamp = metrics.getCollectedAt() != null ? metrics.getCollectedAt().toString() : null;
         });
     }
 
+    /**
+     * Get statistics of the metrics ingestion pipeline (queue depth, batch sizes, flush latency)
+     */
+    @GetMapping("/metrics/ingest/stats")
+    public ResponseEntity<MetricsIngestStatsDto> getIngestStats() {
+        return ResponseEntity.ok(serverMetricsService.getIngestStats());
+    }
+
+    /**
+     * Get statistics of alert evaluation on ingest (queue depth, ingest-to-alert latency)
+     */
+    @GetMapping("/metrics/alert-evaluation/stats")
+    public ResponseEntity<AlertEvaluationStatsDto> getAlertEvaluationStats() {
+        return ResponseEntity.ok(serverMetricsService.getAlertEvaluationStats());
+    }
+
+    /**
+     * Get memory usage of the in-memory hot tier of recent metrics, overall and per server
+     */
+    @GetMapping("/metrics/hot-tier/stats")
+    public ResponseEntity<MetricsHotTierStatsDto> getHotTierStats() {
+        return ResponseEntity.ok(serverMetricsService.getHotTierStats());
+    }
+
+    /**
+     * Get size and hit/miss counters of the last-value cache of latest metrics
+     */
+    @GetMapping("/metrics/last-value-cache/stats")
+    public ResponseEntity<MetricsLastValueCacheStatsDto> getLastValueCacheStats() {
+        return ResponseEntity.ok(serverMetricsService.getLastValueCacheStats());
+    }
+
+    /**
+     * Get size, evictions and per-bucket hit/miss counters of the range query result cache
+     */
+    @GetMapping("/metrics/range-cache/stats")
+    public ResponseEntity<MetricsRangeCacheStatsDto> getRangeCacheStats() {
+        return ResponseEntity.ok(serverMetricsService.getRangeCacheStats());
+    }
+
+    /**
+     * Get the K servers with the highest ({@code order=top}) or lowest ({@code order=bottom})
+     * latest value of a metric, optionally limited to a project or a server status.
+     * Answered from the in-memory latest samples without querying the database.
+     */
+    @GetMapping("/metrics/top")
+    public ResponseEntity<List<MetricsRankedServerDto>> getTopServers(
+            @RequestParam String metric,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(defaultValue = "top") String order,
+            @RequestParam(required = false) Long projectId,
+            @RequestParam(required = false) ServerStatus status) {
+        boolean highest;
+        if ("top".equalsIgnoreCase(order)) {
+            highest = true;
+        } else if ("bottom".equalsIgnoreCase(order)) {
+            highest = false;
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(serverMetricsService.getTopServers(metric, k, highest, projectId, status));
+    }
+
+    /**
+     * Get the names of all metrics known to the registry: the built-in metrics followed by
+     * the custom metrics agents have reported, in registration order
+     */
+    @GetMapping("/metrics/names")
+    public ResponseEntity<List<String>> getMetricNames() {
+        return ResponseEntity.ok(serverMetricsService.getMetricNames());
+    }
+
+    /**
+     * Collect a batch of metrics samples, possibly from many servers, as a JSON array.
+     * Each sample is validated individually and reported as accepted or rejected.
+     */
+    @PostMapping(value = "/metrics/collect/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> collectMetricsBatch(@RequestBody List<ServerMetrics> samples) {
+        return saveBatch(samples);
+    }
+
+    /**
+     * Collect a batch of metrics samples as NDJSON (one JSON sample per line).
+     * Lines that cannot be parsed are rejected without failing the rest of the batch.
+     */
+    @PostMapping(value = "/metrics/collect/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> collectMetricsBatchNdjson(@RequestBody String body) {
+        List<ServerMetrics> samples = new ArrayList<>();
+        for (String line : body.split("\\r?\\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                samples.add(objectMapper.readValue(line, ServerMetrics.class));
+            } catch (Exception e) {
+                samples.add(null);
+            }
+        }
+        return saveBatch(samples);
+    }
+
+    private ResponseEntity<?> saveBatch(List<ServerMetrics> samples) {
+        if (samples == null || samples.isEmpty()) {
+            return ResponseEntity.badRequest().body("At least one sample is required");
+        }
+        if (samples.size() > maxBatchItems) {
+            return ResponseEntity.badRequest().body("Batch exceeds maximum of " + maxBatchItems + " samples");
+        }
+        MetricsBatchResultDto result = serverMetricsService.saveMetricsBatch(samples);
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Manually trigger metrics generation for all servers
      */
@@ -134,49 +407,98 @@ public class ServerMetricsController {
         return ResponseEntity.ok("Metrics generated successfully for all servers");
     }
 
+    /**
+     * Get p50/p95/p99 of CPU, memory and load for a server over a time window (default last 24 hours),
+     * estimated from quantile sketches
+     */
+    @GetMapping("/{serverId}/metrics/percentiles")
+    public ResponseEntity<MetricsPercentileSummaryDto> getServerPercentiles(
+            @PathVariable Long serverId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        LocalDateTime end = endTime != null ? endTime : LocalDateTime.now();
+        LocalDateTime start = startTime != null ? startTime : end.minusHours(24);
+        if (start.isAfter(end)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(serverMetricsService.getPercentileSummary(List.of(serverId), start, end));
+    }
+
+    /**
+     * Get p50/p95/p99 of CPU, memory and load across several servers or all servers of a project
+     * over a time window (default last 24 hours), estimated from quantile sketches
+     */
+    @GetMapping("/metrics/percentiles")
+    public ResponseEntity<MetricsPercentileSummaryDto> getPercentiles(
+            @RequestParam(required = false) List<Long> serverIds,
+            @RequestParam(required = false) Long projectId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        LocalDateTime end = endTime != null ? endTime : LocalDateTime.now();
+        LocalDateTime start = startTime != null ? startTime : end.minusHours(24);
+        if (start.isAfter(end)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (projectId != null) {
+            return ResponseEntity.ok(serverMetricsService.getProjectPercentileSummary(projectId, start, end));
+        }
+        if (serverIds == null || serverIds.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(serverMetricsService.getPercentileSummary(serverIds, start, end));
+    }
+
     /**
      * Get metrics summary for a specific server (last 24 hours)
+     * Averages and maximums come from the rollups and percentiles from the quantile sketches,
+     * so the raw samples of the day are not loaded.
      */
     @GetMapping("/{serverId}/metrics/summary")
     public ResponseEntity<Object> getMetricsSummary(@PathVariable Long serverId) {
-        LocalDateTime twentyFourHoursAgo = LocalDateTime.now().minusHours(24);
         LocalDateTime now = LocalDateTime.now();
-        
-        List<ServerMetrics> metrics = serverMetricsService.getMetricsForServer(serverId, twentyFourHoursAgo, now);
-        
-        if (metrics.isEmpty()) {
+        LocalDateTime twentyFourHoursAgo = now.minusHours(24);
+
+        MetricAggregate[] summary = serverMetricsService.getMetricsSummary(serverId, twentyFourHoursAgo, now);
+        long samples = 0;
+        for (MetricAggregate aggregate : summary) {
+            samples = Math.max(samples, aggregate.getCount());
+        }
+        if (samples == 0) {
             return ResponseEntity.notFound().build();
         }
-        
-        // Calculate summary statistics
-        double avgCpu = metrics.stream().mapToDouble(m -> m.getCpuUsage() != null ? m.getCpuUsage() : 0).average().orElse(0);
-        double avgMemory = metrics.stream().mapToDouble(m -> m.getMemoryUsage() != null ? m.getMemoryUsage() : 0).average().orElse(0);
-        double avgDisk = metrics.stream().mapToDouble(m -> m.getDiskUsage() != null ? m.getDiskUsage() : 0).average().orElse(0);
-        double avgTemperature = metrics.stream().mapToDouble(m -> m.getTemperature() != null ? m.getTemperature() : 0).average().orElse(0);
-        
-        double maxCpu = metrics.stream().mapToDouble(m -> m.getCpuUsage() != null ? m.getCpuUsage() : 0).max().orElse(0);
-        double maxMemory = metrics.stream().mapToDouble(m -> m.getMemoryUsage() != null ? m.getMemoryUsage() : 0).max().orElse(0);
-        double maxDisk = metrics.stream().mapToDouble(m -> m.getDiskUsage() != null ? m.getDiskUsage() : 0).max().orElse(0);
-        double maxTemperature = metrics.stream().mapToDouble(m -> m.getTemperature() != null ? m.getTemperature() : 0).max().orElse(0);
-        
+        MetricAggregate cpuSummary = summary[MetricValues.indexOf("cpu_usage")];
+        MetricAggregate memorySummary = summary[MetricValues.indexOf("memory_usage")];
+        MetricAggregate diskSummary = summary[MetricValues.indexOf("disk_usage")];
+        MetricAggregate temperatureSummary = summary[MetricValues.indexOf("temperature")];
+
+        // Percentiles come from the quantile sketches rather than the samples above
+        MetricsPercentileSummaryDto sketched = serverMetricsService.getPercentileSummary(
+                List.of(serverId), twentyFourHoursAgo, now);
+
         final Long sid = serverId;
-        final int dataPointCount = metrics.size();
+        final long dataPointCount = samples;
         return ResponseEntity.ok(new Object() {
             public final Long id = sid;
-            public final int dataPoints = dataPointCount;
+            public final long dataPoints = dataPointCount;
             public final String timeRange = "Last 24 hours";
             public final Object averages = new Object() {
-                public final double cpu = Math.round(avgCpu * 100.0) / 100.0;
-                public final double memory = Math.round(avgMemory * 100.0) / 100.0;
-                public final double disk = Math.round(avgDisk * 100.0) / 100.0;
-                public final double temperature = Math.round(avgTemperature * 100.0) / 100.0;
+                public final double cpu = rounded(cpuSummary.getAverage());
+                public final double memory = rounded(memorySummary.getAverage());
+                public final double disk = rounded(diskSummary.getAverage());
+                public final double temperature = rounded(temperatureSummary.getAverage());
             };
             public final Object maximums = new Object() {
-                public final double cpu = Math.round(maxCpu * 100.0) / 100.0;
-                public final double memory = Math.round(maxMemory * 100.0) / 100.0;
-                public final double disk = Math.round(maxDisk * 100.0) / 100.0;
-                public final double temperature = Math.round(maxTemperature * 100.0) / 100.0;
+                public final double cpu = rounded(cpuSummary.getMax());
+                public final double memory = rounded(memorySummary.getMax());
+                public final double disk = rounded(diskSummary.getMax());
+                public final double temperature = rounded(temperatureSummary.getMax());
             };
+            public final Object percentiles = sketched != null ? sketched.getMetrics() : List.of();
         });
     }
+
+    // Two decimals, with 0 for a metric without samples
+    private static double rounded(double value) {
+        return Double.isNaN(value) ? 0 : Math.round(value * 100.0) / 100.0;
+    }
 }
@@ -0,0 +1,194 @@
+package com.elec5619.backend.dto;
+
+/**
+ * DTO exposing runtime statistics of alert evaluation on ingest and of the periodic sweep.
+ * Latencies run from the moment a sample is accepted to the end of its evaluation;
+ * the alert latencies only cover evaluations that fired at least one alert. Sweep
+ * durations are of the last sweep, overall and per shard of servers.
+ */
+public class AlertEvaluationStatsDto {
+
+    private boolean enabled;
+    private int queueDepth;
+    private int queueCapacity;
+    private int pendingServers;
+    private long submittedSamples;
+    private long coalescedSamples;
+    private long rejectedSamples;
+    private long evaluations;
+    private long failedEvaluations;
+    private long alertsFired;
+    private double avgEvaluationLatencyMs;
+    private double maxEvaluationLatencyMs;
+    private double avgAlertLatencyMs;
+    private double maxAlertLatencyMs;
+    private long sweeps;
+    private long skippedSweeps;
+    private int lastSweepServers;
+    private double lastSweepDurationMs;
+    private double maxSweepDurationMs;
+    private double[] lastSweepShardDurationsMs;
+
+    public AlertEvaluationStatsDto() {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getPendingServers() {
+        return pendingServers;
+    }
+
+    public void setPendingServers(int pendingServers) {
+        this.pendingServers = pendingServers;
+    }
+
+    public long getSubmittedSamples() {
+        return submittedSamples;
+    }
+
+    public void setSubmittedSamples(long submittedSamples) {
+        this.submittedSamples = submittedSamples;
+    }
+
+    public long getCoalescedSamples() {
+        return coalescedSamples;
+    }
+
+    public void setCoalescedSamples(long coalescedSamples) {
+        this.coalescedSamples = coalescedSamples;
+    }
+
+    public long getRejectedSamples() {
+        return rejectedSamples;
+    }
+
+    public void setRejectedSamples(long rejectedSamples) {
+        this.rejectedSamples = rejectedSamples;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public void setEvaluations(long evaluations) {
+        this.evaluations = evaluations;
+    }
+
+    public long getFailedEvaluations() {
+        return failedEvaluations;
+    }
+
+    public void setFailedEvaluations(long failedEvaluations) {
+        this.failedEvaluations = failedEvaluations;
+    }
+
+    public long getAlertsFired() {
+        return alertsFired;
+    }
+
+    public void setAlertsFired(long alertsFired) {
+        this.alertsFired = alertsFired;
+    }
+
+    public double getAvgEvaluationLatencyMs() {
+        return avgEvaluationLatencyMs;
+    }
+
+    public void setAvgEvaluationLatencyMs(double avgEvaluationLatencyMs) {
+        this.avgEvaluationLatencyMs = avgEvaluationLatencyMs;
+    }
+
+    public double getMaxEvaluationLatencyMs() {
+        return maxEvaluationLatencyMs;
+    }
+
+    public void setMaxEvaluationLatencyMs(double maxEvaluationLatencyMs) {
+        this.maxEvaluationLatencyMs = maxEvaluationLatencyMs;
+    }
+
+    public double getAvgAlertLatencyMs() {
+        return avgAlertLatencyMs;
+    }
+
+    public void setAvgAlertLatencyMs(double avgAlertLatencyMs) {
+        this.avgAlertLatencyMs = avgAlertLatencyMs;
+    }
+
+    public double getMaxAlertLatencyMs() {
+        return maxAlertLatencyMs;
+    }
+
+    public void setMaxAlertLatencyMs(double maxAlertLatencyMs) {
+        this.maxAlertLatencyMs = maxAlertLatencyMs;
+    }
+
+    public long getSweeps() {
+        return sweeps;
+    }
+
+    public void setSweeps(long sweeps) {
+        this.sweeps = sweeps;
+    }
+
+    public long getSkippedSweeps() {
+        return skippedSweeps;
+    }
+
+    public void setSkippedSweeps(long skippedSweeps) {
+        this.skippedSweeps = skippedSweeps;
+    }
+
+    public int getLastSweepServers() {
+        return lastSweepServers;
+    }
+
+    public void setLastSweepServers(int lastSweepServers) {
+        this.lastSweepServers = lastSweepServers;
+    }
+
+    public double getLastSweepDurationMs() {
+        return lastSweepDurationMs;
+    }
+
+    public void setLastSweepDurationMs(double lastSweepDurationMs) {
+        this.lastSweepDurationMs = lastSweepDurationMs;
+    }
+
+    public double getMaxSweepDurationMs() {
+        return maxSweepDurationMs;
+    }
+
+    public void setMaxSweepDurationMs(double maxSweepDurationMs) {
+        this.maxSweepDurationMs = maxSweepDurationMs;
+    }
+
+    public double[] getLastSweepShardDurationsMs() {
+        return lastSweepShardDurationsMs;
+    }
+
+    public void setLastSweepShardDurationsMs(double[] lastSweepShardDurationsMs) {
+        this.lastSweepShardDurationsMs = lastSweepShardDurationsMs;
+    }
+}
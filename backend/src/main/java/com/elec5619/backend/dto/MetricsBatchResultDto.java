@@ -0,0 +1,121 @@
+package com.elec5619.backend.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO describing the outcome of a batched metrics ingestion request.
+ * Contains one result per submitted sample, in submission order.
+ */
+public class MetricsBatchResultDto {
+
+    private int received;
+    private int accepted;
+    private int rejected;
+    private List<ItemResult> results = new ArrayList<>();
+
+    public MetricsBatchResultDto() {
+    }
+
+    /**
+     * Record the outcome for one sample.
+     *
+     * @param index position of the sample in the request body
+     * @param serverId server ID of the sample, may be null for malformed samples
+     * @param error rejection reason, or null if the sample was accepted
+     */
+    public void addResult(int index, Long serverId, String error) {
+        results.add(new ItemResult(index, serverId, error == null, error));
+        received++;
+        if (error == null) {
+            accepted++;
+        } else {
+            rejected++;
+        }
+    }
+
+    public int getReceived() {
+        return received;
+    }
+
+    public void setReceived(int received) {
+        this.received = received;
+    }
+
+    public int getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(int accepted) {
+        this.accepted = accepted;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<ItemResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ItemResult> results) {
+        this.results = results;
+    }
+
+    /**
+     * Accept/reject outcome of a single sample in the batch.
+     */
+    public static class ItemResult {
+
+        private int index;
+        private Long serverId;
+        private boolean accepted;
+        private String error;
+
+        public ItemResult() {
+        }
+
+        public ItemResult(int index, Long serverId, boolean accepted, String error) {
+            this.index = index;
+            this.serverId = serverId;
+            this.accepted = accepted;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public Long getServerId() {
+            return serverId;
+        }
+
+        public void setServerId(Long serverId) {
+            this.serverId = serverId;
+        }
+
+        public boolean isAccepted() {
+            return accepted;
+        }
+
+        public void setAccepted(boolean accepted) {
+            this.accepted = accepted;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+}
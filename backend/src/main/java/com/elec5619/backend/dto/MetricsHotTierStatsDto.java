@@ -0,0 +1,196 @@
+package com.elec5619.backend.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO reporting the memory usage of the in-memory hot tier of recent metrics,
+ * overall and per server.
+ */
+public class MetricsHotTierStatsDto {
+
+    private boolean enabled;
+    private boolean ready;
+    private int retentionHours;
+    private int serverCount;
+    private long sampleCount;
+    private long usedBytes;
+    private long budgetBytes;
+    private int maxSamplesPerServer;
+    private long hits;
+    private long misses;
+    private List<ServerStats> servers = new ArrayList<>();
+
+    public MetricsHotTierStatsDto() {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    public int getRetentionHours() {
+        return retentionHours;
+    }
+
+    public void setRetentionHours(int retentionHours) {
+        this.retentionHours = retentionHours;
+    }
+
+    public int getServerCount() {
+        return serverCount;
+    }
+
+    public void setServerCount(int serverCount) {
+        this.serverCount = serverCount;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(long sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public void setUsedBytes(long usedBytes) {
+        this.usedBytes = usedBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public int getMaxSamplesPerServer() {
+        return maxSamplesPerServer;
+    }
+
+    public void setMaxSamplesPerServer(int maxSamplesPerServer) {
+        this.maxSamplesPerServer = maxSamplesPerServer;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public List<ServerStats> getServers() {
+        return servers;
+    }
+
+    public void setServers(List<ServerStats> servers) {
+        this.servers = servers;
+    }
+
+    /**
+     * Hot tier usage of a single server
+     */
+    public static class ServerStats {
+        private Long serverId;
+        private int samples;
+        private int capacity;
+        private long heapBytes;
+        private boolean ready;
+        private LocalDateTime coveredFrom;
+        private LocalDateTime oldestSample;
+        private LocalDateTime latestSample;
+
+        public ServerStats() {
+        }
+
+        public Long getServerId() {
+            return serverId;
+        }
+
+        public void setServerId(Long serverId) {
+            this.serverId = serverId;
+        }
+
+        public int getSamples() {
+            return samples;
+        }
+
+        public void setSamples(int samples) {
+            this.samples = samples;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+
+        public void setHeapBytes(long heapBytes) {
+            this.heapBytes = heapBytes;
+        }
+
+        public boolean isReady() {
+            return ready;
+        }
+
+        public void setReady(boolean ready) {
+            this.ready = ready;
+        }
+
+        public LocalDateTime getCoveredFrom() {
+            return coveredFrom;
+        }
+
+        public void setCoveredFrom(LocalDateTime coveredFrom) {
+            this.coveredFrom = coveredFrom;
+        }
+
+        public LocalDateTime getOldestSample() {
+            return oldestSample;
+        }
+
+        public void setOldestSample(LocalDateTime oldestSample) {
+            this.oldestSample = oldestSample;
+        }
+
+        public LocalDateTime getLatestSample() {
+            return latestSample;
+        }
+
+        public void setLatestSample(LocalDateTime latestSample) {
+            this.latestSample = latestSample;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.elec5619.backend.dto;
+
+/**
+ * DTO exposing runtime statistics of the asynchronous metrics ingestion pipeline.
+ * Used to size queue capacity, batch size and flush interval under real agent load.
+ */
+public class MetricsIngestStatsDto {
+
+    private boolean asyncEnabled;
+    private int queueDepth;
+    private int queueCapacity;
+    private long acceptedSamples;
+    private long rejectedSamples;
+    private long flushedSamples;
+    private long droppedSamples;
+    private long deadLetteredSamples;
+    private long flushCount;
+    private long failedFlushCount;
+    private int lastBatchSize;
+    private int maxBatchSize;
+    private double avgBatchSize;
+    private double lastFlushLatencyMs;
+    private double maxFlushLatencyMs;
+    private double avgFlushLatencyMs;
+    private boolean walEnabled;
+    private long walPendingBytes;
+    private int walSegments;
+    private long walMaxPendingBytes;
+
+    public MetricsIngestStatsDto() {
+    }
+
+    public boolean isAsyncEnabled() {
+        return asyncEnabled;
+    }
+
+    public void setAsyncEnabled(boolean asyncEnabled) {
+        this.asyncEnabled = asyncEnabled;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getAcceptedSamples() {
+        return acceptedSamples;
+    }
+
+    public void setAcceptedSamples(long acceptedSamples) {
+        this.acceptedSamples = acceptedSamples;
+    }
+
+    public long getRejectedSamples() {
+        return rejectedSamples;
+    }
+
+    public void setRejectedSamples(long rejectedSamples) {
+        this.rejectedSamples = rejectedSamples;
+    }
+
+    public long getFlushedSamples() {
+        return flushedSamples;
+    }
+
+    public void setFlushedSamples(long flushedSamples) {
+        this.flushedSamples = flushedSamples;
+    }
+
+    public long getDroppedSamples() {
+        return droppedSamples;
+    }
+
+    public void setDroppedSamples(long droppedSamples) {
+        this.droppedSamples = droppedSamples;
+    }
+
+    public long getDeadLetteredSamples() {
+        return deadLetteredSamples;
+    }
+
+    public void setDeadLetteredSamples(long deadLetteredSamples) {
+        this.deadLetteredSamples = deadLetteredSamples;
+    }
+
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    public void setFlushCount(long flushCount) {
+        this.flushCount = flushCount;
+    }
+
+    public long getFailedFlushCount() {
+        return failedFlushCount;
+    }
+
+    public void setFailedFlushCount(long failedFlushCount) {
+        this.failedFlushCount = failedFlushCount;
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public void setLastBatchSize(int lastBatchSize) {
+        this.lastBatchSize = lastBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public double getAvgBatchSize() {
+        return avgBatchSize;
+    }
+
+    public void setAvgBatchSize(double avgBatchSize) {
+        this.avgBatchSize = avgBatchSize;
+    }
+
+    public double getLastFlushLatencyMs() {
+        return lastFlushLatencyMs;
+    }
+
+    public void setLastFlushLatencyMs(double lastFlushLatencyMs) {
+        this.lastFlushLatencyMs = lastFlushLatencyMs;
+    }
+
+    public double getMaxFlushLatencyMs() {
+        return maxFlushLatencyMs;
+    }
+
+    public void setMaxFlushLatencyMs(double maxFlushLatencyMs) {
+        this.maxFlushLatencyMs = maxFlushLatencyMs;
+    }
+
+    public double getAvgFlushLatencyMs() {
+        return avgFlushLatencyMs;
+    }
+
+    public void setAvgFlushLatencyMs(double avgFlushLatencyMs) {
+        this.avgFlushLatencyMs = avgFlushLatencyMs;
+    }
+
+    public boolean isWalEnabled() {
+        return walEnabled;
+    }
+
+    public void setWalEnabled(boolean walEnabled) {
+        this.walEnabled = walEnabled;
+    }
+
+    public long getWalPendingBytes() {
+        return walPendingBytes;
+    }
+
+    public void setWalPendingBytes(long walPendingBytes) {
+        this.walPendingBytes = walPendingBytes;
+    }
+
+    public int getWalSegments() {
+        return walSegments;
+    }
+
+    public void setWalSegments(int walSegments) {
+        this.walSegments = walSegments;
+    }
+
+    public long getWalMaxPendingBytes() {
+        return walMaxPendingBytes;
+    }
+
+    public void setWalMaxPendingBytes(long walMaxPendingBytes) {
+        this.walMaxPendingBytes = walMaxPendingBytes;
+    }
+}
@@ -0,0 +1,70 @@
+package com.elec5619.backend.dto;
+
+/**
+ * DTO reporting the size and hit rate of the last-value cache of latest metrics.
+ */
+public class MetricsLastValueCacheStatsDto {
+
+    private boolean enabled;
+    private boolean warmed;
+    private int serverCount;
+    private long hits;
+    private long misses;
+    private long updates;
+
+    public MetricsLastValueCacheStatsDto() {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isWarmed() {
+        return warmed;
+    }
+
+    public void setWarmed(boolean warmed) {
+        this.warmed = warmed;
+    }
+
+    public int getServerCount() {
+        return serverCount;
+    }
+
+    public void setServerCount(int serverCount) {
+        this.serverCount = serverCount;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    public void setUpdates(long updates) {
+        this.updates = updates;
+    }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+}
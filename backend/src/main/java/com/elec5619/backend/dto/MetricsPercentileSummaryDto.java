@@ -0,0 +1,143 @@
+package com.elec5619.backend.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO of percentile summaries over a time window for one or more servers, estimated
+ * by merging per-bucket quantile sketches. Percentiles are within the sketch's
+ * relative accuracy of the exact values; the window is widened to whole buckets.
+ */
+public class MetricsPercentileSummaryDto {
+
+    private List<Long> serverIds = new ArrayList<>();
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private int bucketMinutes;
+    private double relativeAccuracy;
+    private List<MetricPercentiles> metrics = new ArrayList<>();
+
+    public MetricsPercentileSummaryDto() {
+    }
+
+    public List<Long> getServerIds() {
+        return serverIds;
+    }
+
+    public void setServerIds(List<Long> serverIds) {
+        this.serverIds = serverIds;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+
+    public int getBucketMinutes() {
+        return bucketMinutes;
+    }
+
+    public void setBucketMinutes(int bucketMinutes) {
+        this.bucketMinutes = bucketMinutes;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public void setRelativeAccuracy(double relativeAccuracy) {
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    public List<MetricPercentiles> getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(List<MetricPercentiles> metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Percentiles of one metric; values are null when the window holds no samples.
+     */
+    public static class MetricPercentiles {
+        private String metric;
+        private long count;
+        private Double min;
+        private Double max;
+        private Double p50;
+        private Double p95;
+        private Double p99;
+
+        public MetricPercentiles() {
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public void setMetric(String metric) {
+            this.metric = metric;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public Double getMin() {
+            return min;
+        }
+
+        public void setMin(Double min) {
+            this.min = min;
+        }
+
+        public Double getMax() {
+            return max;
+        }
+
+        public void setMax(Double max) {
+            this.max = max;
+        }
+
+        public Double getP50() {
+            return p50;
+        }
+
+        public void setP50(Double p50) {
+            this.p50 = p50;
+        }
+
+        public Double getP95() {
+            return p95;
+        }
+
+        public void setP95(Double p95) {
+            this.p95 = p95;
+        }
+
+        public Double getP99() {
+            return p99;
+        }
+
+        public void setP99(Double p99) {
+            this.p99 = p99;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.elec5619.backend.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+@Schema(description = "Time-bucketed aggregation query over the metrics of one or more servers")
+public class MetricsQueryDto {
+
+    @NotEmpty(message = "At least one server ID is required")
+    @Schema(description = "Servers to query", example = "[1, 2]", required = true)
+    private List<Long> serverIds;
+
+    @Schema(description = "Metric names, all built-in metrics if omitted", example = "[\"cpu_usage\", \"memory_usage\"]")
+    private List<String> metrics;
+
+    @Schema(description = "Aggregation functions, avg if omitted",
+            allowableValues = {"avg", "min", "max", "p95", "last", "count"}, example = "[\"avg\", \"p95\"]")
+    private List<String> functions;
+
+    @NotNull(message = "Start time is required")
+    @Schema(description = "Start of the range, inclusive", required = true)
+    private LocalDateTime startTime;
+
+    @NotNull(message = "End time is required")
+    @Schema(description = "End of the range, inclusive", required = true)
+    private LocalDateTime endTime;
+
+    @Positive(message = "Step must be positive")
+    @Schema(description = "Bucket width in seconds", example = "60")
+    private Long step;
+
+    @Positive(message = "Max points must be positive")
+    @Schema(description = "Maximum number of buckets, used to derive the step when it is omitted", example = "300")
+    private Integer maxPoints;
+
+    public List<Long> getServerIds() {
+        return serverIds;
+    }
+
+    public void setServerIds(List<Long> serverIds) {
+        this.serverIds = serverIds;
+    }
+
+    public List<String> getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(List<String> metrics) {
+        this.metrics = metrics;
+    }
+
+    public List<String> getFunctions() {
+        return functions;
+    }
+
+    public void setFunctions(List<String> functions) {
+        this.functions = functions;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+
+    public Long getStep() {
+        return step;
+    }
+
+    public void setStep(Long step) {
+        this.step = step;
+    }
+
+    public Integer getMaxPoints() {
+        return maxPoints;
+    }
+
+    public void setMaxPoints(Integer maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+}
@@ -0,0 +1,80 @@
+package com.elec5619.backend.dto;
+
+/**
+ * DTO reporting the size and hit rate of the result cache of stepped range queries.
+ * Hits and misses are counted per bucket.
+ */
+public class MetricsRangeCacheStatsDto {
+
+    private boolean enabled;
+    private int entries;
+    private int maxEntries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public MetricsRangeCacheStatsDto() {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public void setEntries(int entries) {
+        this.entries = entries;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public void setInvalidations(long invalidations) {
+        this.invalidations = invalidations;
+    }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+}
@@ -0,0 +1,69 @@
+package com.elec5619.backend.dto;
+
+import java.time.LocalDateTime;
+
+import com.elec5619.backend.entity.ServerStatus;
+
+/**
+ * DTO of one server in a fleet-wide top-K or bottom-K ranking by the latest value of a metric.
+ */
+public class MetricsRankedServerDto {
+
+    private int rank;
+    private Long serverId;
+    private String serverName;
+    private ServerStatus status;
+    private double value;
+    private LocalDateTime collectedAt;
+
+    public MetricsRankedServerDto() {
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public void setRank(int rank) {
+        this.rank = rank;
+    }
+
+    public Long getServerId() {
+        return serverId;
+    }
+
+    public void setServerId(Long serverId) {
+        this.serverId = serverId;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public void setServerName(String serverName) {
+        this.serverName = serverName;
+    }
+
+    public ServerStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ServerStatus status) {
+        this.status = status;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public void setValue(double value) {
+        this.value = value;
+    }
+
+    public LocalDateTime getCollectedAt() {
+        return collectedAt;
+    }
+
+    public void setCollectedAt(LocalDateTime collectedAt) {
+        this.collectedAt = collectedAt;
+    }
+}
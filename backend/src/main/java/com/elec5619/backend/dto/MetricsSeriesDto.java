@@ -0,0 +1,130 @@
+package com.elec5619.backend.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO of a time-bucketed aggregation query result.
+ * All series share one array of bucket start times; each series holds one value
+ * per bucket, null where the bucket has no samples.
+ */
+public class MetricsSeriesDto {
+
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private long step;
+    private long[] timestamps;
+    private List<Series> series = new ArrayList<>();
+
+    public MetricsSeriesDto() {
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public void setStep(long step) {
+        this.step = step;
+    }
+
+    /**
+     * Bucket start times in epoch milliseconds, with {@code collectedAt} read as UTC.
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public void setTimestamps(long[] timestamps) {
+        this.timestamps = timestamps;
+    }
+
+    public List<Series> getSeries() {
+        return series;
+    }
+
+    public void setSeries(List<Series> series) {
+        this.series = series;
+    }
+
+    /**
+     * Values of one function of one metric of one server, aligned with the timestamps.
+     */
+    public static class Series {
+        private Long serverId;
+        private String metric;
+        private String function;
+        private String source;
+        private Double[] values;
+
+        public Series() {
+        }
+
+        public Series(Long serverId, String metric, String function, String source, Double[] values) {
+            this.serverId = serverId;
+            this.metric = metric;
+            this.function = function;
+            this.source = source;
+            this.values = values;
+        }
+
+        public Long getServerId() {
+            return serverId;
+        }
+
+        public void setServerId(Long serverId) {
+            this.serverId = serverId;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public void setMetric(String metric) {
+            this.metric = metric;
+        }
+
+        public String getFunction() {
+            return function;
+        }
+
+        public void setFunction(String function) {
+            this.function = function;
+        }
+
+        /**
+         * Where the buckets were computed: "hot-tier" or "database".
+         */
+        public String getSource() {
+            return source;
+        }
+
+        public void setSource(String source) {
+            this.source = source;
+        }
+
+        public Double[] getValues() {
+            return values;
+        }
+
+        public void setValues(Double[] values) {
+            this.values = values;
+        }
+    }
+}
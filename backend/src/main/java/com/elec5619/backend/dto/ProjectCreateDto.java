@@ -3,6 +3,8 @@ package com.elec5619.backend.dto;
 import java.util.Set;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
@@ -20,6 +22,11 @@ public class ProjectCreateDto {
     @Schema(description = "Project duration", example = "3 months")
     private String duration;
 
+    @Min(value = 1, message = "Metrics retention must be at least 1 day")
+    @Max(value = 3650, message = "Metrics retention must be at most 3650 days")
+    @Schema(description = "Days of raw metrics kept for the project's servers, omit for the system default", example = "30")
+    private Integer metricsRetentionDays;
+
     @Schema(description = "Set of user IDs to add as project members", example = "[1, 2, 3, 4]")
     private Set<Long> userIds;
 
@@ -48,6 +55,14 @@ public class ProjectCreateDto {
         this.duration = duration;
     }
 
+    public Integer getMetricsRetentionDays() {
+        return metricsRetentionDays;
+    }
+
+    public void setMetricsRetentionDays(Integer metricsRetentionDays) {
+        this.metricsRetentionDays = metricsRetentionDays;
+    }
+
     public Set<Long> getUserIds() {
         return userIds;
     }
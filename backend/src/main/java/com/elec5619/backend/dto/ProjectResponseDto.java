@@ -28,6 +28,9 @@ public class ProjectResponseDto {
     
     @Schema(description = "Project duration", example = "3 months")
     private String duration;
+
+    @Schema(description = "Days of raw metrics kept for the project's servers, null for the system default", example = "30")
+    private Integer metricsRetentionDays;
     
     @Schema(description = "Project creation timestamp", example = "2024-01-15T10:30:00")
     private LocalDateTime createdAt;
@@ -83,6 +86,14 @@ public class ProjectResponseDto {
         this.duration = duration;
     }
 
+    public Integer getMetricsRetentionDays() {
+        return metricsRetentionDays;
+    }
+
+    public void setMetricsRetentionDays(Integer metricsRetentionDays) {
+        this.metricsRetentionDays = metricsRetentionDays;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -2,6 +2,8 @@ package com.elec5619.backend.dto;
 
 import java.util.Set;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Size;
 
 public class ProjectUpdateDto {
@@ -13,6 +15,10 @@ public class ProjectUpdateDto {
 
     private String duration;
 
+    @Min(value = 1, message = "Metrics retention must be at least 1 day")
+    @Max(value = 3650, message = "Metrics retention must be at most 3650 days")
+    private Integer metricsRetentionDays;
+
     public String getProjectName() {
         return projectName;
     }
@@ -37,6 +43,14 @@ public class ProjectUpdateDto {
     public void setDuration(String duration) {
         this.duration = duration;
     }
+
+    public Integer getMetricsRetentionDays() {
+        return metricsRetentionDays;
+    }
+
+    public void setMetricsRetentionDays(Integer metricsRetentionDays) {
+        this.metricsRetentionDays = metricsRetentionDays;
+    }
 }
 
 
@@ -23,6 +23,10 @@ public class ServerOverviewDto {
     private Double networkUsage; // Combined network in/out
     private Double temperature;
     private Double loadAvg;
+
+    // Forecast hours until disk/memory usage reaches capacity, null if not rising
+    private Double diskHoursToFull;
+    private Double memoryHoursToFull;
     
     // Additional info
     private String uptime;
@@ -170,5 +174,20 @@ public class ServerOverviewDto {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
-}
 
+    public Double getDiskHoursToFull() {
+        return diskHoursToFull;
+    }
+
+    public void setDiskHoursToFull(Double diskHoursToFull) {
+        this.diskHoursToFull = diskHoursToFull;
+    }
+
+    public Double getMemoryHoursToFull() {
+        return memoryHoursToFull;
+    }
+
+    public void setMemoryHoursToFull(Double memoryHoursToFull) {
+        this.memoryHoursToFull = memoryHoursToFull;
+    }
+}
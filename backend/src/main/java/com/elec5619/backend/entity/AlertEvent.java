@@ -18,8 +18,10 @@ import java.time.LocalDateTime;
 @Table(name = "alert_event")
 public class AlertEvent {
 
+    // Pooled sequence (not IDENTITY) so Hibernate can batch inserts; see IdSequenceMigration
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "alert_event_seq")
+    @SequenceGenerator(name = "alert_event_seq", sequenceName = "alert_event_seq", allocationSize = 50)
     @Column(name = "event_id")
     private Long eventId;
 
@@ -0,0 +1,152 @@
+package com.elec5619.backend.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * AlertRuleState entity checkpointing the pending or firing state of one alert rule on
+ * one server. The live states are kept in memory by AlertStateTracker; rules that are
+ * not matching have no row.
+ */
+@Entity
+@Table(
+    name = "alert_rule_state",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_alert_rule_state",
+        columnNames = {"rule_id", "server_id"}
+    )
+)
+public class AlertRuleState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "rule_id", nullable = false)
+    private Long ruleId;
+
+    @Column(name = "server_id", nullable = false)
+    private Long serverId;
+
+    @Column(name = "metric_id", nullable = false)
+    private Integer metricId;
+
+    // pending or firing
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    // When the condition started to hold
+    @Column(name = "since", nullable = false)
+    private LocalDateTime since;
+
+    // When a pending rule fires if the condition keeps holding
+    @Column(name = "fire_at", nullable = false)
+    private LocalDateTime fireAt;
+
+    @Column(name = "triggered_value")
+    private Double triggeredValue;
+
+    // Event raised when the rule fired
+    @Column(name = "event_id")
+    private Long eventId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Default constructor
+    public AlertRuleState() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getRuleId() {
+        return ruleId;
+    }
+
+    public void setRuleId(Long ruleId) {
+        this.ruleId = ruleId;
+    }
+
+    public Long getServerId() {
+        return serverId;
+    }
+
+    public void setServerId(Long serverId) {
+        this.serverId = serverId;
+    }
+
+    public Integer getMetricId() {
+        return metricId;
+    }
+
+    public void setMetricId(Integer metricId) {
+        this.metricId = metricId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getSince() {
+        return since;
+    }
+
+    public void setSince(LocalDateTime since) {
+        this.since = since;
+    }
+
+    public LocalDateTime getFireAt() {
+        return fireAt;
+    }
+
+    public void setFireAt(LocalDateTime fireAt) {
+        this.fireAt = fireAt;
+    }
+
+    public Double getTriggeredValue() {
+        return triggeredValue;
+    }
+
+    public void setTriggeredValue(Double triggeredValue) {
+        this.triggeredValue = triggeredValue;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(Long eventId) {
+        this.eventId = eventId;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "AlertRuleState{" +
+                "ruleId=" + ruleId +
+                ", serverId=" + serverId +
+                ", status='" + status + '\'' +
+                ", since=" + since +
+                '}';
+    }
+}
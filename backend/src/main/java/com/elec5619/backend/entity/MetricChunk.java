@@ -0,0 +1,118 @@
+package com.elec5619.backend.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.Length;
+
+import java.time.LocalDateTime;
+
+/**
+ * MetricChunk entity holding every sample of one server within a closed time window,
+ * compressed with {@link com.elec5619.backend.util.MetricChunkEncoder}.
+ * Chunks are sealed by MetricsChunkService once a window is older than the seal delay.
+ */
+@Entity
+@Table(
+    name = "server_metrics_chunk",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_chunk_window",
+        columnNames = {"server_id", "chunk_start"}
+    )
+)
+public class MetricChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "server_id", nullable = false)
+    private Long serverId;
+
+    @Column(name = "chunk_start", nullable = false)
+    private LocalDateTime chunkStart;
+
+    // Exclusive end of the window
+    @Column(name = "chunk_end", nullable = false)
+    private LocalDateTime chunkEnd;
+
+    @Column(name = "sample_count", nullable = false)
+    private Integer sampleCount;
+
+    @Column(name = "data", nullable = false, length = Length.LONG32)
+    private byte[] data;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Default constructor
+    public MetricChunk() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getServerId() {
+        return serverId;
+    }
+
+    public void setServerId(Long serverId) {
+        this.serverId = serverId;
+    }
+
+    public LocalDateTime getChunkStart() {
+        return chunkStart;
+    }
+
+    public void setChunkStart(LocalDateTime chunkStart) {
+        this.chunkStart = chunkStart;
+    }
+
+    public LocalDateTime getChunkEnd() {
+        return chunkEnd;
+    }
+
+    public void setChunkEnd(LocalDateTime chunkEnd) {
+        this.chunkEnd = chunkEnd;
+    }
+
+    public Integer getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(Integer sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricChunk{" +
+                "serverId=" + serverId +
+                ", chunkStart=" + chunkStart +
+                ", chunkEnd=" + chunkEnd +
+                ", sampleCount=" + sampleCount +
+                ", bytes=" + (data != null ? data.length : 0) +
+                '}';
+    }
+}
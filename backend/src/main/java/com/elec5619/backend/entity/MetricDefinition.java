@@ -0,0 +1,67 @@
+package com.elec5619.backend.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * MetricDefinition entity mapping a metric name to its small integer metric ID.
+ * IDs 0-6 are the built-in metrics (see MetricValues); custom metrics are
+ * registered on first use by MetricRegistry with the next free ID.
+ */
+@Entity
+@Table(
+    name = "metric_definitions",
+    uniqueConstraints = @UniqueConstraint(name = "uk_metric_definition_name", columnNames = "name")
+)
+public class MetricDefinition {
+
+    // Assigned by MetricRegistry, not generated
+    @Id
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "name", nullable = false, length = 64)
+    private String name;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Default constructor
+    public MetricDefinition() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricDefinition{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                '}';
+    }
+}
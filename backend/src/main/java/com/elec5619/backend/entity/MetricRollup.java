@@ -0,0 +1,160 @@
+package com.elec5619.backend.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * MetricRollup entity holding the aggregate of one metric of one server over a
+ * fixed time bucket (1 minute, 5 minutes or 1 hour).
+ * Rows are upserted incrementally by MetricsRollupService as samples arrive.
+ */
+@Entity
+@Table(
+    name = "server_metrics_rollup",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_rollup_bucket",
+        columnNames = {"server_id", "resolution_seconds", "metric_id", "bucket_start"}
+    )
+)
+public class MetricRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "server_id", nullable = false)
+    private Long serverId;
+
+    @Column(name = "resolution_seconds", nullable = false)
+    private Integer resolutionSeconds;
+
+    // Built-in metric ID, see MetricValues
+    @Column(name = "metric_id", nullable = false)
+    private Integer metricId;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "min_value")
+    private Double minValue;
+
+    @Column(name = "max_value")
+    private Double maxValue;
+
+    @Column(name = "sum_value")
+    private Double sumValue;
+
+    @Column(name = "sample_count", nullable = false)
+    private Long sampleCount;
+
+    @Column(name = "last_value")
+    private Double lastValue;
+
+    @Column(name = "last_at")
+    private LocalDateTime lastAt;
+
+    // Default constructor
+    public MetricRollup() {
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getServerId() {
+        return serverId;
+    }
+
+    public void setServerId(Long serverId) {
+        this.serverId = serverId;
+    }
+
+    public Integer getResolutionSeconds() {
+        return resolutionSeconds;
+    }
+
+    public void setResolutionSeconds(Integer resolutionSeconds) {
+        this.resolutionSeconds = resolutionSeconds;
+    }
+
+    public Integer getMetricId() {
+        return metricId;
+    }
+
+    public void setMetricId(Integer metricId) {
+        this.metricId = metricId;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public Double getMinValue() {
+        return minValue;
+    }
+
+    public void setMinValue(Double minValue) {
+        this.minValue = minValue;
+    }
+
+    public Double getMaxValue() {
+        return maxValue;
+    }
+
+    public void setMaxValue(Double maxValue) {
+        this.maxValue = maxValue;
+    }
+
+    public Double getSumValue() {
+        return sumValue;
+    }
+
+    public void setSumValue(Double sumValue) {
+        this.sumValue = sumValue;
+    }
+
+    public Long getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(Long sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public Double getLastValue() {
+        return lastValue;
+    }
+
+    public void setLastValue(Double lastValue) {
+        this.lastValue = lastValue;
+    }
+
+    public LocalDateTime getLastAt() {
+        return lastAt;
+    }
+
+    public void setLastAt(LocalDateTime lastAt) {
+        this.lastAt = lastAt;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricRollup{" +
+                "serverId=" + serverId +
+                ", resolutionSeconds=" + resolutionSeconds +
+                ", metricId=" + metricId +
+                ", bucketStart=" + bucketStart +
+                ", sampleCount=" + sampleCount +
+                '}';
+    }
+}
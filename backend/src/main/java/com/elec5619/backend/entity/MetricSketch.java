@@ -0,0 +1,118 @@
+package com.elec5619.backend.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.Length;
+
+import java.time.LocalDateTime;
+
+/**
+ * MetricSketch entity holding a {@link com.elec5619.backend.util.QuantileSketch} of one
+ * metric of one server over a fixed time bucket, stored next to the rollups.
+ * Rows are merged incrementally by MetricsSketchService as samples arrive.
+ */
+@Entity
+@Table(
+    name = "server_metrics_sketch",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_sketch_bucket",
+        columnNames = {"server_id", "metric_id", "bucket_start"}
+    )
+)
+public class MetricSketch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "server_id", nullable = false)
+    private Long serverId;
+
+    // Built-in metric ID, see MetricValues
+    @Column(name = "metric_id", nullable = false)
+    private Integer metricId;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "sample_count", nullable = false)
+    private Long sampleCount;
+
+    @Column(name = "data", nullable = false, length = Length.LONG32)
+    private byte[] data;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Default constructor
+    public MetricSketch() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getServerId() {
+        return serverId;
+    }
+
+    public void setServerId(Long serverId) {
+        this.serverId = serverId;
+    }
+
+    public Integer getMetricId() {
+        return metricId;
+    }
+
+    public void setMetricId(Integer metricId) {
+        this.metricId = metricId;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public Long getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(Long sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricSketch{" +
+                "serverId=" + serverId +
+                ", metricId=" + metricId +
+                ", bucketStart=" + bucketStart +
+                ", sampleCount=" + sampleCount +
+                ", bytes=" + (data != null ? data.length : 0) +
+                '}';
+    }
+}
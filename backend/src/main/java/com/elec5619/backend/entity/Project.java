@@ -54,6 +54,10 @@ public class Project {
     @Column(name = "duration", length = 100)
     private String duration;
 
+    // Days of raw metrics kept for the project's servers; null uses the system default
+    @Column(name = "metrics_retention_days")
+    private Integer metricsRetentionDays;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -110,6 +114,14 @@ public class Project {
         this.duration = duration;
     }
 
+    public Integer getMetricsRetentionDays() {
+        return metricsRetentionDays;
+    }
+
+    public void setMetricsRetentionDays(Integer metricsRetentionDays) {
+        this.metricsRetentionDays = metricsRetentionDays;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,85 @@
+package com.elec5619.backend.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * ServerMetricValue entity holding one value of a custom metric of a server,
+ * keyed by (server, metric ID, collection time). Custom metrics are any metrics
+ * beyond the built-in columns of {@link ServerMetrics}; their names are kept in
+ * the metric_definitions dictionary. Rows are written in bulk with the samples
+ * they belong to (see ServerMetricsBatchRepository).
+ */
+@Entity
+@Table(
+    name = "server_metric_values",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_metric_value",
+        columnNames = {"server_id", "metric_id", "collected_at"}
+    )
+)
+public class ServerMetricValue {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "server_id", nullable = false)
+    private Long serverId;
+
+    // Registry metric ID, see MetricDefinition
+    @Column(name = "metric_id", nullable = false)
+    private Integer metricId;
+
+    @Column(name = "collected_at", nullable = false)
+    private LocalDateTime collectedAt;
+
+    @Column(name = "metric_value", nullable = false)
+    private Double value;
+
+    // Default constructor
+    public ServerMetricValue() {
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getServerId() {
+        return serverId;
+    }
+
+    public void setServerId(Long serverId) {
+        this.serverId = serverId;
+    }
+
+    public Integer getMetricId() {
+        return metricId;
+    }
+
+    public void setMetricId(Integer metricId) {
+        this.metricId = metricId;
+    }
+
+    public LocalDateTime getCollectedAt() {
+        return collectedAt;
+    }
+
+    public void setCollectedAt(LocalDateTime collectedAt) {
+        this.collectedAt = collectedAt;
+    }
+
+    public Double getValue() {
+        return value;
+    }
+
+    public void setValue(Double value) {
+        this.value = value;
+    }
+}
@@ -1,5 +1,8 @@
 package com.elec5619.backend.entity;
 
+import com.elec5619.backend.util.MetricValues;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import org.hibernate.annotations.CreationTimestamp;
@@ -11,13 +14,18 @@ import java.util.Map;
 /**
  * ServerMetrics entity representing metrics collected from a server.
  * Stores various performance metrics like CPU usage, memory usage, etc.
+ * Metrics beyond the built-in columns arrive as a free-form map of names to values
+ * and are carried as packed custom metrics keyed by registry ID; they are stored
+ * in the narrow server_metric_values table (see ServerMetricValue).
  */
 @Entity
 @Table(name = "server_metrics")
 public class ServerMetrics {
 
+    // Pooled sequence (not IDENTITY) so Hibernate can batch inserts; see IdSequenceMigration
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "server_metrics_seq")
+    @SequenceGenerator(name = "server_metrics_seq", sequenceName = "server_metrics_seq", allocationSize = 50)
     @Column(name = "metric_id")
     private Long metricId;
 
@@ -50,6 +58,21 @@ public class ServerMetrics {
     @Column(name = "collected_at", nullable = false)
     private LocalDateTime collectedAt;
 
+    // Free-form metrics by name as sent by agents, moved into the columns above and the
+    // custom metrics below on ingest (see MetricRegistry#encode)
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<String, Double> metrics;
+
+    // Custom metrics as parallel arrays of registry metric IDs and values
+    @Transient
+    @JsonIgnore
+    private int[] customMetricIds;
+
+    @Transient
+    @JsonIgnore
+    private double[] customMetricValues;
+
     // Default constructor
     public ServerMetrics() {
     }
@@ -140,6 +163,41 @@ public class ServerMetrics {
         this.collectedAt = collectedAt;
     }
 
+    public Map<String, Double> getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Map<String, Double> metrics) {
+        this.metrics = metrics;
+    }
+
+    public int[] getCustomMetricIds() {
+        return customMetricIds;
+    }
+
+    public double[] getCustomMetricValues() {
+        return customMetricValues;
+    }
+
+    /**
+     * Set the custom metrics as parallel arrays of registry metric IDs and values
+     */
+    public void setCustomMetrics(int[] metricIds, double[] values) {
+        if (metricIds != null && (values == null || values.length != metricIds.length)) {
+            throw new IllegalArgumentException("Custom metric IDs and values must have the same length");
+        }
+        this.customMetricIds = metricIds;
+        this.customMetricValues = values;
+    }
+
+    /**
+     * Number of custom metrics carried by this sample
+     */
+    @JsonIgnore
+    public int getCustomMetricCount() {
+        return customMetricIds != null ? customMetricIds.length : 0;
+    }
+
     /**
      * Get all metrics as a map for easy access
      */
@@ -156,26 +214,56 @@ public class ServerMetrics {
     }
 
     /**
-     * Get a specific metric value by name
+     * Get a specific metric value by name; names outside the built-in metrics are only
+     * found in the free-form metrics of a sample that has not been ingested yet
      */
     public Double getMetricByName(String metricName) {
-        switch (metricName) {
-            case "cpu_usage":
-                return cpuUsage;
-            case "memory_usage":
-                return memoryUsage;
-            case "disk_usage":
-                return diskUsage;
-            case "network_in":
-                return networkIn;
-            case "network_out":
-                return networkOut;
-            case "load_avg":
-                return loadAvg;
-            case "temperature":
-                return temperature;
-            default:
-                return null;
+        int metricId = MetricValues.indexOf(metricName);
+        if (metricId >= 0) {
+            return getMetricValue(metricId);
+        }
+        return metrics != null ? metrics.get(metricName) : null;
+    }
+
+    /**
+     * Get a metric value by metric ID: built-in metrics from their columns,
+     * other IDs from the custom metrics
+     */
+    public Double getMetricValue(int metricId) {
+        return switch (metricId) {
+            case 0 -> cpuUsage;
+            case 1 -> memoryUsage;
+            case 2 -> diskUsage;
+            case 3 -> networkIn;
+            case 4 -> networkOut;
+            case 5 -> loadAvg;
+            case 6 -> temperature;
+            default -> getCustomMetricValue(metricId);
+        };
+    }
+
+    private Double getCustomMetricValue(int metricId) {
+        for (int i = 0; i < getCustomMetricCount(); i++) {
+            if (customMetricIds[i] == metricId) {
+                return customMetricValues[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Set a built-in metric by metric ID
+     */
+    public void setMetricValue(int metricId, Double value) {
+        switch (metricId) {
+            case 0 -> cpuUsage = value;
+            case 1 -> memoryUsage = value;
+            case 2 -> diskUsage = value;
+            case 3 -> networkIn = value;
+            case 4 -> networkOut = value;
+            case 5 -> loadAvg = value;
+            case 6 -> temperature = value;
+            default -> throw new IllegalArgumentException("Not a built-in metric ID: " + metricId);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.entity.AlertRuleState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for AlertRuleState entity.
+ * Provides database operations for the checkpointed alert rule states.
+ */
+@Repository
+public interface AlertRuleStateRepository extends JpaRepository<AlertRuleState, Long> {
+}
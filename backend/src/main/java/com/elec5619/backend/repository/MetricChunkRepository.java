@@ -0,0 +1,51 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.entity.MetricChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository interface for MetricChunk entity.
+ * Provides database operations for compressed historical metrics.
+ */
+@Repository
+public interface MetricChunkRepository extends JpaRepository<MetricChunk, Long> {
+
+    /**
+     * Find the chunks of a server whose window overlaps a time range, oldest first
+     */
+    @Query("SELECT c FROM MetricChunk c WHERE c.serverId = :serverId " +
+           "AND c.chunkEnd > :startTime AND c.chunkStart <= :endTime ORDER BY c.chunkStart ASC")
+    List<MetricChunk> findOverlapping(@Param("serverId") Long serverId,
+                                      @Param("startTime") LocalDateTime startTime,
+                                      @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * End of the newest chunk of a server, or null if none has been sealed
+     */
+    @Query("SELECT MAX(c.chunkEnd) FROM MetricChunk c WHERE c.serverId = :serverId")
+    LocalDateTime findLatestChunkEnd(@Param("serverId") Long serverId);
+
+    /**
+     * Delete chunks whose window ended before the cutoff (for retention)
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MetricChunk c WHERE c.chunkEnd < :cutoffTime")
+    int deleteByChunkEndBefore(@Param("cutoffTime") LocalDateTime cutoffTime);
+
+    /**
+     * Delete every chunk of a server
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MetricChunk c WHERE c.serverId = :serverId")
+    int deleteByServerId(@Param("serverId") Long serverId);
+}
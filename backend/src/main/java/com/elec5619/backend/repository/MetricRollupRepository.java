@@ -0,0 +1,22 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.entity.MetricRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository interface for MetricRollup entity.
+ * Reads go through Spring Data; incremental upserts use the JDBC fragment.
+ */
+@Repository
+public interface MetricRollupRepository extends JpaRepository<MetricRollup, Long>, MetricRollupWriteRepository {
+
+    /**
+     * Find the rollup buckets of a server at one resolution within a time range
+     */
+    List<MetricRollup> findByServerIdAndResolutionSecondsAndBucketStartBetweenOrderByBucketStartAsc(
+            Long serverId, Integer resolutionSeconds, LocalDateTime startTime, LocalDateTime endTime);
+}
@@ -0,0 +1,28 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.entity.MetricRollup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Custom repository fragment for incremental rollup writes.
+ */
+public interface MetricRollupWriteRepository {
+
+    /**
+     * Merge partial bucket aggregates into the stored buckets: min/max are combined,
+     * sum/count are added and last is taken from the most recent observation.
+     * Missing buckets are inserted.
+     *
+     * @return the number of buckets written
+     */
+    int upsertAll(List<MetricRollup> partials);
+
+    /**
+     * Delete all buckets of one resolution that start before the cutoff.
+     *
+     * @return the number of rows deleted
+     */
+    int deleteOlderThan(int resolutionSeconds, LocalDateTime cutoff);
+}
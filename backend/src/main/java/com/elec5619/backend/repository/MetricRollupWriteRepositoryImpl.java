@@ -0,0 +1,103 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.entity.MetricRollup;
+import com.elec5619.backend.util.DatabaseDialect;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link MetricRollupWriteRepository}.
+ * Uses INSERT ... ON CONFLICT on PostgreSQL and MERGE on H2, so concurrent partial
+ * aggregates combine in the database instead of overwriting each other.
+ */
+public class MetricRollupWriteRepositoryImpl implements MetricRollupWriteRepository {
+
+    private static final String POSTGRES_UPSERT_SQL =
+            "INSERT INTO server_metrics_rollup (server_id, resolution_seconds, metric_id, bucket_start, " +
+            "min_value, max_value, sum_value, sample_count, last_value, last_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (server_id, resolution_seconds, metric_id, bucket_start) DO UPDATE SET " +
+            "min_value = LEAST(server_metrics_rollup.min_value, EXCLUDED.min_value), " +
+            "max_value = GREATEST(server_metrics_rollup.max_value, EXCLUDED.max_value), " +
+            "sum_value = server_metrics_rollup.sum_value + EXCLUDED.sum_value, " +
+            "sample_count = server_metrics_rollup.sample_count + EXCLUDED.sample_count, " +
+            "last_value = CASE WHEN EXCLUDED.last_at >= server_metrics_rollup.last_at " +
+            "THEN EXCLUDED.last_value ELSE server_metrics_rollup.last_value END, " +
+            "last_at = GREATEST(server_metrics_rollup.last_at, EXCLUDED.last_at)";
+
+    private static final String H2_MERGE_SQL =
+            "MERGE INTO server_metrics_rollup t USING (VALUES (CAST(? AS BIGINT), CAST(? AS INT), CAST(? AS INT), " +
+            "CAST(? AS TIMESTAMP), CAST(? AS DOUBLE PRECISION), CAST(? AS DOUBLE PRECISION), " +
+            "CAST(? AS DOUBLE PRECISION), CAST(? AS BIGINT), CAST(? AS DOUBLE PRECISION), CAST(? AS TIMESTAMP))) " +
+            "s(server_id, resolution_seconds, metric_id, bucket_start, min_value, max_value, sum_value, " +
+            "sample_count, last_value, last_at) " +
+            "ON t.server_id = s.server_id AND t.resolution_seconds = s.resolution_seconds " +
+            "AND t.metric_id = s.metric_id AND t.bucket_start = s.bucket_start " +
+            "WHEN MATCHED THEN UPDATE SET min_value = LEAST(t.min_value, s.min_value), " +
+            "max_value = GREATEST(t.max_value, s.max_value), sum_value = t.sum_value + s.sum_value, " +
+            "sample_count = t.sample_count + s.sample_count, " +
+            "last_value = CASE WHEN s.last_at >= t.last_at THEN s.last_value ELSE t.last_value END, " +
+            "last_at = GREATEST(t.last_at, s.last_at) " +
+            "WHEN NOT MATCHED THEN INSERT (server_id, resolution_seconds, metric_id, bucket_start, min_value, " +
+            "max_value, sum_value, sample_count, last_value, last_at) VALUES (s.server_id, s.resolution_seconds, " +
+            "s.metric_id, s.bucket_start, s.min_value, s.max_value, s.sum_value, s.sample_count, s.last_value, s.last_at)";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM server_metrics_rollup WHERE resolution_seconds = ? AND bucket_start < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile DatabaseDialect dialect;
+
+    public MetricRollupWriteRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int upsertAll(List<MetricRollup> partials) {
+        if (partials == null || partials.isEmpty()) {
+            return 0;
+        }
+        String sql = dialect() == DatabaseDialect.POSTGRESQL ? POSTGRES_UPSERT_SQL : H2_MERGE_SQL;
+        jdbcTemplate.batchUpdate(sql, partials, partials.size(), this::bind);
+        return partials.size();
+    }
+
+    @Override
+    public int deleteOlderThan(int resolutionSeconds, LocalDateTime cutoff) {
+        return jdbcTemplate.update(DELETE_SQL, resolutionSeconds, Timestamp.valueOf(cutoff));
+    }
+
+    private DatabaseDialect dialect() {
+        if (dialect == null) {
+            dialect = DatabaseDialect.detect(jdbcTemplate);
+        }
+        return dialect;
+    }
+
+    private void bind(PreparedStatement ps, MetricRollup r) throws SQLException {
+        ps.setLong(1, r.getServerId());
+        ps.setInt(2, r.getResolutionSeconds());
+        ps.setInt(3, r.getMetricId());
+        ps.setTimestamp(4, Timestamp.valueOf(r.getBucketStart()));
+        setDouble(ps, 5, r.getMinValue());
+        setDouble(ps, 6, r.getMaxValue());
+        setDouble(ps, 7, r.getSumValue());
+        ps.setLong(8, r.getSampleCount());
+        setDouble(ps, 9, r.getLastValue());
+        ps.setTimestamp(10, r.getLastAt() != null ? Timestamp.valueOf(r.getLastAt()) : null);
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.entity.MetricSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository interface for MetricSketch entity.
+ * Provides database operations for per-bucket quantile sketches.
+ */
+@Repository
+public interface MetricSketchRepository extends JpaRepository<MetricSketch, Long> {
+
+    /**
+     * Find the sketches of the given servers and metrics whose bucket starts within a time range
+     */
+    @Query("SELECT s FROM MetricSketch s WHERE s.serverId IN :serverIds AND s.metricId IN :metricIds " +
+           "AND s.bucketStart BETWEEN :startTime AND :endTime")
+    List<MetricSketch> findInRange(@Param("serverIds") Collection<Long> serverIds,
+                                   @Param("metricIds") Collection<Integer> metricIds,
+                                   @Param("startTime") LocalDateTime startTime,
+                                   @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * Find the stored sketches of the given servers for the given buckets (to merge pending sketches into)
+     */
+    List<MetricSketch> findByServerIdInAndBucketStartIn(Collection<Long> serverIds, Collection<LocalDateTime> bucketStarts);
+
+    /**
+     * Delete sketches whose bucket started before the cutoff (for retention)
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MetricSketch s WHERE s.bucketStart < :cutoffTime")
+    int deleteByBucketStartBefore(@Param("cutoffTime") LocalDateTime cutoffTime);
+
+    /**
+     * Delete every sketch of a server
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MetricSketch s WHERE s.serverId = :serverId")
+    int deleteByServerId(@Param("serverId") Long serverId);
+}
@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.elec5619.backend.entity.Project;
 import com.elec5619.backend.entity.ProjectStatus;
@@ -11,6 +13,7 @@ import com.elec5619.backend.entity.ProjectStatus;
 public interface ProjectRepository extends JpaRepository<Project, Long> {
     Optional<Project> findByProjectName(String projectName);
     List<Project> findByStatus(ProjectStatus status);
-}
-
 
+    @Query("SELECT s.id FROM Project p JOIN p.servers s WHERE p.id = :projectId")
+    List<Long> findServerIdsByProjectId(@Param("projectId") Long projectId);
+}
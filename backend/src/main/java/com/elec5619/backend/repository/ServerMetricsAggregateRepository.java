@@ -0,0 +1,50 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.util.MetricFunction;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Custom repository fragment for time-bucketed aggregate queries over raw server metrics.
+ * Buckets are computed by the database with GROUP BY on a time-bucket expression, so only
+ * one row per server and bucket is returned instead of every sample.
+ */
+public interface ServerMetricsAggregateRepository {
+
+    /**
+     * Receives one aggregated bucket of one server.
+     */
+    @FunctionalInterface
+    interface BucketHandler {
+        /**
+         * @param serverId    the server of the bucket
+         * @param bucketStart start of the bucket in epoch milliseconds (see MetricTime)
+         * @param values      aggregates indexed by {@code metricPosition * functions.size() + functionPosition},
+         *                    NaN where a bucket has no value; reused between calls
+         */
+        void accept(long serverId, long bucketStart, double[] values);
+    }
+
+    /**
+     * Aggregate the samples of the given servers collected within {@code [startTime, endTime]}
+     * into step-sized buckets aligned to the epoch.
+     *
+     * @param metrics     metric IDs (see MetricValues) to aggregate
+     * @param functions   functions applied to every metric
+     * @param stepSeconds bucket width in seconds
+     * @return the number of buckets returned
+     */
+    int aggregateBuckets(Collection<Long> serverIds, int[] metrics, List<MetricFunction> functions,
+                         LocalDateTime startTime, LocalDateTime endTime, long stepSeconds, BucketHandler handler);
+
+    /**
+     * Same as {@link #aggregateBuckets} for custom metrics, read from the narrow
+     * server_metric_values table and pivoted into one row per server and bucket.
+     *
+     * @param metrics registry IDs of custom metrics (see MetricRegistry)
+     */
+    int aggregateCustomBuckets(Collection<Long> serverIds, int[] metrics, List<MetricFunction> functions,
+                               LocalDateTime startTime, LocalDateTime endTime, long stepSeconds, BucketHandler handler);
+}
@@ -0,0 +1,122 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.util.DatabaseDialect;
+import com.elec5619.backend.util.MetricFunction;
+import com.elec5619.backend.util.MetricValues;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * JDBC implementation of {@link ServerMetricsAggregateRepository}.
+ * Picked up by Spring Data as the fragment implementation for {@link ServerMetricsRepository}.
+ *
+ * The bucket index is the number of whole steps since the epoch, with {@code collected_at}
+ * read as UTC like MetricTime does. The step is inlined as a literal so the select list and
+ * the GROUP BY clause contain the identical expression on both databases.
+ */
+public class ServerMetricsAggregateRepositoryImpl implements ServerMetricsAggregateRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile DatabaseDialect dialect;
+
+    public ServerMetricsAggregateRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int aggregateBuckets(Collection<Long> serverIds, int[] metrics, List<MetricFunction> functions,
+                                LocalDateTime startTime, LocalDateTime endTime, long stepSeconds,
+                                BucketHandler handler) {
+        List<String> columns = new ArrayList<>();
+        for (int metric : metrics) {
+            columns.add(MetricValues.NAMES[metric]);
+        }
+        return aggregate("server_metrics", "", serverIds, columns, functions, startTime, endTime, stepSeconds, handler);
+    }
+
+    @Override
+    public int aggregateCustomBuckets(Collection<Long> serverIds, int[] metrics, List<MetricFunction> functions,
+                                      LocalDateTime startTime, LocalDateTime endTime, long stepSeconds,
+                                      BucketHandler handler) {
+        // Each metric becomes a column that is NULL on the rows of other metrics, which aggregates ignore
+        List<String> columns = new ArrayList<>();
+        for (int metric : metrics) {
+            columns.add("CASE WHEN metric_id = " + metric + " THEN metric_value END");
+        }
+        String metricIds = Arrays.stream(metrics).mapToObj(String::valueOf).collect(Collectors.joining(","));
+        return aggregate("server_metric_values", " AND metric_id IN (" + metricIds + ")", serverIds, columns,
+                functions, startTime, endTime, stepSeconds, handler);
+    }
+
+    private int aggregate(String table, String filter, Collection<Long> serverIds, List<String> columns,
+                          List<MetricFunction> functions, LocalDateTime startTime, LocalDateTime endTime,
+                          long stepSeconds, BucketHandler handler) {
+        if (serverIds == null || serverIds.isEmpty() || columns.isEmpty() || functions.isEmpty()) {
+            return 0;
+        }
+        if (stepSeconds <= 0) {
+            throw new IllegalArgumentException("Step must be positive");
+        }
+        String bucket = bucketExpression(stepSeconds);
+        List<String> aggregates = new ArrayList<>();
+        for (String column : columns) {
+            for (MetricFunction function : functions) {
+                aggregates.add(aggregateExpression(function, column));
+            }
+        }
+        String ids = serverIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        String sql = "SELECT server_id, " + bucket + " AS bucket, " + String.join(", ", aggregates)
+                + " FROM " + table + " WHERE server_id IN (" + ids + ")" + filter + " AND collected_at BETWEEN ? AND ?"
+                + " GROUP BY server_id, " + bucket + " ORDER BY server_id, bucket";
+
+        long stepMillis = stepSeconds * 1000L;
+        double[] values = new double[aggregates.size()];
+        int[] rows = new int[1];
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            for (int i = 0; i < values.length; i++) {
+                double value = rs.getDouble(i + 3);
+                values[i] = rs.wasNull() ? Double.NaN : value;
+            }
+            handler.accept(rs.getLong(1), rs.getLong(2) * stepMillis, values);
+            rows[0]++;
+        }, Timestamp.valueOf(startTime), Timestamp.valueOf(endTime));
+        return rows[0];
+    }
+
+    private String bucketExpression(long stepSeconds) {
+        if (dialect() == DatabaseDialect.H2) {
+            // DATEDIFF yields whole seconds as BIGINT, so the division truncates; timestamps are after 1970
+            return "(DATEDIFF(SECOND, TIMESTAMP '1970-01-01 00:00:00', collected_at) / " + stepSeconds + ")";
+        }
+        return "CAST(FLOOR(EXTRACT(EPOCH FROM collected_at) / " + stepSeconds + ") AS BIGINT)";
+    }
+
+    private static String aggregateExpression(MetricFunction function, String column) {
+        return switch (function) {
+            case AVG -> "AVG(" + column + ")";
+            case MIN -> "MIN(" + column + ")";
+            case MAX -> "MAX(" + column + ")";
+            case COUNT -> "COUNT(" + column + ")";
+            case P95 -> "PERCENTILE_CONT(0.95) WITHIN GROUP (ORDER BY " + column + ")";
+            // Latest non-null value of the bucket
+            case LAST -> "(ARRAY_AGG(" + column + " ORDER BY collected_at DESC) FILTER (WHERE " + column
+                    + " IS NOT NULL))[1]";
+        };
+    }
+
+    private DatabaseDialect dialect() {
+        if (dialect == null) {
+            dialect = DatabaseDialect.detect(jdbcTemplate);
+        }
+        return dialect;
+    }
+}
@@ -0,0 +1,29 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.entity.ServerMetrics;
+
+import java.util.List;
+
+/**
+ * Custom repository fragment for bulk writes of server metrics.
+ * Bypasses the persistence context and writes samples with JDBC batching.
+ */
+public interface ServerMetricsBatchRepository {
+
+    /**
+     * Insert all samples using JDBC batch statements, together with their custom metrics.
+     *
+     * @param metrics the samples to insert, each with serverId and collectedAt set
+     * @return the number of rows written
+     */
+    int batchInsert(List<ServerMetrics> metrics);
+
+    /**
+     * Write the custom metrics of the samples to the narrow server_metric_values table.
+     * A value already stored for the same server, metric and time is replaced, so a
+     * replayed batch does not fail on duplicates.
+     *
+     * @return the number of values written
+     */
+    int upsertCustomMetrics(List<ServerMetrics> metrics);
+}
@@ -0,0 +1,139 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.util.DatabaseDialect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link ServerMetricsBatchRepository}.
+ * Picked up by Spring Data as the fragment implementation for {@link ServerMetricsRepository}.
+ * Custom metric values are upserted with INSERT ... ON CONFLICT on PostgreSQL and MERGE on H2.
+ * Rows are inserted without metric_id, which is drawn from the sequence default installed by
+ * {@link com.elec5619.backend.config.IdSequenceMigration}; that migration must have run first.
+ */
+public class ServerMetricsBatchRepositoryImpl implements ServerMetricsBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO server_metrics (server_id, cpu_usage, memory_usage, disk_usage, " +
+            "network_in, network_out, load_avg, temperature, collected_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String POSTGRES_UPSERT_VALUE_SQL =
+            "INSERT INTO server_metric_values (server_id, metric_id, collected_at, metric_value) " +
+            "VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (server_id, metric_id, collected_at) DO UPDATE SET metric_value = EXCLUDED.metric_value";
+
+    private static final String H2_MERGE_VALUE_SQL =
+            "MERGE INTO server_metric_values t USING (VALUES (CAST(? AS BIGINT), CAST(? AS INT), " +
+            "CAST(? AS TIMESTAMP), CAST(? AS DOUBLE PRECISION))) s(server_id, metric_id, collected_at, metric_value) " +
+            "ON t.server_id = s.server_id AND t.metric_id = s.metric_id AND t.collected_at = s.collected_at " +
+            "WHEN MATCHED THEN UPDATE SET metric_value = s.metric_value " +
+            "WHEN NOT MATCHED THEN INSERT (server_id, metric_id, collected_at, metric_value) " +
+            "VALUES (s.server_id, s.metric_id, s.collected_at, s.metric_value)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile DatabaseDialect dialect;
+
+    @Value("${app.metrics.batch.jdbc-batch-size:200}")
+    private int jdbcBatchSize;
+
+    public ServerMetricsBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int batchInsert(List<ServerMetrics> metrics) {
+        if (metrics == null || metrics.isEmpty()) {
+            return 0;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, metrics, Math.max(1, jdbcBatchSize), this::bind);
+        int written = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // Drivers may report SUCCESS_NO_INFO (-2) for rewritten batches
+                written += count >= 0 ? count : 1;
+            }
+        }
+        upsertCustomMetrics(metrics);
+        return written;
+    }
+
+    @Override
+    public int upsertCustomMetrics(List<ServerMetrics> metrics) {
+        List<CustomValue> values = new ArrayList<>();
+        for (ServerMetrics m : metrics) {
+            Timestamp collectedAt = null;
+            for (int i = 0; i < m.getCustomMetricCount(); i++) {
+                if (collectedAt == null) {
+                    collectedAt = Timestamp.valueOf(m.getCollectedAt());
+                }
+                values.add(new CustomValue(m.getServerId(), m.getCustomMetricIds()[i], collectedAt,
+                        m.getCustomMetricValues()[i]));
+            }
+        }
+        if (values.isEmpty()) {
+            return 0;
+        }
+        String sql = dialect() == DatabaseDialect.POSTGRESQL ? POSTGRES_UPSERT_VALUE_SQL : H2_MERGE_VALUE_SQL;
+        jdbcTemplate.batchUpdate(sql, values, Math.max(1, jdbcBatchSize), (ps, v) -> {
+            ps.setLong(1, v.serverId);
+            ps.setInt(2, v.metricId);
+            ps.setTimestamp(3, v.collectedAt);
+            ps.setDouble(4, v.value);
+        });
+        return values.size();
+    }
+
+    private DatabaseDialect dialect() {
+        if (dialect == null) {
+            dialect = DatabaseDialect.detect(jdbcTemplate);
+        }
+        return dialect;
+    }
+
+    /**
+     * One custom metric value of a sample, flattened for batch binding.
+     */
+    private static final class CustomValue {
+        final long serverId;
+        final int metricId;
+        final Timestamp collectedAt;
+        final double value;
+
+        CustomValue(long serverId, int metricId, Timestamp collectedAt, double value) {
+            this.serverId = serverId;
+            this.metricId = metricId;
+            this.collectedAt = collectedAt;
+            this.value = value;
+        }
+    }
+
+    private void bind(PreparedStatement ps, ServerMetrics m) throws SQLException {
+        ps.setLong(1, m.getServerId());
+        setDouble(ps, 2, m.getCpuUsage());
+        setDouble(ps, 3, m.getMemoryUsage());
+        setDouble(ps, 4, m.getDiskUsage());
+        setDouble(ps, 5, m.getNetworkIn());
+        setDouble(ps, 6, m.getNetworkOut());
+        setDouble(ps, 7, m.getLoadAvg());
+        setDouble(ps, 8, m.getTemperature());
+        ps.setTimestamp(9, Timestamp.valueOf(m.getCollectedAt()));
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+}
@@ -15,7 +15,8 @@ import java.util.List;
  * Provides database operations for server metrics data.
  */
 @Repository
-public interface ServerMetricsRepository extends JpaRepository<ServerMetrics, Long> {
+public interface ServerMetricsRepository extends JpaRepository<ServerMetrics, Long>, ServerMetricsBatchRepository,
+        ServerMetricsAggregateRepository, ServerMetricsStreamRepository {
 
     /**
      * Find the latest metrics for a specific server
@@ -29,10 +30,23 @@ public interface ServerMetricsRepository extends JpaRepository<ServerMetrics, Lo
             Long serverId, LocalDateTime startTime, LocalDateTime endTime);
 
     /**
-     * Find all metrics for a specific server with pagination
+     * Find the newest page of metrics for a specific server, ordered by (collected_at, metric_id) descending
      */
-    @Query(value = "SELECT * FROM server_metrics WHERE server_id = :serverId ORDER BY collected_at DESC LIMIT :limit OFFSET :offset", nativeQuery = true)
-    List<ServerMetrics> findMetricsByServerIdWithPagination(@Param("serverId") Long serverId, @Param("limit") int limit, @Param("offset") int offset);
+    @Query(value = "SELECT * FROM server_metrics WHERE server_id = :serverId " +
+                   "ORDER BY collected_at DESC, metric_id DESC LIMIT :limit", nativeQuery = true)
+    List<ServerMetrics> findFirstPageByServerId(@Param("serverId") Long serverId, @Param("limit") int limit);
+
+    /**
+     * Find the page of metrics for a specific server that follows the keyset cursor (beforeTime, beforeId),
+     * ordered by (collected_at, metric_id) descending. Seeks through the index instead of skipping rows.
+     */
+    @Query(value = "SELECT * FROM server_metrics WHERE server_id = :serverId " +
+                   "AND (collected_at, metric_id) < (:beforeTime, :beforeId) " +
+                   "ORDER BY collected_at DESC, metric_id DESC LIMIT :limit", nativeQuery = true)
+    List<ServerMetrics> findPageByServerIdBefore(@Param("serverId") Long serverId,
+                                                 @Param("beforeTime") LocalDateTime beforeTime,
+                                                 @Param("beforeId") Long beforeId,
+                                                 @Param("limit") int limit);
 
     /**
      * Find metrics for all servers within a time range
@@ -0,0 +1,32 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.entity.ServerMetrics;
+
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Custom repository fragment for streaming reads of server metrics.
+ * Rows are fetched from the cursor in chunks of the configured fetch size and handed
+ * over one at a time without entering the persistence context, so memory stays flat
+ * however many rows the range holds.
+ */
+public interface ServerMetricsStreamRepository {
+
+    /**
+     * Pass every sample of all servers collected within the time range to the consumer, newest first.
+     * PostgreSQL only streams within a transaction; outside one the driver reads the whole result.
+     *
+     * @return the number of samples streamed
+     */
+    long streamByCollectedAtBetween(LocalDateTime startTime, LocalDateTime endTime, Consumer<ServerMetrics> consumer);
+
+    /**
+     * Pass every sample of one server collected within the time range to the consumer,
+     * in no particular order.
+     *
+     * @return the number of samples streamed
+     */
+    long streamByServerIdAndCollectedAtBetween(Long serverId, LocalDateTime startTime, LocalDateTime endTime,
+                                               Consumer<ServerMetrics> consumer);
+}
@@ -0,0 +1,91 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * JDBC implementation of {@link ServerMetricsStreamRepository}.
+ * Picked up by Spring Data as the fragment implementation for {@link ServerMetricsRepository}.
+ */
+public class ServerMetricsStreamRepositoryImpl implements ServerMetricsStreamRepository {
+
+    private static final String RANGE_SQL = "SELECT metric_id, server_id, cpu_usage, memory_usage, disk_usage, "
+            + "network_in, network_out, load_avg, temperature, collected_at FROM server_metrics "
+            + "WHERE collected_at BETWEEN ? AND ? ORDER BY collected_at DESC";
+
+    private static final String SERVER_RANGE_SQL = "SELECT metric_id, server_id, cpu_usage, memory_usage, disk_usage, "
+            + "network_in, network_out, load_avg, temperature, collected_at FROM server_metrics "
+            + "WHERE server_id = ? AND collected_at BETWEEN ? AND ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.metrics.stream.fetch-size:1000}")
+    private int fetchSize;
+
+    public ServerMetricsStreamRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public long streamByCollectedAtBetween(LocalDateTime startTime, LocalDateTime endTime,
+                                           Consumer<ServerMetrics> consumer) {
+        long[] count = new long[1];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(RANGE_SQL);
+            ps.setFetchSize(Math.max(1, fetchSize));
+            ps.setTimestamp(1, Timestamp.valueOf(startTime));
+            ps.setTimestamp(2, Timestamp.valueOf(endTime));
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            consumer.accept(mapRow(rs));
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    @Override
+    public long streamByServerIdAndCollectedAtBetween(Long serverId, LocalDateTime startTime, LocalDateTime endTime,
+                                                      Consumer<ServerMetrics> consumer) {
+        long[] count = new long[1];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SERVER_RANGE_SQL);
+            ps.setFetchSize(Math.max(1, fetchSize));
+            ps.setLong(1, serverId);
+            ps.setTimestamp(2, Timestamp.valueOf(startTime));
+            ps.setTimestamp(3, Timestamp.valueOf(endTime));
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            consumer.accept(mapRow(rs));
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    private static ServerMetrics mapRow(ResultSet rs) throws SQLException {
+        ServerMetrics metrics = new ServerMetrics(rs.getLong("server_id"));
+        metrics.setMetricId(rs.getLong("metric_id"));
+        metrics.setCpuUsage(readDouble(rs, "cpu_usage"));
+        metrics.setMemoryUsage(readDouble(rs, "memory_usage"));
+        metrics.setDiskUsage(readDouble(rs, "disk_usage"));
+        metrics.setNetworkIn(readDouble(rs, "network_in"));
+        metrics.setNetworkOut(readDouble(rs, "network_out"));
+        metrics.setLoadAvg(readDouble(rs, "load_avg"));
+        metrics.setTemperature(readDouble(rs, "temperature"));
+        metrics.setCollectedAt(rs.getTimestamp("collected_at").toLocalDateTime());
+        return metrics;
+    }
+
+    private static Double readDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+}
@@ -2,20 +2,31 @@ package com.elec5619.backend.scheduler;
 
 import com.elec5619.backend.entity.AlertEvent;
 import com.elec5619.backend.dto.ServerResponseDto;
+import com.elec5619.backend.service.AlertIngestEvaluator;
 import com.elec5619.backend.service.AlertSystemService;
 import com.elec5619.backend.service.ServerService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Scheduled task component for evaluating alert rules against server metrics.
- * This component runs periodically to check if any alert rules are triggered.
+ * This component runs periodically as a safety net behind evaluation on ingest.
  */
 @Component
 public class AlertEvaluationScheduler {
@@ -28,53 +39,85 @@ public class AlertEvaluationScheduler {
     @Autowired
     private ServerService serverService;
 
+    @Autowired
+    private AlertIngestEvaluator alertEvaluator;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.alerts.sweep-shards:2}")
+    private int shards;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int poolSize;
+
+    @Value("${app.alerts.ingest-evaluation.threads:2}")
+    private int ingestEvaluatorThreads;
+
+    // Set while a sweep runs, so a slow sweep is never overlapped by the next one
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
     /**
-     * Evaluate alert rules for all servers every 30 seconds.
-     * This checks if any metrics violate the configured alert rules.
+     * Safety sweep evaluating alert rules for all servers against their latest metrics.
+     * Rules are normally evaluated as samples are ingested (see AlertIngestEvaluator); the
+     * sweep catches samples whose evaluation was skipped, e.g. under a full queue. Pending
+     * rules fire from AlertStateTracker when their duration expires, not from the sweep.
+     *
+     * Servers are split into shards by a hash of their ID, and the shards are evaluated
+     * concurrently on virtual threads, each server in its own transaction, so a slow server
+     * only delays the servers of its shard and a failing one rolls back only its own alerts.
+     * Every shard holds a connection, so the shard count is capped to leave connections for
+     * the ingest evaluators and one more for ingestion and requests. A sweep starting while
+     * the previous one still runs is skipped.
      */
-    @Scheduled(fixedRate = 30000) // Every 30 seconds
-    @Transactional
+    @Scheduled(fixedDelayString = "${app.alerts.sweep-interval-ms:300000}",
+            initialDelayString = "${app.alerts.sweep-interval-ms:300000}")
     public void evaluateAlertRules() {
+        if (!sweeping.compareAndSet(false, true)) {
+            logger.warn("Skipping alert rule evaluation, the previous sweep is still running");
+            alertEvaluator.recordSkippedSweep();
+            return;
+        }
         try {
+            long start = System.nanoTime();
             logger.info("Starting scheduled alert rule evaluation...");
             
             // Get all active servers
             List<ServerResponseDto> serverDtos = serverService.listAll();
-            logger.info("Evaluating alert rules for {} servers", serverDtos.size());
+            List<List<ServerResponseDto>> shardServers = partition(serverDtos);
+            logger.info("Evaluating alert rules for {} servers in {} shards", serverDtos.size(), shardServers.size());
             
-            int totalAlertsTriggered = 0;
-            
-            for (ServerResponseDto serverDto : serverDtos) {
-                try {
-                    // Evaluate metrics for this server
-                    List<AlertEvent> triggeredAlerts = alertSystemService.evaluateMetrics(serverDto.getId());
-                    
-                    if (!triggeredAlerts.isEmpty()) {
-                        totalAlertsTriggered += triggeredAlerts.size();
-                        logger.warn("Triggered {} alerts for server: {} ({})", 
-                                  triggeredAlerts.size(), serverDto.getServerName(), serverDto.getId());
-                        
-                        // Log each triggered alert
-                        for (AlertEvent alert : triggeredAlerts) {
-                            logger.warn("Alert triggered - Rule: {}, Severity: {}, Summary: {}", 
-                                      alert.getAlertRule().getRuleName(),
-                                      alert.getAlertRule().getSeverity(),
-                                      alert.getSummary());
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.error("Error evaluating alerts for server {}: {}", serverDto.getId(), e.getMessage());
+            AtomicInteger totalAlertsTriggered = new AtomicInteger();
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            List<Callable<Long>> tasks = new ArrayList<>();
+            for (int shard = 0; shard < shardServers.size(); shard++) {
+                int index = shard;
+                tasks.add(() -> evaluateShard(index, shardServers.get(index), transactionTemplate, totalAlertsTriggered));
+            }
+            long[] shardNanos = new long[tasks.size()];
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Long>> results = executor.invokeAll(tasks);
+                for (int shard = 0; shard < shardNanos.length; shard++) {
+                    shardNanos[shard] = results.get(shard).get();
                 }
             }
+            long elapsed = System.nanoTime() - start;
+            alertEvaluator.recordSweep(serverDtos.size(), elapsed, shardNanos);
             
-            if (totalAlertsTriggered > 0) {
-                logger.warn("Alert evaluation completed. Total alerts triggered: {}", totalAlertsTriggered);
+            if (totalAlertsTriggered.get() > 0) {
+                logger.warn("Alert evaluation completed in {} ms. Total alerts triggered: {}",
+                        elapsed / 1_000_000, totalAlertsTriggered.get());
             } else {
-                logger.info("Alert evaluation completed. No alerts triggered.");
+                logger.info("Alert evaluation completed in {} ms. No alerts triggered.", elapsed / 1_000_000);
             }
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Scheduled alert evaluation interrupted");
         } catch (Exception e) {
             logger.error("Error during scheduled alert evaluation: {}", e.getMessage(), e);
+        } finally {
+            sweeping.set(false);
         }
     }
 
@@ -93,4 +136,67 @@ public class AlertEvaluationScheduler {
             logger.error("Error cleaning up resolved alerts: {}", e.getMessage(), e);
         }
     }
+
+    // ======= Internal =======
+
+    // Servers of a shard are evaluated in order, each in its own transaction; returns the shard's duration
+    private long evaluateShard(int shard, List<ServerResponseDto> servers, TransactionTemplate transactionTemplate,
+                               AtomicInteger totalAlertsTriggered) {
+        long start = System.nanoTime();
+        for (ServerResponseDto serverDto : servers) {
+            try {
+                Integer triggered = transactionTemplate.execute(status -> evaluateServer(serverDto));
+                totalAlertsTriggered.addAndGet(triggered != null ? triggered : 0);
+            } catch (Exception e) {
+                logger.error("Error committing alert evaluation of server {}: {}", serverDto.getId(), e.getMessage());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        logger.debug("Evaluated alert rules for {} servers of shard {} in {} ms", servers.size(), shard,
+                elapsed / 1_000_000);
+        return elapsed;
+    }
+
+    private int evaluateServer(ServerResponseDto serverDto) {
+        try {
+            // Evaluate metrics for this server
+            List<AlertEvent> triggeredAlerts = alertSystemService.evaluateMetrics(serverDto.getId());
+            
+            if (!triggeredAlerts.isEmpty()) {
+                logger.warn("Triggered {} alerts for server: {} ({})", 
+                          triggeredAlerts.size(), serverDto.getServerName(), serverDto.getId());
+                
+                // Log each triggered alert
+                for (AlertEvent alert : triggeredAlerts) {
+                    logger.warn("Alert triggered - Rule: {}, Severity: {}, Summary: {}", 
+                              alert.getAlertRule().getRuleName(),
+                              alert.getAlertRule().getSeverity(),
+                              alert.getSummary());
+                }
+            }
+            return triggeredAlerts.size();
+        } catch (Exception e) {
+            logger.error("Error evaluating alerts for server {}: {}", serverDto.getId(), e.getMessage());
+            return 0;
+        }
+    }
+
+    // Split servers into at most the configured number of shards by a hash of their ID
+    private List<List<ServerResponseDto>> partition(List<ServerResponseDto> servers) {
+        int count = Math.max(1, Math.min(Math.min(shards, maxShards()), servers.size()));
+        List<List<ServerResponseDto>> shardServers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shardServers.add(new ArrayList<>());
+        }
+        for (ServerResponseDto server : servers) {
+            int shard = server.getId() != null ? Math.floorMod(Long.hashCode(server.getId()), count) : 0;
+            shardServers.get(shard).add(server);
+        }
+        return shardServers;
+    }
+
+    // Shards the connection pool can serve besides the ingest evaluators and one spare connection
+    private int maxShards() {
+        return poolSize > 0 ? Math.max(1, poolSize - ingestEvaluatorThreads - 1) : shards;
+    }
 }
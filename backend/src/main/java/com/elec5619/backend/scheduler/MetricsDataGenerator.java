@@ -42,8 +42,8 @@ public class MetricsDataGenerator {
     public void cleanupOldMetrics() {
         try {
             logger.info("Starting scheduled cleanup of old metrics data...");
-            serverMetricsService.cleanupOldMetrics(7); // Keep 7 days of data
-            logger.info("Successfully cleaned up old metrics data");
+            long removed = serverMetricsService.cleanupOldMetrics();
+            logger.info("Successfully cleaned up old metrics data ({} partitions/rows removed)", removed);
         } catch (Exception e) {
             logger.error("Error cleaning up old metrics data: {}", e.getMessage(), e);
         }
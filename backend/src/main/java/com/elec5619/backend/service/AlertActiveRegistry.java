@@ -0,0 +1,271 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.AlertEvent;
+import com.elec5619.backend.repository.AlertEventRepository;
+import com.elec5619.backend.util.MetricTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory registry of the firing alert events, holding the latest one of every rule
+ * on every server, so checking whether a rule already fired on a server is a map lookup
+ * instead of a filtered query on alert_event.
+ *
+ * It is loaded with a single query on startup, updated once the transactions that
+ * create, resolve, acknowledge, update or delete events commit, and reconciled against
+ * the table periodically to repair changes made behind its back. The table is read in a
+ * read-write transaction, so it comes from the primary rather than a lagging replica.
+ */
+@Service
+public class AlertActiveRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertActiveRegistry.class);
+
+    private static final String FIRING = "firing";
+    // Attempts of the first load to read a snapshot no change raced with
+    private static final int LOAD_ATTEMPTS = 3;
+
+    private final AlertEventRepository alertEventRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Keyed by rule and server ID packed into a long; readers do not lock
+    private final Map<Long, ActiveAlert> active = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    // Bumped by every change under the lock, so a reload can tell whether a change raced with its query
+    private long version;
+
+    public AlertActiveRegistry(AlertEventRepository alertEventRepository, PlatformTransactionManager transactionManager) {
+        this.alertEventRepository = alertEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private static final class ActiveAlert {
+        final long eventId;
+        final long ruleId;
+        final long serverId;
+        final long startedMillis;
+
+        ActiveAlert(long eventId, long ruleId, long serverId, long startedMillis) {
+            this.eventId = eventId;
+            this.ruleId = ruleId;
+            this.serverId = serverId;
+            this.startedMillis = startedMillis;
+        }
+
+        boolean sameAs(ActiveAlert other) {
+            return other != null && eventId == other.eventId && startedMillis == other.startedMillis;
+        }
+    }
+
+    /**
+     * Whether a rule has a firing event on a server that started at or after a time.
+     */
+    public boolean isActive(Long ruleId, Long serverId, LocalDateTime since) {
+        return activeEventId(ruleId, serverId, since).isPresent();
+    }
+
+    /**
+     * ID of the firing event of a rule on a server that started at or after a time.
+     */
+    public Optional<Long> activeEventId(Long ruleId, Long serverId, LocalDateTime since) {
+        if (ruleId == null || serverId == null) {
+            return Optional.empty();
+        }
+        ensureLoaded();
+        ActiveAlert alert = active.get(key(ruleId, serverId));
+        // IDs beyond 32 bits may share a key; the entry must be of the same rule and server
+        boolean matches = alert != null && alert.ruleId == ruleId && alert.serverId == serverId
+                && (since == null || alert.startedMillis >= MetricTime.toMillis(since));
+        return matches ? Optional.of(alert.eventId) : Optional.empty();
+    }
+
+    /**
+     * Record the status of an event once the current transaction commits: a firing event
+     * becomes the active one of its rule and server, any other status drops it.
+     */
+    public void track(AlertEvent event) {
+        if (event == null || event.getEventId() == null || event.getServerId() == null
+                || event.getAlertRule() == null || event.getAlertRule().getRuleId() == null) {
+            return;
+        }
+        ActiveAlert alert = toActive(event);
+        boolean firing = FIRING.equals(event.getStatus());
+        afterCommit(() -> {
+            if (firing) {
+                add(alert);
+            } else {
+                remove(alert);
+            }
+        });
+    }
+
+    /**
+     * Drop a deleted event once the current transaction commits.
+     */
+    public void forget(Long eventId) {
+        if (eventId == null) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (this) {
+                if (active.values().removeIf(alert -> alert.eventId == eventId)) {
+                    version++;
+                }
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        ensureLoaded();
+    }
+
+    /**
+     * Compare the registry with the firing events in the database and repair the
+     * differences. Skipped if a change commits while the events are read; the next run
+     * picks it up.
+     */
+    @Scheduled(fixedDelayString = "${app.alerts.active.reconcile-interval-ms:300000}",
+            initialDelayString = "${app.alerts.active.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        if (!loaded) {
+            ensureLoaded();
+            return;
+        }
+        long before;
+        synchronized (this) {
+            before = version;
+        }
+        Map<Long, ActiveAlert> firing = readFiring();
+        synchronized (this) {
+            if (version != before) {
+                logger.debug("Active alerts changed while reconciling, retrying on the next run");
+                return;
+            }
+            int drift = replace(firing);
+            if (drift > 0) {
+                logger.warn("Reconciled {} active alerts that drifted from alert_event", drift);
+            }
+        }
+    }
+
+    /**
+     * Number of rule and server pairs with a firing event.
+     */
+    public int size() {
+        return active.size();
+    }
+
+    // ======= Internal =======
+
+    // Rule ID in the high 32 bits and server ID in the low 32 bits, unique while both fit
+    static long key(long ruleId, long serverId) {
+        return (ruleId << 32) ^ (serverId & 0xFFFFFFFFL) ^ (serverId >>> 32);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            for (int attempt = 1; ; attempt++) {
+                long before = version;
+                Map<Long, ActiveAlert> firing = readFiring();
+                // A change committed after the query would be overwritten; read again
+                if (version == before || attempt == LOAD_ATTEMPTS) {
+                    replace(firing);
+                    break;
+                }
+            }
+            loaded = true;
+            logger.info("Loaded {} active alerts", active.size());
+        }
+    }
+
+    private Map<Long, ActiveAlert> readFiring() {
+        Map<Long, ActiveAlert> firing = new HashMap<>();
+        List<AlertEvent> events = transactionTemplate.execute(status -> alertEventRepository.findByStatus(FIRING));
+        for (AlertEvent event : events != null ? events : List.<AlertEvent>of()) {
+            if (event.getEventId() == null || event.getServerId() == null
+                    || event.getAlertRule() == null || event.getAlertRule().getRuleId() == null) {
+                continue;
+            }
+            ActiveAlert alert = toActive(event);
+            firing.merge(key(alert.ruleId, alert.serverId), alert, AlertActiveRegistry::latest);
+        }
+        return firing;
+    }
+
+    // Make the registry hold exactly the given alerts; returns the number of entries changed
+    private int replace(Map<Long, ActiveAlert> firing) {
+        int changed = 0;
+        for (Map.Entry<Long, ActiveAlert> e : firing.entrySet()) {
+            if (!e.getValue().sameAs(active.put(e.getKey(), e.getValue()))) {
+                changed++;
+            }
+        }
+        for (Long key : active.keySet()) {
+            if (!firing.containsKey(key)) {
+                active.remove(key);
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private synchronized void add(ActiveAlert alert) {
+        version++;
+        if (loaded) {
+            active.merge(key(alert.ruleId, alert.serverId), alert, AlertActiveRegistry::latest);
+        }
+    }
+
+    private synchronized void remove(ActiveAlert alert) {
+        version++;
+        ActiveAlert current = active.get(key(alert.ruleId, alert.serverId));
+        if (current != null && current.eventId == alert.eventId) {
+            active.remove(key(alert.ruleId, alert.serverId));
+        }
+    }
+
+    private static ActiveAlert latest(ActiveAlert a, ActiveAlert b) {
+        return b.startedMillis >= a.startedMillis ? b : a;
+    }
+
+    private static ActiveAlert toActive(AlertEvent event) {
+        LocalDateTime startedAt = event.getStartedAt() != null ? event.getStartedAt() : LocalDateTime.now();
+        return new ActiveAlert(event.getEventId(), event.getAlertRule().getRuleId(), event.getServerId(),
+                MetricTime.toMillis(startedAt));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,274 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.AlertEvaluationStatsDto;
+import com.elec5619.backend.entity.AlertEvent;
+import com.elec5619.backend.entity.ServerMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluates the alert rules of a server as soon as one of its samples is ingested, so
+ * detection latency no longer waits for the periodic sweep. Evaluation runs on a small
+ * dedicated executor with a bounded queue and never blocks the ingest request.
+ *
+ * Each server has at most one evaluation queued or running at a time: samples arriving
+ * meanwhile replace the one waiting, so a burst from one agent costs one evaluation of
+ * its newest sample, and the rules of a server are never evaluated concurrently. When
+ * the queue is full the sample is not evaluated on ingest and is left to the sweep of
+ * {@link com.elec5619.backend.scheduler.AlertEvaluationScheduler}, which reports the
+ * durations of its sweeps here so both paths of evaluation share one set of statistics.
+ */
+@Service
+public class AlertIngestEvaluator {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertIngestEvaluator.class);
+
+    private final AlertSystemService alertSystemService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.alerts.ingest-evaluation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.alerts.ingest-evaluation.threads:2}")
+    private int threads;
+
+    @Value("${app.alerts.ingest-evaluation.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    // Statistics
+    private final LongAdder submittedSamples = new LongAdder();
+    private final LongAdder coalescedSamples = new LongAdder();
+    private final LongAdder rejectedSamples = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder failedEvaluations = new LongAdder();
+    private final LongAdder alertsFired = new LongAdder();
+    private final LongAdder evaluationLatencyNanos = new LongAdder();
+    private final AtomicLong maxEvaluationLatencyNanos = new AtomicLong();
+    private final LongAdder alertEvaluations = new LongAdder();
+    private final LongAdder alertLatencyNanos = new LongAdder();
+    private final AtomicLong maxAlertLatencyNanos = new AtomicLong();
+    private final LongAdder sweeps = new LongAdder();
+    private final LongAdder skippedSweeps = new LongAdder();
+    private final AtomicLong maxSweepNanos = new AtomicLong();
+    private volatile SweepTimes lastSweep;
+
+    public AlertIngestEvaluator(AlertSystemService alertSystemService, PlatformTransactionManager transactionManager) {
+        this.alertSystemService = alertSystemService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * The sample waiting to be evaluated for one server, guarded by itself.
+     */
+    private static final class Pending {
+        ServerMetrics sample;
+        long acceptedAtNanos;
+        boolean scheduled;
+    }
+
+    /**
+     * Durations of one sweep.
+     */
+    private static final class SweepTimes {
+        final int servers;
+        final long nanos;
+        final long[] shardNanos;
+
+        SweepTimes(int servers, long nanos, long[] shardNanos) {
+            this.servers = servers;
+            this.nanos = nanos;
+            this.shardNanos = shardNanos;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "alert-evaluator-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        logger.info("Started alert evaluation on ingest: threads={}, queueCapacity={}", threads, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue accepted samples for evaluation against the rules of their servers. Returns immediately.
+     */
+    public void submit(List<ServerMetrics> samples) {
+        if (!enabled || executor == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (ServerMetrics sample : samples) {
+            if (sample == null || sample.getServerId() == null) {
+                continue;
+            }
+            submittedSamples.increment();
+            Pending entry = pending.computeIfAbsent(sample.getServerId(), id -> new Pending());
+            synchronized (entry) {
+                if (entry.sample != null) {
+                    coalescedSamples.increment();
+                }
+                entry.sample = sample;
+                entry.acceptedAtNanos = now;
+                if (entry.scheduled) {
+                    continue;
+                }
+                entry.scheduled = true;
+            }
+            try {
+                executor.execute(() -> drain(entry));
+            } catch (RejectedExecutionException e) {
+                synchronized (entry) {
+                    entry.sample = null;
+                    entry.scheduled = false;
+                }
+                rejectedSamples.increment();
+            }
+        }
+    }
+
+    /**
+     * Forget the pending state of a server, e.g. when the server is deleted.
+     */
+    public void evict(Long serverId) {
+        if (serverId != null) {
+            pending.remove(serverId);
+        }
+    }
+
+    /**
+     * Record a completed sweep of all servers and the duration of each of its shards.
+     */
+    public void recordSweep(int servers, long nanos, long[] shardNanos) {
+        sweeps.increment();
+        maxSweepNanos.accumulateAndGet(nanos, Math::max);
+        lastSweep = new SweepTimes(servers, nanos, shardNanos.clone());
+    }
+
+    /**
+     * Record a sweep skipped because the previous one was still running.
+     */
+    public void recordSkippedSweep() {
+        skippedSweeps.increment();
+    }
+
+    public AlertEvaluationStatsDto getStats() {
+        AlertEvaluationStatsDto dto = new AlertEvaluationStatsDto();
+        dto.setEnabled(enabled);
+        dto.setQueueDepth(executor != null ? executor.getQueue().size() : 0);
+        dto.setQueueCapacity(queueCapacity);
+        dto.setPendingServers(pending.size());
+        dto.setSubmittedSamples(submittedSamples.sum());
+        dto.setCoalescedSamples(coalescedSamples.sum());
+        dto.setRejectedSamples(rejectedSamples.sum());
+        long evaluated = evaluations.sum();
+        dto.setEvaluations(evaluated);
+        dto.setFailedEvaluations(failedEvaluations.sum());
+        dto.setAlertsFired(alertsFired.sum());
+        dto.setAvgEvaluationLatencyMs(evaluated > 0 ? evaluationLatencyNanos.sum() / 1_000_000.0 / evaluated : 0);
+        dto.setMaxEvaluationLatencyMs(maxEvaluationLatencyNanos.get() / 1_000_000.0);
+        long alerting = alertEvaluations.sum();
+        dto.setAvgAlertLatencyMs(alerting > 0 ? alertLatencyNanos.sum() / 1_000_000.0 / alerting : 0);
+        dto.setMaxAlertLatencyMs(maxAlertLatencyNanos.get() / 1_000_000.0);
+        dto.setSweeps(sweeps.sum());
+        dto.setSkippedSweeps(skippedSweeps.sum());
+        dto.setMaxSweepDurationMs(maxSweepNanos.get() / 1_000_000.0);
+        SweepTimes last = lastSweep;
+        if (last != null) {
+            dto.setLastSweepServers(last.servers);
+            dto.setLastSweepDurationMs(last.nanos / 1_000_000.0);
+            double[] shardMs = new double[last.shardNanos.length];
+            for (int i = 0; i < shardMs.length; i++) {
+                shardMs[i] = last.shardNanos[i] / 1_000_000.0;
+            }
+            dto.setLastSweepShardDurationsMs(shardMs);
+        }
+        return dto;
+    }
+
+    // ======= Internal =======
+
+    // Evaluate the newest waiting sample until none is left, so a server never has two evaluations at once
+    private void drain(Pending entry) {
+        while (true) {
+            ServerMetrics sample;
+            long acceptedAtNanos;
+            synchronized (entry) {
+                sample = entry.sample;
+                acceptedAtNanos = entry.acceptedAtNanos;
+                entry.sample = null;
+                if (sample == null) {
+                    entry.scheduled = false;
+                    return;
+                }
+            }
+            evaluate(sample, acceptedAtNanos);
+        }
+    }
+
+    private void evaluate(ServerMetrics sample, long acceptedAtNanos) {
+        List<AlertEvent> fired;
+        try {
+            // Rule lookups and duplicate checks run in one read-write transaction, as in the sweep
+            fired = transactionTemplate.execute(status -> alertSystemService.evaluateIngested(sample));
+        } catch (Exception e) {
+            failedEvaluations.increment();
+            logger.warn("Failed to evaluate alerts for server {} on ingest: {}", sample.getServerId(), e.getMessage());
+            return;
+        }
+        long latency = System.nanoTime() - acceptedAtNanos;
+        evaluations.increment();
+        evaluationLatencyNanos.add(latency);
+        maxEvaluationLatencyNanos.accumulateAndGet(latency, Math::max);
+        if (fired != null && !fired.isEmpty()) {
+            alertsFired.add(fired.size());
+            alertEvaluations.increment();
+            alertLatencyNanos.add(latency);
+            maxAlertLatencyNanos.accumulateAndGet(latency, Math::max);
+            logger.info("Fired {} alerts for server {} {} ms after ingest", fired.size(), sample.getServerId(),
+                    latency / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.AlertRule;
+import com.elec5619.backend.repository.AlertRuleRepository;
+import com.elec5619.backend.util.MetricValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of the enabled alert rules, compiled for evaluation.
+ * Rules are grouped by server and, within a server, by metric ID, and each group is
+ * laid out as primitive arrays of comparator opcodes, thresholds and durations, so evaluating a
+ * sample reads each metric of the server once and compares it against its rules
+ * without database access, string parsing or allocation.
+ *
+ * The index is copy-on-write: readers use an immutable snapshot without locking, and
+ * every rule change compiles a new snapshot that replaces the old one atomically once
+ * the change has committed. The index is reloaded periodically to pick up rules changed
+ * by other instances and metric names registered since a rule was compiled. A rule
+ * leaving the index drops its pending and firing states from the {@link AlertStateTracker}.
+ */
+@Service
+public class AlertRuleIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertRuleIndex.class);
+
+    private final AlertRuleRepository alertRuleRepository;
+    private final MetricRegistry metricRegistry;
+    private final AlertStateTracker stateTracker;
+    private final TransactionTemplate transactionTemplate;
+
+    // Null until the rules are first loaded
+    private volatile Snapshot snapshot;
+
+    public AlertRuleIndex(AlertRuleRepository alertRuleRepository, MetricRegistry metricRegistry,
+                          AlertStateTracker stateTracker, PlatformTransactionManager transactionManager) {
+        this.alertRuleRepository = alertRuleRepository;
+        this.metricRegistry = metricRegistry;
+        this.stateTracker = stateTracker;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Compiled rules of one server, or of all servers. Rule positions run from
+     * {@link #groupStart} to {@link #groupEnd} of each metric group. Immutable.
+     */
+    public static final class RuleSet {
+
+        public static final byte GE = 0;
+        public static final byte GT = 1;
+        public static final byte LE = 2;
+        public static final byte LT = 3;
+        public static final byte EQ = 4;
+        public static final byte NE = 5;
+        public static final byte ANOMALY = 6;
+        public static final byte FORECAST = 7;
+
+        static final RuleSet EMPTY = new RuleSet(new int[0], new int[] {0}, new byte[0], new double[0], new int[0],
+                new AlertRule[0]);
+
+        private final int[] metricIds;
+        // groupCount + 1 entries; group g holds the rules from groupStart[g] to groupStart[g + 1]
+        private final int[] groupStart;
+        private final byte[] opcodes;
+        private final double[] thresholds;
+        // Minutes the condition must hold before the rule fires
+        private final int[] durations;
+        private final AlertRule[] rules;
+
+        private RuleSet(int[] metricIds, int[] groupStart, byte[] opcodes, double[] thresholds, int[] durations,
+                        AlertRule[] rules) {
+            this.metricIds = metricIds;
+            this.groupStart = groupStart;
+            this.opcodes = opcodes;
+            this.thresholds = thresholds;
+            this.durations = durations;
+            this.rules = rules;
+        }
+
+        /**
+         * Compile the enabled rules with a known comparator and a threshold, grouped by metric.
+         */
+        public static RuleSet compile(Collection<AlertRule> rules, MetricRegistry metricRegistry) {
+            List<Compiled> compiled = new ArrayList<>(rules.size());
+            for (AlertRule rule : rules) {
+                byte opcode = opcodeOf(rule.getComparator());
+                if (!Boolean.TRUE.equals(rule.getEnabled()) || opcode < 0 || rule.getThreshold() == null) {
+                    continue;
+                }
+                compiled.add(new Compiled(resolveMetric(rule.getTargetMetric(), metricRegistry), opcode, rule));
+            }
+            if (compiled.isEmpty()) {
+                return EMPTY;
+            }
+            compiled.sort(Comparator.comparingInt((Compiled c) -> c.metricId)
+                    .thenComparing(c -> c.rule.getRuleId(), Comparator.nullsLast(Comparator.naturalOrder())));
+
+            int groups = 0;
+            for (int i = 0; i < compiled.size(); i++) {
+                if (i == 0 || compiled.get(i).metricId != compiled.get(i - 1).metricId) {
+                    groups++;
+                }
+            }
+            int[] metricIds = new int[groups];
+            int[] groupStart = new int[groups + 1];
+            byte[] opcodes = new byte[compiled.size()];
+            double[] thresholds = new double[compiled.size()];
+            int[] durations = new int[compiled.size()];
+            AlertRule[] ruleArray = new AlertRule[compiled.size()];
+            int group = -1;
+            for (int i = 0; i < compiled.size(); i++) {
+                Compiled c = compiled.get(i);
+                if (i == 0 || c.metricId != compiled.get(i - 1).metricId) {
+                    group++;
+                    metricIds[group] = c.metricId;
+                    groupStart[group] = i;
+                }
+                opcodes[i] = c.opcode;
+                thresholds[i] = c.rule.getThreshold();
+                durations[i] = c.rule.getDuration() != null ? Math.max(0, c.rule.getDuration()) : 0;
+                ruleArray[i] = c.rule;
+            }
+            groupStart[groups] = compiled.size();
+            return new RuleSet(metricIds, groupStart, opcodes, thresholds, durations, ruleArray);
+        }
+
+        public int size() {
+            return rules.length;
+        }
+
+        public int groupCount() {
+            return metricIds.length;
+        }
+
+        /**
+         * Metric ID of a group, -1 if the metric name is not registered.
+         */
+        public int metricId(int group) {
+            return metricIds[group];
+        }
+
+        public int groupStart(int group) {
+            return groupStart[group];
+        }
+
+        public int groupEnd(int group) {
+            return groupStart[group + 1];
+        }
+
+        public byte opcode(int position) {
+            return opcodes[position];
+        }
+
+        public double threshold(int position) {
+            return thresholds[position];
+        }
+
+        public int duration(int position) {
+            return durations[position];
+        }
+
+        public AlertRule rule(int position) {
+            return rules[position];
+        }
+
+        /**
+         * Compare a value against a threshold with a value comparator opcode; false for the
+         * anomaly and forecast opcodes, which are not comparisons of the value.
+         */
+        public static boolean compare(byte opcode, double value, double threshold) {
+            return switch (opcode) {
+                case GE -> value >= threshold;
+                case GT -> value > threshold;
+                case LE -> value <= threshold;
+                case LT -> value < threshold;
+                case EQ -> Double.compare(value, threshold) == 0;
+                case NE -> Double.compare(value, threshold) != 0;
+                default -> false;
+            };
+        }
+    }
+
+    /**
+     * Compiled rules of a server. Never null.
+     */
+    public RuleSet forServer(Long serverId) {
+        RuleSet rules = current().byServer.get(serverId);
+        return rules != null ? rules : RuleSet.EMPTY;
+    }
+
+    /**
+     * Compiled rules of all servers, including rules not bound to a server.
+     */
+    public RuleSet all() {
+        return current().all;
+    }
+
+    /**
+     * An enabled rule by ID, or null if it does not exist or is disabled.
+     */
+    public AlertRule rule(Long ruleId) {
+        return ruleId != null ? current().rules.get(ruleId) : null;
+    }
+
+    /**
+     * Add or replace a rule, or drop it if it is disabled, once the current transaction commits.
+     */
+    public void put(AlertRule rule) {
+        if (rule == null || rule.getRuleId() == null) {
+            return;
+        }
+        afterCommit(() -> update(rule.getRuleId(), rule));
+    }
+
+    /**
+     * Drop a rule once the current transaction commits.
+     */
+    public void remove(Long ruleId) {
+        if (ruleId == null) {
+            return;
+        }
+        afterCommit(() -> update(ruleId, null));
+    }
+
+    /**
+     * Rebuild the index from the database. The rules are read in a read-write transaction,
+     * so they come from the primary and a lagging replica cannot bring back an older rule set.
+     */
+    @Scheduled(fixedDelayString = "${app.alerts.rule-index.refresh-interval-ms:60000}")
+    public synchronized void reload() {
+        Map<Long, AlertRule> rules = new HashMap<>();
+        List<AlertRule> enabled = transactionTemplate.execute(status -> alertRuleRepository.findByEnabled(true));
+        for (AlertRule rule : enabled != null ? enabled : List.<AlertRule>of()) {
+            rules.put(rule.getRuleId(), rule);
+        }
+        Snapshot previous = snapshot;
+        snapshot = compile(rules);
+        if (previous != null) {
+            // Rules deleted or disabled by other instances
+            for (Long ruleId : previous.rules.keySet()) {
+                if (!rules.containsKey(ruleId)) {
+                    stateTracker.removeRule(ruleId);
+                }
+            }
+        }
+        if (previous == null || previous.rules.size() != rules.size()) {
+            logger.info("Compiled alert rule index with {} enabled rules", rules.size());
+        }
+    }
+
+    // ======= Internal =======
+
+    private static final class Compiled {
+        final int metricId;
+        final byte opcode;
+        final AlertRule rule;
+
+        Compiled(int metricId, byte opcode, AlertRule rule) {
+            this.metricId = metricId;
+            this.opcode = opcode;
+            this.rule = rule;
+        }
+    }
+
+    private static final class Snapshot {
+        final Map<Long, AlertRule> rules;
+        final Map<Long, RuleSet> byServer;
+        final RuleSet all;
+
+        Snapshot(Map<Long, AlertRule> rules, Map<Long, RuleSet> byServer, RuleSet all) {
+            this.rules = rules;
+            this.byServer = byServer;
+            this.all = all;
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private synchronized void update(Long ruleId, AlertRule rule) {
+        boolean enabled = rule != null && Boolean.TRUE.equals(rule.getEnabled());
+        if (!enabled) {
+            stateTracker.removeRule(ruleId);
+        }
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Not loaded yet; the first load reads the change from the database
+            return;
+        }
+        Map<Long, AlertRule> rules = new HashMap<>(current.rules);
+        if (enabled) {
+            rules.put(ruleId, rule);
+        } else {
+            rules.remove(ruleId);
+        }
+        snapshot = compile(rules);
+    }
+
+    private Snapshot compile(Map<Long, AlertRule> rules) {
+        Map<Long, List<AlertRule>> grouped = new HashMap<>();
+        for (AlertRule rule : rules.values()) {
+            if (rule.getServerId() != null) {
+                grouped.computeIfAbsent(rule.getServerId(), id -> new ArrayList<>()).add(rule);
+            }
+        }
+        Map<Long, RuleSet> byServer = new HashMap<>();
+        for (Map.Entry<Long, List<AlertRule>> e : grouped.entrySet()) {
+            byServer.put(e.getKey(), RuleSet.compile(e.getValue(), metricRegistry));
+        }
+        return new Snapshot(Collections.unmodifiableMap(rules), byServer, RuleSet.compile(rules.values(), metricRegistry));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static byte opcodeOf(String comparator) {
+        if (comparator == null) {
+            return -1;
+        }
+        return switch (comparator) {
+            case ">=" -> RuleSet.GE;
+            case ">" -> RuleSet.GT;
+            case "<=" -> RuleSet.LE;
+            case "<" -> RuleSet.LT;
+            case "==" -> RuleSet.EQ;
+            case "!=" -> RuleSet.NE;
+            case "anomaly" -> RuleSet.ANOMALY;
+            case "forecast" -> RuleSet.FORECAST;
+            default -> -1;
+        };
+    }
+
+    // Built-in metrics never go through the registry; unknown names compile to -1
+    private static int resolveMetric(String metricName, MetricRegistry metricRegistry) {
+        int metricId = MetricValues.indexOf(metricName);
+        return metricId >= 0 ? metricId : metricRegistry.resolve(metricName);
+    }
+}
@@ -0,0 +1,421 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.AlertEvent;
+import com.elec5619.backend.entity.AlertRuleState;
+import com.elec5619.backend.repository.AlertRuleStateRepository;
+import com.elec5619.backend.util.MetricTime;
+import com.elec5619.backend.util.TimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State machine of every alert rule on every server: inactive, pending while the
+ * condition holds for less than the rule's duration, firing once it has held for the
+ * whole duration, and resolved back to inactive when it stops holding. Only pending and
+ * firing rules have a state, kept in a concurrent map and checkpointed to the
+ * alert_rule_state table periodically and on shutdown, and restored on startup.
+ *
+ * A pending rule fires as soon as a matching sample arrives after its duration, or else
+ * when its deadline expires on a hierarchical timing wheel ticking once a second, so
+ * pending rules are not re-checked on every tick and fire at most one tick late even
+ * when no further sample arrives.
+ */
+@Service
+public class AlertStateTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertStateTracker.class);
+
+    public static final String PENDING = "pending";
+    public static final String FIRING = "firing";
+
+    private static final byte STATUS_PENDING = 0;
+    private static final byte STATUS_FIRING = 1;
+    // Dropped from the map; late callers holding the state ignore it
+    private static final byte STATUS_REMOVED = 2;
+
+    private final AlertRuleStateRepository stateRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.alerts.state.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${app.alerts.state.wheel-size:64}")
+    private int wheelSize;
+
+    // Keyed by rule and server ID packed into a long, as in AlertActiveRegistry
+    private final Map<Long, State> states = new ConcurrentHashMap<>();
+    private TimingWheel<State> wheel;
+    private final Object wheelLock = new Object();
+    private volatile FiringHandler firingHandler;
+    private volatile boolean dirty;
+
+    public AlertStateTracker(AlertRuleStateRepository stateRepository, PlatformTransactionManager transactionManager) {
+        this.stateRepository = stateRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Raises the alert of a pending rule whose duration expired on the timing wheel.
+     */
+    public interface FiringHandler {
+
+        /**
+         * @return the event raised, or null if the alert was not raised, in which case the
+         *         handler has recorded the outcome through {@link #onFired}, {@link #onFireFailed}
+         *         or {@link #onClear}
+         */
+        AlertEvent fire(Long ruleId, Long serverId, int metricId, double value);
+    }
+
+    /**
+     * State of one rule on one server, guarded by itself.
+     */
+    private static final class State {
+        final Long ruleId;
+        final Long serverId;
+        final int metricId;
+        final long sinceMillis;
+        final long fireAtMillis;
+        byte status = STATUS_PENDING;
+        double value;
+        Long eventId;
+
+        State(Long ruleId, Long serverId, int metricId, long sinceMillis, long fireAtMillis, double value) {
+            this.ruleId = ruleId;
+            this.serverId = serverId;
+            this.metricId = metricId;
+            this.sinceMillis = sinceMillis;
+            this.fireAtMillis = fireAtMillis;
+            this.value = value;
+        }
+
+        boolean is(Long ruleId, Long serverId) {
+            return this.ruleId.equals(ruleId) && this.serverId.equals(serverId);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        wheel = new TimingWheel<>(Math.max(1, tickMillis), Math.max(2, wheelSize), System.currentTimeMillis());
+    }
+
+    /**
+     * Load the states checkpointed by the previous run.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        try {
+            int restored = 0;
+            // Read-write, so the checkpoint comes from the primary rather than a lagging replica
+            List<AlertRuleState> rows = transactionTemplate.execute(status -> stateRepository.findAll());
+            for (AlertRuleState row : rows != null ? rows : List.<AlertRuleState>of()) {
+                State state = new State(row.getRuleId(), row.getServerId(), row.getMetricId(),
+                        MetricTime.toMillis(row.getSince()), MetricTime.toMillis(row.getFireAt()),
+                        row.getTriggeredValue() != null ? row.getTriggeredValue() : 0.0);
+                state.eventId = row.getEventId();
+                if (FIRING.equals(row.getStatus())) {
+                    state.status = STATUS_FIRING;
+                }
+                // Samples evaluated since startup take precedence over the checkpoint
+                if (states.putIfAbsent(AlertActiveRegistry.key(row.getRuleId(), row.getServerId()), state) != null) {
+                    continue;
+                }
+                if (state.status == STATUS_PENDING) {
+                    schedule(state);
+                }
+                restored++;
+            }
+            if (restored > 0) {
+                logger.info("Restored {} pending or firing alert rule states", restored);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to restore alert rule states, rules start inactive: {}", e.getMessage());
+        }
+    }
+
+    public void setFiringHandler(FiringHandler firingHandler) {
+        this.firingHandler = firingHandler;
+    }
+
+    /**
+     * Record that a rule matched a sample of a server. The rule becomes pending if it was
+     * inactive, and fires once the condition has held for its duration in minutes.
+     *
+     * @return true if the caller must raise the alert now
+     */
+    public boolean onMatch(Long ruleId, Long serverId, int metricId, int durationMinutes, double value,
+                           long nowMillis) {
+        if (ruleId == null || serverId == null) {
+            return false;
+        }
+        long key = AlertActiveRegistry.key(ruleId, serverId);
+        State state = states.get(key);
+        boolean created = false;
+        if (state == null) {
+            State pending = new State(ruleId, serverId, metricId, nowMillis,
+                    nowMillis + Math.max(0, durationMinutes) * 60_000L, value);
+            state = states.putIfAbsent(key, pending);
+            if (state == null) {
+                state = pending;
+                created = true;
+                dirty = true;
+            }
+        }
+        if (!state.is(ruleId, serverId)) {
+            // IDs beyond 32 bits sharing a packed key; cannot happen while IDs stay below that
+            return false;
+        }
+        synchronized (state) {
+            if (state.status != STATUS_PENDING) {
+                return false;
+            }
+            state.value = value;
+            if (state.fireAtMillis > nowMillis) {
+                if (created) {
+                    schedule(state);
+                }
+                return false;
+            }
+            state.status = STATUS_FIRING;
+        }
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Record the event raised for a rule that fired.
+     */
+    public void onFired(Long ruleId, Long serverId, Long eventId) {
+        if (ruleId == null || serverId == null) {
+            return;
+        }
+        State state = stateOf(ruleId, serverId);
+        if (state != null) {
+            synchronized (state) {
+                state.eventId = eventId;
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * Record that raising the alert of a rule that fired failed: the rule goes back to
+     * pending with its duration already held, so the next matching sample raises it again.
+     */
+    public void onFireFailed(Long ruleId, Long serverId) {
+        if (ruleId == null || serverId == null) {
+            return;
+        }
+        State state = stateOf(ruleId, serverId);
+        if (state != null) {
+            revert(state);
+        }
+    }
+
+    /**
+     * Record that a rule did not match a sample of a server: a pending rule goes back to
+     * inactive and a firing one is resolved.
+     *
+     * @return the event to resolve, or null if the rule was not firing with an event
+     */
+    public Long onClear(Long ruleId, Long serverId) {
+        if (ruleId == null || serverId == null || states.isEmpty()) {
+            return null;
+        }
+        State state = stateOf(ruleId, serverId);
+        if (state == null || !states.remove(AlertActiveRegistry.key(ruleId, serverId), state)) {
+            return null;
+        }
+        dirty = true;
+        synchronized (state) {
+            boolean firing = state.status == STATUS_FIRING;
+            state.status = STATUS_REMOVED;
+            return firing ? state.eventId : null;
+        }
+    }
+
+    /**
+     * Drop the states of a rule on every server, e.g. when the rule is deleted or disabled.
+     * Its firing events are left as they are.
+     *
+     * @return the number of states dropped
+     */
+    public int removeRule(Long ruleId) {
+        if (ruleId == null || states.isEmpty()) {
+            return 0;
+        }
+        int removed = 0;
+        for (Map.Entry<Long, State> e : states.entrySet()) {
+            State state = e.getValue();
+            if (!ruleId.equals(state.ruleId) || !states.remove(e.getKey(), state)) {
+                continue;
+            }
+            synchronized (state) {
+                state.status = STATUS_REMOVED;
+            }
+            removed++;
+        }
+        if (removed > 0) {
+            dirty = true;
+        }
+        return removed;
+    }
+
+    /**
+     * Fire the pending rules whose duration has expired.
+     */
+    @Scheduled(fixedDelayString = "${app.alerts.state.tick-ms:1000}")
+    public void tick() {
+        advance(System.currentTimeMillis());
+    }
+
+    /**
+     * Advance the timing wheel to a time and fire the pending rules expiring on the way.
+     */
+    public void advance(long nowMillis) {
+        List<State> expired = new ArrayList<>();
+        synchronized (wheelLock) {
+            wheel.advance(nowMillis, expired::add);
+        }
+        for (State state : expired) {
+            synchronized (state) {
+                if (state.status != STATUS_PENDING) {
+                    continue;
+                }
+                state.status = STATUS_FIRING;
+            }
+            dirty = true;
+            fire(state);
+        }
+    }
+
+    /**
+     * Write the pending and firing states to the alert_rule_state table if any changed.
+     */
+    @Scheduled(fixedDelayString = "${app.alerts.state.checkpoint-interval-ms:30000}",
+            initialDelayString = "${app.alerts.state.checkpoint-interval-ms:30000}")
+    public synchronized void checkpoint() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        List<AlertRuleState> rows = new ArrayList<>(states.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (State state : states.values()) {
+            AlertRuleState row = new AlertRuleState();
+            synchronized (state) {
+                if (state.status == STATUS_REMOVED) {
+                    continue;
+                }
+                row.setStatus(state.status == STATUS_FIRING ? FIRING : PENDING);
+                row.setTriggeredValue(state.value);
+                row.setEventId(state.eventId);
+            }
+            row.setRuleId(state.ruleId);
+            row.setServerId(state.serverId);
+            row.setMetricId(state.metricId);
+            row.setSince(MetricTime.toDateTime(state.sinceMillis));
+            row.setFireAt(MetricTime.toDateTime(state.fireAtMillis));
+            row.setUpdatedAt(now);
+            rows.add(row);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                stateRepository.deleteAllInBatch();
+                stateRepository.saveAll(rows);
+            });
+        } catch (Exception e) {
+            dirty = true;
+            logger.warn("Failed to checkpoint {} alert rule states, will retry: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkpoint();
+    }
+
+    /**
+     * Number of rules pending or firing on some server.
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Whether a rule is firing on a server.
+     */
+    public boolean isFiring(Long ruleId, Long serverId) {
+        State state = stateOf(ruleId, serverId);
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            return state.status == STATUS_FIRING;
+        }
+    }
+
+    // ======= Internal =======
+
+    private State stateOf(Long ruleId, Long serverId) {
+        if (ruleId == null || serverId == null) {
+            return null;
+        }
+        State state = states.get(AlertActiveRegistry.key(ruleId, serverId));
+        return state != null && state.is(ruleId, serverId) ? state : null;
+    }
+
+    private void schedule(State state) {
+        synchronized (wheelLock) {
+            wheel.schedule(state, state.fireAtMillis);
+        }
+    }
+
+    private void revert(State state) {
+        synchronized (state) {
+            if (state.status != STATUS_FIRING) {
+                return;
+            }
+            state.status = STATUS_PENDING;
+            state.eventId = null;
+        }
+        dirty = true;
+    }
+
+    private void fire(State state) {
+        FiringHandler handler = firingHandler;
+        if (handler == null) {
+            return;
+        }
+        try {
+            AlertEvent event = transactionTemplate.execute(status ->
+                    handler.fire(state.ruleId, state.serverId, state.metricId, state.value));
+            if (event != null) {
+                synchronized (state) {
+                    state.eventId = event.getEventId();
+                }
+                logger.info("Alert rule {} fired on server {} after holding {} s", state.ruleId, state.serverId,
+                        (state.fireAtMillis - state.sinceMillis) / 1000);
+            }
+        } catch (Exception e) {
+            // The event was not committed; the next matching sample raises it again
+            revert(state);
+            logger.warn("Failed to fire alert rule {} on server {}: {}", state.ruleId, state.serverId, e.getMessage());
+        }
+    }
+}
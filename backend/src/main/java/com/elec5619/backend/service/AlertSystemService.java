@@ -37,6 +37,16 @@ public interface AlertSystemService {
      */
     List<AlertEvent> evaluateMetrics(Long serverId);
 
+    /**
+     * Evaluate a just-ingested sample against the enabled alert rules of its server.
+     * Unlike {@link #evaluateMetrics(Long)}, the given sample is evaluated instead of
+     * the latest one being looked up.
+     *
+     * @param metrics the ingested sample
+     * @return list of alert events triggered by the evaluation
+     */
+    List<AlertEvent> evaluateIngested(ServerMetrics metrics);
+
     /**
      * Trigger an alert event manually.
      *
@@ -0,0 +1,265 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.util.MetricValues;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Dictionary of metric names interned into small integer metric IDs.
+ * The built-in metrics keep their positional IDs 0-6; any other name is registered
+ * on first use with the next free ID in the metric_definitions table and cached in
+ * memory, so ingestion, rule evaluation and queries resolve a name once and then
+ * work with int keys. The table is reloaded periodically to pick up names
+ * registered by other instances.
+ */
+@Service
+public class MetricRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricRegistry.class);
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-z][a-z0-9_.]{0,63}");
+
+    private static final int MAX_REGISTER_ATTEMPTS = 3;
+
+    private static final String SELECT_ALL_SQL = "SELECT id, name FROM metric_definitions";
+
+    private static final String INSERT_SQL = "INSERT INTO metric_definitions (id, name, created_at) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate registerTransaction;
+
+    @Value("${app.metrics.registry.max-metrics:1000}")
+    private int maxMetrics;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // Metric names indexed by metric ID, replaced on every registration
+    private volatile String[] names = MetricValues.NAMES.clone();
+
+    public MetricRegistry(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Registrations commit on their own so a rolled back batch cannot orphan an ID
+        this.registerTransaction = new TransactionTemplate(transactionManager);
+        this.registerTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int m = 0; m < MetricValues.COUNT; m++) {
+            ids.put(MetricValues.NAMES[m], m);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            refresh();
+            for (int m = 0; m < MetricValues.COUNT; m++) {
+                if (!MetricValues.NAMES[m].equals(nameOf(m))) {
+                    insert(m, MetricValues.NAMES[m]);
+                }
+            }
+            logger.info("Loaded metric registry with {} metrics", ids.size());
+        } catch (Exception e) {
+            logger.warn("Failed to load metric registry, custom metrics will be registered on demand: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reload the dictionary to pick up metrics registered by other instances.
+     */
+    @Scheduled(fixedDelayString = "${app.metrics.registry.refresh-interval-ms:60000}")
+    public void refresh() {
+        List<Object[]> rows = new ArrayList<>();
+        jdbcTemplate.query(SELECT_ALL_SQL, (RowCallbackHandler) rs -> rows.add(new Object[] {rs.getInt(1), rs.getString(2)}));
+        synchronized (this) {
+            for (Object[] row : rows) {
+                add((Integer) row[0], (String) row[1]);
+            }
+        }
+    }
+
+    /**
+     * Metric ID of a registered name, or -1 if the name is unknown. Never touches the database.
+     */
+    public int resolve(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Metric name of an ID, or null if the ID is not registered.
+     */
+    public String nameOf(int metricId) {
+        String[] current = names;
+        return metricId >= 0 && metricId < current.length ? current[metricId] : null;
+    }
+
+    /**
+     * Names of all registered metrics, ordered by metric ID.
+     */
+    public List<String> getNames() {
+        List<String> result = new ArrayList<>();
+        for (String name : names) {
+            if (name != null) {
+                result.add(name);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Metric ID of a name, registering it if it is new.
+     *
+     * @throws IllegalArgumentException if the name is not a valid metric name or the registry is full
+     */
+    public int intern(String name) {
+        int id = resolve(name);
+        if (id >= 0) {
+            return id;
+        }
+        validateName(name);
+        return register(name);
+    }
+
+    /**
+     * Move the free-form metrics of a sample into its built-in columns and its packed
+     * custom metrics, registering new names. A built-in column that is already set takes
+     * precedence over the same metric in the map. All names and values are checked before
+     * any name is registered, so a rejected sample leaves the registry and the sample unchanged.
+     *
+     * @throws IllegalArgumentException if a name is invalid, a value is not finite,
+     *                                  or the sample carries too many custom metrics
+     */
+    public void encode(ServerMetrics sample) {
+        Map<String, Double> metrics = sample.getMetrics();
+        if (metrics == null || metrics.isEmpty()) {
+            return;
+        }
+        int custom = 0;
+        int unknown = 0;
+        for (Map.Entry<String, Double> e : metrics.entrySet()) {
+            Double value = e.getValue();
+            if (value != null && (value.isNaN() || value.isInfinite())) {
+                throw new IllegalArgumentException("Metric values must be finite numbers");
+            }
+            int id = resolve(e.getKey());
+            if (id < 0) {
+                validateName(e.getKey());
+            }
+            if (value != null && !MetricValues.isBuiltIn(id)) {
+                custom++;
+                if (id < 0) {
+                    unknown++;
+                }
+            }
+        }
+        if (custom > MetricValues.MAX_CUSTOM_PER_SAMPLE) {
+            throw new IllegalArgumentException("A sample carries at most " + MetricValues.MAX_CUSTOM_PER_SAMPLE
+                    + " custom metrics");
+        }
+        if (unknown > 0 && ids.size() + unknown > maxMetrics) {
+            throw new IllegalArgumentException("Metric registry is full (" + maxMetrics + " metrics)");
+        }
+
+        // Intern every name before touching the sample, so a failed registration leaves it as it was
+        List<Map.Entry<String, Double>> present = new ArrayList<>(metrics.size());
+        int[] metricIds = new int[metrics.size()];
+        for (Map.Entry<String, Double> e : metrics.entrySet()) {
+            if (e.getValue() != null) {
+                metricIds[present.size()] = intern(e.getKey());
+                present.add(e);
+            }
+        }
+
+        int[] customIds = new int[custom];
+        double[] customValues = new double[custom];
+        int count = 0;
+        for (int i = 0; i < present.size(); i++) {
+            int id = metricIds[i];
+            double value = present.get(i).getValue();
+            if (MetricValues.isBuiltIn(id)) {
+                if (sample.getMetricValue(id) == null) {
+                    sample.setMetricValue(id, value);
+                }
+                continue;
+            }
+            customIds[count] = id;
+            customValues[count] = value;
+            count++;
+        }
+        sample.setCustomMetrics(Arrays.copyOf(customIds, count), Arrays.copyOf(customValues, count));
+        sample.setMetrics(null);
+    }
+
+    // ======= Internal =======
+
+    private static void validateName(String name) {
+        if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid metric name: " + name
+                    + " (lowercase letters, digits, '_' and '.', starting with a letter, at most 64 characters)");
+        }
+    }
+
+    private synchronized int register(String name) {
+        for (int attempt = 1; attempt <= MAX_REGISTER_ATTEMPTS; attempt++) {
+            int id = resolve(name);
+            if (id >= 0) {
+                return id;
+            }
+            if (ids.size() >= maxMetrics) {
+                throw new IllegalArgumentException("Metric registry is full (" + maxMetrics + " metrics)");
+            }
+            int next = Math.max(MetricValues.COUNT, names.length);
+            try {
+                insert(next, name);
+                logger.info("Registered metric '{}' with ID {}", name, next);
+                return next;
+            } catch (DataIntegrityViolationException e) {
+                // Another instance registered this name or took this ID first
+                refresh();
+            }
+        }
+        throw new IllegalStateException("Failed to register metric '" + name + "'");
+    }
+
+    private synchronized void insert(int id, String name) {
+        registerTransaction.executeWithoutResult(status ->
+                jdbcTemplate.update(INSERT_SQL, id, name, Timestamp.valueOf(LocalDateTime.now())));
+        add(id, name);
+    }
+
+    // Callers hold the monitor
+    private void add(int id, String name) {
+        if (id < 0 || name == null) {
+            return;
+        }
+        String[] current = names;
+        if (id < current.length && name.equals(current[id])) {
+            return;
+        }
+        String[] grown = Arrays.copyOf(current, Math.max(current.length, id + 1));
+        grown[id] = name;
+        names = grown;
+        ids.put(name, id);
+    }
+}
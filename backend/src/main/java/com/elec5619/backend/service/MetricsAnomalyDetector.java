@@ -0,0 +1,253 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.util.MetricTime;
+import com.elec5619.backend.util.MetricValues;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Online anomaly detector over the built-in metrics of every server.
+ * Each server keeps an exponentially weighted mean and variance per metric in primitive
+ * arrays, updated in O(1) by every ingested sample. Before a value is folded into the
+ * baseline its z-score against the baseline is recorded, and alert rules with the
+ * {@code anomaly} comparator fire when that score exceeds their threshold in standard
+ * deviations. Scores are only reported once a metric has seen enough samples.
+ *
+ * The baselines are checkpointed to a file periodically and on shutdown and restored on
+ * startup, so a restart does not begin a new warm-up period. Samples older than the
+ * newest one already folded in, e.g. replayed from the WAL, are ignored.
+ */
+@Service
+public class MetricsAnomalyDetector implements MetricsIngestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsAnomalyDetector.class);
+
+    private static final byte FORMAT_VERSION = 1;
+
+    // Floors on the standard deviation so a flat series does not turn any change into infinite sigma
+    private static final double MIN_STDDEV = 1e-6;
+    private static final double MIN_RELATIVE_STDDEV = 0.01;
+
+    @Value("${app.metrics.anomaly.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.metrics.anomaly.alpha:0.05}")
+    private double alpha;
+
+    @Value("${app.metrics.anomaly.min-samples:30}")
+    private int minSamples;
+
+    @Value("${app.metrics.anomaly.checkpoint-file:data/anomaly-state.bin}")
+    private String checkpointFile;
+
+    private final Map<Long, State> states = new ConcurrentHashMap<>();
+
+    /**
+     * Baselines of one server, indexed by metric ID.
+     */
+    private static final class State {
+        final long[] count = new long[MetricValues.COUNT];
+        final double[] mean = new double[MetricValues.COUNT];
+        final double[] variance = new double[MetricValues.COUNT];
+        final double[] score = new double[MetricValues.COUNT];
+        long lastTimestamp = Long.MIN_VALUE;
+
+        State() {
+            Arrays.fill(score, Double.NaN);
+        }
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (!enabled || checkpointFile == null || checkpointFile.isBlank()) {
+            return;
+        }
+        Path path = Paths.get(checkpointFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (in.get() != FORMAT_VERSION || in.getInt() != MetricValues.COUNT) {
+                logger.warn("Ignoring anomaly detector checkpoint {} of an unsupported format", path);
+                return;
+            }
+            int servers = in.getInt();
+            for (int s = 0; s < servers; s++) {
+                long serverId = in.getLong();
+                State state = new State();
+                state.lastTimestamp = in.getLong();
+                for (int m = 0; m < MetricValues.COUNT; m++) {
+                    state.count[m] = in.getLong();
+                    state.mean[m] = in.getDouble();
+                    state.variance[m] = in.getDouble();
+                }
+                states.put(serverId, state);
+            }
+            logger.info("Restored anomaly detector baselines of {} servers", servers);
+        } catch (IOException | BufferUnderflowException e) {
+            states.clear();
+            logger.warn("Failed to restore anomaly detector checkpoint {}, baselines start empty: {}",
+                    path, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkpoint();
+    }
+
+    /**
+     * Write the baselines of all servers to the checkpoint file.
+     */
+    @Scheduled(fixedDelayString = "${app.metrics.anomaly.checkpoint-interval-ms:60000}",
+            initialDelayString = "${app.metrics.anomaly.checkpoint-interval-ms:60000}")
+    public void checkpoint() {
+        if (!enabled || checkpointFile == null || checkpointFile.isBlank()) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(9 + states.size() * (16 + 24 * MetricValues.COUNT));
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(MetricValues.COUNT);
+            // The map may change while it is written, so the server count is patched in afterwards
+            out.writeInt(0);
+            int servers = 0;
+            for (Map.Entry<Long, State> entry : states.entrySet()) {
+                State state = entry.getValue();
+                synchronized (state) {
+                    out.writeLong(entry.getKey());
+                    out.writeLong(state.lastTimestamp);
+                    for (int m = 0; m < MetricValues.COUNT; m++) {
+                        out.writeLong(state.count[m]);
+                        out.writeDouble(state.mean[m]);
+                        out.writeDouble(state.variance[m]);
+                    }
+                }
+                servers++;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            buffer.putInt(5, servers);
+
+            Path path = Paths.get(checkpointFile);
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Failed to checkpoint anomaly detector baselines: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMetricsIngested(List<ServerMetrics> samples) {
+        if (!enabled) {
+            return;
+        }
+        for (ServerMetrics sample : samples) {
+            update(sample);
+        }
+    }
+
+    /**
+     * Fold a sample into the baselines of its server, recording the z-score of each value first.
+     */
+    public void update(ServerMetrics sample) {
+        if (!enabled || sample == null || sample.getServerId() == null || sample.getCollectedAt() == null) {
+            return;
+        }
+        long timestamp = MetricTime.toMillis(sample.getCollectedAt());
+        State state = states.computeIfAbsent(sample.getServerId(), id -> new State());
+        synchronized (state) {
+            if (timestamp <= state.lastTimestamp) {
+                return;
+            }
+            state.lastTimestamp = timestamp;
+            for (int m = 0; m < MetricValues.COUNT; m++) {
+                Double value = sample.getMetricValue(m);
+                if (value == null || value.isNaN() || value.isInfinite()) {
+                    state.score[m] = Double.NaN;
+                    continue;
+                }
+                double x = value;
+                if (state.count[m] == 0) {
+                    state.mean[m] = x;
+                    state.variance[m] = 0;
+                    state.score[m] = Double.NaN;
+                } else {
+                    double mean = state.mean[m];
+                    double stddev = Math.max(Math.sqrt(state.variance[m]),
+                            Math.max(MIN_STDDEV, Math.abs(mean) * MIN_RELATIVE_STDDEV));
+                    state.score[m] = state.count[m] >= minSamples ? (x - mean) / stddev : Double.NaN;
+                    double diff = x - mean;
+                    double increment = alpha * diff;
+                    state.mean[m] = mean + increment;
+                    state.variance[m] = (1 - alpha) * (state.variance[m] + diff * increment);
+                }
+                state.count[m]++;
+            }
+        }
+    }
+
+    /**
+     * Z-score of the latest value of a built-in metric of a server against its baseline,
+     * or NaN while the baseline is warming up or the metric is not tracked.
+     */
+    public double getScore(Long serverId, int metricId) {
+        if (!enabled || serverId == null || !MetricValues.isBuiltIn(metricId)) {
+            return Double.NaN;
+        }
+        State state = states.get(serverId);
+        if (state == null) {
+            return Double.NaN;
+        }
+        synchronized (state) {
+            return state.score[metricId];
+        }
+    }
+
+    /**
+     * Drop the baselines of a server, e.g. when the server is deleted.
+     */
+    public void evict(Long serverId) {
+        if (serverId != null) {
+            states.remove(serverId);
+        }
+    }
+
+    public int getServerCount() {
+        return states.size();
+    }
+}
@@ -0,0 +1,263 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.MetricChunk;
+import com.elec5619.backend.entity.Server;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.repository.MetricChunkRepository;
+import com.elec5619.backend.repository.ServerRepository;
+import com.elec5619.backend.util.MetricChunkDecoder;
+import com.elec5619.backend.util.MetricChunkEncoder;
+import com.elec5619.backend.util.MetricTime;
+import com.elec5619.backend.util.MetricValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Seals closed time windows of raw samples into Gorilla-compressed chunks, one blob
+ * per server per window, and serves range queries over sealed periods by decoding
+ * chunks instead of scanning rows. Chunks are kept far longer than raw samples.
+ *
+ * For each server, everything before its sealed-until watermark is held in chunks.
+ * Samples that arrive after their window has been sealed are not added to it.
+ */
+@Service
+public class MetricsChunkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsChunkService.class);
+
+    private static final String SEAL_SQL = "SELECT collected_at, cpu_usage, memory_usage, disk_usage, network_in, "
+            + "network_out, load_avg, temperature FROM server_metrics "
+            + "WHERE server_id = ? AND collected_at >= ? AND collected_at < ? ORDER BY collected_at";
+
+    private static final String OLDEST_SAMPLE_SQL = "SELECT MIN(collected_at) FROM server_metrics WHERE server_id = ?";
+
+    private final MetricChunkRepository chunkRepository;
+    private final ServerRepository serverRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.metrics.chunk.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.metrics.chunk.window-hours:2}")
+    private int windowHours;
+
+    @Value("${app.metrics.chunk.seal-delay-hours:1}")
+    private int sealDelayHours;
+
+    @Value("${app.metrics.chunk.max-windows-per-run:120}")
+    private int maxWindowsPerRun;
+
+    @Value("${app.metrics.chunk.retention-days:180}")
+    private int retentionDays;
+
+    // Server ID -> epoch millis before which all of its samples are sealed
+    private final Map<Long, Long> sealedUntil = new ConcurrentHashMap<>();
+
+    public MetricsChunkService(MetricChunkRepository chunkRepository, ServerRepository serverRepository,
+                               JdbcTemplate jdbcTemplate) {
+        this.chunkRepository = chunkRepository;
+        this.serverRepository = serverRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Seal every closed window of every server that has not been sealed yet.
+     * A long backlog is worked off over several runs.
+     */
+    @Scheduled(fixedDelayString = "${app.metrics.chunk.seal-interval-ms:300000}")
+    public void sealClosedWindows() {
+        if (!enabled) {
+            return;
+        }
+        long windowMillis = windowHours * 3_600_000L;
+        long sealLimit = MetricTime.floor(MetricTime.toMillis(LocalDateTime.now().minusHours(sealDelayHours)), windowMillis);
+        int chunks = 0;
+        long samples = 0;
+        long bytes = 0;
+        for (Server server : serverRepository.findAll()) {
+            try {
+                List<MetricChunk> sealed = sealServer(server.getId(), sealLimit, windowMillis);
+                for (MetricChunk chunk : sealed) {
+                    chunks++;
+                    samples += chunk.getSampleCount();
+                    bytes += chunk.getData().length;
+                }
+            } catch (Exception e) {
+                logger.error("Failed to seal metric chunks for server {}: {}", server.getId(), e.getMessage());
+            }
+        }
+        if (chunks > 0) {
+            logger.info("Sealed {} metric chunks: {} samples in {} bytes ({} bytes/sample)",
+                    chunks, samples, bytes, String.format("%.2f", (double) bytes / samples));
+        }
+    }
+
+    /**
+     * Delete chunks beyond retention.
+     */
+    @Scheduled(cron = "0 30 3 * * *") // Every day at 03:30
+    public void cleanupExpiredChunks() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int deleted = chunkRepository.deleteByChunkEndBefore(LocalDateTime.now().minusDays(retentionDays));
+            if (deleted > 0) {
+                logger.info("Deleted {} expired metric chunks", deleted);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to clean up metric chunks: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Time before which every sample of the server is held in chunks, or null if
+     * nothing has been sealed yet.
+     */
+    public LocalDateTime getSealedUntil(Long serverId) {
+        if (!enabled) {
+            return null;
+        }
+        Long until = sealedUntil.get(serverId);
+        return until != null ? MetricTime.toDateTime(until) : null;
+    }
+
+    /**
+     * Samples of a server within the time range and strictly before {@code before},
+     * decoded from chunks, newest first.
+     */
+    public List<ServerMetrics> getRange(Long serverId, LocalDateTime startTime, LocalDateTime endTime,
+                                        LocalDateTime before) {
+        List<ServerMetrics> result = new ArrayList<>();
+        scan(serverId, startTime, endTime, before, (timestamp, values) -> {
+            ServerMetrics metrics = new ServerMetrics(serverId);
+            metrics.setCollectedAt(MetricTime.toDateTime(timestamp));
+            MetricValues.apply(metrics, values);
+            result.add(metrics);
+        });
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Visit the samples of a server within the time range and strictly before {@code before},
+     * decoded from chunks oldest first, without materializing entities. The values array is
+     * reused between calls.
+     */
+    public void scan(Long serverId, LocalDateTime startTime, LocalDateTime endTime, LocalDateTime before,
+                     MetricsHotTier.SampleVisitor visitor) {
+        long from = MetricTime.toMillis(startTime);
+        long to = Math.min(MetricTime.toMillis(endTime), MetricTime.toMillis(before) - 1);
+        if (to < from) {
+            return;
+        }
+        MetricChunkDecoder decoder = new MetricChunkDecoder();
+        for (MetricChunk chunk : chunkRepository.findOverlapping(serverId, startTime, MetricTime.toDateTime(to))) {
+            decoder.reset(chunk.getData());
+            while (decoder.next()) {
+                long timestamp = decoder.timestamp();
+                if (timestamp < from) {
+                    continue;
+                }
+                if (timestamp > to) {
+                    break;
+                }
+                visitor.accept(timestamp, decoder.values());
+            }
+        }
+    }
+
+    /**
+     * Forget the sealing state of a deleted server and drop its chunks.
+     */
+    public void evict(Long serverId) {
+        sealedUntil.remove(serverId);
+        if (enabled) {
+            chunkRepository.deleteByServerId(serverId);
+        }
+    }
+
+    // ======= Internal =======
+
+    private List<MetricChunk> sealServer(Long serverId, long sealLimit, long windowMillis) {
+        Long start = sealedUntil.get(serverId);
+        if (start == null) {
+            start = initialWatermark(serverId, windowMillis);
+            if (start == null) {
+                return Collections.emptyList();
+            }
+            sealedUntil.put(serverId, start);
+        }
+        long end = Math.min(sealLimit, start + maxWindowsPerRun * windowMillis);
+        if (end <= start) {
+            return Collections.emptyList();
+        }
+
+        List<MetricChunk> chunks = new ArrayList<>();
+        MetricChunkEncoder[] encoder = new MetricChunkEncoder[1];
+        long[] windowStart = {Long.MIN_VALUE};
+        double[] values = new double[MetricValues.COUNT];
+        jdbcTemplate.query(SEAL_SQL, (RowCallbackHandler) rs -> {
+            long timestamp = MetricTime.toMillis(rs.getTimestamp(1).toLocalDateTime());
+            long window = MetricTime.floor(timestamp, windowMillis);
+            if (window != windowStart[0]) {
+                if (encoder[0] != null) {
+                    chunks.add(toChunk(serverId, windowStart[0], windowMillis, encoder[0]));
+                }
+                encoder[0] = new MetricChunkEncoder();
+                windowStart[0] = window;
+            }
+            for (int m = 0; m < MetricValues.COUNT; m++) {
+                double value = rs.getDouble(m + 2);
+                values[m] = rs.wasNull() ? Double.NaN : value;
+            }
+            encoder[0].append(timestamp, values);
+        }, serverId, Timestamp.valueOf(MetricTime.toDateTime(start)), Timestamp.valueOf(MetricTime.toDateTime(end)));
+        if (encoder[0] != null) {
+            chunks.add(toChunk(serverId, windowStart[0], windowMillis, encoder[0]));
+        }
+
+        chunkRepository.saveAll(chunks);
+        sealedUntil.put(serverId, end);
+        return chunks;
+    }
+
+    /**
+     * Where sealing starts for a server: after its newest chunk, or at the window
+     * holding its oldest raw sample. Null if the server has no samples at all.
+     */
+    private Long initialWatermark(Long serverId, long windowMillis) {
+        LocalDateTime latestChunkEnd = chunkRepository.findLatestChunkEnd(serverId);
+        if (latestChunkEnd != null) {
+            return MetricTime.toMillis(latestChunkEnd);
+        }
+        Timestamp oldest = jdbcTemplate.queryForObject(OLDEST_SAMPLE_SQL, Timestamp.class, serverId);
+        if (oldest == null) {
+            return null;
+        }
+        return MetricTime.floor(MetricTime.toMillis(oldest.toLocalDateTime()), windowMillis);
+    }
+
+    private static MetricChunk toChunk(Long serverId, long windowStart, long windowMillis, MetricChunkEncoder encoder) {
+        MetricChunk chunk = new MetricChunk();
+        chunk.setServerId(serverId);
+        chunk.setChunkStart(MetricTime.toDateTime(windowStart));
+        chunk.setChunkEnd(MetricTime.toDateTime(windowStart + windowMillis));
+        chunk.setSampleCount(encoder.count());
+        chunk.setData(encoder.toByteArray());
+        return chunk;
+    }
+}
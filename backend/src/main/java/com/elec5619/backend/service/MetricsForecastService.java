@@ -0,0 +1,144 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.util.MetricTime;
+import com.elec5619.backend.util.MetricValues;
+import com.elec5619.backend.util.SlidingRegression;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Forecasts when saturating metrics such as disk and memory usage reach capacity.
+ * Every server keeps a sliding-window least-squares regression per forecast metric,
+ * updated in O(1) by every ingested sample, and the time to full is read off the fitted
+ * trend. Forecasts back the time-to-full figures of the server overview and alert rules
+ * with the {@code forecast} comparator, which fire when the predicted exhaustion falls
+ * within their threshold in hours.
+ *
+ * Trends live in memory only and are rebuilt from ingested samples after a restart.
+ */
+@Service
+public class MetricsForecastService implements MetricsIngestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsForecastService.class);
+
+    @Value("${app.metrics.forecast.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.metrics.forecast.metrics:disk_usage,memory_usage}")
+    private String metricNames;
+
+    @Value("${app.metrics.forecast.window-hours:24}")
+    private int windowHours;
+
+    @Value("${app.metrics.forecast.buckets:48}")
+    private int buckets;
+
+    @Value("${app.metrics.forecast.min-samples:10}")
+    private int minSamples;
+
+    @Value("${app.metrics.forecast.capacity:100}")
+    private double capacity;
+
+    // Position of each forecast metric in the per-server regressions, -1 if not forecast
+    private int[] slots = new int[0];
+    private int metricCount;
+    private final Map<Long, SlidingRegression[]> regressions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Set<Integer> resolved = new LinkedHashSet<>();
+        for (String name : metricNames.split(",")) {
+            int metric = MetricValues.indexOf(name.trim());
+            if (metric < 0) {
+                logger.warn("Ignoring unknown metric '{}' in app.metrics.forecast.metrics", name);
+                continue;
+            }
+            resolved.add(metric);
+        }
+        int[] positions = new int[MetricValues.COUNT];
+        Arrays.fill(positions, -1);
+        int next = 0;
+        for (int metric : resolved) {
+            positions[metric] = next++;
+        }
+        slots = positions;
+        metricCount = next;
+    }
+
+    @Override
+    public void onMetricsIngested(List<ServerMetrics> samples) {
+        if (!enabled || metricCount == 0) {
+            return;
+        }
+        for (ServerMetrics sample : samples) {
+            if (sample == null || sample.getServerId() == null || sample.getCollectedAt() == null) {
+                continue;
+            }
+            long timestamp = MetricTime.toMillis(sample.getCollectedAt());
+            SlidingRegression[] server = regressions.computeIfAbsent(sample.getServerId(), id -> newRegressions());
+            synchronized (server) {
+                for (int metric = 0; metric < MetricValues.COUNT; metric++) {
+                    Double value = slots[metric] >= 0 ? sample.getMetricValue(metric) : null;
+                    if (value != null) {
+                        server[slots[metric]].add(timestamp, value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Predicted hours until a metric of a server reaches capacity, measured from its newest
+     * sample: zero if the trend is already at capacity, and null if the metric is not
+     * forecast, has too few samples in the window, or is not rising.
+     */
+    public Double getHoursToFull(Long serverId, int metricId) {
+        if (!enabled || serverId == null || metricCount == 0
+                || !MetricValues.isBuiltIn(metricId) || slots[metricId] < 0) {
+            return null;
+        }
+        SlidingRegression[] server = regressions.get(serverId);
+        if (server == null) {
+            return null;
+        }
+        double hours;
+        synchronized (server) {
+            SlidingRegression regression = server[slots[metricId]];
+            if (regression.count() < minSamples) {
+                return null;
+            }
+            hours = regression.hoursUntil(capacity);
+        }
+        return Double.isNaN(hours) ? null : hours;
+    }
+
+    /**
+     * Drop the trends of a server, e.g. when the server is deleted.
+     */
+    public void evict(Long serverId) {
+        if (serverId != null) {
+            regressions.remove(serverId);
+        }
+    }
+
+    // ======= Internal =======
+
+    private SlidingRegression[] newRegressions() {
+        SlidingRegression[] server = new SlidingRegression[metricCount];
+        for (int i = 0; i < metricCount; i++) {
+            server[i] = new SlidingRegression(windowHours * 3_600_000L, buckets);
+        }
+        return server;
+    }
+}
@@ -0,0 +1,531 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsHotTierStatsDto;
+import com.elec5619.backend.entity.Server;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.repository.ServerRepository;
+import com.elec5619.backend.util.MetricRingBuffer;
+import com.elec5619.backend.util.MetricTime;
+import com.elec5619.backend.util.MetricValues;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory hot tier holding the most recent metrics of every server in
+ * per-server primitive ring buffers. It is fed by every write path of
+ * {@link ServerMetricsService} as an ingest listener and preloaded in parallel from the database once
+ * the application is ready, so latest and recent range queries are answered
+ * without touching the database or materializing entities row by row.
+ *
+ * Memory is bounded by a global byte budget and a per-server sample cap. Buffers
+ * start small and grow on demand while budget remains; a buffer that cannot grow
+ * overwrites its oldest samples and its coverage shrinks accordingly, so queries
+ * reaching further back fall through to the database.
+ *
+ * The buffers hold the built-in metrics only. Once a server reports custom metrics,
+ * reads that return samples go to the database for it; scans, which only visit
+ * built-in values, are still served.
+ */
+@Component
+public class MetricsHotTier implements MetricsIngestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHotTier.class);
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final String PRELOAD_SQL = "SELECT collected_at, cpu_usage, memory_usage, disk_usage, network_in, "
+            + "network_out, load_avg, temperature FROM server_metrics "
+            + "WHERE server_id = ? AND collected_at >= ? ORDER BY collected_at DESC LIMIT ?";
+
+    private static final String HAS_CUSTOM_SQL = "SELECT COUNT(*) FROM (SELECT 1 FROM server_metric_values "
+            + "WHERE server_id = ? AND collected_at >= ? LIMIT 1) custom";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ServerRepository serverRepository;
+
+    @Value("${app.metrics.hot-tier.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.metrics.hot-tier.retention-hours:24}")
+    private int retentionHours;
+
+    @Value("${app.metrics.hot-tier.max-samples-per-server:20000}")
+    private int maxSamplesPerServer;
+
+    @Value("${app.metrics.hot-tier.memory-budget-bytes:134217728}")
+    private long memoryBudgetBytes;
+
+    @Value("${app.metrics.hot-tier.preload-threads:2}")
+    private int preloadThreads;
+
+    private final Map<Long, Entry> buffers = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile boolean ready;
+    private volatile long loadedFrom = Long.MAX_VALUE;
+    private ExecutorService preloadExecutor;
+
+    public MetricsHotTier(JdbcTemplate jdbcTemplate, ServerRepository serverRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.serverRepository = serverRepository;
+    }
+
+    /**
+     * Per-server buffer and whether its history has been loaded from the database.
+     */
+    private static final class Entry {
+        final MetricRingBuffer buffer;
+        volatile boolean ready;
+        // Whether the server reported custom metrics, which the buffer does not hold
+        volatile boolean custom;
+
+        Entry(MetricRingBuffer buffer, boolean ready) {
+            this.buffer = buffer;
+            this.ready = ready;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Preload recent history for all servers in parallel, without blocking startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (!enabled) {
+            logger.info("Metrics hot tier is disabled");
+            return;
+        }
+        Thread loader = new Thread(this::preloadAll, "metrics-hot-tier-preload");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (preloadExecutor != null) {
+            preloadExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Record a newly accepted sample.
+     */
+    public void record(ServerMetrics metrics) {
+        if (!enabled || metrics == null || metrics.getServerId() == null || metrics.getCollectedAt() == null) {
+            return;
+        }
+        Entry entry = buffers.computeIfAbsent(metrics.getServerId(), id -> newEntry(ready));
+        if (metrics.getCustomMetricCount() > 0) {
+            entry.custom = true;
+        }
+        double[] sample = MetricValues.toArray(metrics);
+        long timestamp = MetricTime.toMillis(metrics.getCollectedAt());
+        MetricRingBuffer buffer = entry.buffer;
+        synchronized (buffer) {
+            if (buffer.isFull()) {
+                tryGrow(buffer, buffer.capacity() * 2);
+            }
+            buffer.add(timestamp, sample);
+        }
+    }
+
+    @Override
+    public void onMetricsIngested(List<ServerMetrics> samples) {
+        for (ServerMetrics metrics : samples) {
+            record(metrics);
+        }
+    }
+
+    /**
+     * Latest sample of a server, if the hot tier holds one and the server has no custom metrics.
+     */
+    public Optional<ServerMetrics> getLatest(Long serverId) {
+        Entry entry = readyEntry(serverId, true);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        MetricRingBuffer buffer = entry.buffer;
+        synchronized (buffer) {
+            if (buffer.size() == 0) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(toMetrics(serverId, buffer, buffer.size() - 1));
+        }
+    }
+
+    /**
+     * Samples of a server within the time range, newest first, if the hot tier
+     * fully covers the range and the server has no custom metrics. Returns empty when the
+     * database must be queried.
+     * Like all samples accepted asynchronously, they carry no metric ID.
+     */
+    public Optional<List<ServerMetrics>> getRange(Long serverId, LocalDateTime startTime, LocalDateTime endTime) {
+        Entry entry = readyEntry(serverId, true);
+        long from = MetricTime.toMillis(startTime);
+        long to = MetricTime.toMillis(endTime);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        MetricRingBuffer buffer = entry.buffer;
+        synchronized (buffer) {
+            if (!buffer.covers(from)) {
+                misses.increment();
+                return Optional.empty();
+            }
+            int first = buffer.indexOfFirstAtOrAfter(from);
+            int last = buffer.indexOfFirstAfter(to) - 1;
+            List<ServerMetrics> result = new ArrayList<>(Math.max(0, last - first + 1));
+            for (int i = last; i >= first; i--) {
+                result.add(toMetrics(serverId, buffer, i));
+            }
+            hits.increment();
+            return Optional.of(result);
+        }
+    }
+
+    /**
+     * Visit the samples of a server within the time range, oldest first, without
+     * materializing entities, if the hot tier fully covers the range. The visitor
+     * runs under the buffer lock and must not block.
+     *
+     * @return false when the database must be queried instead
+     */
+    public boolean scan(Long serverId, LocalDateTime startTime, LocalDateTime endTime, SampleVisitor visitor) {
+        Entry entry = readyEntry(serverId, false);
+        long from = MetricTime.toMillis(startTime);
+        long to = MetricTime.toMillis(endTime);
+        if (entry == null) {
+            misses.increment();
+            return false;
+        }
+        MetricRingBuffer buffer = entry.buffer;
+        double[] values = new double[MetricValues.COUNT];
+        synchronized (buffer) {
+            if (!buffer.covers(from)) {
+                misses.increment();
+                return false;
+            }
+            int first = buffer.indexOfFirstAtOrAfter(from);
+            int last = buffer.indexOfFirstAfter(to) - 1;
+            for (int i = first; i <= last; i++) {
+                for (int m = 0; m < MetricValues.COUNT; m++) {
+                    values[m] = buffer.valueAt(m, i);
+                }
+                visitor.accept(buffer.timestampAt(i), values);
+            }
+            hits.increment();
+            return true;
+        }
+    }
+
+    /**
+     * Receives samples of a scan. The values are indexed by metric ID, NaN where missing,
+     * and the array is reused between calls.
+     */
+    @FunctionalInterface
+    public interface SampleVisitor {
+        void accept(long timestamp, double[] values);
+    }
+
+    /**
+     * Drop the buffer of a server, e.g. when the server is deleted.
+     */
+    public void evict(Long serverId) {
+        Entry entry = buffers.remove(serverId);
+        if (entry != null) {
+            synchronized (entry.buffer) {
+                usedBytes.addAndGet(-entry.buffer.heapBytes());
+            }
+        }
+    }
+
+    /**
+     * Drop samples older than the retention window and shrink oversized buffers.
+     */
+    @Scheduled(fixedDelayString = "${app.metrics.hot-tier.trim-interval-ms:60000}")
+    public void trim() {
+        if (!enabled) {
+            return;
+        }
+        long cutoff = MetricTime.toMillis(LocalDateTime.now().minusHours(retentionHours));
+        for (Entry entry : buffers.values()) {
+            MetricRingBuffer buffer = entry.buffer;
+            synchronized (buffer) {
+                buffer.evictBefore(cutoff);
+                // Give memory back once a buffer is less than a quarter full
+                if (buffer.capacity() > INITIAL_CAPACITY && buffer.size() < buffer.capacity() / 4) {
+                    long before = buffer.heapBytes();
+                    buffer.resize(Math.min(maxSamplesPerServer, Math.max(INITIAL_CAPACITY, buffer.size() * 2)));
+                    usedBytes.addAndGet(buffer.heapBytes() - before);
+                }
+            }
+        }
+    }
+
+    /**
+     * Snapshot memory usage overall and per server.
+     */
+    public MetricsHotTierStatsDto getStats() {
+        MetricsHotTierStatsDto dto = new MetricsHotTierStatsDto();
+        dto.setEnabled(enabled);
+        dto.setReady(ready);
+        dto.setRetentionHours(retentionHours);
+        dto.setBudgetBytes(memoryBudgetBytes);
+        dto.setMaxSamplesPerServer(maxSamplesPerServer);
+        dto.setUsedBytes(usedBytes.get());
+        dto.setHits(hits.sum());
+        dto.setMisses(misses.sum());
+        long samples = 0;
+        List<MetricsHotTierStatsDto.ServerStats> servers = new ArrayList<>();
+        for (Map.Entry<Long, Entry> e : buffers.entrySet()) {
+            MetricRingBuffer buffer = e.getValue().buffer;
+            MetricsHotTierStatsDto.ServerStats stats = new MetricsHotTierStatsDto.ServerStats();
+            stats.setServerId(e.getKey());
+            stats.setReady(e.getValue().ready);
+            synchronized (buffer) {
+                stats.setSamples(buffer.size());
+                stats.setCapacity(buffer.capacity());
+                stats.setHeapBytes(buffer.heapBytes());
+                stats.setCoveredFrom(buffer.getCoverageStart() == Long.MAX_VALUE ? null : MetricTime.toDateTime(buffer.getCoverageStart()));
+                if (buffer.size() > 0) {
+                    stats.setOldestSample(MetricTime.toDateTime(buffer.timestampAt(0)));
+                    stats.setLatestSample(MetricTime.toDateTime(buffer.timestampAt(buffer.size() - 1)));
+                }
+            }
+            samples += stats.getSamples();
+            servers.add(stats);
+        }
+        servers.sort(Comparator.comparingLong(MetricsHotTierStatsDto.ServerStats::getHeapBytes).reversed());
+        dto.setServerCount(servers.size());
+        dto.setSampleCount(samples);
+        dto.setServers(servers);
+        return dto;
+    }
+
+    // ======= Internal =======
+
+    private void preloadAll() {
+        long started = System.currentTimeMillis();
+        LocalDateTime windowStart = LocalDateTime.now().minusHours(retentionHours);
+        long windowStartMillis = MetricTime.toMillis(windowStart);
+        Set<Long> serverIds;
+        try {
+            serverIds = serverRepository.findAll().stream().map(Server::getId).collect(Collectors.toSet());
+        } catch (Exception e) {
+            logger.error("Failed to list servers for hot tier preload: {}", e.getMessage());
+            return;
+        }
+
+        // Register buffers before loading so samples ingested meanwhile are kept and merged
+        for (Long serverId : serverIds) {
+            buffers.computeIfAbsent(serverId, id -> newEntry(false));
+        }
+        loadedFrom = windowStartMillis;
+
+        AtomicInteger loaded = new AtomicInteger();
+        AtomicLong loadedSamples = new AtomicLong();
+        preloadExecutor = Executors.newFixedThreadPool(Math.max(1, preloadThreads), r -> {
+            Thread thread = new Thread(r, "metrics-hot-tier-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Long serverId : serverIds) {
+            preloadExecutor.submit(() -> {
+                try {
+                    loadedSamples.addAndGet(preloadServer(serverId, windowStart, windowStartMillis));
+                    loaded.incrementAndGet();
+                } catch (Exception e) {
+                    logger.warn("Failed to preload hot tier for server {}: {}", serverId, e.getMessage());
+                }
+            });
+        }
+        preloadExecutor.shutdown();
+        try {
+            preloadExecutor.awaitTermination(10, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        // Buffers created by ingestion during the preload hold everything since the window started
+        for (Map.Entry<Long, Entry> e : buffers.entrySet()) {
+            if (!serverIds.contains(e.getKey())) {
+                MetricRingBuffer buffer = e.getValue().buffer;
+                synchronized (buffer) {
+                    if (buffer.getCoverageStart() == Long.MAX_VALUE) {
+                        buffer.setCoverageStart(windowStartMillis);
+                    }
+                }
+                e.getValue().ready = true;
+            }
+        }
+        ready = true;
+        logger.info("Preloaded metrics hot tier: {}/{} servers, {} samples, {} bytes in {} ms",
+                loaded.get(), serverIds.size(), loadedSamples.get(), usedBytes.get(),
+                System.currentTimeMillis() - started);
+    }
+
+    private int preloadServer(Long serverId, LocalDateTime windowStart, long windowStartMillis) {
+        Entry entry = buffers.get(serverId);
+        if (entry == null) {
+            return 0;
+        }
+        int limit = Math.max(1, maxSamplesPerServer);
+        History history = new History(Math.min(limit, INITIAL_CAPACITY));
+        jdbcTemplate.query(PRELOAD_SQL, (RowCallbackHandler) rs -> history.add(rs),
+                serverId, Timestamp.valueOf(windowStart), limit);
+        Integer custom = jdbcTemplate.queryForObject(HAS_CUSTOM_SQL, Integer.class, serverId, Timestamp.valueOf(windowStart));
+        if (custom != null && custom > 0) {
+            entry.custom = true;
+        }
+
+        // Rows arrive newest first; the buffer wants ascending history
+        int n = history.count;
+        history.reverse();
+
+        MetricRingBuffer buffer = entry.buffer;
+        synchronized (buffer) {
+            int needed = n + buffer.size();
+            if (needed > buffer.capacity()) {
+                tryGrow(buffer, needed);
+            }
+            // Hitting the row limit means older samples in the window were not loaded
+            buffer.setCoverageStart(n == limit ? history.timestamps[0] : windowStartMillis);
+            buffer.merge(history.timestamps, history.values, n);
+        }
+        entry.ready = true;
+        return n;
+    }
+
+    private Entry newEntry(boolean readyOnCreate) {
+        MetricRingBuffer buffer = new MetricRingBuffer(Math.min(INITIAL_CAPACITY, Math.max(1, maxSamplesPerServer)),
+                readyOnCreate ? loadedFrom : Long.MAX_VALUE);
+        usedBytes.addAndGet(buffer.heapBytes());
+        return new Entry(buffer, readyOnCreate);
+    }
+
+    /**
+     * Grow a buffer towards the requested capacity within the per-server cap and the
+     * global budget. Caller holds the buffer's monitor.
+     */
+    private void tryGrow(MetricRingBuffer buffer, int requested) {
+        int target = Math.min(Math.max(1, maxSamplesPerServer), requested);
+        if (target <= buffer.capacity()) {
+            return;
+        }
+        long extra = (long) (target - buffer.capacity()) * MetricRingBuffer.BYTES_PER_SAMPLE;
+        long available = memoryBudgetBytes - usedBytes.get();
+        if (available < extra) {
+            target = buffer.capacity() + (int) Math.max(0, available / MetricRingBuffer.BYTES_PER_SAMPLE);
+            if (target <= buffer.capacity()) {
+                return;
+            }
+        }
+        long before = buffer.heapBytes();
+        buffer.resize(target);
+        usedBytes.addAndGet(buffer.heapBytes() - before);
+    }
+
+    // Entry of a server once its history is loaded; with samples, also only while it holds all metrics
+    private Entry readyEntry(Long serverId, boolean samples) {
+        if (!enabled || serverId == null) {
+            return null;
+        }
+        Entry entry = buffers.get(serverId);
+        return entry != null && entry.ready && !(samples && entry.custom) ? entry : null;
+    }
+
+    /**
+     * Growable column arrays for rows read during preload.
+     */
+    private static final class History {
+        long[] timestamps;
+        double[][] values;
+        int count;
+
+        History(int capacity) {
+            timestamps = new long[Math.max(1, capacity)];
+            values = new double[MetricRingBuffer.METRIC_COUNT][timestamps.length];
+        }
+
+        void add(ResultSet rs) throws SQLException {
+            if (count == timestamps.length) {
+                int grown = count * 2;
+                timestamps = Arrays.copyOf(timestamps, grown);
+                for (int m = 0; m < MetricRingBuffer.METRIC_COUNT; m++) {
+                    values[m] = Arrays.copyOf(values[m], grown);
+                }
+            }
+            timestamps[count] = MetricTime.toMillis(rs.getTimestamp(1).toLocalDateTime());
+            for (int m = 0; m < MetricRingBuffer.METRIC_COUNT; m++) {
+                values[m][count] = readDouble(rs, m + 2);
+            }
+            count++;
+        }
+
+        void reverse() {
+            for (int i = 0, j = count - 1; i < j; i++, j--) {
+                long t = timestamps[i];
+                timestamps[i] = timestamps[j];
+                timestamps[j] = t;
+                for (int m = 0; m < MetricRingBuffer.METRIC_COUNT; m++) {
+                    double v = values[m][i];
+                    values[m][i] = values[m][j];
+                    values[m][j] = v;
+                }
+            }
+        }
+    }
+
+    private static double readDouble(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? Double.NaN : value;
+    }
+
+    private static ServerMetrics toMetrics(Long serverId, MetricRingBuffer buffer, int index) {
+        ServerMetrics metrics = new ServerMetrics(serverId);
+        metrics.setCollectedAt(MetricTime.toDateTime(buffer.timestampAt(index)));
+        double[] values = new double[MetricValues.COUNT];
+        for (int m = 0; m < MetricValues.COUNT; m++) {
+            values[m] = buffer.valueAt(m, index);
+        }
+        MetricValues.apply(metrics, values);
+        return metrics;
+    }
+}
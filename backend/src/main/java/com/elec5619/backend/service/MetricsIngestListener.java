@@ -0,0 +1,18 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.ServerMetrics;
+
+import java.util.List;
+
+/**
+ * Receives every sample accepted by {@link ServerMetricsService}, whichever write
+ * path it arrived through. Implementations maintain derived in-memory state such as
+ * the hot tier or rollups and must not block.
+ */
+public interface MetricsIngestListener {
+
+    /**
+     * Called after samples have been accepted for writing.
+     */
+    void onMetricsIngested(List<ServerMetrics> samples);
+}
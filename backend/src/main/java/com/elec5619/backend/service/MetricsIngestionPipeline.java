@@ -0,0 +1,415 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsIngestStatsDto;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.repository.ServerMetricsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous ingestion pipeline for agent metrics.
+ * Samples are accepted into a bounded in-memory queue and written by dedicated
+ * writer threads, which group-commit them in batches bounded by size and time.
+ * When the write-ahead log is enabled, accepted samples are appended to local disk
+ * instead and a single writer tails the log, checkpointing after each commit, so a
+ * database outage spills to disk rather than dropping samples, up to a cap on the
+ * unflushed backlog beyond which samples are refused. A batch the database
+ * rejects permanently, e.g. for a constraint violation, is written row by row instead
+ * and the rejected rows are dead-lettered, so one bad sample cannot stall the log.
+ * Committed samples invalidate the range cache buckets they fall into, since a query
+ * between accept and commit may have cached the buckets without them.
+ */
+@Component
+public class MetricsIngestionPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsIngestionPipeline.class);
+
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000;
+
+    private final ServerMetricsRepository serverMetricsRepository;
+    private final MetricsWriteAheadLog writeAheadLog;
+    private final MetricsRangeCache rangeCache;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.metrics.ingest.async-enabled:true}")
+    private boolean asyncEnabled;
+
+    @Value("${app.metrics.ingest.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.metrics.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.metrics.ingest.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${app.metrics.ingest.writer-threads:1}")
+    private int writerThreads;
+
+    private BlockingQueue<ServerMetrics> queue;
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean running;
+
+    // Statistics
+    private final LongAdder acceptedSamples = new LongAdder();
+    private final LongAdder rejectedSamples = new LongAdder();
+    private final LongAdder flushedSamples = new LongAdder();
+    private final LongAdder droppedSamples = new LongAdder();
+    private final LongAdder deadLetteredSamples = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder failedFlushCount = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    // Samples appended to the WAL and not yet checkpointed; excludes records replayed from a previous run
+    private final AtomicLong walBacklog = new AtomicLong();
+
+    public MetricsIngestionPipeline(ServerMetricsRepository serverMetricsRepository,
+                                    MetricsWriteAheadLog writeAheadLog,
+                                    MetricsRangeCache rangeCache,
+                                    PlatformTransactionManager transactionManager) {
+        this.serverMetricsRepository = serverMetricsRepository;
+        this.writeAheadLog = writeAheadLog;
+        this.rangeCache = rangeCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!asyncEnabled) {
+            logger.info("Asynchronous metrics ingestion is disabled, samples will be written synchronously");
+            return;
+        }
+        running = true;
+        if (writeAheadLog.isEnabled()) {
+            // A single writer keeps the log checkpoint strictly ordered
+            Thread writer = new Thread(this::runWalWriter, "metrics-wal-writer");
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+            logger.info("Started WAL-backed metrics ingestion pipeline: batchSize={}, flushIntervalMs={}",
+                    batchSize, flushIntervalMs);
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        for (int i = 0; i < Math.max(1, writerThreads); i++) {
+            Thread writer = new Thread(this::runWriter, "metrics-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+        logger.info("Started metrics ingestion pipeline: capacity={}, batchSize={}, flushIntervalMs={}, writers={}",
+                queueCapacity, batchSize, flushIntervalMs, writers.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread writer : writers) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        writers.clear();
+    }
+
+    /**
+     * Whether samples are buffered and written asynchronously.
+     */
+    public boolean isAsyncEnabled() {
+        return asyncEnabled;
+    }
+
+    /**
+     * Accept a sample for asynchronous writing.
+     *
+     * @param metrics the sample to enqueue
+     * @return true if accepted, false if the queue or the WAL backlog is full
+     */
+    public boolean offer(ServerMetrics metrics) {
+        if (metrics.getCollectedAt() == null) {
+            metrics.setCollectedAt(LocalDateTime.now());
+        }
+        if (running && writeAheadLog.isEnabled()) {
+            if (writeAheadLog.isFull()) {
+                rejectedSamples.increment();
+                return false;
+            }
+            try {
+                writeAheadLog.append(metrics);
+                walBacklog.incrementAndGet();
+                acceptedSamples.increment();
+                return true;
+            } catch (IOException e) {
+                logger.error("Failed to append metrics to WAL: {}", e.getMessage());
+                rejectedSamples.increment();
+                return false;
+            }
+        }
+        if (queue != null && queue.offer(metrics)) {
+            acceptedSamples.increment();
+            return true;
+        }
+        rejectedSamples.increment();
+        return false;
+    }
+
+    /**
+     * Snapshot the pipeline statistics.
+     */
+    public MetricsIngestStatsDto getStats() {
+        MetricsIngestStatsDto dto = new MetricsIngestStatsDto();
+        long flushes = flushCount.sum();
+        dto.setAsyncEnabled(asyncEnabled);
+        dto.setQueueDepth(queue != null ? queue.size() : (int) Math.min(Integer.MAX_VALUE, walBacklog.get()));
+        dto.setQueueCapacity(queueCapacity);
+        dto.setAcceptedSamples(acceptedSamples.sum());
+        dto.setRejectedSamples(rejectedSamples.sum());
+        dto.setFlushedSamples(flushedSamples.sum());
+        dto.setDroppedSamples(droppedSamples.sum());
+        dto.setDeadLetteredSamples(deadLetteredSamples.sum());
+        dto.setFlushCount(flushes);
+        dto.setFailedFlushCount(failedFlushCount.sum());
+        dto.setLastBatchSize((int) lastBatchSize.get());
+        dto.setMaxBatchSize((int) maxBatchSize.get());
+        dto.setAvgBatchSize(flushes > 0 ? (double) flushedSamples.sum() / flushes : 0);
+        dto.setLastFlushLatencyMs(lastFlushNanos.get() / 1_000_000.0);
+        dto.setMaxFlushLatencyMs(maxFlushNanos.get() / 1_000_000.0);
+        dto.setAvgFlushLatencyMs(flushes > 0 ? totalFlushNanos.sum() / 1_000_000.0 / flushes : 0);
+        dto.setWalEnabled(writeAheadLog.isEnabled());
+        dto.setWalPendingBytes(writeAheadLog.pendingBytes());
+        dto.setWalSegments(writeAheadLog.segmentCount());
+        dto.setWalMaxPendingBytes(writeAheadLog.getMaxPendingBytes());
+        return dto;
+    }
+
+    private void runWriter() {
+        List<ServerMetrics> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ServerMetrics first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    ServerMetrics next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("Unexpected error in metrics writer: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Tail the write-ahead log from its checkpoint, group-commit records to the
+     * database and advance the checkpoint. Records left over from a previous run
+     * are replayed first.
+     */
+    private void runWalWriter() {
+        MetricsWriteAheadLog.Position position = writeAheadLog.getCheckpoint();
+        long backoffMs = flushIntervalMs;
+        while (running) {
+            try {
+                MetricsWriteAheadLog.ReadResult result = writeAheadLog.read(position, batchSize);
+                List<ServerMetrics> batch = new ArrayList<>(result.getRecords());
+                MetricsWriteAheadLog.Position end = result.getEnd();
+                if (batch.isEmpty()) {
+                    position = end;
+                    writeAheadLog.awaitAppend(position, flushIntervalMs);
+                    continue;
+                }
+                // Let the batch fill up until the flush interval elapses
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMs <= 0 || !writeAheadLog.awaitAppend(end, remainingMs)) {
+                        break;
+                    }
+                    MetricsWriteAheadLog.ReadResult more = writeAheadLog.read(end, batchSize - batch.size());
+                    batch.addAll(more.getRecords());
+                    end = more.getEnd();
+                }
+                if (flushDurable(batch)) {
+                    writeAheadLog.checkpoint(end);
+                    position = end;
+                    walBacklog.updateAndGet(backlog -> Math.max(0, backlog - batch.size()));
+                }
+                backoffMs = flushIntervalMs;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // e.g. the disk failing a read or the checkpoint; back off rather than spin on it
+                logger.error("Unexpected error in WAL metrics writer, retrying in {} ms: {}", backoffMs, e.getMessage(), e);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * Write a batch that is already durable in the WAL. Transient failures such as an
+     * outage are retried with backoff until the database accepts the batch or the
+     * pipeline shuts down; a permanent failure falls back to writing the batch row by row.
+     *
+     * @return true if every row was written or dead-lettered, so the checkpoint may advance
+     */
+    private boolean flushDurable(List<ServerMetrics> batch) throws InterruptedException {
+        long backoffMs = flushIntervalMs;
+        while (running) {
+            long start = System.nanoTime();
+            try {
+                transactionTemplate.executeWithoutResult(status -> serverMetricsRepository.batchInsert(batch));
+                recordFlush(batch.size(), System.nanoTime() - start);
+                rangeCache.invalidate(batch);
+                return true;
+            } catch (Exception e) {
+                failedFlushCount.increment();
+                if (isPermanent(e)) {
+                    logger.warn("Database rejected {} WAL samples, writing them row by row: {}", batch.size(), e.getMessage());
+                    return flushRowByRow(batch) == batch.size();
+                }
+                logger.warn("Failed to flush {} WAL samples, retrying in {} ms: {}", batch.size(), backoffMs, e.getMessage());
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write a batch one row per transaction, dead-lettering the rows the database rejects
+     * permanently and retrying transient failures with backoff. Rows of the WAL written
+     * before a shutdown interrupts the pass are written again on replay.
+     *
+     * @return the number of leading rows written or dead-lettered, the whole batch unless
+     *         the pipeline shut down
+     */
+    private int flushRowByRow(List<ServerMetrics> batch) throws InterruptedException {
+        long start = System.nanoTime();
+        int written = 0;
+        int handled = 0;
+        rows:
+        for (ServerMetrics row : batch) {
+            long backoffMs = flushIntervalMs;
+            while (true) {
+                if (!running) {
+                    break rows;
+                }
+                try {
+                    transactionTemplate.executeWithoutResult(status -> serverMetricsRepository.batchInsert(List.of(row)));
+                    written++;
+                    break;
+                } catch (Exception e) {
+                    if (isPermanent(e)) {
+                        deadLetteredSamples.increment();
+                        logger.error("Dead-lettered metrics sample of server {} collected at {}: {}",
+                                row.getServerId(), row.getCollectedAt(), e.getMessage());
+                        break;
+                    }
+                    logger.warn("Failed to write metrics sample, retrying in {} ms: {}", backoffMs, e.getMessage());
+                    Thread.sleep(backoffMs);
+                    backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+                }
+            }
+            handled++;
+        }
+        if (written > 0) {
+            recordFlush(written, System.nanoTime() - start);
+            rangeCache.invalidate(batch);
+        }
+        return handled;
+    }
+
+    // Constraint violations, bad data and bad SQL fail again on retry; outages, timeouts and
+    // lock conflicts may not
+    static boolean isPermanent(Exception e) {
+        return e instanceof NonTransientDataAccessException && !(e instanceof NonTransientDataAccessResourceException);
+    }
+
+    private void flush(List<ServerMetrics> batch) throws InterruptedException {
+        for (int attempt = 1; attempt <= MAX_FLUSH_ATTEMPTS; attempt++) {
+            long start = System.nanoTime();
+            try {
+                transactionTemplate.executeWithoutResult(status -> serverMetricsRepository.batchInsert(batch));
+                recordFlush(batch.size(), System.nanoTime() - start);
+                rangeCache.invalidate(batch);
+                return;
+            } catch (Exception e) {
+                failedFlushCount.increment();
+                if (isPermanent(e)) {
+                    // One bad sample must not drop the batch it was group-committed with
+                    logger.warn("Database rejected {} metrics samples, writing them row by row: {}",
+                            batch.size(), e.getMessage());
+                    int unwritten = batch.size() - flushRowByRow(batch);
+                    if (unwritten > 0) {
+                        droppedSamples.add(unwritten);
+                        logger.error("Dropped {} metrics samples not written before shutdown", unwritten);
+                    }
+                    return;
+                }
+                logger.warn("Failed to flush {} metrics samples (attempt {}/{}): {}",
+                        batch.size(), attempt, MAX_FLUSH_ATTEMPTS, e.getMessage());
+                Thread.sleep(flushIntervalMs * attempt);
+            }
+        }
+        droppedSamples.add(batch.size());
+        logger.error("Dropped {} metrics samples after {} failed flush attempts", batch.size(), MAX_FLUSH_ATTEMPTS);
+    }
+
+    private void recordFlush(int size, long nanos) {
+        flushCount.increment();
+        flushedSamples.add(size);
+        totalFlushNanos.add(nanos);
+        lastFlushNanos.set(nanos);
+        maxFlushNanos.accumulateAndGet(nanos, Math::max);
+        lastBatchSize.set(size);
+        maxBatchSize.accumulateAndGet(size, Math::max);
+    }
+}
@@ -0,0 +1,173 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsLastValueCacheStatsDto;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.util.MetricValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent cache of the latest sample of every server.
+ * It is updated atomically by every ingest path as an ingest listener, keeping
+ * whichever sample is newest, and warmed with a single grouped query once the
+ * application is ready. Latest-metrics lookups from the overview, the alert
+ * evaluator and the API hit it instead of querying the database per server.
+ */
+@Component
+public class MetricsLastValueCache implements MetricsIngestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsLastValueCache.class);
+
+    private static final String WARM_SQL = "SELECT m.metric_id, m.server_id, m.cpu_usage, m.memory_usage, m.disk_usage, "
+            + "m.network_in, m.network_out, m.load_avg, m.temperature, m.collected_at FROM server_metrics m "
+            + "JOIN (SELECT server_id, MAX(collected_at) AS latest_at FROM server_metrics GROUP BY server_id) t "
+            + "ON m.server_id = t.server_id AND m.collected_at = t.latest_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.metrics.last-value-cache.enabled:true}")
+    private boolean enabled;
+
+    private final Map<Long, ServerMetrics> latest = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private volatile boolean warmed;
+
+    public MetricsLastValueCache(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Load the latest sample of every server with one grouped query.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        try {
+            jdbcTemplate.query(WARM_SQL, (RowCallbackHandler) rs -> put(mapRow(rs)));
+            warmed = true;
+            logger.info("Warmed last-value cache with {} servers in {} ms",
+                    latest.size(), System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            logger.error("Failed to warm last-value cache, latest metrics will be loaded on demand: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMetricsIngested(List<ServerMetrics> samples) {
+        if (!enabled) {
+            return;
+        }
+        for (ServerMetrics sample : samples) {
+            put(sample);
+        }
+    }
+
+    /**
+     * Latest cached sample of a server; empty on a miss.
+     */
+    public Optional<ServerMetrics> get(Long serverId) {
+        if (!enabled || serverId == null) {
+            return Optional.empty();
+        }
+        ServerMetrics metrics = latest.get(serverId);
+        if (metrics == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(metrics);
+    }
+
+    /**
+     * Whether a sample of a server is cached, without counting a hit or a miss.
+     */
+    public boolean contains(Long serverId) {
+        return enabled && serverId != null && latest.containsKey(serverId);
+    }
+
+    /**
+     * Read-only live view of the cached latest sample of every server, keyed by server ID.
+     * Lookups through the view are not counted as hits or misses; the samples must not be modified.
+     */
+    public Map<Long, ServerMetrics> snapshot() {
+        return enabled ? Collections.unmodifiableMap(latest) : Map.of();
+    }
+
+    /**
+     * Record a sample unless a newer one is already cached.
+     */
+    public void put(ServerMetrics sample) {
+        if (!enabled || sample == null || sample.getServerId() == null || sample.getCollectedAt() == null) {
+            return;
+        }
+        ServerMetrics copy = copyOf(sample);
+        latest.merge(sample.getServerId(), copy,
+                (current, candidate) -> candidate.getCollectedAt().isBefore(current.getCollectedAt()) ? current : candidate);
+        updates.increment();
+    }
+
+    /**
+     * Drop the cached sample of a server, e.g. when the server is deleted.
+     */
+    public void evict(Long serverId) {
+        if (serverId != null) {
+            latest.remove(serverId);
+        }
+    }
+
+    public MetricsLastValueCacheStatsDto getStats() {
+        MetricsLastValueCacheStatsDto dto = new MetricsLastValueCacheStatsDto();
+        dto.setEnabled(enabled);
+        dto.setWarmed(warmed);
+        dto.setServerCount(latest.size());
+        dto.setHits(hits.sum());
+        dto.setMisses(misses.sum());
+        dto.setUpdates(updates.sum());
+        return dto;
+    }
+
+    // Cached samples are private copies so later changes to the caller's entity do not leak in
+    private static ServerMetrics copyOf(ServerMetrics sample) {
+        ServerMetrics copy = new ServerMetrics(sample.getServerId());
+        copy.setMetricId(sample.getMetricId());
+        copy.setCollectedAt(sample.getCollectedAt());
+        MetricValues.apply(copy, MetricValues.toArray(sample));
+        if (sample.getCustomMetricCount() > 0) {
+            copy.setCustomMetrics(sample.getCustomMetricIds().clone(), sample.getCustomMetricValues().clone());
+        }
+        return copy;
+    }
+
+    private static ServerMetrics mapRow(ResultSet rs) throws SQLException {
+        ServerMetrics metrics = new ServerMetrics(rs.getLong("server_id"));
+        metrics.setMetricId(rs.getLong("metric_id"));
+        double[] values = new double[MetricValues.COUNT];
+        for (int m = 0; m < MetricValues.COUNT; m++) {
+            double value = rs.getDouble(m + 3);
+            values[m] = rs.wasNull() ? Double.NaN : value;
+        }
+        MetricValues.apply(metrics, values);
+        metrics.setCollectedAt(rs.getTimestamp("collected_at").toLocalDateTime());
+        return metrics;
+    }
+}
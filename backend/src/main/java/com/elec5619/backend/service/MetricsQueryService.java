@@ -0,0 +1,357 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsQueryDto;
+import com.elec5619.backend.dto.MetricsSeriesDto;
+import com.elec5619.backend.repository.ServerMetricsAggregateRepository;
+import com.elec5619.backend.repository.ServerMetricsRepository;
+import com.elec5619.backend.util.MetricFunction;
+import com.elec5619.backend.util.MetricTime;
+import com.elec5619.backend.util.MetricValues;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Time-bucketed aggregation of metrics for one or more servers.
+ * Servers whose range is covered by the hot tier are aggregated in memory from the
+ * ring buffers; the others are aggregated by the database with one GROUP BY query.
+ * Custom metrics are always aggregated by the database from the narrow value table.
+ * The result is one shared array of bucket start times plus one compact value array
+ * per server, metric and function, instead of every raw sample.
+ */
+@Service
+public class MetricsQueryService {
+
+    static final String SOURCE_HOT_TIER = "hot-tier";
+    static final String SOURCE_DATABASE = "database";
+
+    private static final double PERCENTILE = 0.95;
+
+    private final ServerMetricsRepository serverMetricsRepository;
+    private final MetricsHotTier hotTier;
+    private final MetricRegistry metricRegistry;
+
+    @Value("${app.metrics.query.default-points:300}")
+    private int defaultPoints;
+
+    @Value("${app.metrics.query.max-points:11000}")
+    private int maxPoints;
+
+    @Value("${app.metrics.query.max-series:200}")
+    private int maxSeries;
+
+    public MetricsQueryService(ServerMetricsRepository serverMetricsRepository, MetricsHotTier hotTier,
+                               MetricRegistry metricRegistry) {
+        this.serverMetricsRepository = serverMetricsRepository;
+        this.hotTier = hotTier;
+        this.metricRegistry = metricRegistry;
+    }
+
+    /**
+     * Run an aggregation query.
+     *
+     * @throws IllegalArgumentException if the query names unknown metrics or functions,
+     *                                  or would return more buckets or series than allowed
+     */
+    public MetricsSeriesDto query(MetricsQueryDto query) {
+        List<Long> serverIds = resolveServers(query.getServerIds());
+        int[] metrics = resolveMetrics(query.getMetrics());
+        List<MetricFunction> functions = resolveFunctions(query.getFunctions());
+        LocalDateTime startTime = query.getStartTime();
+        LocalDateTime endTime = query.getEndTime();
+        if (startTime == null || endTime == null || startTime.isAfter(endTime)) {
+            throw new IllegalArgumentException("Start time must not be after end time");
+        }
+        int seriesPerServer = metrics.length * functions.size();
+        if ((long) serverIds.size() * seriesPerServer > maxSeries) {
+            throw new IllegalArgumentException("Query returns more than " + maxSeries + " series");
+        }
+
+        long step = resolveStep(query, startTime, endTime);
+        long stepMillis = step * 1000L;
+        long firstBucket = MetricTime.floor(MetricTime.toMillis(startTime), stepMillis);
+        long bucketCount = (MetricTime.floor(MetricTime.toMillis(endTime), stepMillis) - firstBucket) / stepMillis + 1;
+        if (bucketCount > maxPoints) {
+            throw new IllegalArgumentException("Query returns more than " + maxPoints + " points per series");
+        }
+        int buckets = (int) bucketCount;
+
+        // Positions of the built-in and custom metrics within the requested metrics
+        int[] builtIn = positions(metrics, true);
+        int[] custom = positions(metrics, false);
+        int functionCount = functions.size();
+
+        Map<Long, Double[][]> values = new HashMap<>();
+        Map<Long, String> sources = new HashMap<>();
+        List<Long> fromDatabase = new ArrayList<>();
+        Buckets accumulator = builtIn.length > 0
+                ? new Buckets(firstBucket, stepMillis, buckets, select(metrics, builtIn), functions) : null;
+        for (Long serverId : serverIds) {
+            Double[][] series = emptySeries(functions, seriesPerServer, buckets);
+            values.put(serverId, series);
+            if (accumulator == null) {
+                continue;
+            }
+            accumulator.reset();
+            if (hotTier.scan(serverId, startTime, endTime, accumulator::add)) {
+                Double[][] computed = accumulator.toSeries();
+                for (int i = 0; i < computed.length; i++) {
+                    series[builtIn[i / functionCount] * functionCount + i % functionCount] = computed[i];
+                }
+                sources.put(serverId, SOURCE_HOT_TIER);
+            } else {
+                fromDatabase.add(serverId);
+            }
+        }
+        if (!fromDatabase.isEmpty()) {
+            serverMetricsRepository.aggregateBuckets(fromDatabase, select(metrics, builtIn), functions, startTime,
+                    endTime, step, bucketWriter(values, builtIn, functionCount, firstBucket, stepMillis, buckets));
+        }
+        if (custom.length > 0) {
+            serverMetricsRepository.aggregateCustomBuckets(serverIds, select(metrics, custom), functions, startTime,
+                    endTime, step, bucketWriter(values, custom, functionCount, firstBucket, stepMillis, buckets));
+        }
+
+        MetricsSeriesDto result = new MetricsSeriesDto();
+        result.setStartTime(startTime);
+        result.setEndTime(endTime);
+        result.setStep(step);
+        long[] timestamps = new long[buckets];
+        for (int b = 0; b < buckets; b++) {
+            timestamps[b] = firstBucket + b * stepMillis;
+        }
+        result.setTimestamps(timestamps);
+        for (Long serverId : serverIds) {
+            Double[][] series = values.get(serverId);
+            for (int m = 0; m < metrics.length; m++) {
+                String source = MetricValues.isBuiltIn(metrics[m])
+                        ? sources.getOrDefault(serverId, SOURCE_DATABASE) : SOURCE_DATABASE;
+                for (int f = 0; f < functionCount; f++) {
+                    result.getSeries().add(new MetricsSeriesDto.Series(serverId, metricRegistry.nameOf(metrics[m]),
+                            functions.get(f).getName(), source, series[m * functionCount + f]));
+                }
+            }
+        }
+        return result;
+    }
+
+    // ======= Internal =======
+
+    private static List<Long> resolveServers(List<Long> serverIds) {
+        if (serverIds == null) {
+            throw new IllegalArgumentException("At least one server ID is required");
+        }
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(serverIds));
+        distinct.removeIf(Objects::isNull);
+        if (distinct.isEmpty()) {
+            throw new IllegalArgumentException("At least one server ID is required");
+        }
+        return distinct;
+    }
+
+    private int[] resolveMetrics(List<String> names) {
+        if (names == null || names.isEmpty()) {
+            int[] all = new int[MetricValues.COUNT];
+            Arrays.setAll(all, m -> m);
+            return all;
+        }
+        return new LinkedHashSet<>(names).stream().mapToInt(name -> {
+            int metric = metricRegistry.resolve(name);
+            if (metric < 0) {
+                throw new IllegalArgumentException("Unknown metric: " + name);
+            }
+            return metric;
+        }).toArray();
+    }
+
+    private static List<MetricFunction> resolveFunctions(List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return List.of(MetricFunction.AVG);
+        }
+        LinkedHashSet<MetricFunction> functions = new LinkedHashSet<>();
+        for (String name : names) {
+            MetricFunction function = MetricFunction.fromName(name);
+            if (function == null) {
+                throw new IllegalArgumentException("Unknown function: " + name);
+            }
+            functions.add(function);
+        }
+        return new ArrayList<>(functions);
+    }
+
+    private long resolveStep(MetricsQueryDto query, LocalDateTime startTime, LocalDateTime endTime) {
+        if (query.getStep() != null) {
+            if (query.getStep() <= 0) {
+                throw new IllegalArgumentException("Step must be positive");
+            }
+            return query.getStep();
+        }
+        int points = query.getMaxPoints() != null && query.getMaxPoints() > 0
+                ? Math.min(query.getMaxPoints(), maxPoints) : defaultPoints;
+        long rangeSeconds = Duration.between(startTime, endTime).getSeconds();
+        // One extra step absorbs the partial buckets at both ends of an unaligned range
+        return Math.max(1, (rangeSeconds + points - 1) / Math.max(1, points - 1));
+    }
+
+    // Indexes into metrics of the built-in or of the custom metrics
+    private static int[] positions(int[] metrics, boolean builtIn) {
+        return IntStream.range(0, metrics.length)
+                .filter(m -> MetricValues.isBuiltIn(metrics[m]) == builtIn)
+                .toArray();
+    }
+
+    private static int[] select(int[] metrics, int[] positions) {
+        return Arrays.stream(positions).map(m -> metrics[m]).toArray();
+    }
+
+    /**
+     * Copy database buckets of the metrics at the given positions into the per-server series.
+     */
+    private static ServerMetricsAggregateRepository.BucketHandler bucketWriter(Map<Long, Double[][]> values,
+                                                                               int[] positions, int functionCount,
+                                                                               long firstBucket, long stepMillis,
+                                                                               int buckets) {
+        return (serverId, bucketStart, row) -> {
+            Double[][] series = values.get(serverId);
+            long bucket = (bucketStart - firstBucket) / stepMillis;
+            if (series == null || bucket < 0 || bucket >= buckets) {
+                return;
+            }
+            for (int i = 0; i < row.length; i++) {
+                int target = positions[i / functionCount] * functionCount + i % functionCount;
+                series[target][(int) bucket] = Double.isNaN(row[i]) ? null : row[i];
+            }
+        };
+    }
+
+    private static Double[][] emptySeries(List<MetricFunction> functions, int seriesCount, int buckets) {
+        Double[][] series = new Double[seriesCount][buckets];
+        for (int i = 0; i < seriesCount; i++) {
+            if (functions.get(i % functions.size()) == MetricFunction.COUNT) {
+                Arrays.fill(series[i], 0.0);
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Per-bucket accumulators of the queried metrics in primitive arrays, reused across servers.
+     * Samples must be added oldest first so the last value of a bucket is its latest sample.
+     * Bucket samples are only kept when a percentile is requested.
+     */
+    static final class Buckets {
+        private final long firstBucket;
+        private final long stepMillis;
+        private final int size;
+        private final int[] metrics;
+        private final List<MetricFunction> functions;
+        private final double[][] min;
+        private final double[][] max;
+        private final double[][] sum;
+        private final double[][] last;
+        private final int[][] count;
+        private final double[][][] samples;
+
+        Buckets(long firstBucket, long stepMillis, int size, int[] metrics, List<MetricFunction> functions) {
+            this.firstBucket = firstBucket;
+            this.stepMillis = stepMillis;
+            this.size = size;
+            this.metrics = metrics;
+            this.functions = functions;
+            min = new double[metrics.length][size];
+            max = new double[metrics.length][size];
+            sum = new double[metrics.length][size];
+            last = new double[metrics.length][size];
+            count = new int[metrics.length][size];
+            samples = functions.contains(MetricFunction.P95) ? new double[metrics.length][size][] : null;
+        }
+
+        void reset() {
+            for (int m = 0; m < metrics.length; m++) {
+                Arrays.fill(min[m], Double.POSITIVE_INFINITY);
+                Arrays.fill(max[m], Double.NEGATIVE_INFINITY);
+                Arrays.fill(sum[m], 0);
+                Arrays.fill(count[m], 0);
+            }
+        }
+
+        void add(long timestamp, double[] values) {
+            long bucket = (MetricTime.floor(timestamp, stepMillis) - firstBucket) / stepMillis;
+            if (bucket < 0 || bucket >= size) {
+                return;
+            }
+            int b = (int) bucket;
+            for (int m = 0; m < metrics.length; m++) {
+                double value = values[metrics[m]];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                min[m][b] = Math.min(min[m][b], value);
+                max[m][b] = Math.max(max[m][b], value);
+                sum[m][b] += value;
+                last[m][b] = value;
+                if (samples != null) {
+                    double[] kept = samples[m][b];
+                    if (kept == null || kept.length == count[m][b]) {
+                        samples[m][b] = kept = kept == null ? new double[8] : Arrays.copyOf(kept, kept.length * 2);
+                    }
+                    kept[count[m][b]] = value;
+                }
+                count[m][b]++;
+            }
+        }
+
+        Double[][] toSeries() {
+            Double[][] series = new Double[metrics.length * functions.size()][size];
+            for (int m = 0; m < metrics.length; m++) {
+                for (int f = 0; f < functions.size(); f++) {
+                    Double[] out = series[m * functions.size() + f];
+                    for (int b = 0; b < size; b++) {
+                        out[b] = value(functions.get(f), m, b);
+                    }
+                }
+            }
+            return series;
+        }
+
+        private Double value(MetricFunction function, int m, int b) {
+            int n = count[m][b];
+            if (function == MetricFunction.COUNT) {
+                return (double) n;
+            }
+            if (n == 0) {
+                return null;
+            }
+            return switch (function) {
+                case AVG -> sum[m][b] / n;
+                case MIN -> min[m][b];
+                case MAX -> max[m][b];
+                case LAST -> last[m][b];
+                case P95 -> percentile(samples[m][b], n, PERCENTILE);
+                case COUNT -> (double) n;
+            };
+        }
+    }
+
+    /**
+     * Continuous percentile with linear interpolation between the closest ranks,
+     * matching PERCENTILE_CONT of the database path. Sorts the first {@code n} values in place.
+     */
+    static double percentile(double[] values, int n, double p) {
+        Arrays.sort(values, 0, n);
+        double rank = p * (n - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = Math.min(n - 1, lower + 1);
+        return values[lower] + (rank - lower) * (values[upper] - values[lower]);
+    }
+}
@@ -0,0 +1,250 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsRangeCacheStatsDto;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.util.MetricTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Result cache of stepped range queries, keyed by server, step and step-aligned bucket.
+ * Buckets that closed more than a settle delay ago are immutable and kept until they are
+ * evicted; the trailing open buckets are always recomputed. A query only loads the span
+ * from its oldest uncached bucket onwards, so a dashboard refreshing the same window
+ * usually reads just the newest bucket. A late sample for a cached bucket invalidates it
+ * as it is accepted and again once its write commits, and a query whose load raced with an
+ * invalidation of its server returns its result without caching it.
+ *
+ * The cache is bounded by a number of buckets with least-recently-used eviction. Only
+ * steps that every rollup tier can serve without realigning them are cached, so a
+ * bucket has the same value whichever tier computed it.
+ */
+@Component
+public class MetricsRangeCache implements MetricsIngestListener {
+
+    @Value("${app.metrics.range-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.metrics.range-cache.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${app.metrics.range-cache.settle-seconds:60}")
+    private long settleSeconds;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    // Guarded by itself; access order makes the eldest entry the least recently used one
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+    // Steps cached per server, so ingest only looks up the buckets a sample can affect
+    private final Map<Long, Set<Long>> stepsByServer = new ConcurrentHashMap<>();
+    // Guarded by entries; bumped by every invalidation of a server, so a load that ran meanwhile is not cached
+    private final Map<Long, Long> generations = new HashMap<>();
+
+    /**
+     * Identifies one bucket of one server at one step.
+     */
+    private static final class Key {
+        final long serverId;
+        final long stepSeconds;
+        final long bucketStart;
+
+        Key(long serverId, long stepSeconds, long bucketStart) {
+            this.serverId = serverId;
+            this.stepSeconds = stepSeconds;
+            this.bucketStart = bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key other)) return false;
+            return serverId == other.serverId && stepSeconds == other.stepSeconds && bucketStart == other.bucketStart;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serverId, stepSeconds, bucketStart);
+        }
+    }
+
+    /**
+     * Cached bucket; the point is null for a bucket without samples.
+     */
+    private static final class Entry {
+        final ServerMetrics point;
+
+        Entry(ServerMetrics point) {
+            this.point = point;
+        }
+    }
+
+    /**
+     * Whether range queries with this step go through the cache.
+     */
+    public boolean isCacheable(long stepSeconds) {
+        if (!enabled || stepSeconds <= 0) {
+            return false;
+        }
+        for (MetricsRollupService.Resolution resolution : MetricsRollupService.Resolution.values()) {
+            if (stepSeconds >= resolution.getSeconds() && stepSeconds % resolution.getSeconds() != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Per-bucket series of a server over the step-aligned buckets covering the range, newest
+     * first. Cached closed buckets are served from memory and the rest is computed by
+     * {@code loader} over one contiguous, bucket-aligned span.
+     *
+     * @param loader computes the series of the server between two times, as for an uncached query
+     */
+    public List<ServerMetrics> getSeries(Long serverId, LocalDateTime startTime, LocalDateTime endTime,
+                                         long stepSeconds,
+                                         BiFunction<LocalDateTime, LocalDateTime, List<ServerMetrics>> loader) {
+        long stepMillis = stepSeconds * 1000L;
+        long first = MetricTime.floor(MetricTime.toMillis(startTime), stepMillis);
+        long last = MetricTime.floor(MetricTime.toMillis(endTime), stepMillis);
+        // A window too large to cache without flushing everything else is served directly
+        if ((last - first) / stepMillis + 1 > maxEntries / 4) {
+            return loader.apply(startTime, endTime);
+        }
+        long closedBefore = MetricTime.toMillis(LocalDateTime.now()) - settleSeconds * 1000L;
+        stepsByServer.computeIfAbsent(serverId, id -> ConcurrentHashMap.newKeySet()).add(stepSeconds);
+
+        Map<Long, ServerMetrics> points = new HashMap<>();
+        long loadFrom = Long.MAX_VALUE;
+        long generation;
+        synchronized (entries) {
+            generation = generations.getOrDefault(serverId, 0L);
+            for (long bucket = first; bucket <= last; bucket += stepMillis) {
+                if (bucket + stepMillis > closedBefore) {
+                    loadFrom = Math.min(loadFrom, bucket);
+                    break;
+                }
+                Entry entry = entries.get(new Key(serverId, stepSeconds, bucket));
+                if (entry == null) {
+                    misses.increment();
+                    loadFrom = Math.min(loadFrom, bucket);
+                    continue;
+                }
+                hits.increment();
+                if (entry.point != null) {
+                    points.put(bucket, entry.point);
+                }
+            }
+        }
+
+        if (loadFrom != Long.MAX_VALUE) {
+            List<ServerMetrics> loaded = loader.apply(MetricTime.toDateTime(loadFrom),
+                    MetricTime.toDateTime(last + stepMillis - 1));
+            for (ServerMetrics point : loaded) {
+                points.put(MetricTime.floor(MetricTime.toMillis(point.getCollectedAt()), stepMillis), point);
+            }
+            synchronized (entries) {
+                // A sample ingested while loading may be missing from the loaded buckets
+                if (generations.getOrDefault(serverId, 0L) == generation) {
+                    for (long bucket = loadFrom; bucket <= last && bucket + stepMillis <= closedBefore; bucket += stepMillis) {
+                        entries.put(new Key(serverId, stepSeconds, bucket), new Entry(points.get(bucket)));
+                    }
+                }
+            }
+        }
+
+        List<ServerMetrics> series = new ArrayList<>(points.size());
+        for (long bucket = last; bucket >= first; bucket -= stepMillis) {
+            ServerMetrics point = points.get(bucket);
+            if (point != null) {
+                series.add(point);
+            }
+        }
+        return series;
+    }
+
+    @Override
+    public void onMetricsIngested(List<ServerMetrics> samples) {
+        invalidate(samples);
+    }
+
+    /**
+     * Drop the cached buckets the samples fall into. Called as samples are accepted and
+     * again once their write commits, since a bucket loaded from the table in between
+     * does not hold them yet.
+     */
+    public void invalidate(List<ServerMetrics> samples) {
+        if (!enabled || stepsByServer.isEmpty()) {
+            return;
+        }
+        synchronized (entries) {
+            for (ServerMetrics sample : samples) {
+                if (sample == null || sample.getServerId() == null || sample.getCollectedAt() == null) {
+                    continue;
+                }
+                Set<Long> steps = stepsByServer.get(sample.getServerId());
+                if (steps == null) {
+                    continue;
+                }
+                generations.merge(sample.getServerId(), 1L, Long::sum);
+                long timestamp = MetricTime.toMillis(sample.getCollectedAt());
+                for (long step : steps) {
+                    Key key = new Key(sample.getServerId(), step, MetricTime.floor(timestamp, step * 1000L));
+                    if (entries.remove(key) != null) {
+                        invalidations.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop the cached buckets of a server, e.g. when the server is deleted.
+     */
+    public void evict(Long serverId) {
+        if (serverId == null || stepsByServer.remove(serverId) == null) {
+            return;
+        }
+        synchronized (entries) {
+            generations.merge(serverId, 1L, Long::sum);
+            entries.keySet().removeIf(key -> key.serverId == serverId);
+        }
+    }
+
+    public MetricsRangeCacheStatsDto getStats() {
+        MetricsRangeCacheStatsDto dto = new MetricsRangeCacheStatsDto();
+        dto.setEnabled(enabled);
+        synchronized (entries) {
+            dto.setEntries(entries.size());
+        }
+        dto.setMaxEntries(maxEntries);
+        dto.setHits(hits.sum());
+        dto.setMisses(misses.sum());
+        dto.setEvictions(evictions.sum());
+        dto.setInvalidations(invalidations.sum());
+        return dto;
+    }
+}
@@ -0,0 +1,279 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.util.DatabaseDialect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Retention of raw server metrics.
+ *
+ * On PostgreSQL {@code server_metrics} is partitioned by day (see MetricsPartitionMigration).
+ * Partitions are created ahead of time, and data older than the longest retention is
+ * removed by detaching and dropping whole partitions. Elsewhere, and for servers whose
+ * projects keep metrics for a shorter time, rows are deleted in bounded batches so no
+ * single statement touches an unbounded number of rows.
+ *
+ * A server's retention is the longest retention of the projects it belongs to; servers
+ * outside any project, and projects without their own setting, use the default.
+ * Custom metric values in {@code server_metric_values} follow the same retention.
+ */
+@Service
+public class MetricsRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRetentionService.class);
+
+    public static final String TABLE = "server_metrics";
+
+    public static final String DEFAULT_PARTITION = TABLE + "_default";
+
+    public static final String CUSTOM_VALUES_TABLE = "server_metric_values";
+
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final String PROJECT_RETENTION_SQL = "SELECT ps.server_id, MAX(COALESCE(p.metrics_retention_days, ?)) "
+            + "FROM project_servers ps JOIN projects p ON p.id = ps.project_id GROUP BY ps.server_id";
+
+    private static final String LIST_PARTITIONS_SQL = "SELECT c.relname FROM pg_inherits i "
+            + "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class parent ON parent.oid = i.inhparent "
+            + "WHERE parent.relname = ? AND pg_table_is_visible(parent.oid)";
+
+    private static final String IS_PARTITIONED_SQL = "SELECT COUNT(*) FROM pg_partitioned_table pt "
+            + "JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = ? AND pg_table_is_visible(c.oid)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.metrics.partition.enabled:true}")
+    private boolean partitioningEnabled;
+
+    @Value("${app.metrics.partition.premake-days:7}")
+    private int premakeDays;
+
+    @Value("${app.metrics.retention.default-days:7}")
+    private int defaultRetentionDays;
+
+    @Value("${app.metrics.retention.delete-batch-size:5000}")
+    private int deleteBatchSize;
+
+    private volatile DatabaseDialect dialect;
+
+    public MetricsRetentionService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public int getDefaultRetentionDays() {
+        return defaultRetentionDays;
+    }
+
+    public int getPremakeDays() {
+        return premakeDays;
+    }
+
+    public boolean isPartitioningEnabled() {
+        return partitioningEnabled;
+    }
+
+    /**
+     * Whether {@code server_metrics} is a partitioned table.
+     */
+    public boolean isPartitioned() {
+        if (dialect() != DatabaseDialect.POSTGRESQL) {
+            return false;
+        }
+        Integer count = jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Integer.class, TABLE);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Create the daily partitions from today through the pre-make horizon.
+     */
+    @Scheduled(cron = "0 5 0 * * *") // Every day at 00:05
+    public void ensurePartitions() {
+        if (!partitioningEnabled) {
+            return;
+        }
+        try {
+            if (isPartitioned()) {
+                LocalDate today = LocalDate.now();
+                createPartitions(today, today.plusDays(premakeDays));
+            }
+        } catch (Exception e) {
+            logger.error("Failed to create metrics partitions: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Create the missing daily partitions for every day in {@code [from, to]}.
+     * A day whose rows already landed in the default partition cannot be split out
+     * and is logged and skipped.
+     */
+    public void createPartitions(LocalDate from, LocalDate to) {
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            String name = partitionName(day);
+            try {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE
+                        + " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+            } catch (Exception e) {
+                logger.warn("Failed to create metrics partition {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Remove metrics older than each server's retention.
+     *
+     * @return the number of partitions dropped plus rows deleted
+     */
+    public long applyRetention() {
+        Map<Long, Integer> serverRetention = loadServerRetention();
+        int longest = longestRetentionDays(serverRetention);
+        LocalDateTime globalCutoff = LocalDate.now().minusDays(longest).atStartOfDay();
+
+        long removed;
+        if (isPartitioned()) {
+            removed = dropPartitionsBefore(globalCutoff.toLocalDate());
+            // Out-of-range rows kept in the default partition are deleted row-wise
+            removed += deleteInBatches(DEFAULT_PARTITION, "metric_id", "collected_at < ?", Timestamp.valueOf(globalCutoff));
+        } else {
+            removed = deleteInBatches(TABLE, "metric_id", "collected_at < ?", Timestamp.valueOf(globalCutoff));
+        }
+        removed += deleteInBatches(CUSTOM_VALUES_TABLE, "id", "collected_at < ?", Timestamp.valueOf(globalCutoff));
+
+        // Servers retained for less than the longest retention
+        Map<Integer, List<Long>> byRetention = new TreeMap<>();
+        for (Long serverId : jdbcTemplate.queryForList("SELECT id FROM servers", Long.class)) {
+            int days = serverRetention.getOrDefault(serverId, defaultRetentionDays);
+            if (days < longest) {
+                byRetention.computeIfAbsent(days, k -> new ArrayList<>()).add(serverId);
+            }
+        }
+        for (Map.Entry<Integer, List<Long>> e : byRetention.entrySet()) {
+            Timestamp cutoff = Timestamp.valueOf(LocalDate.now().minusDays(e.getKey()).atStartOfDay());
+            String ids = e.getValue().stream().map(String::valueOf).collect(Collectors.joining(","));
+            removed += deleteInBatches(TABLE, "metric_id", "server_id IN (" + ids + ") AND collected_at < ?", cutoff);
+            removed += deleteInBatches(CUSTOM_VALUES_TABLE, "id", "server_id IN (" + ids + ") AND collected_at < ?", cutoff);
+        }
+        return removed;
+    }
+
+    /**
+     * The longest retention of any server, which bounds the data kept at all.
+     */
+    public int getLongestRetentionDays() {
+        return longestRetentionDays(loadServerRetention());
+    }
+
+    /**
+     * Names of the daily partitions of {@code server_metrics}, oldest first.
+     */
+    public List<String> listPartitions() {
+        if (!isPartitioned()) {
+            return Collections.emptyList();
+        }
+        return jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class, TABLE).stream()
+                .filter(name -> partitionDay(name) != null)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Name of the partition holding one day of metrics.
+     */
+    public static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + day.format(PARTITION_SUFFIX);
+    }
+
+    /**
+     * Day held by a partition, or null if the name is not a daily partition.
+     */
+    public static LocalDate partitionDay(String name) {
+        if (name == null || !name.startsWith(PARTITION_PREFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // ======= Internal =======
+
+    private long dropPartitionsBefore(LocalDate cutoffDay) {
+        long dropped = 0;
+        for (String name : listPartitions()) {
+            LocalDate day = partitionDay(name);
+            // Only partitions whose whole day is older than the cutoff
+            if (day.plusDays(1).isAfter(cutoffDay)) {
+                continue;
+            }
+            try {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+                jdbcTemplate.execute("DROP TABLE " + name);
+                dropped++;
+                logger.info("Dropped metrics partition {}", name);
+            } catch (Exception e) {
+                logger.error("Failed to drop metrics partition {}: {}", name, e.getMessage());
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Delete matching rows at most {@code deleteBatchSize} at a time, each batch in
+     * its own statement, until none are left. Rows are selected by their primary key column.
+     */
+    private long deleteInBatches(String table, String key, String condition, Object... args) {
+        String sql = "DELETE FROM " + table + " WHERE " + key + " IN (SELECT " + key + " FROM " + table
+                + " WHERE " + condition + " LIMIT " + deleteBatchSize + ")";
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, args);
+            total += deleted;
+        } while (deleted >= deleteBatchSize);
+        if (total > 0) {
+            logger.info("Deleted {} expired rows from {}", total, table);
+        }
+        return total;
+    }
+
+    private int longestRetentionDays(Map<Long, Integer> serverRetention) {
+        int longest = serverRetention.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        return Math.max(longest, defaultRetentionDays);
+    }
+
+    private Map<Long, Integer> loadServerRetention() {
+        Map<Long, Integer> retention = new HashMap<>();
+        jdbcTemplate.query(PROJECT_RETENTION_SQL, (RowCallbackHandler) rs -> {
+            retention.put(rs.getLong(1), rs.getInt(2));
+        }, defaultRetentionDays);
+        return retention;
+    }
+
+    private DatabaseDialect dialect() {
+        if (dialect == null) {
+            dialect = DatabaseDialect.detect(jdbcTemplate);
+        }
+        return dialect;
+    }
+}
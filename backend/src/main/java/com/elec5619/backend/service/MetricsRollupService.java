@@ -0,0 +1,525 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.MetricRollup;
+import com.elec5619.backend.entity.Server;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.repository.MetricRollupRepository;
+import com.elec5619.backend.repository.ServerRepository;
+import com.elec5619.backend.util.MetricAggregate;
+import com.elec5619.backend.util.MetricTime;
+import com.elec5619.backend.util.MetricValues;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+
+/**
+ * Maintains 1-minute, 5-minute and 1-hour rollups of every metric.
+ * Accepted samples are folded into in-memory partial aggregates, which are
+ * periodically merged into the rollup table; a batch being merged stays visible to
+ * readers until its write commits. Range queries with a step pick the
+ * coarsest resolution that satisfies the step and is still retained, so long
+ * ranges read a few hundred buckets instead of every raw sample.
+ */
+@Service
+public class MetricsRollupService implements MetricsIngestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRollupService.class);
+
+    private static final String BACKFILL_SQL = "SELECT collected_at, cpu_usage, memory_usage, disk_usage, network_in, "
+            + "network_out, load_avg, temperature FROM server_metrics "
+            + "WHERE server_id = ? AND collected_at >= ? AND collected_at < ?";
+
+    /**
+     * Rollup resolutions, finest first.
+     */
+    public enum Resolution {
+        ONE_MINUTE(60),
+        FIVE_MINUTES(300),
+        ONE_HOUR(3600);
+
+        private final int seconds;
+
+        Resolution(int seconds) {
+            this.seconds = seconds;
+        }
+
+        public int getSeconds() {
+            return seconds;
+        }
+    }
+
+    private final MetricRollupRepository rollupRepository;
+    private final ServerRepository serverRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.metrics.rollup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.metrics.rollup.retention-days-1m:7}")
+    private int retentionDaysOneMinute;
+
+    @Value("${app.metrics.rollup.retention-days-5m:30}")
+    private int retentionDaysFiveMinutes;
+
+    @Value("${app.metrics.rollup.retention-days-1h:365}")
+    private int retentionDaysOneHour;
+
+    @Value("${app.metrics.rollup.backfill-days:7}")
+    private int backfillDays;
+
+    private final ReadWriteLock pendingLock = new ReentrantReadWriteLock();
+    private volatile Map<BucketKey, MetricAggregate[]> pending = new ConcurrentHashMap<>();
+    // Batch swapped out of pending whose write has not committed yet, read along with pending
+    private volatile Map<BucketKey, MetricAggregate[]> inFlight = Map.of();
+    // Held exclusively while a batch is written, so a reader sees it either in the table or in memory, never both
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public MetricsRollupService(MetricRollupRepository rollupRepository, ServerRepository serverRepository,
+                                JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.serverRepository = serverRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Identifies one bucket of one server at one resolution.
+     */
+    private static final class BucketKey {
+        final long serverId;
+        final int resolutionSeconds;
+        final long bucketStart;
+
+        BucketKey(long serverId, int resolutionSeconds, long bucketStart) {
+            this.serverId = serverId;
+            this.resolutionSeconds = resolutionSeconds;
+            this.bucketStart = bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BucketKey other)) return false;
+            return serverId == other.serverId && resolutionSeconds == other.resolutionSeconds
+                    && bucketStart == other.bucketStart;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serverId, resolutionSeconds, bucketStart);
+        }
+    }
+
+    @Override
+    public void onMetricsIngested(List<ServerMetrics> samples) {
+        if (!enabled) {
+            return;
+        }
+        pendingLock.readLock().lock();
+        try {
+            for (ServerMetrics sample : samples) {
+                if (sample == null || sample.getServerId() == null || sample.getCollectedAt() == null) {
+                    continue;
+                }
+                addToBuckets(pending, sample.getServerId(), MetricTime.toMillis(sample.getCollectedAt()), MetricValues.toArray(sample));
+            }
+        } finally {
+            pendingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merge pending partial aggregates into the rollup table.
+     */
+    @Scheduled(fixedDelayString = "${app.metrics.rollup.flush-interval-ms:10000}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        Map<BucketKey, MetricAggregate[]> batch;
+        pendingLock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            inFlight = batch;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            pendingLock.writeLock().unlock();
+        }
+        flushLock.writeLock().lock();
+        try {
+            // The upsert adds to the stored sums and counts, so it must roll back whole before a requeue
+            transactionTemplate.executeWithoutResult(status -> rollupRepository.upsertAll(toRollups(batch)));
+        } catch (Exception e) {
+            logger.warn("Failed to flush {} rollup buckets, will retry: {}", batch.size(), e.getMessage());
+            requeue(batch);
+        } finally {
+            inFlight = Map.of();
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Delete rollup buckets beyond each resolution's retention.
+     */
+    @Scheduled(fixedRate = 3600000) // Every hour
+    public void cleanupExpiredRollups() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (Resolution resolution : Resolution.values()) {
+            try {
+                int deleted = rollupRepository.deleteOlderThan(resolution.getSeconds(),
+                        now.minusDays(retentionDays(resolution)));
+                if (deleted > 0) {
+                    logger.info("Deleted {} expired {}s rollup buckets", deleted, resolution.getSeconds());
+                }
+            } catch (Exception e) {
+                logger.error("Failed to clean up {}s rollups: {}", resolution.getSeconds(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Build rollups from existing raw samples the first time the rollup table is empty,
+     * without blocking startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::backfillIfEmpty, "metrics-rollup-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Pick the coarsest retained resolution not coarser than the step, or null if
+     * the range must be served from raw samples.
+     */
+    public Resolution selectResolution(LocalDateTime startTime, long stepSeconds) {
+        LocalDateTime now = LocalDateTime.now();
+        Resolution[] resolutions = Resolution.values();
+        for (int i = resolutions.length - 1; i >= 0; i--) {
+            Resolution resolution = resolutions[i];
+            if (resolution.getSeconds() <= stepSeconds
+                    && !startTime.isBefore(now.minusDays(retentionDays(resolution)))) {
+                return resolution;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Average of each metric per step-sized bucket, newest bucket first, read from
+     * the coarsest suitable rollup tier. Empty when no tier applies.
+     */
+    public Optional<List<ServerMetrics>> getSeries(Long serverId, LocalDateTime startTime, LocalDateTime endTime,
+                                                   long stepSeconds) {
+        if (!enabled || !ready) {
+            return Optional.empty();
+        }
+        Resolution resolution = selectResolution(startTime, stepSeconds);
+        if (resolution == null) {
+            return Optional.empty();
+        }
+        int resolutionSeconds = resolution.getSeconds();
+        long stepMillis = alignStep(stepSeconds, resolutionSeconds) * 1000L;
+        long from = MetricTime.floor(MetricTime.toMillis(startTime), resolutionSeconds * 1000L);
+        long to = MetricTime.toMillis(endTime);
+
+        TreeMap<Long, MetricAggregate[]> buckets = new TreeMap<>();
+        flushLock.readLock().lock();
+        try {
+            collect(serverId, resolutionSeconds, from, to, bucketStart -> bucketFor(buckets, MetricTime.floor(bucketStart, stepMillis)));
+        } finally {
+            flushLock.readLock().unlock();
+        }
+        return Optional.of(toSeries(serverId, buckets));
+    }
+
+    /**
+     * Aggregate of each built-in metric of a server over a range, indexed by metric ID. The
+     * whole hours are read from the 1-hour rollups and the partial hours at either end from
+     * the 5-minute rollups, so the range is widened to whole 5-minute buckets. Empty when
+     * the rollups cannot serve the range.
+     */
+    public Optional<MetricAggregate[]> summarize(Long serverId, LocalDateTime startTime, LocalDateTime endTime) {
+        if (!enabled || !ready || selectResolution(startTime, Resolution.FIVE_MINUTES.getSeconds()) != Resolution.FIVE_MINUTES) {
+            return Optional.empty();
+        }
+        long fiveMinutes = Resolution.FIVE_MINUTES.getSeconds() * 1000L;
+        long hour = Resolution.ONE_HOUR.getSeconds() * 1000L;
+        long from = MetricTime.floor(MetricTime.toMillis(startTime), fiveMinutes);
+        long to = MetricTime.toMillis(endTime);
+        long hoursFrom = Math.min(MetricTime.floor(from + hour - 1, hour), to);
+        long hoursTo = Math.max(MetricTime.floor(to, hour), hoursFrom);
+
+        MetricAggregate[] total = newAggregates();
+        flushLock.readLock().lock();
+        try {
+            if (from < hoursFrom) {
+                collect(serverId, Resolution.FIVE_MINUTES.getSeconds(), from, hoursFrom - 1, bucketStart -> total);
+            }
+            if (hoursFrom < hoursTo) {
+                collect(serverId, Resolution.ONE_HOUR.getSeconds(), hoursFrom, hoursTo - 1, bucketStart -> total);
+            }
+            collect(serverId, Resolution.FIVE_MINUTES.getSeconds(), hoursTo, to, bucketStart -> total);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+        return Optional.of(total);
+    }
+
+    /**
+     * Aggregate of each built-in metric over raw samples in one pass, indexed by metric ID.
+     */
+    public MetricAggregate[] summarize(List<ServerMetrics> samples) {
+        MetricAggregate[] total = newAggregates();
+        for (ServerMetrics sample : samples) {
+            long timestamp = sample.getCollectedAt() != null ? MetricTime.toMillis(sample.getCollectedAt()) : Long.MIN_VALUE;
+            double[] values = MetricValues.toArray(sample);
+            for (int m = 0; m < MetricValues.COUNT; m++) {
+                total[m].add(values[m], timestamp);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Aggregate raw samples into step-sized buckets, newest bucket first. Used when
+     * no rollup tier applies, so callers get the same shape either way.
+     */
+    public List<ServerMetrics> aggregate(Long serverId, List<ServerMetrics> samples, long stepSeconds) {
+        long stepMillis = Math.max(1, stepSeconds) * 1000L;
+        TreeMap<Long, MetricAggregate[]> buckets = new TreeMap<>();
+        for (ServerMetrics sample : samples) {
+            long timestamp = MetricTime.toMillis(sample.getCollectedAt());
+            MetricAggregate[] target = bucketFor(buckets, MetricTime.floor(timestamp, stepMillis));
+            double[] values = MetricValues.toArray(sample);
+            for (int m = 0; m < MetricValues.COUNT; m++) {
+                target[m].add(values[m], timestamp);
+            }
+        }
+        return toSeries(serverId, buckets);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ======= Internal =======
+
+    private void backfillIfEmpty() {
+        try {
+            if (rollupRepository.count() > 0) {
+                ready = true;
+                return;
+            }
+            long started = System.currentTimeMillis();
+            LocalDateTime cutoff = LocalDateTime.now();
+            LocalDateTime from = cutoff.minusDays(backfillDays);
+            int buckets = 0;
+            for (Server server : serverRepository.findAll()) {
+                Map<BucketKey, MetricAggregate[]> local = new HashMap<>();
+                long serverId = server.getId();
+                jdbcTemplate.query(BACKFILL_SQL, (RowCallbackHandler) rs -> {
+                    double[] values = new double[MetricValues.COUNT];
+                    for (int m = 0; m < MetricValues.COUNT; m++) {
+                        double value = rs.getDouble(m + 2);
+                        values[m] = rs.wasNull() ? Double.NaN : value;
+                    }
+                    addToBuckets(local, serverId, MetricTime.toMillis(rs.getTimestamp(1).toLocalDateTime()), values);
+                }, serverId, Timestamp.valueOf(from), Timestamp.valueOf(cutoff));
+                Integer upserted = transactionTemplate.execute(status -> rollupRepository.upsertAll(toRollups(local)));
+                buckets += upserted != null ? upserted : 0;
+            }
+            ready = true;
+            logger.info("Backfilled {} rollup buckets from the last {} days in {} ms",
+                    buckets, backfillDays, System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            logger.error("Failed to backfill metrics rollups, range queries will use raw samples: {}", e.getMessage(), e);
+        }
+    }
+
+    private static void addToBuckets(Map<BucketKey, MetricAggregate[]> target, long serverId, long timestamp,
+                                     double[] values) {
+        for (Resolution resolution : Resolution.values()) {
+            long bucketStart = MetricTime.floor(timestamp, resolution.getSeconds() * 1000L);
+            MetricAggregate[] aggregates = target.computeIfAbsent(
+                    new BucketKey(serverId, resolution.getSeconds(), bucketStart), k -> newAggregates());
+            synchronized (aggregates) {
+                for (int m = 0; m < MetricValues.COUNT; m++) {
+                    aggregates[m].add(values[m], timestamp);
+                }
+            }
+        }
+    }
+
+    // Merge the stored buckets of one resolution starting in [from, to] and the partial aggregates
+    // not yet flushed to the table, or being flushed, into the aggregates the target maps a
+    // bucket start to. The caller holds the flush lock, so no batch moves to the table meanwhile.
+    private void collect(long serverId, int resolutionSeconds, long from, long to,
+                         LongFunction<MetricAggregate[]> target) {
+        List<MetricRollup> rows = rollupRepository.findByServerIdAndResolutionSecondsAndBucketStartBetweenOrderByBucketStartAsc(
+                serverId, resolutionSeconds, MetricTime.toDateTime(from), MetricTime.toDateTime(to));
+        for (MetricRollup row : rows) {
+            MetricAggregate aggregate = target.apply(MetricTime.toMillis(row.getBucketStart()))[row.getMetricId()];
+            aggregate.merge(orNaN(row.getMinValue()), orNaN(row.getMaxValue()), orZero(row.getSumValue()),
+                    row.getSampleCount(), orNaN(row.getLastValue()),
+                    row.getLastAt() != null ? MetricTime.toMillis(row.getLastAt()) : Long.MIN_VALUE);
+        }
+        pendingLock.readLock().lock();
+        try {
+            mergePartials(target, pending, serverId, resolutionSeconds, from, to);
+            mergePartials(target, inFlight, serverId, resolutionSeconds, from, to);
+        } finally {
+            pendingLock.readLock().unlock();
+        }
+    }
+
+    private static void mergePartials(LongFunction<MetricAggregate[]> target, Map<BucketKey, MetricAggregate[]> partials,
+                                      long serverId, int resolutionSeconds, long from, long to) {
+        for (Map.Entry<BucketKey, MetricAggregate[]> e : partials.entrySet()) {
+            BucketKey key = e.getKey();
+            if (key.serverId != serverId || key.resolutionSeconds != resolutionSeconds
+                    || key.bucketStart < from || key.bucketStart > to) {
+                continue;
+            }
+            MetricAggregate[] aggregates = target.apply(key.bucketStart);
+            MetricAggregate[] partial = e.getValue();
+            synchronized (partial) {
+                for (int m = 0; m < MetricValues.COUNT; m++) {
+                    aggregates[m].merge(partial[m]);
+                }
+            }
+        }
+    }
+
+    private void requeue(Map<BucketKey, MetricAggregate[]> batch) {
+        pendingLock.readLock().lock();
+        try {
+            for (Map.Entry<BucketKey, MetricAggregate[]> e : batch.entrySet()) {
+                MetricAggregate[] aggregates = pending.computeIfAbsent(e.getKey(), k -> newAggregates());
+                synchronized (aggregates) {
+                    for (int m = 0; m < MetricValues.COUNT; m++) {
+                        aggregates[m].merge(e.getValue()[m]);
+                    }
+                }
+            }
+        } finally {
+            pendingLock.readLock().unlock();
+        }
+    }
+
+    private static List<MetricRollup> toRollups(Map<BucketKey, MetricAggregate[]> batch) {
+        List<MetricRollup> rollups = new ArrayList<>();
+        for (Map.Entry<BucketKey, MetricAggregate[]> e : batch.entrySet()) {
+            BucketKey key = e.getKey();
+            MetricAggregate[] aggregates = e.getValue();
+            for (int m = 0; m < MetricValues.COUNT; m++) {
+                MetricAggregate aggregate = aggregates[m];
+                if (aggregate.isEmpty()) {
+                    continue;
+                }
+                MetricRollup rollup = new MetricRollup();
+                rollup.setServerId(key.serverId);
+                rollup.setResolutionSeconds(key.resolutionSeconds);
+                rollup.setMetricId(m);
+                rollup.setBucketStart(MetricTime.toDateTime(key.bucketStart));
+                rollup.setMinValue(aggregate.getMin());
+                rollup.setMaxValue(aggregate.getMax());
+                rollup.setSumValue(aggregate.getSum());
+                rollup.setSampleCount(aggregate.getCount());
+                rollup.setLastValue(aggregate.getLast());
+                rollup.setLastAt(MetricTime.toDateTime(aggregate.getLastAt()));
+                rollups.add(rollup);
+            }
+        }
+        return rollups;
+    }
+
+    private static List<ServerMetrics> toSeries(Long serverId, TreeMap<Long, MetricAggregate[]> buckets) {
+        List<ServerMetrics> series = new ArrayList<>(buckets.size());
+        for (Map.Entry<Long, MetricAggregate[]> e : buckets.descendingMap().entrySet()) {
+            ServerMetrics point = new ServerMetrics(serverId);
+            point.setCollectedAt(MetricTime.toDateTime(e.getKey()));
+            double[] averages = new double[MetricValues.COUNT];
+            for (int m = 0; m < MetricValues.COUNT; m++) {
+                averages[m] = e.getValue()[m].getAverage();
+            }
+            MetricValues.apply(point, averages);
+            series.add(point);
+        }
+        return series;
+    }
+
+    private static MetricAggregate[] bucketFor(Map<Long, MetricAggregate[]> buckets, long bucketStart) {
+        return buckets.computeIfAbsent(bucketStart, k -> newAggregates());
+    }
+
+    private static MetricAggregate[] newAggregates() {
+        MetricAggregate[] aggregates = new MetricAggregate[MetricValues.COUNT];
+        for (int m = 0; m < MetricValues.COUNT; m++) {
+            aggregates[m] = new MetricAggregate();
+        }
+        return aggregates;
+    }
+
+    private int retentionDays(Resolution resolution) {
+        return switch (resolution) {
+            case ONE_MINUTE -> retentionDaysOneMinute;
+            case FIVE_MINUTES -> retentionDaysFiveMinutes;
+            case ONE_HOUR -> retentionDaysOneHour;
+        };
+    }
+
+    /**
+     * Round a step up to a whole number of resolution buckets.
+     */
+    private static long alignStep(long stepSeconds, int resolutionSeconds) {
+        return Math.max(1, (stepSeconds + resolutionSeconds - 1) / resolutionSeconds) * resolutionSeconds;
+    }
+
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+
+    private static double orZero(Double value) {
+        return value != null ? value : 0;
+    }
+}
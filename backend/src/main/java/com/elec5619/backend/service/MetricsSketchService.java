@@ -0,0 +1,327 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsPercentileSummaryDto;
+import com.elec5619.backend.entity.MetricSketch;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.repository.MetricSketchRepository;
+import com.elec5619.backend.util.MetricTime;
+import com.elec5619.backend.util.MetricValues;
+import com.elec5619.backend.util.QuantileSketch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maintains a quantile sketch per server, metric and time bucket as samples are ingested.
+ * Sketches are collected in memory and periodically merged into the sketch table next to
+ * the rollups. Percentile summaries over any window, any set of servers or a project merge
+ * the stored and pending sketches of the window, so p50/p95/p99 cost one read of a few
+ * hundred small rows instead of a scan of the raw samples.
+ */
+@Service
+public class MetricsSketchService implements MetricsIngestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsSketchService.class);
+
+    private final MetricSketchRepository sketchRepository;
+
+    @Value("${app.metrics.sketch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.metrics.sketch.metrics:cpu_usage,memory_usage,load_avg}")
+    private String metricNames;
+
+    @Value("${app.metrics.sketch.bucket-minutes:60}")
+    private int bucketMinutes;
+
+    @Value("${app.metrics.sketch.retention-days:365}")
+    private int retentionDays;
+
+    private int[] metrics = new int[0];
+    private final ReadWriteLock pendingLock = new ReentrantReadWriteLock();
+    private volatile Map<BucketKey, QuantileSketch> pending = new ConcurrentHashMap<>();
+
+    public MetricsSketchService(MetricSketchRepository sketchRepository) {
+        this.sketchRepository = sketchRepository;
+    }
+
+    /**
+     * Identifies the sketch of one metric of one server in one bucket.
+     */
+    private static final class BucketKey {
+        final long serverId;
+        final int metricId;
+        final long bucketStart;
+
+        BucketKey(long serverId, int metricId, long bucketStart) {
+            this.serverId = serverId;
+            this.metricId = metricId;
+            this.bucketStart = bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BucketKey other)) return false;
+            return serverId == other.serverId && metricId == other.metricId && bucketStart == other.bucketStart;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serverId, metricId, bucketStart);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        Set<Integer> resolved = new LinkedHashSet<>();
+        for (String name : metricNames.split(",")) {
+            int metric = MetricValues.indexOf(name.trim());
+            if (metric < 0) {
+                logger.warn("Ignoring unknown metric '{}' in app.metrics.sketch.metrics", name);
+                continue;
+            }
+            resolved.add(metric);
+        }
+        metrics = resolved.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public void onMetricsIngested(List<ServerMetrics> samples) {
+        if (!enabled || metrics.length == 0) {
+            return;
+        }
+        long bucketMillis = bucketMillis();
+        pendingLock.readLock().lock();
+        try {
+            for (ServerMetrics sample : samples) {
+                if (sample == null || sample.getServerId() == null || sample.getCollectedAt() == null) {
+                    continue;
+                }
+                long bucketStart = MetricTime.floor(MetricTime.toMillis(sample.getCollectedAt()), bucketMillis);
+                double[] values = MetricValues.toArray(sample);
+                for (int metric : metrics) {
+                    if (Double.isNaN(values[metric])) {
+                        continue;
+                    }
+                    QuantileSketch sketch = pending.computeIfAbsent(
+                            new BucketKey(sample.getServerId(), metric, bucketStart), k -> new QuantileSketch());
+                    synchronized (sketch) {
+                        sketch.add(values[metric]);
+                    }
+                }
+            }
+        } finally {
+            pendingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merge pending sketches into the sketch table.
+     */
+    @Scheduled(fixedDelayString = "${app.metrics.sketch.flush-interval-ms:60000}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+        Map<BucketKey, QuantileSketch> batch;
+        pendingLock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            pendingLock.writeLock().unlock();
+        }
+        try {
+            sketchRepository.saveAll(mergeWithStored(batch));
+        } catch (Exception e) {
+            logger.warn("Failed to flush {} metric sketches, will retry: {}", batch.size(), e.getMessage());
+            requeue(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Delete sketches beyond the retention.
+     */
+    @Scheduled(cron = "0 40 3 * * *") // Every day at 03:40
+    public void cleanupExpiredSketches() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int deleted = sketchRepository.deleteByBucketStartBefore(LocalDateTime.now().minusDays(retentionDays));
+            if (deleted > 0) {
+                logger.info("Deleted {} expired metric sketches", deleted);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to clean up metric sketches: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Estimate p50/p95/p99 of each sketched metric over the window for the given servers.
+     * The window is widened to the buckets it touches.
+     */
+    public MetricsPercentileSummaryDto getPercentiles(Collection<Long> serverIds, LocalDateTime startTime,
+                                                      LocalDateTime endTime) {
+        MetricsPercentileSummaryDto dto = new MetricsPercentileSummaryDto();
+        dto.setServerIds(new ArrayList<>(serverIds));
+        dto.setStartTime(startTime);
+        dto.setEndTime(endTime);
+        dto.setBucketMinutes(bucketMinutes);
+        dto.setRelativeAccuracy(QuantileSketch.RELATIVE_ACCURACY);
+
+        Map<Integer, QuantileSketch> merged = new HashMap<>();
+        for (int metric : metrics) {
+            merged.put(metric, new QuantileSketch());
+        }
+        if (enabled && !serverIds.isEmpty() && metrics.length > 0) {
+            long from = MetricTime.floor(MetricTime.toMillis(startTime), bucketMillis());
+            long to = MetricTime.toMillis(endTime);
+            for (MetricSketch row : sketchRepository.findInRange(serverIds, merged.keySet(),
+                    MetricTime.toDateTime(from), endTime)) {
+                merged.get(row.getMetricId()).merge(decode(row));
+            }
+            // Include sketches not yet flushed to the table
+            Set<Long> servers = new HashSet<>(serverIds);
+            pendingLock.readLock().lock();
+            try {
+                for (Map.Entry<BucketKey, QuantileSketch> e : pending.entrySet()) {
+                    BucketKey key = e.getKey();
+                    QuantileSketch target = merged.get(key.metricId);
+                    if (target == null || !servers.contains(key.serverId) || key.bucketStart < from || key.bucketStart > to) {
+                        continue;
+                    }
+                    synchronized (e.getValue()) {
+                        target.merge(e.getValue());
+                    }
+                }
+            } finally {
+                pendingLock.readLock().unlock();
+            }
+        }
+
+        for (int metric : metrics) {
+            QuantileSketch sketch = merged.get(metric);
+            MetricsPercentileSummaryDto.MetricPercentiles percentiles = new MetricsPercentileSummaryDto.MetricPercentiles();
+            percentiles.setMetric(MetricValues.NAMES[metric]);
+            percentiles.setCount(sketch.getCount());
+            if (!sketch.isEmpty()) {
+                percentiles.setMin(sketch.getMin());
+                percentiles.setMax(sketch.getMax());
+                percentiles.setP50(sketch.quantile(0.50));
+                percentiles.setP95(sketch.quantile(0.95));
+                percentiles.setP99(sketch.quantile(0.99));
+            }
+            dto.getMetrics().add(percentiles);
+        }
+        return dto;
+    }
+
+    /**
+     * Drop the pending and stored sketches of a server, e.g. when the server is deleted.
+     */
+    public void evict(Long serverId) {
+        if (serverId == null) {
+            return;
+        }
+        pending.keySet().removeIf(key -> key.serverId == serverId);
+        try {
+            sketchRepository.deleteByServerId(serverId);
+        } catch (Exception e) {
+            logger.error("Failed to delete metric sketches of server {}: {}", serverId, e.getMessage());
+        }
+    }
+
+    // ======= Internal =======
+
+    private long bucketMillis() {
+        return Math.max(1, bucketMinutes) * 60_000L;
+    }
+
+    private List<MetricSketch> mergeWithStored(Map<BucketKey, QuantileSketch> batch) {
+        Set<Long> serverIds = new HashSet<>();
+        Set<LocalDateTime> bucketStarts = new HashSet<>();
+        for (BucketKey key : batch.keySet()) {
+            serverIds.add(key.serverId);
+            bucketStarts.add(MetricTime.toDateTime(key.bucketStart));
+        }
+        Map<BucketKey, MetricSketch> stored = new HashMap<>();
+        for (MetricSketch row : sketchRepository.findByServerIdInAndBucketStartIn(serverIds, bucketStarts)) {
+            stored.put(new BucketKey(row.getServerId(), row.getMetricId(), MetricTime.toMillis(row.getBucketStart())), row);
+        }
+
+        List<MetricSketch> rows = new ArrayList<>(batch.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<BucketKey, QuantileSketch> e : batch.entrySet()) {
+            BucketKey key = e.getKey();
+            QuantileSketch sketch = new QuantileSketch();
+            synchronized (e.getValue()) {
+                sketch.merge(e.getValue());
+            }
+            MetricSketch row = stored.get(key);
+            if (row == null) {
+                row = new MetricSketch();
+                row.setServerId(key.serverId);
+                row.setMetricId(key.metricId);
+                row.setBucketStart(MetricTime.toDateTime(key.bucketStart));
+            } else {
+                sketch.merge(decode(row));
+            }
+            row.setSampleCount(sketch.getCount());
+            row.setData(sketch.toByteArray());
+            row.setUpdatedAt(now);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private void requeue(Map<BucketKey, QuantileSketch> batch) {
+        pendingLock.readLock().lock();
+        try {
+            for (Map.Entry<BucketKey, QuantileSketch> e : batch.entrySet()) {
+                QuantileSketch sketch = pending.computeIfAbsent(e.getKey(), k -> new QuantileSketch());
+                synchronized (sketch) {
+                    sketch.merge(e.getValue());
+                }
+            }
+        } finally {
+            pendingLock.readLock().unlock();
+        }
+    }
+
+    private static QuantileSketch decode(MetricSketch row) {
+        try {
+            return QuantileSketch.fromByteArray(row.getData());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Skipping unreadable metric sketch {}: {}", row, e.getMessage());
+            return new QuantileSketch();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsRankedServerDto;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.entity.ServerStatus;
+import com.elec5619.backend.entity.converter.ServerStatusConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Fleet-wide top-K and bottom-K rankings of servers by the latest value of a metric.
+ * Rankings are computed entirely in memory: the latest samples come from the last-value
+ * cache, and the server names, statuses and project memberships used for scoping come
+ * from a small directory reloaded in the background. A ranking keeps at most K candidates
+ * in a bounded heap while it scans the snapshot once, so its cost is linear in the number
+ * of servers in scope and independent of the metrics history.
+ *
+ * Servers created or moved since the last directory reload are ranked without a name and
+ * are only matched by status or project after the next reload.
+ */
+@Service
+public class MetricsTopKService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsTopKService.class);
+
+    private static final String SERVERS_SQL = "SELECT id, server_name, status FROM servers";
+
+    private static final String PROJECT_SERVERS_SQL = "SELECT project_id, server_id FROM project_servers";
+
+    private static final long[] NO_SERVERS = new long[0];
+
+    private final MetricsLastValueCache lastValueCache;
+    private final MetricRegistry metricRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final ServerStatusConverter statusConverter = new ServerStatusConverter();
+
+    @Value("${app.metrics.top-k.max-k:100}")
+    private int maxK;
+
+    private volatile Map<Long, ServerEntry> servers = Map.of();
+    private volatile Map<Long, long[]> projectServers = Map.of();
+
+    public MetricsTopKService(MetricsLastValueCache lastValueCache, MetricRegistry metricRegistry,
+                              JdbcTemplate jdbcTemplate) {
+        this.lastValueCache = lastValueCache;
+        this.metricRegistry = metricRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Name and status of a server as of the last directory reload.
+     */
+    private static final class ServerEntry {
+        final String name;
+        final ServerStatus status;
+
+        ServerEntry(String name, ServerStatus status) {
+            this.name = name;
+            this.status = status;
+        }
+    }
+
+    /**
+     * A server kept in the heap with its metric value.
+     */
+    private static final class Candidate {
+        final double value;
+        final ServerMetrics sample;
+
+        Candidate(double value, ServerMetrics sample) {
+            this.value = value;
+            this.sample = sample;
+        }
+    }
+
+    /**
+     * Reload the server directory used to scope rankings by status and project.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.metrics.top-k.refresh-interval-ms:30000}",
+            initialDelayString = "${app.metrics.top-k.refresh-interval-ms:30000}")
+    public void refresh() {
+        try {
+            Map<Long, ServerEntry> loadedServers = new HashMap<>();
+            jdbcTemplate.query(SERVERS_SQL, (RowCallbackHandler) rs -> loadedServers.put(rs.getLong(1),
+                    new ServerEntry(rs.getString(2), statusConverter.convertToEntityAttribute(rs.getString(3)))));
+
+            Map<Long, List<Long>> members = new HashMap<>();
+            jdbcTemplate.query(PROJECT_SERVERS_SQL, (RowCallbackHandler) rs ->
+                    members.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getLong(2)));
+            Map<Long, long[]> loadedProjects = new HashMap<>();
+            members.forEach((projectId, ids) -> loadedProjects.put(projectId,
+                    ids.stream().mapToLong(Long::longValue).toArray()));
+
+            servers = loadedServers;
+            projectServers = loadedProjects;
+        } catch (Exception e) {
+            logger.warn("Failed to reload server directory for top-K queries: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rank servers by the latest value of a metric, best first. Servers without a cached
+     * sample or without a value for the metric are skipped; ties are broken by server ID.
+     *
+     * @param metric    built-in or registered custom metric name
+     * @param k         maximum number of servers to return
+     * @param highest   true for the K highest values, false for the K lowest
+     * @param projectId only rank servers of this project, if not null
+     * @param status    only rank servers with this status, if not null
+     * @throws IllegalArgumentException if the metric is unknown or K is out of range
+     */
+    public List<MetricsRankedServerDto> rank(String metric, int k, boolean highest, Long projectId,
+                                             ServerStatus status) {
+        int metricId = metricRegistry.resolve(metric);
+        if (metricId < 0) {
+            throw new IllegalArgumentException("Unknown metric: " + metric);
+        }
+        if (k < 1 || k > maxK) {
+            throw new IllegalArgumentException("k must be between 1 and " + maxK);
+        }
+
+        // The root of the heap is the weakest candidate kept so far
+        Comparator<Candidate> weakestFirst = (a, b) -> {
+            int byValue = highest ? Double.compare(a.value, b.value) : Double.compare(b.value, a.value);
+            return byValue != 0 ? byValue : Long.compare(b.sample.getServerId(), a.sample.getServerId());
+        };
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(k + 1, weakestFirst);
+        Map<Long, ServerEntry> directory = servers;
+        Map<Long, ServerMetrics> latest = lastValueCache.snapshot();
+        if (projectId != null) {
+            for (long serverId : projectServers.getOrDefault(projectId, NO_SERVERS)) {
+                offer(heap, k, highest, latest.get(serverId), metricId, status, directory);
+            }
+        } else {
+            for (ServerMetrics sample : latest.values()) {
+                offer(heap, k, highest, sample, metricId, status, directory);
+            }
+        }
+
+        Candidate[] ranked = heap.toArray(new Candidate[0]);
+        Arrays.sort(ranked, weakestFirst.reversed());
+        List<MetricsRankedServerDto> result = new ArrayList<>(ranked.length);
+        for (Candidate candidate : ranked) {
+            ServerEntry entry = directory.get(candidate.sample.getServerId());
+            MetricsRankedServerDto dto = new MetricsRankedServerDto();
+            dto.setRank(result.size() + 1);
+            dto.setServerId(candidate.sample.getServerId());
+            dto.setServerName(entry != null ? entry.name : null);
+            dto.setStatus(entry != null ? entry.status : null);
+            dto.setValue(candidate.value);
+            dto.setCollectedAt(candidate.sample.getCollectedAt());
+            result.add(dto);
+        }
+        return result;
+    }
+
+    // ======= Internal =======
+
+    private static void offer(PriorityQueue<Candidate> heap, int k, boolean highest, ServerMetrics sample,
+                              int metricId, ServerStatus status, Map<Long, ServerEntry> directory) {
+        if (sample == null) {
+            return;
+        }
+        Double value = sample.getMetricValue(metricId);
+        if (value == null || value.isNaN()) {
+            return;
+        }
+        if (status != null) {
+            ServerEntry entry = directory.get(sample.getServerId());
+            if (entry == null || entry.status != status) {
+                return;
+            }
+        }
+        if (heap.size() == k) {
+            // Only allocate a candidate when it beats the weakest one kept
+            Candidate weakest = heap.peek();
+            int byValue = highest ? Double.compare(value, weakest.value) : Double.compare(weakest.value, value);
+            if (byValue < 0 || (byValue == 0 && sample.getServerId() > weakest.sample.getServerId())) {
+                return;
+            }
+            heap.poll();
+        }
+        heap.add(new Candidate(value, sample));
+    }
+}
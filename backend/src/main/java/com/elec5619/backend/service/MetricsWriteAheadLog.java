@@ -0,0 +1,584 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.util.MetricTime;
+import com.elec5619.backend.util.MetricValues;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segment-rotated write-ahead log for accepted metrics samples.
+ * Samples are appended to local disk before they are written to the database,
+ * so a database stall spills to disk instead of dropping data. The database writer
+ * reads records back from the last checkpoint, and unflushed segments are therefore
+ * replayed automatically after a restart.
+ *
+ * Record layout: [int payloadLength][int crc32][payload], where the payload is
+ * a version byte, serverId, collectedAt (epoch millis, UTC), a presence bitmask
+ * and one double per present metric. Version 2 records append the custom metrics
+ * as a short count followed by (int metric ID, double value) pairs.
+ */
+@Component
+public class MetricsWriteAheadLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsWriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int HEADER_BYTES = 8;
+    private static final byte RECORD_VERSION = 1;
+    private static final byte RECORD_VERSION_CUSTOM = 2;
+    private static final int METRIC_COUNT = 7;
+    private static final int MAX_PAYLOAD_BYTES = 1 + 8 + 8 + 1 + 8 * METRIC_COUNT
+            + 2 + 12 * MetricValues.MAX_CUSTOM_PER_SAMPLE;
+    private static final int READ_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * When appended records are forced to stable storage.
+     */
+    public enum FsyncPolicy {
+        /** fsync after every append; no accepted sample is lost on power failure */
+        ALWAYS,
+        /** fsync periodically in the background; bounded loss window */
+        INTERVAL,
+        /** leave flushing to the operating system */
+        NONE
+    }
+
+    @Value("${app.metrics.wal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.metrics.wal.dir:data/metrics-wal}")
+    private String directory;
+
+    @Value("${app.metrics.wal.segment-size-bytes:67108864}")
+    private long segmentSizeBytes;
+
+    @Value("${app.metrics.wal.fsync-policy:INTERVAL}")
+    private FsyncPolicy fsyncPolicy;
+
+    @Value("${app.metrics.wal.fsync-interval-ms:1000}")
+    private long fsyncIntervalMs;
+
+    @Value("${app.metrics.wal.max-pending-bytes:1073741824}")
+    private long maxPendingBytes;
+
+    private Path dir;
+    private FileChannel activeChannel;
+    private long activeSegment;
+    private long activeOffset;
+    private boolean dirty;
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocate(HEADER_BYTES + MAX_PAYLOAD_BYTES);
+    private final CRC32 encodeCrc = new CRC32();
+    // segment index -> valid length in bytes
+    private final ConcurrentSkipListMap<Long, Long> segmentSizes = new ConcurrentSkipListMap<>();
+    private volatile Position checkpoint = new Position(0, 0);
+    private ScheduledExecutorService syncExecutor;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        checkpoint = readCheckpoint();
+
+        List<Long> segments = listSegments();
+        for (Long segment : segments) {
+            segmentSizes.put(segment, Files.size(segmentPath(segment)));
+        }
+        long nextSegment = checkpoint.getSegment();
+        if (!segments.isEmpty()) {
+            // Only the last segment can have been torn by a crash
+            long last = segments.get(segments.size() - 1);
+            long size = segmentSizes.get(last);
+            long valid = scanValidLength(last, size);
+            if (valid < size) {
+                logger.warn("Truncating torn tail of WAL segment {} from {} to {} bytes", last, size, valid);
+                try (FileChannel channel = FileChannel.open(segmentPath(last), StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+                segmentSizes.put(last, valid);
+            }
+            nextSegment = Math.max(nextSegment, last + 1);
+        }
+        openSegment(nextSegment);
+
+        long pending = pendingBytes();
+        if (pending > 0) {
+            logger.info("Metrics WAL has {} unflushed bytes in {} segments, replaying from {}",
+                    pending, segmentSizes.size() - 1, checkpoint);
+        }
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "metrics-wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncExecutor.scheduleWithFixedDelay(this::syncQuietly, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Opened metrics WAL at {} (fsync={}, segmentSize={})", dir.toAbsolutePath(), fsyncPolicy, segmentSizeBytes);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+        }
+        if (activeChannel != null) {
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                activeChannel.force(false);
+            }
+            activeChannel.close();
+            activeChannel = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Append a sample to the log, forcing it to disk according to the fsync policy.
+     */
+    public synchronized void append(ServerMetrics metrics) throws IOException {
+        writeRecord(metrics);
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            activeChannel.force(false);
+            dirty = false;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Append several samples with a single fsync.
+     */
+    public synchronized void appendAll(List<ServerMetrics> samples) throws IOException {
+        for (ServerMetrics metrics : samples) {
+            writeRecord(metrics);
+        }
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            activeChannel.force(false);
+            dirty = false;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Wait until records beyond the given position are available.
+     *
+     * @return true if there is data to read after {@code from}
+     */
+    public synchronized boolean awaitAppend(Position from, long timeoutMs) throws InterruptedException {
+        if (!endPosition().isAfter(from)) {
+            wait(timeoutMs);
+        }
+        return endPosition().isAfter(from);
+    }
+
+    /**
+     * Position up to which records have been written to the database.
+     */
+    public Position getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Read up to {@code maxRecords} samples starting at {@code from}.
+     */
+    public ReadResult read(Position from, int maxRecords) throws IOException {
+        List<ServerMetrics> records = new ArrayList<>();
+        Position position = from;
+        while (records.size() < maxRecords) {
+            long currentSegment;
+            long currentEnd;
+            synchronized (this) {
+                currentSegment = activeSegment;
+                currentEnd = activeOffset;
+            }
+            Long segment = segmentSizes.ceilingKey(position.getSegment());
+            if (segment == null) {
+                break;
+            }
+            if (segment != position.getSegment()) {
+                position = new Position(segment, 0);
+            }
+            long limit = segment == currentSegment ? currentEnd : segmentSizes.getOrDefault(segment, 0L);
+            if (position.getOffset() >= limit) {
+                if (segment == currentSegment) {
+                    break;
+                }
+                position = new Position(segment + 1, 0);
+                continue;
+            }
+            long end = readRecords(segment, position.getOffset(), limit, maxRecords, records, false);
+            position = new Position(segment, end);
+        }
+        return new ReadResult(records, position);
+    }
+
+    /**
+     * Mark everything before {@code position} as durably written to the database.
+     * Fully flushed segments are deleted.
+     */
+    public void checkpoint(Position position) throws IOException {
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(position.getSegment()).putLong(position.getOffset()).flip();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpoint = position;
+
+        for (Long segment : segmentSizes.headMap(position.getSegment()).keySet()) {
+            Files.deleteIfExists(segmentPath(segment));
+            segmentSizes.remove(segment);
+        }
+    }
+
+    /**
+     * Bytes written to the log but not yet checkpointed.
+     */
+    public long pendingBytes() {
+        if (!enabled) {
+            return 0;
+        }
+        Position from = checkpoint;
+        long pending = 0;
+        for (Map.Entry<Long, Long> entry : segmentSizes.tailMap(from.getSegment()).entrySet()) {
+            pending += entry.getValue();
+        }
+        if (segmentSizes.containsKey(from.getSegment())) {
+            pending -= from.getOffset();
+        }
+        return Math.max(0, pending);
+    }
+
+    /**
+     * Cap on the bytes not yet checkpointed, 0 for none.
+     */
+    public long getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    /**
+     * Whether the backlog not yet written to the database has reached its cap, so
+     * new samples must be refused until the writer catches up.
+     */
+    public boolean isFull() {
+        return enabled && maxPendingBytes > 0 && pendingBytes() >= maxPendingBytes;
+    }
+
+    /**
+     * Number of segment files currently on disk.
+     */
+    public int segmentCount() {
+        return segmentSizes.size();
+    }
+
+    // ======= Internal =======
+
+    private void writeRecord(ServerMetrics metrics) throws IOException {
+        encodeBuffer.clear();
+        encodeBuffer.position(HEADER_BYTES);
+        encodePayload(metrics, encodeBuffer);
+        int payloadLength = encodeBuffer.position() - HEADER_BYTES;
+        encodeCrc.reset();
+        encodeCrc.update(encodeBuffer.array(), HEADER_BYTES, payloadLength);
+        encodeBuffer.putInt(0, payloadLength);
+        encodeBuffer.putInt(4, (int) encodeCrc.getValue());
+        encodeBuffer.flip();
+
+        int recordLength = encodeBuffer.remaining();
+        if (activeOffset > 0 && activeOffset + recordLength > segmentSizeBytes) {
+            rotate();
+        }
+        long position = activeOffset;
+        while (encodeBuffer.hasRemaining()) {
+            position += activeChannel.write(encodeBuffer, position);
+        }
+        activeOffset = position;
+        segmentSizes.put(activeSegment, activeOffset);
+        dirty = true;
+    }
+
+    private void rotate() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NONE) {
+            activeChannel.force(false);
+        }
+        activeChannel.close();
+        openSegment(activeSegment + 1);
+    }
+
+    private void openSegment(long segment) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activeSegment = segment;
+        activeOffset = activeChannel.size();
+        segmentSizes.put(segment, activeOffset);
+        dirty = false;
+    }
+
+    private synchronized void syncQuietly() {
+        if (!dirty || activeChannel == null) {
+            return;
+        }
+        try {
+            activeChannel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            logger.error("Failed to fsync metrics WAL: {}", e.getMessage());
+        }
+    }
+
+    private synchronized Position endPosition() {
+        return new Position(activeSegment, activeOffset);
+    }
+
+    /**
+     * Decode records from one segment between {@code from} and {@code limit}.
+     * A corrupt record either ends the scan at that record ({@code stopAtCorruption})
+     * or skips the rest of the segment so the writer cannot stall on it.
+     *
+     * @return the offset just after the last decoded record
+     */
+    private long readRecords(long segment, long from, long limit, int maxRecords, List<ServerMetrics> out,
+                             boolean stopAtCorruption) throws IOException {
+        long offset = from;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_CHUNK_BYTES, limit - from));
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            while (offset < limit && out.size() < maxRecords) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), limit - offset));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                int consumed = 0;
+                while (buffer.remaining() >= HEADER_BYTES && out.size() < maxRecords) {
+                    int start = buffer.position();
+                    int length = buffer.getInt();
+                    int expectedCrc = buffer.getInt();
+                    if (length <= 0 || length > MAX_PAYLOAD_BYTES) {
+                        return corruptRecord(segment, offset + start, limit, stopAtCorruption);
+                    }
+                    if (buffer.remaining() < length) {
+                        buffer.position(start);
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(buffer.array(), buffer.position(), length);
+                    if ((int) crc.getValue() != expectedCrc) {
+                        return corruptRecord(segment, offset + start, limit, stopAtCorruption);
+                    }
+                    int payloadEnd = buffer.position() + length;
+                    out.add(decodePayload(buffer));
+                    buffer.position(payloadEnd);
+                    consumed = payloadEnd;
+                }
+                if (consumed == 0) {
+                    break;
+                }
+                offset += consumed;
+            }
+        }
+        return offset;
+    }
+
+    private long corruptRecord(long segment, long offset, long limit, boolean stopAtCorruption) {
+        if (stopAtCorruption) {
+            return offset;
+        }
+        logger.error("Corrupt record in WAL segment {} at offset {}, skipping rest of segment", segment, offset);
+        return limit;
+    }
+
+    /**
+     * Length of the valid prefix of a segment, i.e. up to the first torn or corrupt record.
+     */
+    private long scanValidLength(long segment, long size) throws IOException {
+        List<ServerMetrics> sink = new ArrayList<>();
+        long offset = 0;
+        while (offset < size) {
+            sink.clear();
+            long next = readRecords(segment, offset, size, 10_000, sink, true);
+            if (next <= offset) {
+                return offset;
+            }
+            offset = next;
+        }
+        return offset;
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path path = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return new Position(0, 0);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < 16) {
+            logger.warn("Ignoring malformed WAL checkpoint file {}", path);
+            return new Position(0, 0);
+        }
+        return new Position(buffer.getLong(), buffer.getLong());
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static void encodePayload(ServerMetrics metrics, ByteBuffer buffer) {
+        Double[] values = {
+                metrics.getCpuUsage(), metrics.getMemoryUsage(), metrics.getDiskUsage(),
+                metrics.getNetworkIn(), metrics.getNetworkOut(), metrics.getLoadAvg(), metrics.getTemperature()
+        };
+        byte mask = 0;
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            if (values[i] != null) {
+                mask |= (byte) (1 << i);
+            }
+        }
+        int customCount = metrics.getCustomMetricCount();
+        buffer.put(customCount > 0 ? RECORD_VERSION_CUSTOM : RECORD_VERSION);
+        buffer.putLong(metrics.getServerId());
+        buffer.putLong(MetricTime.toMillis(metrics.getCollectedAt()));
+        buffer.put(mask);
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            if (values[i] != null) {
+                buffer.putDouble(values[i]);
+            }
+        }
+        if (customCount > 0) {
+            buffer.putShort((short) customCount);
+            for (int i = 0; i < customCount; i++) {
+                buffer.putInt(metrics.getCustomMetricIds()[i]);
+                buffer.putDouble(metrics.getCustomMetricValues()[i]);
+            }
+        }
+    }
+
+    private static ServerMetrics decodePayload(ByteBuffer buffer) {
+        byte version = buffer.get();
+        ServerMetrics metrics = new ServerMetrics(buffer.getLong());
+        metrics.setCollectedAt(MetricTime.toDateTime(buffer.getLong()));
+        byte mask = buffer.get();
+        Double[] values = new Double[METRIC_COUNT];
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            if ((mask & (1 << i)) != 0) {
+                values[i] = buffer.getDouble();
+            }
+        }
+        metrics.setCpuUsage(values[0]);
+        metrics.setMemoryUsage(values[1]);
+        metrics.setDiskUsage(values[2]);
+        metrics.setNetworkIn(values[3]);
+        metrics.setNetworkOut(values[4]);
+        metrics.setLoadAvg(values[5]);
+        metrics.setTemperature(values[6]);
+        if (version >= RECORD_VERSION_CUSTOM) {
+            int customCount = Short.toUnsignedInt(buffer.getShort());
+            int[] customIds = new int[customCount];
+            double[] customValues = new double[customCount];
+            for (int i = 0; i < customCount; i++) {
+                customIds[i] = buffer.getInt();
+                customValues[i] = buffer.getDouble();
+            }
+            metrics.setCustomMetrics(customIds, customValues);
+        }
+        return metrics;
+    }
+
+    /**
+     * Position in the log: segment index and byte offset within the segment.
+     */
+    public static final class Position {
+
+        private final long segment;
+        private final long offset;
+
+        public Position(long segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        public long getSegment() {
+            return segment;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public boolean isAfter(Position other) {
+            return segment > other.segment || (segment == other.segment && offset > other.offset);
+        }
+
+        @Override
+        public String toString() {
+            return segment + ":" + offset;
+        }
+    }
+
+    /**
+     * Samples read from the log and the position just after the last one.
+     */
+    public static final class ReadResult {
+
+        private final List<ServerMetrics> records;
+        private final Position end;
+
+        public ReadResult(List<ServerMetrics> records, Position end) {
+            this.records = records;
+            this.end = end;
+        }
+
+        public List<ServerMetrics> getRecords() {
+            return records;
+        }
+
+        public Position getEnd() {
+            return end;
+        }
+    }
+}
@@ -64,6 +64,7 @@ public class ProjectService {
             p.setServers(servers);
         }
         p.setDuration(dto.getDuration());
+        p.setMetricsRetentionDays(dto.getMetricsRetentionDays());
         p.setStatus(ProjectStatus.PLANNED);
         
         // 先验证所有用户ID是否存在，如果任何一个不存在则抛出异常
@@ -121,6 +122,7 @@ public class ProjectService {
                 p.setServers(servers);
             }
             if (dto.getDuration() != null) p.setDuration(dto.getDuration());
+            if (dto.getMetricsRetentionDays() != null) p.setMetricsRetentionDays(dto.getMetricsRetentionDays());
             Project saved = projectRepository.save(p);
             return toResponse(saved);
         });
@@ -243,6 +245,7 @@ public class ProjectService {
         }
         
         dto.setDuration(p.getDuration());
+        dto.setMetricsRetentionDays(p.getMetricsRetentionDays());
         dto.setCreatedAt(p.getCreatedAt());
         dto.setUpdatedAt(p.getUpdatedAt());
         return dto;
@@ -1,18 +1,46 @@
 package com.elec5619.backend.service;
 
+import com.elec5619.backend.dto.AlertEvaluationStatsDto;
+import com.elec5619.backend.dto.MetricsBatchResultDto;
+import com.elec5619.backend.dto.MetricsHotTierStatsDto;
+import com.elec5619.backend.dto.MetricsIngestStatsDto;
+import com.elec5619.backend.dto.MetricsLastValueCacheStatsDto;
+import com.elec5619.backend.dto.MetricsPercentileSummaryDto;
+import com.elec5619.backend.dto.MetricsQueryDto;
+import com.elec5619.backend.dto.MetricsRangeCacheStatsDto;
+import com.elec5619.backend.dto.MetricsRankedServerDto;
+import com.elec5619.backend.dto.MetricsSeriesDto;
 import com.elec5619.backend.entity.Server;
 import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.entity.ServerStatus;
+import com.elec5619.backend.repository.ProjectRepository;
 import com.elec5619.backend.repository.ServerMetricsRepository;
 import com.elec5619.backend.repository.ServerRepository;
+import com.elec5619.backend.util.MetricAggregate;
+import com.elec5619.backend.util.MetricTime;
+import com.elec5619.backend.util.MinMaxDownsampler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Service class for managing server metrics.
@@ -21,45 +49,393 @@ import java.util.Optional;
 @Service
 public class ServerMetricsService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ServerMetricsService.class);
+
     @Autowired
     private ServerMetricsRepository serverMetricsRepository;
 
     @Autowired
     private ServerRepository serverRepository;
 
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MetricsIngestionPipeline ingestionPipeline;
+
+    @Autowired
+    private MetricsHotTier hotTier;
+
+    @Autowired
+    private MetricsRollupService rollupService;
+
+    @Autowired
+    private MetricsChunkService chunkService;
+
+    @Autowired
+    private MetricsRetentionService retentionService;
+
+    @Autowired
+    private MetricsLastValueCache lastValueCache;
+
+    @Autowired
+    private MetricsQueryService queryService;
+
+    @Autowired
+    private MetricsSketchService sketchService;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Autowired
+    private MetricsTopKService topKService;
+
+    @Autowired
+    private MetricsAnomalyDetector anomalyDetector;
+
+    @Autowired
+    private MetricsForecastService forecastService;
+
+    @Autowired
+    private MetricsRangeCache rangeCache;
+
+    @Autowired
+    private AlertIngestEvaluator alertEvaluator;
+
+    @Autowired
+    private List<MetricsIngestListener> ingestListeners;
+
+    // Servers found to exist, so accepting a sample is a set lookup; deleting a server evicts it
+    private final Set<Long> knownServers = ConcurrentHashMap.newKeySet();
+
     /**
-     * Save metrics for a server
+     * Save metrics for a server, including its custom metrics
+     *
+     * @throws IllegalArgumentException if the free-form metrics of the sample are invalid
      */
+    @Transactional
     public ServerMetrics saveMetrics(ServerMetrics metrics) {
-        return serverMetricsRepository.save(metrics);
+        metricRegistry.encode(metrics);
+        ServerMetrics saved = serverMetricsRepository.save(metrics);
+        if (saved.getCustomMetricCount() > 0) {
+            serverMetricsRepository.upsertCustomMetrics(Collections.singletonList(saved));
+        }
+        notifyIngested(Collections.singletonList(saved));
+        return saved;
     }
 
     /**
-     * Get the latest metrics for a server
+     * Accept a sample from an agent. When asynchronous ingestion is enabled the
+     * sample is queued for a group-committed write and this returns immediately;
+     * otherwise it is saved synchronously.
+     *
+     * @return true if the sample was accepted, false if the ingestion queue is full
+     * @throws IllegalArgumentException if the server is unknown or the free-form metrics of
+     *                                  the sample are invalid
      */
+    public boolean acceptMetrics(ServerMetrics metrics) {
+        // A sample of an unknown server would fail the whole batch it is group-committed with;
+        // servers with a cached latest sample are known, deleting a server evicts it
+        Long serverId = metrics.getServerId();
+        if (serverId == null || knownServerIds(Collections.singleton(serverId)).isEmpty()) {
+            throw new IllegalArgumentException("Unknown server ID: " + serverId);
+        }
+        if (ingestionPipeline.isAsyncEnabled()) {
+            // Names are interned before queueing, so the writers and listeners only see metric IDs
+            metricRegistry.encode(metrics);
+            if (!ingestionPipeline.offer(metrics)) {
+                return false;
+            }
+            notifyIngested(Collections.singletonList(metrics));
+            return true;
+        }
+        saveMetrics(metrics);
+        return true;
+    }
+
+    /**
+     * Get the servers with the highest or lowest latest value of a metric, optionally
+     * limited to a project or a status, computed from the last-value cache
+     */
+    public List<MetricsRankedServerDto> getTopServers(String metric, int k, boolean highest, Long projectId,
+                                                      ServerStatus status) {
+        return topKService.rank(metric, k, highest, projectId, status);
+    }
+
+    /**
+     * Get the predicted hours until a metric of a server reaches capacity from its recent
+     * trend, or null if no exhaustion is forecast
+     */
+    public Double getHoursToFull(Long serverId, int metricId) {
+        return forecastService.getHoursToFull(serverId, metricId);
+    }
+
+    /**
+     * Get the names of all registered metrics, built-in metrics first
+     */
+    public List<String> getMetricNames() {
+        return metricRegistry.getNames();
+    }
+
+    /**
+     * Get statistics of the asynchronous ingestion pipeline
+     */
+    public MetricsIngestStatsDto getIngestStats() {
+        return ingestionPipeline.getStats();
+    }
+
+    /**
+     * Get statistics of alert evaluation on ingest, including ingest-to-alert latency
+     */
+    public AlertEvaluationStatsDto getAlertEvaluationStats() {
+        return alertEvaluator.getStats();
+    }
+
+    /**
+     * Get memory usage of the in-memory hot tier of recent metrics
+     */
+    public MetricsHotTierStatsDto getHotTierStats() {
+        return hotTier.getStats();
+    }
+
+    /**
+     * Get size and hit rate of the last-value cache of latest metrics
+     */
+    public MetricsLastValueCacheStatsDto getLastValueCacheStats() {
+        return lastValueCache.getStats();
+    }
+
+    /**
+     * Get size and hit/miss counters of the result cache of stepped range queries
+     */
+    public MetricsRangeCacheStatsDto getRangeCacheStats() {
+        return rangeCache.getStats();
+    }
+
+    /**
+     * Drop the recent metrics held in memory and the compressed history of a server
+     */
+    public void evictServer(Long serverId) {
+        knownServers.remove(serverId);
+        lastValueCache.evict(serverId);
+        hotTier.evict(serverId);
+        chunkService.evict(serverId);
+        sketchService.evict(serverId);
+        anomalyDetector.evict(serverId);
+        forecastService.evict(serverId);
+        rangeCache.evict(serverId);
+        alertEvaluator.evict(serverId);
+    }
+
+    /**
+     * Validate and save a batch of samples from one or more servers.
+     * Server IDs are checked with a single lookup, and all valid samples are
+     * written with JDBC batch inserts. A null entry denotes a sample that could
+     * not be parsed and is reported as rejected.
+     */
+    @Transactional
+    public MetricsBatchResultDto saveMetricsBatch(List<ServerMetrics> samples) {
+        MetricsBatchResultDto result = new MetricsBatchResultDto();
+        Set<Long> requestedIds = samples.stream()
+                .filter(Objects::nonNull)
+                .map(ServerMetrics::getServerId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<Long> knownIds = knownServerIds(requestedIds);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ServerMetrics> valid = new ArrayList<>(samples.size());
+        for (int i = 0; i < samples.size(); i++) {
+            ServerMetrics sample = samples.get(i);
+            String error = validateSample(sample, knownIds);
+            if (error == null) {
+                if (sample.getCollectedAt() == null) {
+                    sample.setCollectedAt(now);
+                }
+                valid.add(sample);
+            }
+            result.addResult(i, sample != null ? sample.getServerId() : null, error);
+        }
+
+        if (!valid.isEmpty()) {
+            serverMetricsRepository.batchInsert(valid);
+            notifyIngested(valid);
+        }
+        return result;
+    }
+
+    /**
+     * Get the latest metrics for a server, served from the last-value cache or the hot tier
+     * when they hold the server. A database hit is put into the cache.
+     */
+    @Transactional(readOnly = true)
     public Optional<ServerMetrics> getLatestMetrics(Long serverId) {
+        Optional<ServerMetrics> cached = lastValueCache.get(serverId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Optional<ServerMetrics> recent = hotTier.getLatest(serverId);
+        if (recent.isPresent()) {
+            return recent;
+        }
         ServerMetrics metrics = serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(serverId);
+        lastValueCache.put(metrics);
         return Optional.ofNullable(metrics);
     }
 
     /**
-     * Get all metrics for a server with pagination
+     * Get a page of metrics for a server, newest first, using a keyset cursor on (collectedAt, metricId).
+     * Without a cursor the newest page is returned; the next page is requested with the collectedAt and
+     * metricId of the last row, so every page costs the same however deep it is.
      */
-    public List<ServerMetrics> getMetricsForServer(Long serverId, int limit, int offset) {
-        return serverMetricsRepository.findMetricsByServerIdWithPagination(serverId, limit, offset);
+    @Transactional(readOnly = true)
+    public List<ServerMetrics> getMetricsForServer(Long serverId, int limit, LocalDateTime beforeTime, Long beforeId) {
+        if (beforeTime == null) {
+            return serverMetricsRepository.findFirstPageByServerId(serverId, limit);
+        }
+        // A cursor without an ID starts strictly before the given time
+        return serverMetricsRepository.findPageByServerIdBefore(serverId, beforeTime,
+                beforeId != null ? beforeId : Long.MIN_VALUE, limit);
     }
 
     /**
-     * Get metrics for a server within a time range
+     * Get metrics for a server within a time range, served from the hot tier when it covers the range.
+     * The part of the range that has been sealed into compressed chunks is decoded from them.
      */
+    @Transactional(readOnly = true)
     public List<ServerMetrics> getMetricsForServer(Long serverId, LocalDateTime startTime, LocalDateTime endTime) {
+        Optional<List<ServerMetrics>> recent = hotTier.getRange(serverId, startTime, endTime);
+        if (recent.isPresent()) {
+            return recent.get();
+        }
+        LocalDateTime sealedUntil = chunkService.getSealedUntil(serverId);
+        if (sealedUntil != null && startTime.isBefore(sealedUntil)) {
+            List<ServerMetrics> result = new ArrayList<>();
+            if (!endTime.isBefore(sealedUntil)) {
+                result.addAll(getMetricsForServer(serverId, sealedUntil, endTime));
+            }
+            result.addAll(chunkService.getRange(serverId, startTime, endTime, sealedUntil));
+            return result;
+        }
         return serverMetricsRepository.findByServerIdAndCollectedAtBetweenOrderByCollectedAtDesc(
                 serverId, startTime, endTime);
     }
 
+    /**
+     * Get metrics for a server within a time range as averages over step-sized buckets, newest first.
+     * Served from the coarsest rollup tier that satisfies the step, falling back to raw samples.
+     * With a cacheable step, closed buckets come from the range cache and only the rest is computed.
+     */
+    @Transactional(readOnly = true)
+    public List<ServerMetrics> getMetricsForServer(Long serverId, LocalDateTime startTime, LocalDateTime endTime,
+                                                   long stepSeconds) {
+        if (rangeCache.isCacheable(stepSeconds)) {
+            return rangeCache.getSeries(serverId, startTime, endTime, stepSeconds,
+                    (from, to) -> computeSeries(serverId, from, to, stepSeconds));
+        }
+        return computeSeries(serverId, startTime, endTime, stepSeconds);
+    }
+
+    /**
+     * Get the min, max, sum and count of each built-in metric of a server within a time range,
+     * indexed by metric ID. Read from the rollups when they cover the range, falling back to
+     * one pass over the raw samples.
+     */
+    @Transactional(readOnly = true)
+    public MetricAggregate[] getMetricsSummary(Long serverId, LocalDateTime startTime, LocalDateTime endTime) {
+        return rollupService.summarize(serverId, startTime, endTime)
+                .orElseGet(() -> rollupService.summarize(getMetricsForServer(serverId, startTime, endTime)));
+    }
+
+    private List<ServerMetrics> computeSeries(Long serverId, LocalDateTime startTime, LocalDateTime endTime,
+                                              long stepSeconds) {
+        Optional<List<ServerMetrics>> rolledUp = rollupService.getSeries(serverId, startTime, endTime, stepSeconds);
+        if (rolledUp.isPresent()) {
+            return rolledUp.get();
+        }
+        return rollupService.aggregate(serverId, getMetricsForServer(serverId, startTime, endTime), stepSeconds);
+    }
+
+    /**
+     * Get metrics for a server within a time range reduced to at most {@code maxPoints} samples,
+     * newest first, keeping the minimum and maximum of every metric in each of
+     * {@code maxPoints / 2} time buckets so that spikes survive. The samples are read in one
+     * pass from the hot tier, sealed chunks and the database without being collected first.
+     */
+    @Transactional(readOnly = true)
+    public List<ServerMetrics> getDownsampledMetrics(Long serverId, LocalDateTime startTime, LocalDateTime endTime,
+                                                     int maxPoints) {
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(MetricTime.toMillis(startTime),
+                MetricTime.toMillis(endTime), Math.max(1, maxPoints / 2));
+        if (hotTier.scan(serverId, startTime, endTime, downsampler::add)) {
+            return downsampler.toMetrics(serverId);
+        }
+        LocalDateTime unsealedFrom = startTime;
+        boolean scannedChunks = false;
+        LocalDateTime sealedUntil = chunkService.getSealedUntil(serverId);
+        if (sealedUntil != null && startTime.isBefore(sealedUntil)) {
+            chunkService.scan(serverId, startTime, endTime, sealedUntil, downsampler::add);
+            unsealedFrom = sealedUntil;
+            scannedChunks = true;
+        }
+        if (endTime.isBefore(unsealedFrom)) {
+            return downsampler.toMetrics(serverId);
+        }
+        // The hot tier was already tried for the whole range; it may still cover the unsealed tail
+        if (!scannedChunks || !hotTier.scan(serverId, unsealedFrom, endTime, downsampler::add)) {
+            serverMetricsRepository.streamByServerIdAndCollectedAtBetween(serverId, unsealedFrom, endTime,
+                    downsampler::add);
+        }
+        return downsampler.toMetrics(serverId);
+    }
+
+    /**
+     * Aggregate the metrics of one or more servers into time buckets, computed in the hot tier
+     * or the database, and return them as compact series.
+     */
+    @Transactional(readOnly = true)
+    public MetricsSeriesDto queryMetrics(MetricsQueryDto query) {
+        return queryService.query(query);
+    }
+
+    /**
+     * Get p50/p95/p99 of the sketched metrics of the given servers over a time window,
+     * merged from per-bucket quantile sketches
+     */
+    @Transactional(readOnly = true)
+    public MetricsPercentileSummaryDto getPercentileSummary(Collection<Long> serverIds, LocalDateTime startTime,
+                                                            LocalDateTime endTime) {
+        return sketchService.getPercentiles(serverIds, startTime, endTime);
+    }
+
+    /**
+     * Get p50/p95/p99 of the sketched metrics of all servers of a project over a time window
+     */
+    @Transactional(readOnly = true)
+    public MetricsPercentileSummaryDto getProjectPercentileSummary(Long projectId, LocalDateTime startTime,
+                                                                   LocalDateTime endTime) {
+        return sketchService.getPercentiles(projectRepository.findServerIdsByProjectId(projectId), startTime, endTime);
+    }
+
+    /**
+     * Stream the metrics of all servers within a time range to the consumer, newest first,
+     * without loading the whole range into memory. The read-only transaction lets the
+     * PostgreSQL driver fetch the rows through a cursor.
+     *
+     * @return the number of samples streamed
+     */
+    @Transactional(readOnly = true)
+    public long streamAllMetrics(LocalDateTime startTime, LocalDateTime endTime, Consumer<ServerMetrics> consumer) {
+        return serverMetricsRepository.streamByCollectedAtBetween(startTime, endTime, consumer);
+    }
+
     /**
      * Get metrics for all servers within a time range
      */
+    @Transactional(readOnly = true)
     public List<ServerMetrics> getAllMetrics(LocalDateTime startTime, LocalDateTime endTime) {
         return serverMetricsRepository.findByCollectedAtBetweenOrderByCollectedAtDesc(startTime, endTime);
     }
@@ -99,12 +475,79 @@ public class ServerMetricsService {
     }
 
     /**
-     * Clean up old metrics (older than specified days)
+     * Clean up metrics older than each server's retention (project setting or the default).
+     * Drops whole daily partitions where possible and otherwise deletes in bounded batches.
+     *
+     * @return the number of partitions dropped plus rows deleted
      */
-    @Transactional
-    public void cleanupOldMetrics(int daysToKeep) {
-        LocalDateTime cutoffTime = LocalDateTime.now().minusDays(daysToKeep);
-        serverMetricsRepository.deleteByCollectedAtBefore(cutoffTime);
+    public long cleanupOldMetrics() {
+        return retentionService.applyRetention();
+    }
+
+    // Servers of the given IDs that exist. Misses are read in a read-write transaction, so
+    // they go to the primary and a server created moments ago is found despite replica lag
+    private Set<Long> knownServerIds(Collection<Long> serverIds) {
+        Set<Long> known = new HashSet<>();
+        Set<Long> unknown = new HashSet<>();
+        for (Long serverId : serverIds) {
+            if (knownServers.contains(serverId) || lastValueCache.contains(serverId)) {
+                known.add(serverId);
+            } else {
+                unknown.add(serverId);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            List<Server> found = new TransactionTemplate(transactionManager).execute(
+                    status -> serverRepository.findAllById(unknown));
+            if (found != null) {
+                for (Server server : found) {
+                    knownServers.add(server.getId());
+                    known.add(server.getId());
+                }
+            }
+        }
+        return known;
+    }
+
+    /**
+     * Pass accepted samples to the ingest listeners; a failing listener never fails ingestion
+     */
+    private void notifyIngested(List<ServerMetrics> samples) {
+        for (MetricsIngestListener listener : ingestListeners) {
+            try {
+                listener.onMetricsIngested(samples);
+            } catch (Exception e) {
+                logger.warn("Metrics ingest listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+        // After the listeners, so evaluation sees the baselines and trends updated by these samples
+        alertEvaluator.submit(samples);
+    }
+
+    /**
+     * Check a single batch sample, returning the rejection reason or null if valid
+     */
+    private String validateSample(ServerMetrics sample, Set<Long> knownServerIds) {
+        if (sample == null) {
+            return "Malformed sample";
+        }
+        if (sample.getServerId() == null) {
+            return "Server ID is required";
+        }
+        if (!knownServerIds.contains(sample.getServerId())) {
+            return "Unknown server ID: " + sample.getServerId();
+        }
+        for (Double value : sample.getAllMetrics().values()) {
+            if (value.isNaN() || value.isInfinite()) {
+                return "Metric values must be finite numbers";
+            }
+        }
+        try {
+            metricRegistry.encode(sample);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return null;
     }
 
     // Private helper methods for generating fake data
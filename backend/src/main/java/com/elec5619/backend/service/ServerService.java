@@ -10,6 +10,7 @@ import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.elec5619.backend.dto.ServerCreateDto;
 import com.elec5619.backend.dto.ServerOverviewDto;
@@ -20,6 +21,7 @@ import com.elec5619.backend.entity.ServerMetrics;
 import com.elec5619.backend.entity.ServerStatus;
 import com.elec5619.backend.exception.ServerNameAlreadyExistsException;
 import com.elec5619.backend.repository.ServerRepository;
+import com.elec5619.backend.util.MetricValues;
 
 @Service
 public class ServerService {
@@ -69,20 +71,24 @@ public class ServerService {
         }
     }
 
+    @Transactional(readOnly = true)
     public List<ServerResponseDto> listAll() {
         return serverRepository.findAll().stream()
                 .map(this::toResponse)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public Optional<ServerResponseDto> getById(Long id) {
         return serverRepository.findById(id).map(this::toResponse);
     }
 
+    @Transactional(readOnly = true)
     public Optional<ServerResponseDto> getByName(String name) {
         return serverRepository.findByServerName(name).map(this::toResponse);
     }
 
+    @Transactional(readOnly = true)
     public List<ServerResponseDto> listByStatus(ServerStatus status) {
         return serverRepository.findByStatus(status).stream()
                 .map(this::toResponse)
@@ -110,6 +116,7 @@ public class ServerService {
             return false;
         }
         serverRepository.deleteById(id);
+        serverMetricsService.evictServer(id);
         return true;
     }
 
@@ -138,6 +145,7 @@ public class ServerService {
     /**
      * Get server overview including basic info and latest metrics
      */
+    @Transactional(readOnly = true)
     public List<ServerOverviewDto> getServersOverview() {
         return serverRepository.findAll().stream()
                 .map(this::toOverview)
@@ -175,6 +183,8 @@ public class ServerService {
             dto.setTemperature(metrics.getTemperature());
             dto.setLoadAvg(metrics.getLoadAvg());
             dto.setLastUpdate(metrics.getCollectedAt());
+            dto.setDiskHoursToFull(serverMetricsService.getHoursToFull(server.getId(), MetricValues.indexOf("disk_usage")));
+            dto.setMemoryHoursToFull(serverMetricsService.getHoursToFull(server.getId(), MetricValues.indexOf("memory_usage")));
         } else {
             // Set default values if no metrics available
             dto.setCpuUsage(0.0);
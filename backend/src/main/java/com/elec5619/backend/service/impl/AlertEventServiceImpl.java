@@ -5,11 +5,13 @@ import com.elec5619.backend.entity.AlertRule;
 import com.elec5619.backend.dto.AlertEventResponseDto;
 import com.elec5619.backend.repository.AlertEventRepository;
 import com.elec5619.backend.repository.ServerRepository;
+import com.elec5619.backend.service.AlertActiveRegistry;
 import com.elec5619.backend.service.AlertEventService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -20,11 +22,14 @@ public class AlertEventServiceImpl implements AlertEventService {
 
     private final AlertEventRepository alertEventRepository;
     private final ServerRepository serverRepository;
+    private final AlertActiveRegistry activeRegistry;
 
     @Autowired
-    public AlertEventServiceImpl(AlertEventRepository alertEventRepository, ServerRepository serverRepository) {
+    public AlertEventServiceImpl(AlertEventRepository alertEventRepository, ServerRepository serverRepository,
+                                 AlertActiveRegistry activeRegistry) {
         this.alertEventRepository = alertEventRepository;
         this.serverRepository = serverRepository;
+        this.activeRegistry = activeRegistry;
     }
 
     @Override
@@ -41,7 +46,9 @@ public class AlertEventServiceImpl implements AlertEventService {
                 throw new IllegalArgumentException("AlertRule must have an ID when creating an AlertEvent");
             }
         }
-        return alertEventRepository.save(alertEvent);
+        AlertEvent saved = alertEventRepository.save(alertEvent);
+        activeRegistry.track(saved);
+        return saved;
     }
 
     @Override
@@ -50,6 +57,7 @@ public class AlertEventServiceImpl implements AlertEventService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<AlertEventResponseDto> getAllAlertEventsWithNames() {
         List<AlertEvent> events = alertEventRepository.findAll();
         return events.stream()
@@ -101,6 +109,7 @@ public class AlertEventServiceImpl implements AlertEventService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<AlertEventResponseDto> getAlertEventByIdWithNames(Long eventId) {
         return alertEventRepository.findById(eventId)
                 .map(this::convertToResponseDto);
@@ -118,7 +127,9 @@ public class AlertEventServiceImpl implements AlertEventService {
         existingEvent.setTriggeredValue(alertEvent.getTriggeredValue());
         existingEvent.setSummary(alertEvent.getSummary());
 
-        return alertEventRepository.save(existingEvent);
+        AlertEvent saved = alertEventRepository.save(existingEvent);
+        activeRegistry.track(saved);
+        return saved;
     }
 
     @Override
@@ -128,6 +139,7 @@ public class AlertEventServiceImpl implements AlertEventService {
         }
         if (alertEventRepository.existsById(eventId)) {
             alertEventRepository.deleteById(eventId);
+            activeRegistry.forget(eventId);
         } else {
             // Not found: no-op per test expectation
         }
@@ -159,7 +171,9 @@ public class AlertEventServiceImpl implements AlertEventService {
                 .orElseThrow(() -> new IllegalArgumentException("Alert event with ID " + eventId + " not found"));
         existingEvent.setStatus("resolved");
         existingEvent.setResolvedAt(LocalDateTime.now());
-        return alertEventRepository.save(existingEvent);
+        AlertEvent saved = alertEventRepository.save(existingEvent);
+        activeRegistry.track(saved);
+        return saved;
     }
 
     @Override
@@ -168,7 +182,9 @@ public class AlertEventServiceImpl implements AlertEventService {
                 .orElseThrow(() -> new IllegalArgumentException("Alert event with ID " + eventId + " not found"));
         existingEvent.setStatus("acknowledged");
         // 注意：这里可以添加acknowledgedAt和acknowledgedBy字段，如果AlertEvent实体有这些字段的话
-        return alertEventRepository.save(existingEvent);
+        AlertEvent saved = alertEventRepository.save(existingEvent);
+        activeRegistry.track(saved);
+        return saved;
     }
 
     @Override
@@ -179,6 +195,7 @@ public class AlertEventServiceImpl implements AlertEventService {
 
     // ✅ 新增：分页版本实现
     @Override
+    @Transactional(readOnly = true)
     public Page<AlertEvent> getAlertEventsWithFilters(Long ruleId, Long serverId, String status,
                                                       LocalDateTime startTime, LocalDateTime endTime,
                                                       Pageable pageable) {
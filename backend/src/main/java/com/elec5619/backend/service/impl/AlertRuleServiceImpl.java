@@ -3,6 +3,7 @@ package com.elec5619.backend.service.impl;
 import com.elec5619.backend.entity.AlertRule;
 import com.elec5619.backend.repository.AlertRuleRepository;
 import com.elec5619.backend.repository.AlertEventRepository;
+import com.elec5619.backend.service.AlertRuleIndex;
 import com.elec5619.backend.service.AlertRuleService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -20,11 +21,14 @@ public class AlertRuleServiceImpl implements AlertRuleService {
 
     private final AlertRuleRepository alertRuleRepository;
     private final AlertEventRepository alertEventRepository;
+    private final AlertRuleIndex ruleIndex;
 
     @Autowired
-    public AlertRuleServiceImpl(AlertRuleRepository alertRuleRepository, AlertEventRepository alertEventRepository) {
+    public AlertRuleServiceImpl(AlertRuleRepository alertRuleRepository, AlertEventRepository alertEventRepository,
+                                AlertRuleIndex ruleIndex) {
         this.alertRuleRepository = alertRuleRepository;
         this.alertEventRepository = alertEventRepository;
+        this.ruleIndex = ruleIndex;
     }
 
     @Override
@@ -38,6 +42,7 @@ public class AlertRuleServiceImpl implements AlertRuleService {
             
             // 保存规则 - 移除全局名称唯一性检查，允许同一规则名称在不同服务器上存在
             AlertRule createdRule = alertRuleRepository.save(alertRule);
+            ruleIndex.put(createdRule);
             createdRules.add(createdRule);
         }
         
@@ -48,10 +53,13 @@ public class AlertRuleServiceImpl implements AlertRuleService {
     public AlertRule createAlertRule(AlertRule alertRule) {
         alertRule.setRuleId(null);
         // 移除全局名称唯一性检查，允许同一规则名称在不同服务器上存在
-        return alertRuleRepository.save(alertRule);
+        AlertRule createdRule = alertRuleRepository.save(alertRule);
+        ruleIndex.put(createdRule);
+        return createdRule;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<AlertRule> getAllAlertRules() {
         return alertRuleRepository.findAll();
     }
@@ -78,7 +86,9 @@ public class AlertRuleServiceImpl implements AlertRuleService {
         existingRule.setServerId(alertRule.getServerId());
         existingRule.setTargetFilter(alertRule.getTargetFilter());
 
-        return alertRuleRepository.save(existingRule);
+        AlertRule updatedRule = alertRuleRepository.save(existingRule);
+        ruleIndex.put(updatedRule);
+        return updatedRule;
     }
 
     @Override
@@ -92,6 +102,7 @@ public class AlertRuleServiceImpl implements AlertRuleService {
         
         // Then delete the alert rule
         alertRuleRepository.delete(existingRule);
+        ruleIndex.remove(ruleId);
     }
 
     @Override
@@ -122,10 +133,13 @@ public class AlertRuleServiceImpl implements AlertRuleService {
         AlertRule existingRule = alertRuleRepository.findById(ruleId)
                 .orElseThrow(() -> new IllegalArgumentException("Alert rule with ID " + ruleId + " not found"));
         existingRule.setEnabled(enabled);
-        return alertRuleRepository.save(existingRule);
+        AlertRule updatedRule = alertRuleRepository.save(existingRule);
+        ruleIndex.put(updatedRule);
+        return updatedRule;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<AlertRule> getAlertRulesByServerId(Long serverId) {
         return alertRuleRepository.findByServerId(serverId);
     }
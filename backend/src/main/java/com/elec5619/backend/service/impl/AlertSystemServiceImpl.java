@@ -5,17 +5,26 @@ import com.elec5619.backend.entity.AlertEvent;
 import com.elec5619.backend.entity.AlertRule;
 import com.elec5619.backend.entity.ServerMetrics;
 import com.elec5619.backend.repository.ServerMetricsRepository;
+import com.elec5619.backend.service.AlertActiveRegistry;
 import com.elec5619.backend.service.AlertEventService;
+import com.elec5619.backend.service.AlertRuleIndex;
+import com.elec5619.backend.service.AlertRuleIndex.RuleSet;
 import com.elec5619.backend.service.AlertRuleService;
+import com.elec5619.backend.service.AlertStateTracker;
 import com.elec5619.backend.service.AlertSystemService;
+import com.elec5619.backend.service.MetricsAnomalyDetector;
+import com.elec5619.backend.service.MetricsForecastService;
+import com.elec5619.backend.service.MetricsLastValueCache;
 import com.elec5619.backend.service.NotificationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.logging.Logger;
 
 @Service
@@ -25,29 +34,56 @@ public class AlertSystemServiceImpl implements AlertSystemService {
     private final AlertEventService alertEventService;
     private final ServerMetricsRepository serverMetricsRepository;
     private final NotificationService notificationService;
+    private final MetricsLastValueCache lastValueCache;
+    private final MetricsAnomalyDetector anomalyDetector;
+    private final MetricsForecastService forecastService;
+    private final AlertRuleIndex ruleIndex;
+    private final AlertStateTracker stateTracker;
+    private final AlertActiveRegistry activeRegistry;
 
     private static final Logger logger = Logger.getLogger(AlertSystemServiceImpl.class.getName());
 
+    // 异常检测比较符：阈值表示偏离EWMA基线的标准差倍数
+    private static final String ANOMALY = "anomaly";
+    // 容量预测比较符：阈值表示预计耗尽前的小时数
+    private static final String FORECAST = "forecast";
+
     @Autowired
     public AlertSystemServiceImpl(AlertRuleService alertRuleService, 
                                     AlertEventService alertEventService,
                                     ServerMetricsRepository serverMetricsRepository,
-                                    NotificationService notificationService) {
+                                    NotificationService notificationService,
+                                    MetricsLastValueCache lastValueCache,
+                                    MetricsAnomalyDetector anomalyDetector,
+                                    MetricsForecastService forecastService,
+                                    AlertRuleIndex ruleIndex,
+                                    AlertStateTracker stateTracker,
+                                    AlertActiveRegistry activeRegistry) {
         this.alertRuleService = alertRuleService;
         this.alertEventService = alertEventService;
         this.serverMetricsRepository = serverMetricsRepository;
         this.notificationService = notificationService;
+        this.lastValueCache = lastValueCache;
+        this.anomalyDetector = anomalyDetector;
+        this.forecastService = forecastService;
+        this.ruleIndex = ruleIndex;
+        this.stateTracker = stateTracker;
+        this.activeRegistry = activeRegistry;
+        // 持续时间到期仍未恢复的规则由状态机在时间轮上触发
+        stateTracker.setFiringHandler(this::fireExpired);
     }
 
     @Override
     public boolean validateAlertRule(AlertRule rule) {
         if (rule == null) return false;
-        List<String> validComparators = List.of(">=", ">", "<=", "<", "==", "!=");
+        List<String> validComparators = List.of(">=", ">", "<=", "<", "==", "!=", ANOMALY, FORECAST);
         List<String> validSeverities = List.of("low", "medium", "high", "critical");
         return rule.getRuleName() != null && !rule.getRuleName().isEmpty()
                 && rule.getTargetMetric() != null && !rule.getTargetMetric().isEmpty()
                 && validComparators.contains(rule.getComparator())
                 && rule.getThreshold() != null
+                && (!ANOMALY.equals(rule.getComparator()) || rule.getThreshold() > 0)
+                && (!FORECAST.equals(rule.getComparator()) || rule.getThreshold() > 0)
                 && rule.getDuration() != null && rule.getDuration() > 0
                 && rule.getSeverity() != null
                 && validSeverities.contains(rule.getSeverity().toLowerCase());
@@ -57,19 +93,7 @@ public class AlertSystemServiceImpl implements AlertSystemService {
     public List<AlertEvent> evaluateMetrics(ServerMetrics metrics) {
         List<AlertEvent> triggeredAlerts = new ArrayList<>();
         try {
-            List<AlertRule> activeRules = alertRuleService.getAlertRulesByEnabled(true);
-            for (AlertRule rule : activeRules) {
-                if (evaluateRuleAgainstMetrics(rule, metrics)) {
-                    // ✅ 去重：同规则+同server，5分钟内已firing则跳过
-                    if (hasRecentActiveEvent(rule.getRuleId(), metrics.getServerId(), 5)) {
-                        logger.info("Skip duplicate firing within 5 minutes: rule=" + rule.getRuleName()
-                                + ", server=" + metrics.getServerId());
-                        continue;
-                    }
-                    AlertEvent alertEvent = createAlertEvent(rule, metrics);
-                    triggeredAlerts.add(alertEventService.createAlertEvent(alertEvent));
-                }
-            }
+            evaluateRules(ruleIndex.all(), metrics, triggeredAlerts);
         } catch (Exception e) {
             logger.severe("Error evaluating provided metrics: " + e.getMessage());
         }
@@ -80,7 +104,11 @@ public class AlertSystemServiceImpl implements AlertSystemService {
     public List<AlertEvent> evaluateMetrics(Long serverId) {
         List<AlertEvent> triggered = new ArrayList<>();
         try {
-            ServerMetrics latest = serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(serverId);
+            ServerMetrics latest = lastValueCache.get(serverId).orElse(null);
+            if (latest == null) {
+                latest = serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(serverId);
+                lastValueCache.put(latest);
+            }
             if (latest == null) {
                 logger.warning("No metrics found for server ID: " + serverId);
                 return triggered;
@@ -88,25 +116,27 @@ public class AlertSystemServiceImpl implements AlertSystemService {
             long age = ChronoUnit.MINUTES.between(latest.getCollectedAt(), LocalDateTime.now());
             if (age > 5) logger.warning("Metrics may be stale (" + age + " minutes old)");
 
-            List<AlertRule> rules = alertRuleService.getAlertRulesByServerId(serverId);
-            for (AlertRule rule : rules) {
-                if (Boolean.TRUE.equals(rule.getEnabled()) && evaluateRuleAgainstMetrics(rule, latest)) {
-                    // ✅ 去重
-                    if (hasRecentActiveEvent(rule.getRuleId(), serverId, 5)) {
-                        logger.info("Skip duplicate firing within 5 minutes: rule=" + rule.getRuleName()
-                                + ", server=" + serverId);
-                        continue;
-                    }
-                    AlertEvent event = createAlertEvent(rule, latest);
-                    triggered.add(alertEventService.createAlertEvent(event));
-                }
-            }
+            evaluateRules(ruleIndex.forServer(serverId), latest, triggered);
         } catch (Exception e) {
             logger.severe("Error evaluating metrics for server " + serverId + ": " + e.getMessage());
         }
         return triggered;
     }
 
+    @Override
+    public List<AlertEvent> evaluateIngested(ServerMetrics metrics) {
+        List<AlertEvent> triggered = new ArrayList<>();
+        if (metrics == null || metrics.getServerId() == null) {
+            return triggered;
+        }
+        try {
+            evaluateRules(ruleIndex.forServer(metrics.getServerId()), metrics, triggered);
+        } catch (Exception e) {
+            logger.severe("Error evaluating ingested metrics for server " + metrics.getServerId() + ": " + e.getMessage());
+        }
+        return triggered;
+    }
+
     @Override
     public AlertEvent triggerAlert(AlertEvent alertEvent) {
         if (alertEvent.getAlertRule() == null || alertEvent.getServerId() == null) {
@@ -122,11 +152,13 @@ public class AlertSystemServiceImpl implements AlertSystemService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<AlertEvent> getActiveAlerts() {
         return alertEventService.getAlertEventsByStatus("firing");
     }
 
     @Override
+    @Transactional(readOnly = true)
     public AlertStatisticsDTO getAlertStatistics() {
         AlertStatisticsDTO dto = new AlertStatisticsDTO();
         try {
@@ -145,41 +177,117 @@ public class AlertSystemServiceImpl implements AlertSystemService {
 
     // ======= 私有方法 =======
 
-    private boolean evaluateRuleAgainstMetrics(AlertRule rule, ServerMetrics metrics) {
-        Double metricValue = getMetricValue(rule.getTargetMetric(), metrics);
-        if (metricValue == null) return false;
-        return switch (rule.getComparator()) {
-            case ">=" -> metricValue >= rule.getThreshold();
-            case ">"  -> metricValue > rule.getThreshold();
-            case "<=" -> metricValue <= rule.getThreshold();
-            case "<"  -> metricValue < rule.getThreshold();
-            case "==" -> metricValue.equals(rule.getThreshold());
-            case "!=" -> !metricValue.equals(rule.getThreshold());
-            default   -> false;
-        };
+    // 按编译好的规则索引评估：每个指标只取一次值，规则按操作码与阈值数组比较，不查库也不解析字符串。
+    // 条件成立时规则先进入 pending，持续 duration 分钟后才 firing；条件不再成立时 firing 的告警被恢复。
+    // 样本缺少该指标时整组跳过，既不推进也不恢复状态
+    private void evaluateRules(RuleSet rules, ServerMetrics metrics, List<AlertEvent> triggered) {
+        Long serverId = metrics.getServerId();
+        long now = System.currentTimeMillis();
+        for (int group = 0; group < rules.groupCount(); group++) {
+            int metricId = rules.metricId(group);
+            Double metricValue = metrics.getMetricValue(metricId);
+            if (metricValue == null) {
+                continue;
+            }
+            double value = metricValue;
+            for (int i = rules.groupStart(group); i < rules.groupEnd(group); i++) {
+                AlertRule rule = rules.rule(i);
+                if (!matches(rules.opcode(i), rules.threshold(i), serverId, metricId, value)) {
+                    resolve(stateTracker.onClear(rule.getRuleId(), serverId));
+                    continue;
+                }
+                if (!stateTracker.onMatch(rule.getRuleId(), serverId, metricId, rules.duration(i), value, now)) {
+                    continue;
+                }
+                AlertEvent event = fire(rule, serverId, metricId, value);
+                if (event != null) {
+                    triggered.add(event);
+                }
+            }
+        }
+    }
+
+    // 时间轮到期回调：规则已删除或停用则回到 inactive，否则触发告警
+    private AlertEvent fireExpired(Long ruleId, Long serverId, int metricId, double value) {
+        AlertRule rule = ruleIndex.rule(ruleId);
+        if (rule == null) {
+            stateTracker.onClear(ruleId, serverId);
+            return null;
+        }
+        return fire(rule, serverId, metricId, value);
     }
 
-    private Double getMetricValue(String metricName, ServerMetrics metrics) {
-        Double value = metrics.getMetricByName(metricName);
-        return (value != null) ? value : 0.0;
+    // 触发告警并把结果记入状态机：新建的告警或沿用的重复告警记为 firing 的事件，创建失败则回到 pending 等下一个样本重试
+    private AlertEvent fire(AlertRule rule, Long serverId, int metricId, double value) {
+        Long ruleId = rule.getRuleId();
+        // ✅ 去重：同规则+同server，5分钟内已firing则沿用该告警（状态机丢失时的兜底），条件不再成立时一并恢复
+        Optional<Long> activeEventId = activeRegistry.activeEventId(ruleId, serverId, LocalDateTime.now().minusMinutes(5));
+        if (activeEventId.isPresent()) {
+            logger.info("Skip duplicate firing within 5 minutes: rule=" + rule.getRuleName()
+                    + ", server=" + serverId);
+            stateTracker.onFired(ruleId, serverId, activeEventId.get());
+            return null;
+        }
+        AlertEvent event = null;
+        try {
+            event = alertEventService.createAlertEvent(createAlertEvent(rule, serverId, metricId, value));
+        } catch (Exception e) {
+            logger.warning("Failed to raise alert: rule=" + rule.getRuleName() + ", server=" + serverId
+                    + ": " + e.getMessage());
+        }
+        if (event == null) {
+            stateTracker.onFireFailed(ruleId, serverId);
+            return null;
+        }
+        stateTracker.onFired(ruleId, serverId, event.getEventId());
+        return event;
     }
 
-    private AlertEvent createAlertEvent(AlertRule rule, ServerMetrics metrics) {
+    private void resolve(Long eventId) {
+        if (eventId == null) {
+            return;
+        }
+        try {
+            alertEventService.resolveAlertEvent(eventId);
+        } catch (Exception e) {
+            logger.warning("Failed to resolve alert event " + eventId + ": " + e.getMessage());
+        }
+    }
+
+    private boolean matches(byte opcode, double threshold, Long serverId, int metricId, double value) {
+        if (opcode == RuleSet.ANOMALY) {
+            double score = anomalyDetector.getScore(serverId, metricId);
+            return !Double.isNaN(score) && Math.abs(score) >= threshold;
+        }
+        if (opcode == RuleSet.FORECAST) {
+            Double hours = forecastService.getHoursToFull(serverId, metricId);
+            return hours != null && hours <= threshold;
+        }
+        return RuleSet.compare(opcode, value, threshold);
+    }
+
+    private AlertEvent createAlertEvent(AlertRule rule, Long serverId, int metricId, double value) {
         AlertEvent event = new AlertEvent();
         event.setAlertRule(rule);
-        event.setServerId(metrics.getServerId());
+        event.setServerId(serverId);
         event.setStatus("firing");
         event.setStartedAt(LocalDateTime.now());
-        event.setTriggeredValue(getMetricValue(rule.getTargetMetric(), metrics));
-        event.setSummary(rule.getRuleName() + " triggered on server " + metrics.getServerId());
+        event.setTriggeredValue(value);
+        String summary = rule.getRuleName() + " triggered on server " + serverId;
+        if (ANOMALY.equals(rule.getComparator())) {
+            double score = anomalyDetector.getScore(serverId, metricId);
+            summary += String.format(" (%.1f sigma from baseline)", score);
+        } else if (FORECAST.equals(rule.getComparator())) {
+            Double hours = forecastService.getHoursToFull(serverId, metricId);
+            summary += String.format(" (predicted full in %.1f hours)", hours != null ? hours : 0.0);
+        }
+        event.setSummary(summary);
         return event;
     }
 
     // ✅ 去重：最近 windowMinutes 分钟内是否已有相同 ruleId + serverId 且处于 firing
+    // 查内存中的活动告警表，不再每条规则查一次 alert_event
     private boolean hasRecentActiveEvent(Long ruleId, Long serverId, int windowMinutes) {
-        LocalDateTime now = LocalDateTime.now();
-        var recent = alertEventService.getAlertEventsWithFilters(
-                ruleId, serverId, "firing", now.minusMinutes(windowMinutes), now);
-        return recent != null && !recent.isEmpty();
+        return activeRegistry.isActive(ruleId, serverId, LocalDateTime.now().minusMinutes(windowMinutes));
     }
 }
@@ -0,0 +1,41 @@
+package com.elec5619.backend.util;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Database products the backend runs on.
+ * PostgreSQL (Supabase) is used in production and H2 for the local profile and tests,
+ * so hand-written SQL that differs between them switches on this value.
+ */
+public enum DatabaseDialect {
+    POSTGRESQL,
+    H2,
+    OTHER;
+
+    /**
+     * Detect the dialect of the database behind the given template.
+     */
+    public static DatabaseDialect detect(JdbcTemplate jdbcTemplate) {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return fromProductName(product);
+    }
+
+    /**
+     * Map a JDBC database product name to a dialect.
+     */
+    public static DatabaseDialect fromProductName(String productName) {
+        if (productName == null) {
+            return OTHER;
+        }
+        String name = productName.toLowerCase();
+        if (name.contains("postgres")) {
+            return POSTGRESQL;
+        }
+        if (name.contains("h2")) {
+            return H2;
+        }
+        return OTHER;
+    }
+}
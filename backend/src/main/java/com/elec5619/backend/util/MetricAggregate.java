@@ -0,0 +1,89 @@
+package com.elec5619.backend.util;
+
+/**
+ * Mergeable aggregate of one metric over a time bucket: min, max, sum, count and
+ * the last value with its timestamp. NaN values are ignored. Not thread-safe.
+ */
+public class MetricAggregate {
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    private long count;
+    private double last = Double.NaN;
+    private long lastAt = Long.MIN_VALUE;
+
+    public MetricAggregate() {
+    }
+
+    /**
+     * Add a single observation.
+     */
+    public void add(double value, long timestamp) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        count++;
+        if (timestamp >= lastAt) {
+            last = value;
+            lastAt = timestamp;
+        }
+    }
+
+    /**
+     * Merge a pre-aggregated bucket into this one.
+     */
+    public void merge(double otherMin, double otherMax, double otherSum, long otherCount,
+                      double otherLast, long otherLastAt) {
+        if (otherCount <= 0) {
+            return;
+        }
+        min = Math.min(min, otherMin);
+        max = Math.max(max, otherMax);
+        sum += otherSum;
+        count += otherCount;
+        if (otherLastAt >= lastAt) {
+            last = otherLast;
+            lastAt = otherLastAt;
+        }
+    }
+
+    public void merge(MetricAggregate other) {
+        merge(other.min, other.max, other.sum, other.count, other.last, other.lastAt);
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getAverage() {
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    public double getLast() {
+        return last;
+    }
+
+    public long getLastAt() {
+        return lastAt;
+    }
+}
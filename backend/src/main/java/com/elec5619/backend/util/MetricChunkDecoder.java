@@ -0,0 +1,176 @@
+package com.elec5619.backend.util;
+
+/**
+ * Cursor over a chunk written by {@link MetricChunkEncoder}.
+ * Decoding state lives in primitive fields that are reused for every sample and,
+ * through {@link #reset(byte[])}, for every chunk, so iterating allocates nothing:
+ *
+ * <pre>
+ * decoder.reset(data);
+ * while (decoder.next()) {
+ *     long t = decoder.timestamp();
+ *     double cpu = decoder.value(0);
+ * }
+ * </pre>
+ *
+ * Not thread-safe.
+ */
+public class MetricChunkDecoder {
+
+    private final int metricCount;
+    private final long[] bits;
+    private final double[] values;
+    private final int[] leading;
+    private final int[] trailing;
+
+    private byte[] data;
+    private long bitPosition;
+    private int count;
+    private int index;
+    private long timestamp;
+    private long delta;
+
+    public MetricChunkDecoder() {
+        this(MetricValues.COUNT);
+    }
+
+    public MetricChunkDecoder(int metricCount) {
+        this.metricCount = metricCount;
+        this.bits = new long[metricCount];
+        this.values = new double[metricCount];
+        this.leading = new int[metricCount];
+        this.trailing = new int[metricCount];
+    }
+
+    public MetricChunkDecoder(byte[] data) {
+        this();
+        reset(data);
+    }
+
+    /**
+     * Start decoding another chunk.
+     *
+     * @throws IllegalArgumentException if the chunk has an unknown format version
+     */
+    public void reset(byte[] data) {
+        if (data.length < MetricChunkEncoder.HEADER_BYTES || data[0] != MetricChunkEncoder.FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported metric chunk format");
+        }
+        this.data = data;
+        this.count = ((data[1] & 0xFF) << 24) | ((data[2] & 0xFF) << 16) | ((data[3] & 0xFF) << 8) | (data[4] & 0xFF);
+        this.bitPosition = MetricChunkEncoder.HEADER_BYTES * 8L;
+        this.index = 0;
+        this.delta = 0;
+    }
+
+    /**
+     * Number of samples in the current chunk.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Advance to the next sample.
+     *
+     * @return false once every sample has been read
+     */
+    public boolean next() {
+        if (index >= count) {
+            return false;
+        }
+        if (index == 0) {
+            timestamp = readBits(64);
+            for (int m = 0; m < metricCount; m++) {
+                bits[m] = readBits(64);
+                values[m] = Double.longBitsToDouble(bits[m]);
+            }
+        } else {
+            delta += readDeltaOfDelta();
+            timestamp += delta;
+            for (int m = 0; m < metricCount; m++) {
+                readValue(m);
+            }
+        }
+        index++;
+        return true;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Value of a metric at the current sample, NaN if missing.
+     */
+    public double value(int metric) {
+        return values[metric];
+    }
+
+    /**
+     * Values of the current sample indexed by metric ID. The array is reused by
+     * the next call to {@link #next()}.
+     */
+    public double[] values() {
+        return values;
+    }
+
+    private long readDeltaOfDelta() {
+        if (readBit() == 0) {
+            return 0;
+        }
+        if (readBit() == 0) {
+            return readSigned(7);
+        }
+        if (readBit() == 0) {
+            return readSigned(9);
+        }
+        if (readBit() == 0) {
+            return readSigned(12);
+        }
+        return readBits(64);
+    }
+
+    private void readValue(int metric) {
+        if (readBit() == 0) {
+            return;
+        }
+        if (readBit() == 1) {
+            leading[metric] = (int) readBits(5);
+            int length = (int) readBits(6) + 1;
+            trailing[metric] = 64 - leading[metric] - length;
+        }
+        int significant = 64 - leading[metric] - trailing[metric];
+        long xor = readBits(significant) << trailing[metric];
+        bits[metric] ^= xor;
+        values[metric] = Double.longBitsToDouble(bits[metric]);
+    }
+
+    private long readSigned(int width) {
+        long value = readBits(width);
+        return (value << (64 - width)) >> (64 - width);
+    }
+
+    private int readBit() {
+        int bit = (data[(int) (bitPosition >>> 3)] >>> (7 - (int) (bitPosition & 7))) & 1;
+        bitPosition++;
+        return bit;
+    }
+
+    /**
+     * Read {@code width} bits, most significant first.
+     */
+    private long readBits(int width) {
+        long value = 0;
+        while (width > 0) {
+            int available = 8 - (int) (bitPosition & 7);
+            int take = Math.min(available, width);
+            int current = data[(int) (bitPosition >>> 3)] & 0xFF;
+            long chunk = (current >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            bitPosition += take;
+            width -= take;
+        }
+        return value;
+    }
+}
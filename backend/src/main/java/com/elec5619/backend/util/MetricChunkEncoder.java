@@ -0,0 +1,187 @@
+package com.elec5619.backend.util;
+
+import java.util.Arrays;
+
+/**
+ * Gorilla-style encoder for a closed window of samples of one server.
+ *
+ * Samples are written row by row into a single bit stream: the timestamp as a
+ * delta-of-delta against the previous sample, followed by every metric as the XOR
+ * of its bits with the previous value of that metric. Slowly changing gauges and
+ * regular collection intervals therefore cost only a few bits per sample.
+ *
+ * Layout: a 1-byte format version and a 4-byte sample count, then the bit stream.
+ * The first sample stores its timestamp and values verbatim. Timestamps are epoch
+ * milliseconds and must be appended in ascending order. Missing values are NaN.
+ * Not thread-safe.
+ */
+public class MetricChunkEncoder {
+
+    public static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_BYTES = 5;
+
+    private final int metricCount;
+    private final long[] previousBits;
+    private final int[] previousLeading;
+    private final int[] previousTrailing;
+
+    private byte[] buffer = new byte[256];
+    private long bitPosition = HEADER_BYTES * 8L;
+    private int count;
+    private long previousTimestamp;
+    private long previousDelta;
+
+    public MetricChunkEncoder() {
+        this(MetricValues.COUNT);
+    }
+
+    public MetricChunkEncoder(int metricCount) {
+        this.metricCount = metricCount;
+        this.previousBits = new long[metricCount];
+        this.previousLeading = new int[metricCount];
+        this.previousTrailing = new int[metricCount];
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long firstTimestamp() {
+        return count > 0 ? readHeaderTimestamp() : Long.MIN_VALUE;
+    }
+
+    public long lastTimestamp() {
+        return previousTimestamp;
+    }
+
+    /**
+     * Append a sample.
+     *
+     * @param values one value per metric, NaN for missing
+     * @throws IllegalArgumentException if the timestamp goes backwards
+     */
+    public void append(long timestamp, double[] values) {
+        if (count == 0) {
+            writeBits(timestamp, 64);
+            for (int m = 0; m < metricCount; m++) {
+                long bits = Double.doubleToRawLongBits(values[m]);
+                writeBits(bits, 64);
+                previousBits[m] = bits;
+                previousLeading[m] = -1;
+            }
+            previousTimestamp = timestamp;
+            previousDelta = 0;
+            count++;
+            return;
+        }
+        if (timestamp < previousTimestamp) {
+            throw new IllegalArgumentException("Timestamps must be ascending: " + timestamp + " < " + previousTimestamp);
+        }
+        long delta = timestamp - previousTimestamp;
+        writeDeltaOfDelta(delta - previousDelta);
+        previousTimestamp = timestamp;
+        previousDelta = delta;
+        for (int m = 0; m < metricCount; m++) {
+            writeValue(m, Double.doubleToRawLongBits(values[m]));
+        }
+        count++;
+    }
+
+    /**
+     * The encoded chunk. The encoder can keep appending afterwards.
+     */
+    public byte[] toByteArray() {
+        int length = (int) ((bitPosition + 7) >>> 3);
+        byte[] result = Arrays.copyOf(buffer, length);
+        result[0] = (byte) FORMAT_VERSION;
+        result[1] = (byte) (count >>> 24);
+        result[2] = (byte) (count >>> 16);
+        result[3] = (byte) (count >>> 8);
+        result[4] = (byte) count;
+        return result;
+    }
+
+    /**
+     * Size in bytes of the chunk encoded so far.
+     */
+    public int sizeInBytes() {
+        return (int) ((bitPosition + 7) >>> 3);
+    }
+
+    // Timestamp buckets follow the Gorilla paper (two's complement), with a 64-bit escape for large gaps
+    private void writeDeltaOfDelta(long dod) {
+        if (dod == 0) {
+            writeBits(0b0, 1);
+        } else if (dod >= -64 && dod <= 63) {
+            writeBits(0b10, 2);
+            writeBits(dod, 7);
+        } else if (dod >= -256 && dod <= 255) {
+            writeBits(0b110, 3);
+            writeBits(dod, 9);
+        } else if (dod >= -2048 && dod <= 2047) {
+            writeBits(0b1110, 4);
+            writeBits(dod, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(dod, 64);
+        }
+    }
+
+    private void writeValue(int metric, long bits) {
+        long xor = bits ^ previousBits[metric];
+        previousBits[metric] = bits;
+        if (xor == 0) {
+            writeBits(0b0, 1);
+            return;
+        }
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        int prevLeading = previousLeading[metric];
+        int prevTrailing = previousTrailing[metric];
+        if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+            // Meaningful bits fit in the previous window
+            writeBits(0b10, 2);
+            writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+            return;
+        }
+        int significant = 64 - leading - trailing;
+        writeBits(0b11, 2);
+        writeBits(leading, 5);
+        writeBits(significant - 1, 6);
+        writeBits(xor >>> trailing, significant);
+        previousLeading[metric] = leading;
+        previousTrailing[metric] = trailing;
+    }
+
+    /**
+     * Write the low {@code bits} bits of {@code value}, most significant first.
+     */
+    private void writeBits(long value, int bits) {
+        ensureCapacity(bitPosition + bits);
+        while (bits > 0) {
+            int index = (int) (bitPosition >>> 3);
+            int free = 8 - (int) (bitPosition & 7);
+            int take = Math.min(free, bits);
+            int chunk = (int) ((value >>> (bits - take)) & ((1L << take) - 1));
+            buffer[index] |= (byte) (chunk << (free - take));
+            bitPosition += take;
+            bits -= take;
+        }
+    }
+
+    private void ensureCapacity(long bits) {
+        long bytes = (bits + 7) >>> 3;
+        if (bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.max(bytes, buffer.length * 2L));
+        }
+    }
+
+    private long readHeaderTimestamp() {
+        long timestamp = 0;
+        for (int i = 0; i < 8; i++) {
+            timestamp = (timestamp << 8) | (buffer[HEADER_BYTES + i] & 0xFF);
+        }
+        return timestamp;
+    }
+}
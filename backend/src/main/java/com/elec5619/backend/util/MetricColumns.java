@@ -0,0 +1,179 @@
+package com.elec5619.backend.util;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column-oriented wire format of a metric series, for chart clients.
+ * The samples are transposed once into one {@code long[]} of epoch millisecond
+ * timestamps, with {@code collectedAt} read as UTC, and one {@code double[]} per built-in
+ * metric, oldest first, and written from those arrays without per-sample objects:
+ * <ul>
+ *   <li>as JSON, {@code {"serverId":1,"count":n,"timestamps":[...],"cpu_usage":[...],...}}
+ *       with null for a missing value;</li>
+ *   <li>as binary, a little-endian header of two int32 (sample count and column count)
+ *       followed by each column as float64 values, timestamps first and then the metrics
+ *       in {@link MetricValues#NAMES} order, NaN for a missing value. Every column starts
+ *       on an 8-byte boundary so clients can view it as a Float64Array.</li>
+ * </ul>
+ */
+public final class MetricColumns {
+
+    /**
+     * Media type of the columnar JSON representation.
+     */
+    public static final String JSON_MEDIA_TYPE = "application/vnd.metrics.columnar+json";
+
+    /**
+     * Media type of the binary float64 representation.
+     */
+    public static final String BINARY_MEDIA_TYPE = "application/vnd.metrics.columnar+octet-stream";
+
+    /**
+     * Column names of the binary representation in order, as sent in a response header.
+     */
+    public static final String BINARY_COLUMNS = "timestamps," + String.join(",", MetricValues.NAMES);
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final int size;
+    private final long[] timestamps;
+    private final double[][] values;
+
+    private MetricColumns(int size) {
+        this.size = size;
+        this.timestamps = new long[size];
+        this.values = new double[MetricValues.COUNT][size];
+    }
+
+    /**
+     * Transpose samples into columns sorted by time. Samples without a collection time are skipped.
+     */
+    public static MetricColumns of(List<ServerMetrics> samples) {
+        int count = 0;
+        for (ServerMetrics sample : samples) {
+            if (sample.getCollectedAt() != null) {
+                count++;
+            }
+        }
+        MetricColumns columns = new MetricColumns(count);
+        boolean ascending = true;
+        boolean descending = true;
+        int i = 0;
+        for (ServerMetrics sample : samples) {
+            if (sample.getCollectedAt() == null) {
+                continue;
+            }
+            long timestamp = MetricTime.toMillis(sample.getCollectedAt());
+            if (i > 0) {
+                ascending &= timestamp >= columns.timestamps[i - 1];
+                descending &= timestamp <= columns.timestamps[i - 1];
+            }
+            columns.timestamps[i] = timestamp;
+            for (int m = 0; m < MetricValues.COUNT; m++) {
+                Double value = sample.getMetricValue(m);
+                columns.values[m][i] = value != null ? value : Double.NaN;
+            }
+            i++;
+        }
+        if (!ascending) {
+            columns.sort(descending);
+        }
+        return columns;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Write the columns as one JSON object.
+     */
+    public void writeJson(JsonGenerator generator, Long serverId) throws IOException {
+        generator.writeStartObject();
+        if (serverId != null) {
+            generator.writeNumberField("serverId", serverId);
+        }
+        generator.writeNumberField("count", size);
+        generator.writeFieldName("timestamps");
+        generator.writeArray(timestamps, 0, size);
+        for (int m = 0; m < MetricValues.COUNT; m++) {
+            generator.writeFieldName(MetricValues.NAMES[m]);
+            generator.writeStartArray();
+            double[] column = values[m];
+            for (int i = 0; i < size; i++) {
+                if (Double.isNaN(column[i])) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(column[i]);
+                }
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Encode the columns in the binary representation.
+     */
+    public byte[] toBinary() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + (1 + MetricValues.COUNT) * size * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(size);
+        buffer.putInt(1 + MetricValues.COUNT);
+        for (int i = 0; i < size; i++) {
+            buffer.putDouble(timestamps[i]);
+        }
+        for (int m = 0; m < MetricValues.COUNT; m++) {
+            buffer.asDoubleBuffer().put(values[m], 0, size);
+            buffer.position(buffer.position() + size * Double.BYTES);
+        }
+        return buffer.array();
+    }
+
+    // ======= Internal =======
+
+    private void sort(boolean descending) {
+        if (descending) {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                swap(i, j);
+            }
+            return;
+        }
+        // Merged sources may interleave; order by timestamp through a permutation
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(timestamps[a], timestamps[b]));
+        long[] sortedTimestamps = new long[size];
+        for (int i = 0; i < size; i++) {
+            sortedTimestamps[i] = timestamps[order[i]];
+        }
+        System.arraycopy(sortedTimestamps, 0, timestamps, 0, size);
+        double[] sorted = new double[size];
+        for (double[] column : values) {
+            for (int i = 0; i < size; i++) {
+                sorted[i] = column[order[i]];
+            }
+            System.arraycopy(sorted, 0, column, 0, size);
+        }
+    }
+
+    private void swap(int i, int j) {
+        long timestamp = timestamps[i];
+        timestamps[i] = timestamps[j];
+        timestamps[j] = timestamp;
+        for (double[] column : values) {
+            double value = column[i];
+            column[i] = column[j];
+            column[j] = value;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.elec5619.backend.util;
+
+/**
+ * Aggregation functions applied to the samples of a metric within a time bucket.
+ */
+public enum MetricFunction {
+    AVG,
+    MIN,
+    MAX,
+    P95,
+    LAST,
+    COUNT;
+
+    /**
+     * Lower-case name used in requests and responses.
+     */
+    public String getName() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * Function with the given name, ignoring case, or null if unknown.
+     */
+    public static MetricFunction fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (MetricFunction function : values()) {
+            if (function.name().equalsIgnoreCase(name.trim())) {
+                return function;
+            }
+        }
+        return null;
+    }
+}
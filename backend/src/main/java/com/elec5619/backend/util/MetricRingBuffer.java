@@ -0,0 +1,271 @@
+package com.elec5619.backend.util;
+
+/**
+ * Bounded, time-ordered ring buffer of metric samples for a single server.
+ * Samples are stored column-wise in primitive arrays: one {@code long[]} of epoch
+ * millisecond timestamps and one {@code double[]} per metric, with NaN marking a
+ * missing value. When full, the oldest sample is overwritten.
+ *
+ * The buffer tracks a coverage start: the earliest timestamp from which it is known
+ * to hold every sample. Evicting or dropping samples moves coverage forward.
+ *
+ * Samples are addressed by logical index, 0 being the oldest. Not thread-safe;
+ * callers synchronize on the buffer.
+ */
+public class MetricRingBuffer {
+
+    /**
+     * Number of metric columns, indexed by metric ID (see {@link MetricValues}).
+     */
+    public static final int METRIC_COUNT = MetricValues.COUNT;
+
+    /**
+     * Heap bytes used per sample slot (timestamp plus one double per metric).
+     */
+    public static final int BYTES_PER_SAMPLE = Long.BYTES + METRIC_COUNT * Double.BYTES;
+
+    private static final int ARRAY_OVERHEAD_BYTES = 16;
+
+    private long[] timestamps;
+    private double[][] values;
+    private int head;
+    private int size;
+    private long coverageStart;
+
+    public MetricRingBuffer(int capacity, long coverageStart) {
+        allocate(Math.max(1, capacity));
+        this.coverageStart = coverageStart;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    public boolean isFull() {
+        return size == timestamps.length;
+    }
+
+    public long getCoverageStart() {
+        return coverageStart;
+    }
+
+    public void setCoverageStart(long coverageStart) {
+        this.coverageStart = coverageStart;
+    }
+
+    /**
+     * Whether every sample at or after {@code from} is held in the buffer.
+     */
+    public boolean covers(long from) {
+        return coverageStart <= from;
+    }
+
+    /**
+     * Approximate heap footprint of the buffer's arrays.
+     */
+    public long heapBytes() {
+        return (long) timestamps.length * BYTES_PER_SAMPLE + (METRIC_COUNT + 2L) * ARRAY_OVERHEAD_BYTES;
+    }
+
+    public long timestampAt(int index) {
+        return timestamps[physical(index)];
+    }
+
+    public double valueAt(int metric, int index) {
+        return values[metric][physical(index)];
+    }
+
+    /**
+     * Logical index of the first sample with timestamp at or after {@code timestamp},
+     * or {@link #size()} if there is none.
+     */
+    public int indexOfFirstAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Logical index of the first sample with timestamp strictly after {@code timestamp},
+     * or {@link #size()} if there is none.
+     */
+    public int indexOfFirstAfter(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(mid) <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Add a sample, keeping timestamp order. In-order samples are appended in O(1);
+     * a late sample is inserted at its position, and one older than everything held
+     * in a full buffer is dropped.
+     *
+     * @param sample one value per metric, NaN for missing
+     */
+    public void add(long timestamp, double[] sample) {
+        if (size == 0 || timestamp >= timestampAt(size - 1)) {
+            if (isFull()) {
+                evictOldest();
+            }
+            write(physical(size), timestamp, sample);
+            size++;
+            return;
+        }
+        int position = indexOfFirstAfter(timestamp);
+        if (isFull()) {
+            if (position == 0) {
+                coverageStart = Math.max(coverageStart, timestamp + 1);
+                return;
+            }
+            evictOldest();
+            position--;
+        }
+        for (int i = size; i > position; i--) {
+            int to = physical(i);
+            int from = physical(i - 1);
+            timestamps[to] = timestamps[from];
+            for (int m = 0; m < METRIC_COUNT; m++) {
+                values[m][to] = values[m][from];
+            }
+        }
+        write(physical(position), timestamp, sample);
+        size++;
+    }
+
+    /**
+     * Merge older, ascending history (e.g. loaded from the database) with the samples
+     * already held. Samples with a timestamp already present are skipped. If the result
+     * does not fit, the oldest samples are dropped and coverage moves forward.
+     */
+    public void merge(long[] historyTimestamps, double[][] historyValues, int count) {
+        int total = count + size;
+        long[] mergedTimestamps = new long[total];
+        double[][] mergedValues = new double[METRIC_COUNT][total];
+        int h = 0;
+        int c = 0;
+        int n = 0;
+        while (h < count || c < size) {
+            boolean takeHistory;
+            if (h >= count) {
+                takeHistory = false;
+            } else if (c >= size) {
+                takeHistory = true;
+            } else if (historyTimestamps[h] == timestampAt(c)) {
+                h++;
+                continue;
+            } else {
+                takeHistory = historyTimestamps[h] < timestampAt(c);
+            }
+            if (takeHistory) {
+                mergedTimestamps[n] = historyTimestamps[h];
+                for (int m = 0; m < METRIC_COUNT; m++) {
+                    mergedValues[m][n] = historyValues[m][h];
+                }
+                h++;
+            } else {
+                mergedTimestamps[n] = timestampAt(c);
+                for (int m = 0; m < METRIC_COUNT; m++) {
+                    mergedValues[m][n] = valueAt(m, c);
+                }
+                c++;
+            }
+            n++;
+        }
+        int capacity = capacity();
+        int skip = Math.max(0, n - capacity);
+        if (skip > 0) {
+            coverageStart = Math.max(coverageStart, mergedTimestamps[skip - 1] + 1);
+        }
+        for (int i = 0; i < n - skip; i++) {
+            timestamps[i] = mergedTimestamps[skip + i];
+            for (int m = 0; m < METRIC_COUNT; m++) {
+                values[m][i] = mergedValues[m][skip + i];
+            }
+        }
+        head = 0;
+        size = n - skip;
+    }
+
+    /**
+     * Drop every sample older than {@code timestamp}.
+     *
+     * @return the number of samples dropped
+     */
+    public int evictBefore(long timestamp) {
+        int dropped = 0;
+        while (size > 0 && timestamps[head] < timestamp) {
+            head = (head + 1) % timestamps.length;
+            size--;
+            dropped++;
+        }
+        coverageStart = Math.max(coverageStart, timestamp);
+        return dropped;
+    }
+
+    /**
+     * Change the capacity, keeping the newest samples if it shrinks.
+     */
+    public void resize(int newCapacity) {
+        newCapacity = Math.max(1, newCapacity);
+        long[] oldTimestamps = timestamps;
+        double[][] oldValues = values;
+        int oldHead = head;
+        int skip = Math.max(0, size - newCapacity);
+        if (skip > 0) {
+            coverageStart = Math.max(coverageStart, timestampAt(skip - 1) + 1);
+        }
+        int kept = size - skip;
+        allocate(newCapacity);
+        for (int i = 0; i < kept; i++) {
+            int from = (oldHead + skip + i) % oldTimestamps.length;
+            timestamps[i] = oldTimestamps[from];
+            for (int m = 0; m < METRIC_COUNT; m++) {
+                values[m][i] = oldValues[m][from];
+            }
+        }
+        size = kept;
+    }
+
+    private void allocate(int capacity) {
+        timestamps = new long[capacity];
+        values = new double[METRIC_COUNT][capacity];
+        head = 0;
+    }
+
+    private void evictOldest() {
+        coverageStart = Math.max(coverageStart, timestamps[head] + 1);
+        head = (head + 1) % timestamps.length;
+        size--;
+    }
+
+    private void write(int slot, long timestamp, double[] sample) {
+        timestamps[slot] = timestamp;
+        for (int m = 0; m < METRIC_COUNT; m++) {
+            values[m][slot] = sample[m];
+        }
+    }
+
+    private int physical(int index) {
+        return (head + index) % timestamps.length;
+    }
+}
@@ -0,0 +1,31 @@
+package com.elec5619.backend.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversions between sample timestamps and epoch milliseconds.
+ * {@code collectedAt} is a zone-less LocalDateTime, so it is mapped through UTC,
+ * which keeps the conversion reversible and bucket boundaries on wall-clock minutes and hours.
+ */
+public final class MetricTime {
+
+    private MetricTime() {
+    }
+
+    public static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Start of the bucket of the given width that contains {@code millis}.
+     */
+    public static long floor(long millis, long unitMillis) {
+        return Math.floorDiv(millis, unitMillis) * unitMillis;
+    }
+}
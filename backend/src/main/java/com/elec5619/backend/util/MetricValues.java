@@ -0,0 +1,83 @@
+package com.elec5619.backend.util;
+
+import com.elec5619.backend.entity.ServerMetrics;
+
+/**
+ * Positional access to the built-in metrics of {@link ServerMetrics}.
+ * The index of a metric is its stable metric ID, shared by the in-memory hot tier,
+ * rollups and other column-oriented stores. Missing values are represented as NaN.
+ * Custom metrics are registered by MetricRegistry with IDs from {@link #COUNT} upwards.
+ */
+public final class MetricValues {
+
+    /**
+     * Number of built-in metrics.
+     */
+    public static final int COUNT = 7;
+
+    /**
+     * Maximum number of custom metrics carried by one sample.
+     */
+    public static final int MAX_CUSTOM_PER_SAMPLE = 256;
+
+    /**
+     * Metric names indexed by metric ID, matching the keys of {@link ServerMetrics#getAllMetrics()}.
+     */
+    public static final String[] NAMES = {
+            "cpu_usage", "memory_usage", "disk_usage", "network_in", "network_out", "load_avg", "temperature"
+    };
+
+    private MetricValues() {
+    }
+
+    /**
+     * Metric ID of a built-in metric name, or -1 if unknown.
+     */
+    public static int indexOf(String name) {
+        for (int i = 0; i < COUNT; i++) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether a metric ID denotes a built-in metric stored in its own column.
+     */
+    public static boolean isBuiltIn(int metricId) {
+        return metricId >= 0 && metricId < COUNT;
+    }
+
+    /**
+     * Values of a sample indexed by metric ID, NaN where a metric is missing.
+     */
+    public static double[] toArray(ServerMetrics metrics) {
+        return new double[]{
+                orNaN(metrics.getCpuUsage()), orNaN(metrics.getMemoryUsage()), orNaN(metrics.getDiskUsage()),
+                orNaN(metrics.getNetworkIn()), orNaN(metrics.getNetworkOut()), orNaN(metrics.getLoadAvg()),
+                orNaN(metrics.getTemperature())
+        };
+    }
+
+    /**
+     * Set the metrics of a sample from values indexed by metric ID; NaN clears a metric.
+     */
+    public static void apply(ServerMetrics metrics, double[] values) {
+        metrics.setCpuUsage(orNull(values[0]));
+        metrics.setMemoryUsage(orNull(values[1]));
+        metrics.setDiskUsage(orNull(values[2]));
+        metrics.setNetworkIn(orNull(values[3]));
+        metrics.setNetworkOut(orNull(values[4]));
+        metrics.setLoadAvg(orNull(values[5]));
+        metrics.setTemperature(orNull(values[6]));
+    }
+
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+
+    private static Double orNull(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
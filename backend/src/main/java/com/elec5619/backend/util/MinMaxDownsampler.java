@@ -0,0 +1,166 @@
+package com.elec5619.backend.util;
+
+import com.elec5619.backend.entity.ServerMetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single-pass, min/max-preserving downsampler of the built-in metrics of one server.
+ * The time range is split into equal buckets and each bucket keeps, per metric, its
+ * minimum and maximum value with the time each occurred, so memory is proportional to
+ * the number of buckets whatever the number of samples, and samples may arrive in any
+ * order. Every spike and dip therefore survives in the output, unlike with averaging.
+ *
+ * Each bucket becomes at most two samples: one at the earliest extreme of any metric
+ * carrying every metric's earlier extreme, and one at the latest extreme carrying the
+ * later ones. Not thread-safe.
+ */
+public class MinMaxDownsampler {
+
+    private final long startMillis;
+    private final long spanMillis;
+    private final int buckets;
+
+    // Indexed by bucket * MetricValues.COUNT + metric ID; a NaN minimum marks no value yet
+    private final double[] minValue;
+    private final long[] minTime;
+    private final double[] maxValue;
+    private final long[] maxTime;
+    private long sampleCount;
+
+    /**
+     * @param buckets number of buckets, limited to one per millisecond of the range
+     */
+    public MinMaxDownsampler(long startMillis, long endMillis, int buckets) {
+        if (endMillis < startMillis || buckets <= 0) {
+            throw new IllegalArgumentException("Range must not be negative and buckets must be positive");
+        }
+        this.startMillis = startMillis;
+        this.spanMillis = endMillis - startMillis + 1;
+        this.buckets = (int) Math.min(buckets, spanMillis);
+        int slots = this.buckets * MetricValues.COUNT;
+        this.minValue = new double[slots];
+        this.minTime = new long[slots];
+        this.maxValue = new double[slots];
+        this.maxTime = new long[slots];
+        Arrays.fill(minValue, Double.NaN);
+    }
+
+    /**
+     * Add a sample given as values indexed by metric ID, NaN where missing. Samples outside
+     * the range are ignored.
+     */
+    public void add(long timestamp, double[] values) {
+        int bucket = bucketOf(timestamp);
+        if (bucket < 0) {
+            return;
+        }
+        sampleCount++;
+        for (int m = 0; m < MetricValues.COUNT; m++) {
+            accept(bucket * MetricValues.COUNT + m, timestamp, values[m]);
+        }
+    }
+
+    /**
+     * Add a sample entity. Samples without a collection time or outside the range are ignored.
+     */
+    public void add(ServerMetrics sample) {
+        if (sample.getCollectedAt() == null) {
+            return;
+        }
+        long timestamp = MetricTime.toMillis(sample.getCollectedAt());
+        int bucket = bucketOf(timestamp);
+        if (bucket < 0) {
+            return;
+        }
+        sampleCount++;
+        for (int m = 0; m < MetricValues.COUNT; m++) {
+            Double value = sample.getMetricValue(m);
+            if (value != null) {
+                accept(bucket * MetricValues.COUNT + m, timestamp, value);
+            }
+        }
+    }
+
+    /**
+     * Number of samples added within the range.
+     */
+    public long sampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * The downsampled series of the server, newest first, at most two samples per bucket.
+     */
+    public List<ServerMetrics> toMetrics(Long serverId) {
+        List<ServerMetrics> result = new ArrayList<>();
+        double[] early = new double[MetricValues.COUNT];
+        double[] late = new double[MetricValues.COUNT];
+        for (int bucket = buckets - 1; bucket >= 0; bucket--) {
+            long earliest = Long.MAX_VALUE;
+            long latest = Long.MIN_VALUE;
+            for (int m = 0; m < MetricValues.COUNT; m++) {
+                int slot = bucket * MetricValues.COUNT + m;
+                if (Double.isNaN(minValue[slot])) {
+                    early[m] = Double.NaN;
+                    late[m] = Double.NaN;
+                    continue;
+                }
+                boolean minFirst = minTime[slot] <= maxTime[slot];
+                early[m] = minFirst ? minValue[slot] : maxValue[slot];
+                late[m] = minFirst ? maxValue[slot] : minValue[slot];
+                earliest = Math.min(earliest, Math.min(minTime[slot], maxTime[slot]));
+                latest = Math.max(latest, Math.max(minTime[slot], maxTime[slot]));
+            }
+            if (earliest == Long.MAX_VALUE) {
+                continue;
+            }
+            if (latest != earliest) {
+                result.add(toSample(serverId, latest, late));
+            }
+            result.add(toSample(serverId, earliest, early));
+        }
+        return result;
+    }
+
+    // ======= Internal =======
+
+    private int bucketOf(long timestamp) {
+        long offset = timestamp - startMillis;
+        if (offset < 0 || offset >= spanMillis) {
+            return -1;
+        }
+        return (int) (offset * buckets / spanMillis);
+    }
+
+    private void accept(int slot, long timestamp, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (Double.isNaN(minValue[slot])) {
+            minValue[slot] = value;
+            minTime[slot] = timestamp;
+            maxValue[slot] = value;
+            maxTime[slot] = timestamp;
+            return;
+        }
+        // Ties keep the earlier sample so the result does not depend on arrival order
+        if (value < minValue[slot] || (value == minValue[slot] && timestamp < minTime[slot])) {
+            minValue[slot] = value;
+            minTime[slot] = timestamp;
+        }
+        if (value > maxValue[slot] || (value == maxValue[slot] && timestamp < maxTime[slot])) {
+            maxValue[slot] = value;
+            maxTime[slot] = timestamp;
+        }
+    }
+
+    private static ServerMetrics toSample(Long serverId, long timestamp, double[] values) {
+        ServerMetrics sample = new ServerMetrics(serverId);
+        sample.setCollectedAt(MetricTime.toDateTime(timestamp));
+        MetricValues.apply(sample, values);
+        return sample;
+    }
+}
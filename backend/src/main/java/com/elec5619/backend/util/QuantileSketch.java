@@ -0,0 +1,308 @@
+package com.elec5619.backend.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+
+/**
+ * Mergeable quantile sketch with bounded relative error (DDSketch).
+ * Values are counted in logarithmically sized bins, so any quantile is estimated
+ * within {@link #RELATIVE_ACCURACY} of the true value, and two sketches merge
+ * exactly by adding their bin counts. Negative values use a mirrored set of bins,
+ * and values too close to zero to index are counted as zero.
+ *
+ * The number of bins per sign is capped; beyond it the lowest bins are collapsed,
+ * which only affects the accuracy of the smallest magnitudes. Not thread-safe.
+ */
+public class QuantileSketch {
+
+    /**
+     * Maximum relative error of a quantile estimate.
+     */
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    static final int MAX_BINS = 2048;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_INDEXABLE = 1e-9;
+    private static final byte FORMAT_VERSION = 1;
+
+    private final Bins positive = new Bins();
+    private final Bins negative = new Bins();
+    private long zeroCount;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+    }
+
+    /**
+     * Add a single observation; NaN is ignored.
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value > MIN_INDEXABLE) {
+            positive.add(index(value), 1);
+        } else if (value < -MIN_INDEXABLE) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Merge the observations of another sketch into this one.
+     */
+    public void merge(QuantileSketch other) {
+        if (other == null || other.isEmpty()) {
+            return;
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public boolean isEmpty() {
+        return getCount() == 0;
+    }
+
+    public long getCount() {
+        return zeroCount + positive.total + negative.total;
+    }
+
+    public double getMin() {
+        return isEmpty() ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return isEmpty() ? Double.NaN : max;
+    }
+
+    /**
+     * Estimate of the value at quantile {@code q} in [0, 1], or NaN if the sketch is empty.
+     * The quantile is the lower-rank observation, the one at 0-based rank
+     * {@code floor(q * (count - 1))}, not an interpolation between neighbours; the estimate
+     * is within {@link #RELATIVE_ACCURACY} of it.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+        }
+        long count = getCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double rank = q * (count - 1);
+        long seen = 0;
+        // Most negative values first, i.e. the negative bins from the largest magnitude down
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) {
+                return clamp(-value(negative.offset + i));
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return clamp(0);
+        }
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) {
+                return clamp(value(positive.offset + i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Compact binary form: a format version, min and max, the zero count, then the
+     * non-empty bin range of each sign as varints.
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + positive.counts.length + negative.counts.length);
+        out.write(FORMAT_VERSION);
+        writeLong(out, Double.doubleToRawLongBits(min));
+        writeLong(out, Double.doubleToRawLongBits(max));
+        writeVarLong(out, zeroCount);
+        positive.writeTo(out);
+        negative.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a sketch written by {@link #toByteArray()}.
+     *
+     * @throws IllegalArgumentException if the data is not a sketch of a supported format
+     */
+    public static QuantileSketch fromByteArray(byte[] data) {
+        if (data == null || data.length == 0 || data[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported quantile sketch format");
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(data, 1, data.length - 1);
+            QuantileSketch sketch = new QuantileSketch();
+            sketch.min = Double.longBitsToDouble(in.getLong());
+            sketch.max = Double.longBitsToDouble(in.getLong());
+            sketch.zeroCount = readVarLong(in);
+            sketch.positive.readFrom(in);
+            sketch.negative.readFrom(in);
+            return sketch;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated quantile sketch", e);
+        }
+    }
+
+    // ======= Internal =======
+
+    static int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    // Value with the same relative distance to both bounds of the bin
+    static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (1 + GAMMA);
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Contiguous bin counts starting at bin index {@code offset}.
+     */
+    private static final class Bins {
+        long[] counts = new long[0];
+        int offset;
+        long total;
+
+        void add(int index, long count) {
+            if (counts.length == 0) {
+                counts = new long[16];
+                offset = index - 8;
+            } else if (index < offset || index >= offset + counts.length) {
+                extend(index);
+            }
+            // An index below the range after collapsing goes to the lowest bin
+            counts[Math.max(index, offset) - offset] += count;
+            total += count;
+        }
+
+        void merge(Bins other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] > 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        private void extend(int index) {
+            int first = 0;
+            while (counts[first] == 0) {
+                first++;
+            }
+            int last = counts.length - 1;
+            while (counts[last] == 0) {
+                last--;
+            }
+            int low = Math.min(offset + first, index);
+            int high = Math.max(offset + last, index);
+            if (high - low + 1 > MAX_BINS) {
+                low = high - MAX_BINS + 1;
+            } else {
+                // Leave room to grow in the direction of the new index
+                int slack = Math.min(Math.max(8, counts.length / 2), MAX_BINS - (high - low + 1));
+                if (index < offset) {
+                    low -= slack;
+                } else {
+                    high += slack;
+                }
+            }
+            long[] grown = new long[high - low + 1];
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    grown[Math.max(offset + i, low) - low] += counts[i];
+                }
+            }
+            counts = grown;
+            offset = low;
+        }
+
+        void writeTo(ByteArrayOutputStream out) {
+            int first = 0;
+            int last = counts.length - 1;
+            while (first <= last && counts[first] == 0) {
+                first++;
+            }
+            while (last >= first && counts[last] == 0) {
+                last--;
+            }
+            writeVarLong(out, last - first + 1);
+            if (last < first) {
+                return;
+            }
+            writeVarLong(out, zigZag(offset + first));
+            for (int i = first; i <= last; i++) {
+                writeVarLong(out, counts[i]);
+            }
+        }
+
+        void readFrom(ByteBuffer in) {
+            int length = (int) readVarLong(in);
+            if (length > MAX_BINS) {
+                throw new IllegalArgumentException("Too many bins in quantile sketch: " + length);
+            }
+            counts = new long[length];
+            total = 0;
+            if (length == 0) {
+                return;
+            }
+            offset = unZigZag(readVarLong(in));
+            for (int i = 0; i < length; i++) {
+                counts[i] = readVarLong(in);
+                total += counts[i];
+            }
+        }
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in quantile sketch");
+    }
+
+    private static long zigZag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unZigZag(long value) {
+        int v = (int) value;
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -0,0 +1,174 @@
+package com.elec5619.backend.util;
+
+import java.util.Arrays;
+
+/**
+ * Least-squares linear regression of a value over time within a sliding time window.
+ * The window is split into a fixed number of buckets that each hold the partial sums of
+ * their samples, so adding a sample is O(1) and the oldest bucket expires as a whole
+ * when the window moves past it. The running totals are recomputed from the buckets
+ * once per bucket width as the window advances, which keeps them free of accumulated
+ * rounding error without rescanning any samples.
+ *
+ * Times are in epoch milliseconds and are regressed in hours relative to the first
+ * sample, so the slope is in value units per hour. Not thread-safe.
+ */
+public class SlidingRegression {
+
+    private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+    private final long bucketMillis;
+    private final long[] bucketIndex;
+    private final double[] n;
+    private final double[] sumT;
+    private final double[] sumY;
+    private final double[] sumTT;
+    private final double[] sumTY;
+
+    private double totalN;
+    private double totalT;
+    private double totalY;
+    private double totalTT;
+    private double totalTY;
+    private long newestBucket = Long.MIN_VALUE;
+    private long origin = Long.MIN_VALUE;
+    private long lastTime = Long.MIN_VALUE;
+
+    public SlidingRegression(long windowMillis, int buckets) {
+        if (windowMillis <= 0 || buckets <= 0 || windowMillis < buckets) {
+            throw new IllegalArgumentException("Window must be positive and at least one millisecond per bucket");
+        }
+        this.bucketMillis = windowMillis / buckets;
+        this.bucketIndex = new long[buckets];
+        this.n = new double[buckets];
+        this.sumT = new double[buckets];
+        this.sumY = new double[buckets];
+        this.sumTT = new double[buckets];
+        this.sumTY = new double[buckets];
+        Arrays.fill(bucketIndex, Long.MIN_VALUE);
+    }
+
+    /**
+     * Add a sample. Samples older than the window are ignored.
+     */
+    public void add(long timestamp, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        long bucket = Math.floorDiv(timestamp, bucketMillis);
+        if (newestBucket != Long.MIN_VALUE && bucket <= newestBucket - bucketIndex.length) {
+            return;
+        }
+        if (origin == Long.MIN_VALUE) {
+            origin = timestamp;
+        }
+        if (bucket > newestBucket) {
+            advance(bucket);
+        }
+        int slot = (int) Math.floorMod(bucket, (long) bucketIndex.length);
+        if (bucketIndex[slot] != bucket) {
+            clear(slot);
+            bucketIndex[slot] = bucket;
+        }
+        double t = (timestamp - origin) / MILLIS_PER_HOUR;
+        n[slot]++;
+        sumT[slot] += t;
+        sumY[slot] += value;
+        sumTT[slot] += t * t;
+        sumTY[slot] += t * value;
+        totalN++;
+        totalT += t;
+        totalY += value;
+        totalTT += t * t;
+        totalTY += t * value;
+        lastTime = Math.max(lastTime, timestamp);
+    }
+
+    /**
+     * Number of samples in the window.
+     */
+    public long count() {
+        return (long) totalN;
+    }
+
+    /**
+     * Time of the newest sample in epoch milliseconds, or {@code Long.MIN_VALUE} if none was added.
+     */
+    public long lastTime() {
+        return lastTime;
+    }
+
+    /**
+     * Slope of the fitted line in value units per hour, or NaN with fewer than two distinct times.
+     */
+    public double slope() {
+        double denominator = totalN * totalTT - totalT * totalT;
+        if (totalN < 2 || denominator <= 1e-12 * totalN * totalTT) {
+            return Double.NaN;
+        }
+        return (totalN * totalTY - totalT * totalY) / denominator;
+    }
+
+    /**
+     * Value of the fitted line at a time in epoch milliseconds, or NaN if there is no fit.
+     */
+    public double predict(long timestamp) {
+        double slope = slope();
+        if (Double.isNaN(slope)) {
+            return Double.NaN;
+        }
+        double intercept = (totalY - slope * totalT) / totalN;
+        return intercept + slope * ((timestamp - origin) / MILLIS_PER_HOUR);
+    }
+
+    /**
+     * Hours from the newest sample until the fitted line reaches {@code limit}: zero if it is
+     * already there, and NaN if there is no fit or the trend does not lead to the limit.
+     */
+    public double hoursUntil(double limit) {
+        double slope = slope();
+        if (Double.isNaN(slope)) {
+            return Double.NaN;
+        }
+        double current = predict(lastTime);
+        if (current >= limit) {
+            return 0;
+        }
+        return slope > 0 ? (limit - current) / slope : Double.NaN;
+    }
+
+    // ======= Internal =======
+
+    // Expire the buckets that fall out of the window and recompute the totals from the rest
+    private void advance(long bucket) {
+        newestBucket = bucket;
+        totalN = 0;
+        totalT = 0;
+        totalY = 0;
+        totalTT = 0;
+        totalTY = 0;
+        for (int slot = 0; slot < bucketIndex.length; slot++) {
+            if (bucketIndex[slot] == Long.MIN_VALUE) {
+                continue;
+            }
+            if (bucketIndex[slot] <= bucket - bucketIndex.length) {
+                clear(slot);
+                continue;
+            }
+            totalN += n[slot];
+            totalT += sumT[slot];
+            totalY += sumY[slot];
+            totalTT += sumTT[slot];
+            totalTY += sumTY[slot];
+        }
+    }
+
+    private void clear(int slot) {
+        bucketIndex[slot] = Long.MIN_VALUE;
+        n[slot] = 0;
+        sumT[slot] = 0;
+        sumY[slot] = 0;
+        sumTT[slot] = 0;
+        sumTY[slot] = 0;
+    }
+}
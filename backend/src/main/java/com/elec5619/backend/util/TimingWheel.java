@@ -0,0 +1,148 @@
+package com.elec5619.backend.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel of deadlines.
+ * The first level is a ring of buckets one tick wide; every further level, created on
+ * demand, has buckets spanning a full rotation of the level below. Scheduling is O(1),
+ * and advancing the clock only touches the buckets that come due, moving the entries of
+ * an upper level down a level when their bucket is reached, so the cost of a tick does
+ * not depend on how many entries are waiting.
+ *
+ * An entry expires on the first advance to a tick boundary at or after its deadline, so
+ * never early and at most one tick late. Entries cannot be cancelled; their owners ignore
+ * the ones they no longer need when they expire. Not thread-safe.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<Level<T>> levels = new ArrayList<>();
+    // Tick boundary up to which the wheel has advanced
+    private long currentTime;
+    private int size;
+
+    /**
+     * @param startMillis time the wheel starts at, rounded down to a tick
+     */
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("Tick must be positive and the wheel must have at least 2 buckets");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTime = MetricTime.floor(startMillis, tickMillis);
+        levels.add(new Level<>(tickMillis, wheelSize));
+    }
+
+    private static final class Entry<T> {
+        final T item;
+        // Tick boundary the entry expires at
+        final long expiration;
+
+        Entry(T item, long expiration) {
+            this.item = item;
+            this.expiration = expiration;
+        }
+    }
+
+    private static final class Level<T> {
+        final long tickMillis;
+        final long intervalMillis;
+        final List<Entry<T>>[] buckets;
+
+        @SuppressWarnings("unchecked")
+        Level(long tickMillis, int wheelSize) {
+            this.tickMillis = tickMillis;
+            this.intervalMillis = tickMillis * wheelSize;
+            this.buckets = new List[wheelSize];
+        }
+
+        void add(Entry<T> entry) {
+            int index = (int) ((entry.expiration / tickMillis) % buckets.length);
+            if (buckets[index] == null) {
+                buckets[index] = new ArrayList<>();
+            }
+            buckets[index].add(entry);
+        }
+
+        List<Entry<T>> take(long time) {
+            int index = (int) ((time / tickMillis) % buckets.length);
+            List<Entry<T>> bucket = buckets[index];
+            buckets[index] = null;
+            return bucket != null ? bucket : Collections.emptyList();
+        }
+    }
+
+    /**
+     * Schedule an item to expire at a deadline. A deadline already passed expires on the next tick.
+     */
+    public void schedule(T item, long deadlineMillis) {
+        long expiration = Math.max(-Math.floorDiv(-deadlineMillis, tickMillis) * tickMillis, currentTime + tickMillis);
+        place(new Entry<>(item, expiration));
+        size++;
+    }
+
+    /**
+     * Advance the clock to a time, handing every entry that expires on the way to a consumer
+     * in order of expiration.
+     */
+    public void advance(long nowMillis, Consumer<? super T> expired) {
+        while (currentTime + tickMillis <= nowMillis) {
+            currentTime += tickMillis;
+            // Move down the entries of upper-level buckets starting now, highest level first
+            for (int l = levels.size() - 1; l >= 1; l--) {
+                Level<T> level = levels.get(l);
+                if (currentTime % level.tickMillis != 0) {
+                    continue;
+                }
+                for (Entry<T> entry : level.take(currentTime)) {
+                    if (entry.expiration <= currentTime) {
+                        expire(entry, expired);
+                    } else {
+                        place(entry);
+                    }
+                }
+            }
+            for (Entry<T> entry : levels.get(0).take(currentTime)) {
+                expire(entry, expired);
+            }
+        }
+    }
+
+    /**
+     * Number of entries waiting to expire.
+     */
+    public int size() {
+        return size;
+    }
+
+    public long currentTime() {
+        return currentTime;
+    }
+
+    // ======= Internal =======
+
+    // The lowest level whose current rotation reaches the expiration takes the entry
+    private void place(Entry<T> entry) {
+        for (int l = 0; ; l++) {
+            if (l == levels.size()) {
+                levels.add(new Level<>(levels.get(l - 1).intervalMillis, wheelSize));
+            }
+            Level<T> level = levels.get(l);
+            if (entry.expiration < MetricTime.floor(currentTime, level.tickMillis) + level.intervalMillis) {
+                level.add(entry);
+                return;
+            }
+        }
+    }
+
+    private void expire(Entry<T> entry, Consumer<? super T> expired) {
+        size--;
+        expired.accept(entry.item);
+    }
+}
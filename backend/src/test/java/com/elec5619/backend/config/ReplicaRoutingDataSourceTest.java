@@ -0,0 +1,107 @@
+package com.elec5619.backend.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routes between two H2 in-memory databases standing in for the primary and the replica.
+ */
+class ReplicaRoutingDataSourceTest {
+    JdbcTemplate primary;
+    JdbcTemplate replica;
+    boolean replicaDown;
+    ReplicaRoutingDataSource routing;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate readOnly;
+    TransactionTemplate readWrite;
+
+    @BeforeEach void setUp() {
+        DriverManagerDataSource primaryDataSource = h2("primary");
+        DriverManagerDataSource replicaDataSource = h2("replica");
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+        primary.execute("CREATE TABLE marker (name VARCHAR(16))");
+        primary.update("INSERT INTO marker VALUES ('primary')");
+        replica.execute("CREATE TABLE marker (name VARCHAR(16))");
+        replica.update("INSERT INTO marker VALUES ('replica')");
+        replica.execute("CREATE TABLE replica_lag (seconds DOUBLE)");
+        replica.update("INSERT INTO replica_lag VALUES (0)");
+
+        DelegatingDataSource failingReplica = new DelegatingDataSource(replicaDataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (replicaDown) {
+                    throw new SQLException("connection refused");
+                }
+                return super.getConnection();
+            }
+        };
+        routing = new ReplicaRoutingDataSource(primaryDataSource, failingReplica, 5, "SELECT seconds FROM replica_lag");
+        routing.afterPropertiesSet();
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @Test void readOnlyTransactionsUseTheReplica_everythingElseThePrimary() {
+        assertTrue(routing.isReplicaUsable());
+        assertEquals("replica", readOnly.execute(status -> marker()));
+        assertEquals("primary", readWrite.execute(status -> marker()));
+        assertEquals("primary", marker());
+        assertEquals(1, routing.getReplicaRoutes());
+    }
+
+    @Test void laggingReplicaFallsBackToThePrimaryUntilItCatchesUp() {
+        replica.update("UPDATE replica_lag SET seconds = 30");
+        routing.checkReplicaLag();
+        assertFalse(routing.isReplicaUsable());
+        assertEquals(30.0, routing.getLastLagSeconds(), 1e-9);
+        assertEquals("primary", readOnly.execute(status -> marker()));
+        assertEquals(1, routing.getPrimaryFallbacks());
+
+        replica.update("UPDATE replica_lag SET seconds = 1");
+        routing.checkReplicaLag();
+        assertTrue(routing.isReplicaUsable());
+        assertEquals("replica", readOnly.execute(status -> marker()));
+    }
+
+    @Test void unreachableReplicaFallsBackToThePrimary() {
+        replicaDown = true;
+        assertEquals("primary", readOnly.execute(status -> marker()));
+        assertFalse(routing.isReplicaUsable());
+
+        // The probe reads through the same pool, so it keeps the replica out while it is down
+        routing.checkReplicaLag();
+        assertFalse(routing.isReplicaUsable());
+        assertTrue(Double.isNaN(routing.getLastLagSeconds()));
+
+        replicaDown = false;
+        routing.checkReplicaLag();
+        assertEquals("replica", readOnly.execute(status -> marker()));
+    }
+
+    private String marker() {
+        return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+    }
+
+    private static DriverManagerDataSource h2(String name) {
+        return new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
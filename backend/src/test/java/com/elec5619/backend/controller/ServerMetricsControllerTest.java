@@ -1,9 +1,18 @@
 package com.elec5619.backend.controller;
 
+import com.elec5619.backend.dto.MetricsBatchResultDto;
+import com.elec5619.backend.dto.MetricsIngestStatsDto;
+import com.elec5619.backend.dto.MetricsPercentileSummaryDto;
+import com.elec5619.backend.dto.MetricsQueryDto;
+import com.elec5619.backend.dto.MetricsRankedServerDto;
+import com.elec5619.backend.dto.MetricsSeriesDto;
 import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.entity.ServerStatus;
 import com.elec5619.backend.config.WebConfig;
 import com.elec5619.backend.interceptor.JwtInterceptor;
 import com.elec5619.backend.util.JwtUtil;
+import com.elec5619.backend.util.MetricAggregate;
+import com.elec5619.backend.util.MetricValues;
 import com.elec5619.backend.service.ServerMetricsService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,12 +23,16 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -66,11 +79,15 @@ class ServerMetricsControllerTest {
     }
 
     @Test
-    void list_with_limit_offset_ok() throws Exception {
-        when(serverMetricsService.getMetricsForServer(eq(10L), anyInt(), anyInt())).thenReturn(List.of(metrics));
-        mockMvc.perform(get("/api/servers/10/metrics?limit=50&offset=0"))
+    void list_with_limit_and_cursor_ok() throws Exception {
+        when(serverMetricsService.getMetricsForServer(eq(10L), anyInt(), any(), any())).thenReturn(List.of(metrics));
+        mockMvc.perform(get("/api/servers/10/metrics?limit=50"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].metricId").value(1L));
+        mockMvc.perform(get("/api/servers/10/metrics?limit=5000&beforeTime=2025-01-01T00:00:00&beforeId=42"))
+                .andExpect(status().isOk());
+        org.mockito.Mockito.verify(serverMetricsService).getMetricsForServer(10L, 1000,
+                LocalDateTime.of(2025, 1, 1, 0, 0), 42L);
     }
 
     @Test
@@ -82,24 +99,100 @@ class ServerMetricsControllerTest {
     }
 
     @Test
-    void range_for_all_ok() throws Exception {
-        when(serverMetricsService.getAllMetrics(any(LocalDateTime.class), any(LocalDateTime.class)))
+    void range_for_server_withStepOrMaxPoints() throws Exception {
+        when(serverMetricsService.getMetricsForServer(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class), anyLong()))
+                .thenReturn(List.of(metrics));
+        mockMvc.perform(get("/api/servers/10/metrics/range?startTime=2025-01-01T00:00:00&endTime=2025-01-31T00:00:00&step=3600"))
+                .andExpect(status().isOk());
+        when(serverMetricsService.getDownsampledMetrics(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class), anyInt()))
                 .thenReturn(List.of(metrics));
-        mockMvc.perform(get("/api/servers/metrics/range?startTime=2025-01-01T00:00:00&endTime=2025-01-01T01:00:00"))
+        mockMvc.perform(get("/api/servers/10/metrics/range?startTime=2025-01-01T00:00:00&endTime=2025-01-01T01:00:00&maxPoints=60"))
                 .andExpect(status().isOk());
+        org.mockito.Mockito.verify(serverMetricsService).getDownsampledMetrics(eq(10L), any(LocalDateTime.class), any(LocalDateTime.class), eq(60));
+        mockMvc.perform(get("/api/servers/10/metrics/range?startTime=2025-01-01T00:00:00&endTime=2025-01-01T01:00:00&step=0"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
-    void recent_ok() throws Exception {
-        when(serverMetricsService.getAllMetrics(any(LocalDateTime.class), any(LocalDateTime.class)))
-                .thenReturn(List.of(metrics));
-        mockMvc.perform(get("/api/servers/metrics/recent"))
-                .andExpect(status().isOk());
+    void range_for_server_columnarAndBinary() throws Exception {
+        ServerMetrics older = new ServerMetrics(10L);
+        older.setCollectedAt(LocalDateTime.of(2025, 1, 1, 0, 0));
+        older.setCpuUsage(0.25);
+        metrics.setCollectedAt(LocalDateTime.of(2025, 1, 1, 0, 1));
+        when(serverMetricsService.getMetricsForServer(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(List.of(metrics, older));
+
+        mockMvc.perform(get("/api/servers/10/metrics/range?startTime=2025-01-01T00:00:00&endTime=2025-01-01T01:00:00&format=columnar"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/vnd.metrics.columnar+json"))
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.timestamps[0]").value(1735689600000L))
+                .andExpect(jsonPath("$.cpu_usage[0]").value(0.25))
+                .andExpect(jsonPath("$.cpu_usage[1]").value(0.5))
+                .andExpect(jsonPath("$.memory_usage[0]").value(org.hamcrest.Matchers.nullValue()));
+
+        MvcResult result = mockMvc.perform(get("/api/servers/10/metrics/range?startTime=2025-01-01T00:00:00&endTime=2025-01-01T01:00:00")
+                        .header("Accept", "application/vnd.metrics.columnar+octet-stream"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Metric-Columns", org.hamcrest.Matchers.startsWith("timestamps,cpu_usage,")))
+                .andReturn();
+        java.nio.ByteBuffer binary = java.nio.ByteBuffer.wrap(result.getResponse().getContentAsByteArray())
+                .order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        org.junit.jupiter.api.Assertions.assertEquals(2, binary.getInt());
+        org.junit.jupiter.api.Assertions.assertEquals(8, binary.getInt());
+        org.junit.jupiter.api.Assertions.assertEquals(8 + 8 * 2 * 8, binary.capacity());
+        org.junit.jupiter.api.Assertions.assertEquals(1735689600000.0, binary.getDouble(8));
+        org.junit.jupiter.api.Assertions.assertEquals(0.5, binary.getDouble(8 + 8 * 3));
+
+        mockMvc.perform(get("/api/servers/10/metrics/range?startTime=2025-01-01T00:00:00&endTime=2025-01-01T01:00:00&format=xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void streamTwoSamples() {
+        ServerMetrics other = new ServerMetrics(11L);
+        other.setMetricId(2L);
+        other.setCollectedAt(LocalDateTime.now());
+        when(serverMetricsService.streamAllMetrics(any(LocalDateTime.class), any(LocalDateTime.class), any()))
+                .thenAnswer(inv -> {
+                    Consumer<ServerMetrics> consumer = inv.getArgument(2);
+                    consumer.accept(metrics);
+                    consumer.accept(other);
+                    return 2L;
+                });
+    }
+
+    @Test
+    void range_for_all_streamsJsonArray() throws Exception {
+        streamTwoSamples();
+        MvcResult result = mockMvc.perform(get("/api/servers/metrics/range?startTime=2025-01-01T00:00:00&endTime=2025-01-01T01:00:00"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].metricId").value(2L));
+    }
+
+    @Test
+    void recent_streamsNdjsonWhenAccepted() throws Exception {
+        streamTwoSamples();
+        MvcResult result = mockMvc.perform(get("/api/servers/metrics/recent").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        org.junit.jupiter.api.Assertions.assertEquals(2, lines.length);
+        org.junit.jupiter.api.Assertions.assertEquals(2L,
+                objectMapper.readValue(lines[1], ServerMetrics.class).getMetricId());
     }
 
     @Test
     void collect_validate_and_ok() throws Exception {
-        when(serverMetricsService.saveMetrics(any(ServerMetrics.class))).thenReturn(metrics);
+        when(serverMetricsService.acceptMetrics(any(ServerMetrics.class))).thenReturn(true);
 
         // Bad request - missing serverId
         ServerMetrics invalid = new ServerMetrics();
@@ -119,6 +212,86 @@ class ServerMetricsControllerTest {
                 .andExpect(jsonPath("$.message").value("Metrics received successfully"));
     }
 
+    @Test
+    void collect_queueFull_returnsServiceUnavailable() throws Exception {
+        when(serverMetricsService.acceptMetrics(any(ServerMetrics.class))).thenReturn(false);
+        ServerMetrics valid = new ServerMetrics();
+        valid.setServerId(10L);
+        mockMvc.perform(post("/api/servers/metrics/collect")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(valid)))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void query_returnsSeries_andRejectsInvalidRange() throws Exception {
+        MetricsSeriesDto series = new MetricsSeriesDto();
+        series.setStep(60);
+        series.setTimestamps(new long[] {0L, 60000L});
+        series.getSeries().add(new MetricsSeriesDto.Series(10L, "cpu_usage", "avg", "database", new Double[] {1.0, null}));
+        when(serverMetricsService.queryMetrics(any(MetricsQueryDto.class))).thenReturn(series);
+
+        String body = "{\"serverIds\":[10],\"metrics\":[\"cpu_usage\"],\"functions\":[\"avg\"],"
+                + "\"startTime\":\"2025-01-01T10:00:00\",\"endTime\":\"2025-01-01T10:01:00\",\"step\":60}";
+        mockMvc.perform(post("/api/servers/metrics/query").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.timestamps[1]").value(60000))
+                .andExpect(jsonPath("$.series[0].values[0]").value(1.0));
+
+        String reversed = body.replace("10:01:00", "09:00:00");
+        mockMvc.perform(post("/api/servers/metrics/query").contentType(MediaType.APPLICATION_JSON).content(reversed))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/servers/metrics/query").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"startTime\":\"2025-01-01T10:00:00\",\"endTime\":\"2025-01-01T10:01:00\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void metricNames_listsRegisteredMetrics() throws Exception {
+        when(serverMetricsService.getMetricNames()).thenReturn(List.of("cpu_usage", "gpu.0.usage"));
+        mockMvc.perform(get("/api/servers/metrics/names"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[1]").value("gpu.0.usage"));
+    }
+
+    @Test
+    void ingest_stats_ok() throws Exception {
+        MetricsIngestStatsDto stats = new MetricsIngestStatsDto();
+        stats.setQueueCapacity(100);
+        when(serverMetricsService.getIngestStats()).thenReturn(stats);
+        mockMvc.perform(get("/api/servers/metrics/ingest/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.queueCapacity").value(100));
+    }
+
+    @Test
+    void collect_batch_json_and_ndjson() throws Exception {
+        MetricsBatchResultDto result = new MetricsBatchResultDto();
+        result.addResult(0, 10L, null);
+        result.addResult(1, null, "Malformed sample");
+        when(serverMetricsService.saveMetricsBatch(anyList())).thenReturn(result);
+
+        ServerMetrics valid = new ServerMetrics();
+        valid.setServerId(10L);
+        mockMvc.perform(post("/api/servers/metrics/collect/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(valid))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.results[1].error").value("Malformed sample"));
+
+        mockMvc.perform(post("/api/servers/metrics/collect/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"serverId\":10,\"cpuUsage\":1.5}\nnot-json\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rejected").value(1));
+
+        mockMvc.perform(post("/api/servers/metrics/collect/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void generate_ok() throws Exception {
         mockMvc.perform(post("/api/servers/metrics/generate"))
@@ -127,17 +300,78 @@ class ServerMetricsControllerTest {
 
     @Test
     void summary_ok_or_notFound() throws Exception {
-        when(serverMetricsService.getMetricsForServer(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class)))
-                .thenReturn(List.of(metrics));
+        MetricAggregate[] summary = new MetricAggregate[MetricValues.COUNT];
+        for (int m = 0; m < MetricValues.COUNT; m++) {
+            summary[m] = new MetricAggregate();
+        }
+        summary[MetricValues.indexOf("cpu_usage")].add(40.0, 1);
+        summary[MetricValues.indexOf("cpu_usage")].add(60.0, 2);
+        when(serverMetricsService.getMetricsSummary(eq(10L), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(summary);
         mockMvc.perform(get("/api/servers/10/metrics/summary"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.dataPoints").exists());
+                .andExpect(jsonPath("$.dataPoints").value(2))
+                .andExpect(jsonPath("$.averages.cpu").value(50.0))
+                .andExpect(jsonPath("$.maximums.cpu").value(60.0))
+                .andExpect(jsonPath("$.maximums.memory").value(0.0));
+        verify(serverMetricsService, never()).getMetricsForServer(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class));
 
-        when(serverMetricsService.getMetricsForServer(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class)))
-                .thenReturn(List.of());
+        MetricAggregate[] empty = new MetricAggregate[MetricValues.COUNT];
+        for (int m = 0; m < MetricValues.COUNT; m++) {
+            empty[m] = new MetricAggregate();
+        }
+        when(serverMetricsService.getMetricsSummary(eq(11L), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(empty);
         mockMvc.perform(get("/api/servers/11/metrics/summary"))
                 .andExpect(status().isNotFound());
     }
-}
 
+    @Test
+    void percentiles_forServerOrProject_andRequireScope() throws Exception {
+        MetricsPercentileSummaryDto.MetricPercentiles cpu = new MetricsPercentileSummaryDto.MetricPercentiles();
+        cpu.setMetric("cpu_usage");
+        cpu.setCount(100L);
+        cpu.setP95(91.5);
+        MetricsPercentileSummaryDto summary = new MetricsPercentileSummaryDto();
+        summary.getMetrics().add(cpu);
+        when(serverMetricsService.getPercentileSummary(eq(List.of(10L)), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(summary);
+        when(serverMetricsService.getProjectPercentileSummary(eq(3L), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(summary);
+
+        mockMvc.perform(get("/api/servers/10/metrics/percentiles"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.metrics[0].p95").value(91.5));
+        mockMvc.perform(get("/api/servers/metrics/percentiles").param("projectId", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.metrics[0].count").value(100));
+        mockMvc.perform(get("/api/servers/metrics/percentiles"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/servers/metrics/percentiles").param("serverIds", "10")
+                .param("startTime", "2025-01-02T00:00:00").param("endTime", "2025-01-01T00:00:00"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void topServers_parsesOrderAndScope() throws Exception {
+        MetricsRankedServerDto first = new MetricsRankedServerDto();
+        first.setRank(1);
+        first.setServerId(10L);
+        first.setValue(97.5);
+        when(serverMetricsService.getTopServers("cpu_usage", 5, true, 3L, ServerStatus.online))
+                .thenReturn(List.of(first));
+        when(serverMetricsService.getTopServers("disk_usage", 10, false, null, null))
+                .thenReturn(List.of());
 
+        mockMvc.perform(get("/api/servers/metrics/top").param("metric", "cpu_usage").param("k", "5")
+                        .param("projectId", "3").param("status", "online"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].serverId").value(10))
+                .andExpect(jsonPath("$[0].value").value(97.5));
+        mockMvc.perform(get("/api/servers/metrics/top").param("metric", "disk_usage").param("order", "bottom"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/api/servers/metrics/top").param("metric", "cpu_usage").param("order", "sideways"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,56 @@
+package com.elec5619.backend.repository;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=" + ServerMetricsInsertBatchingTest.BATCH_SIZE,
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class ServerMetricsInsertBatchingTest {
+    static final int BATCH_SIZE = 20;
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Autowired ServerMetricsRepository serverMetricsRepository;
+    @Autowired EntityManager entityManager;
+
+    @Test
+    void saveAll_isBatchedWithPooledSequence() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        int n = 100;
+        List<ServerMetrics> samples = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < n; i++) {
+            ServerMetrics m = new ServerMetrics((long) (i % 5));
+            m.setCpuUsage((double) i);
+            m.setCollectedAt(now.minusSeconds(i));
+            samples.add(m);
+        }
+
+        statistics.clear();
+        serverMetricsRepository.saveAll(samples);
+        entityManager.flush();
+
+        assertEquals(n, statistics.getEntityInsertCount());
+        // With IDENTITY every row would need its own statement; with batching the inserts
+        // take ceil(N/batch) statements plus one sequence call per pooled block of IDs
+        long insertStatements = (n + BATCH_SIZE - 1) / BATCH_SIZE;
+        long sequenceCalls = (n + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE + 1;
+        assertTrue(statistics.getPrepareStatementCount() <= insertStatements + sequenceCalls,
+                "prepared statements: " + statistics.getPrepareStatementCount());
+        assertTrue(samples.stream().allMatch(m -> m.getMetricId() != null));
+    }
+}
@@ -1,13 +1,21 @@
 package com.elec5619.backend.repository;
 
+import com.elec5619.backend.config.IdSequenceMigration;
 import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.util.MetricFunction;
+import com.elec5619.backend.util.MetricTime;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
+// Raw batch inserts leave metric_id to the sequence default this migration installs
+@Import(IdSequenceMigration.class)
 class ServerMetricsRepositoryTest {
     @Autowired ServerMetricsRepository serverMetricsRepository;
 
@@ -21,4 +29,88 @@ class ServerMetricsRepositoryTest {
         assertNotNull(latest);
         assertEquals(5L, latest.getServerId());
     }
+
+    @Test
+    void aggregateBuckets_groupsByTimeBucketInDatabase() {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 10, 0);
+        List<ServerMetrics> samples = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            ServerMetrics m = new ServerMetrics(7L);
+            m.setCpuUsage((double) i);
+            m.setCollectedAt(base.plusSeconds(i * 10L));
+            samples.add(m);
+        }
+        // Written as ingestion does; a JPA save would overwrite collected_at (@CreationTimestamp)
+        serverMetricsRepository.batchInsert(samples);
+
+        List<double[]> rows = new ArrayList<>();
+        List<Long> starts = new ArrayList<>();
+        int count = serverMetricsRepository.aggregateBuckets(List.of(7L), new int[] {0},
+                List.of(MetricFunction.AVG, MetricFunction.MAX, MetricFunction.COUNT, MetricFunction.LAST, MetricFunction.P95),
+                base, base.plusMinutes(2), 60, (serverId, bucketStart, values) -> {
+                    starts.add(bucketStart);
+                    rows.add(values.clone());
+                });
+
+        assertEquals(2, count);
+        assertEquals(List.of(MetricTime.toMillis(base), MetricTime.toMillis(base.plusMinutes(1))), starts);
+        assertArrayEquals(new double[] {2.5, 5.0, 6.0, 5.0, 4.75}, rows.get(0), 1e-9);
+        assertArrayEquals(new double[] {8.5, 11.0, 6.0, 11.0, 10.75}, rows.get(1), 1e-9);
+    }
+
+    @Test
+    void batchInsert_writesCustomMetricsToValueTable_andAggregatesThem() {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 12, 0);
+        List<ServerMetrics> samples = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ServerMetrics m = new ServerMetrics(9L);
+            m.setCpuUsage(1.0);
+            m.setCollectedAt(base.plusSeconds(i * 30L));
+            m.setCustomMetrics(new int[] {20, 21}, new double[] {i, 100 + i});
+            samples.add(m);
+        }
+        serverMetricsRepository.batchInsert(samples);
+        // A replayed sample replaces its stored values instead of failing
+        assertEquals(2, serverMetricsRepository.upsertCustomMetrics(List.of(samples.get(3))));
+
+        List<double[]> rows = new ArrayList<>();
+        int count = serverMetricsRepository.aggregateCustomBuckets(List.of(9L), new int[] {21, 20},
+                List.of(MetricFunction.MAX, MetricFunction.COUNT, MetricFunction.LAST),
+                base, base.plusMinutes(2), 60, (serverId, bucketStart, values) -> rows.add(values.clone()));
+
+        assertEquals(2, count);
+        assertArrayEquals(new double[] {101.0, 2.0, 101.0, 1.0, 2.0, 1.0}, rows.get(0), 1e-9);
+        assertArrayEquals(new double[] {103.0, 2.0, 103.0, 3.0, 2.0, 3.0}, rows.get(1), 1e-9);
+    }
+
+    @Test
+    void keysetPagesAndStreamedRange() {
+        LocalDateTime base = LocalDateTime.of(2025, 2, 1, 8, 0);
+        List<ServerMetrics> samples = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ServerMetrics m = new ServerMetrics(8L);
+            // Two samples share each timestamp so the metric ID breaks ties
+            m.setCollectedAt(base.plusMinutes(i / 2));
+            samples.add(m);
+        }
+        serverMetricsRepository.batchInsert(samples);
+
+        List<ServerMetrics> first = serverMetricsRepository.findFirstPageByServerId(8L, 2);
+        ServerMetrics last = first.get(1);
+        List<ServerMetrics> second = serverMetricsRepository.findPageByServerIdBefore(8L, last.getCollectedAt(), last.getMetricId(), 2);
+        ServerMetrics cursor = second.get(1);
+        List<ServerMetrics> third = serverMetricsRepository.findPageByServerIdBefore(8L, cursor.getCollectedAt(), cursor.getMetricId(), 2);
+        assertEquals(2, first.size());
+        assertEquals(2, second.size());
+        assertEquals(1, third.size());
+        assertTrue(first.get(0).getCollectedAt().isAfter(last.getCollectedAt()));
+        assertEquals(5, java.util.stream.Stream.of(first, second, third).flatMap(List::stream)
+                .map(ServerMetrics::getMetricId).distinct().count());
+
+        List<ServerMetrics> streamed = new ArrayList<>();
+        long count = serverMetricsRepository.streamByCollectedAtBetween(base, base.plusMinutes(1), streamed::add);
+        assertEquals(4, count);
+        assertEquals(8L, streamed.get(0).getServerId());
+        assertEquals(base.plusMinutes(1), streamed.get(0).getCollectedAt());
+    }
 }
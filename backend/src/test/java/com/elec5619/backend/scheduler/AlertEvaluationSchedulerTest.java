@@ -4,19 +4,27 @@ import com.elec5619.backend.dto.ServerResponseDto;
 import com.elec5619.backend.entity.AlertEvent;
 import com.elec5619.backend.entity.AlertRule;
 import com.elec5619.backend.entity.ServerStatus;
+import com.elec5619.backend.service.AlertIngestEvaluator;
 import com.elec5619.backend.service.AlertSystemService;
 import com.elec5619.backend.service.ServerService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 /**
@@ -31,6 +39,12 @@ class AlertEvaluationSchedulerTest {
     @Mock
     private AlertSystemService alertSystemService;
 
+    @Mock
+    private AlertIngestEvaluator alertEvaluator;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private AlertEvaluationScheduler alertEvaluationScheduler;
 
@@ -286,4 +300,80 @@ class AlertEvaluationSchedulerTest {
         verify(serverService, times(3)).listAll();
         verify(alertSystemService, times(3)).evaluateMetrics(1L);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testEvaluateAlertRules_ServersRunInTheirOwnTransactions() {
+        // Given
+        ReflectionTestUtils.setField(alertEvaluationScheduler, "shards", 3);
+        ReflectionTestUtils.setField(alertEvaluationScheduler, "poolSize", 10);
+        ReflectionTestUtils.setField(alertEvaluationScheduler, "ingestEvaluatorThreads", 2);
+        List<ServerResponseDto> servers = new ArrayList<>();
+        for (long id = 1; id <= 7; id++) {
+            ServerResponseDto server = new ServerResponseDto();
+            server.setId(id);
+            server.setServerName("Server " + id);
+            servers.add(server);
+        }
+
+        when(serverService.listAll()).thenReturn(servers);
+        when(alertSystemService.evaluateMetrics(any(Long.class))).thenReturn(List.of());
+
+        // When
+        alertEvaluationScheduler.evaluateAlertRules();
+
+        // Then
+        for (long id = 1; id <= 7; id++) {
+            verify(alertSystemService, times(1)).evaluateMetrics(id);
+        }
+        verify(transactionManager, times(7)).getTransaction(any());
+        verify(transactionManager, times(7)).commit(any());
+        ArgumentCaptor<long[]> shardNanos = ArgumentCaptor.forClass(long[].class);
+        verify(alertEvaluator).recordSweep(eq(7), anyLong(), shardNanos.capture());
+        assertEquals(3, shardNanos.getValue().length);
+    }
+
+    @Test
+    void testEvaluateAlertRules_ShardsLeaveConnectionsForIngestEvaluation() {
+        // Given a pool of 5 with 2 ingest evaluators, at most 2 shards hold connections
+        ReflectionTestUtils.setField(alertEvaluationScheduler, "shards", 4);
+        ReflectionTestUtils.setField(alertEvaluationScheduler, "poolSize", 5);
+        ReflectionTestUtils.setField(alertEvaluationScheduler, "ingestEvaluatorThreads", 2);
+        List<ServerResponseDto> servers = new ArrayList<>();
+        for (long id = 1; id <= 8; id++) {
+            ServerResponseDto server = new ServerResponseDto();
+            server.setId(id);
+            servers.add(server);
+        }
+        when(serverService.listAll()).thenReturn(servers);
+        when(alertSystemService.evaluateMetrics(any(Long.class))).thenReturn(List.of());
+
+        // When
+        alertEvaluationScheduler.evaluateAlertRules();
+
+        // Then
+        ArgumentCaptor<long[]> shardNanos = ArgumentCaptor.forClass(long[].class);
+        verify(alertEvaluator).recordSweep(eq(8), anyLong(), shardNanos.capture());
+        assertEquals(2, shardNanos.getValue().length);
+    }
+
+    @Test
+    void testEvaluateAlertRules_SkipsWhileThePreviousSweepRuns() {
+        // Given
+        List<ServerResponseDto> servers = Arrays.asList(testServer);
+
+        when(serverService.listAll()).thenReturn(servers);
+        when(alertSystemService.evaluateMetrics(1L)).thenAnswer(inv -> {
+            // A sweep starting meanwhile is skipped
+            alertEvaluationScheduler.evaluateAlertRules();
+            return List.of();
+        });
+
+        // When
+        alertEvaluationScheduler.evaluateAlertRules();
+
+        // Then
+        verify(serverService, times(1)).listAll();
+        verify(alertEvaluator, times(1)).recordSkippedSweep();
+        verify(alertEvaluator, times(1)).recordSweep(anyInt(), anyLong(), any());
+    }
+}
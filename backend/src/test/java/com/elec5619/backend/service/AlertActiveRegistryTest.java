@@ -0,0 +1,128 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.AlertEvent;
+import com.elec5619.backend.entity.AlertRule;
+import com.elec5619.backend.repository.AlertEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AlertActiveRegistryTest {
+    @Mock AlertEventRepository alertEventRepository;
+    @Mock PlatformTransactionManager transactionManager;
+    AlertActiveRegistry registry;
+    LocalDateTime now;
+
+    @BeforeEach void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new AlertActiveRegistry(alertEventRepository, transactionManager);
+        now = LocalDateTime.now();
+    }
+
+    @Test void isActive_loadsTheFiringEventsOnce_andHonorsTheWindow() {
+        when(alertEventRepository.findByStatus("firing")).thenReturn(List.of(
+                event(1L, 10L, 1L, "firing", now.minusMinutes(1)),
+                event(2L, 10L, 2L, "firing", now.minusMinutes(30)),
+                event(3L, 11L, 1L, "firing", now.minusMinutes(2))));
+
+        assertTrue(registry.isActive(10L, 1L, now.minusMinutes(5)));
+        assertFalse(registry.isActive(10L, 2L, now.minusMinutes(5)));
+        assertTrue(registry.isActive(10L, 2L, null));
+        assertTrue(registry.isActive(11L, 1L, now.minusMinutes(5)));
+        assertFalse(registry.isActive(12L, 1L, now.minusMinutes(5)));
+        assertFalse(registry.isActive(null, 1L, null));
+        assertEquals(3, registry.size());
+        verify(alertEventRepository, times(1)).findByStatus("firing");
+        // Read in a read-write transaction, so from the primary
+        verify(transactionManager).getTransaction(argThat(definition -> !definition.isReadOnly()));
+    }
+
+    @Test void track_addsFiringEvents_andDropsResolvedOrAcknowledgedOnes() {
+        when(alertEventRepository.findByStatus("firing")).thenReturn(List.of());
+        assertFalse(registry.isActive(10L, 1L, null));
+
+        AlertEvent event = event(1L, 10L, 1L, "firing", now);
+        registry.track(event);
+        registry.track(event(2L, 10L, 2L, "firing", now));
+        assertTrue(registry.isActive(10L, 1L, now.minusMinutes(5)));
+
+        // An older event of the same rule and server resolving leaves the latest one active
+        registry.track(event(0L, 10L, 1L, "resolved", now.minusHours(1)));
+        assertTrue(registry.isActive(10L, 1L, null));
+
+        event.setStatus("resolved");
+        registry.track(event);
+        registry.track(event(2L, 10L, 2L, "acknowledged", now));
+        assertFalse(registry.isActive(10L, 1L, null));
+        assertFalse(registry.isActive(10L, 2L, null));
+        assertEquals(0, registry.size());
+    }
+
+    @Test void changesInsideATransaction_applyOnlyAfterCommit() {
+        when(alertEventRepository.findByStatus("firing")).thenReturn(List.of());
+        assertEquals(0, registry.size());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            registry.track(event(1L, 10L, 1L, "firing", now));
+            assertFalse(registry.isActive(10L, 1L, null));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertTrue(registry.isActive(10L, 1L, null));
+
+        registry.forget(1L);
+        assertFalse(registry.isActive(10L, 1L, null));
+    }
+
+    @Test void reconcile_repairsDriftFromTheTable() {
+        when(alertEventRepository.findByStatus("firing")).thenReturn(List.of(
+                event(1L, 10L, 1L, "firing", now),
+                event(2L, 10L, 2L, "firing", now)));
+        registry.load();
+        assertEquals(2, registry.size());
+
+        // Event 2 resolved and event 3 raised behind the registry's back
+        when(alertEventRepository.findByStatus("firing")).thenReturn(List.of(
+                event(1L, 10L, 1L, "firing", now),
+                event(3L, 11L, 1L, "firing", now)));
+        registry.reconcile();
+
+        assertTrue(registry.isActive(10L, 1L, null));
+        assertFalse(registry.isActive(10L, 2L, null));
+        assertTrue(registry.isActive(11L, 1L, null));
+        assertEquals(2, registry.size());
+    }
+
+    @Test void keysOfLargeIdsNeverMatchAnotherRuleOrServer() {
+        long big = 1L << 32;
+        when(alertEventRepository.findByStatus("firing")).thenReturn(List.of(event(1L, big + 1, 1L, "firing", now)));
+
+        assertTrue(registry.isActive(big + 1, 1L, null));
+        assertFalse(registry.isActive(1L, 1L, null));
+        assertFalse(registry.isActive(1L, big + 1, null));
+    }
+
+    private static AlertEvent event(Long eventId, Long ruleId, Long serverId, String status, LocalDateTime startedAt) {
+        AlertRule rule = new AlertRule();
+        rule.setRuleId(ruleId);
+        AlertEvent event = new AlertEvent();
+        event.setEventId(eventId);
+        event.setAlertRule(rule);
+        event.setServerId(serverId);
+        event.setStatus(status);
+        event.setStartedAt(startedAt);
+        return event;
+    }
+}
@@ -33,6 +33,9 @@ class AlertEventServiceMoreTest {
     @Mock
     private ServerRepository serverRepository;
 
+    @Mock
+    private AlertActiveRegistry activeRegistry;
+
     @InjectMocks
     private AlertEventServiceImpl service;
 
@@ -84,6 +87,7 @@ class AlertEventServiceMoreTest {
         assertEquals("resolved", resolved.getStatus());
         assertNotNull(resolved.getResolvedAt());
         verify(alertEventRepository).save(existing);
+        verify(activeRegistry).track(existing);
     }
 
     @Test
@@ -29,6 +29,9 @@ class AlertEventServiceTest {
     @Mock
     private AlertEventRepository alertEventRepository;
 
+    @Mock
+    private AlertActiveRegistry activeRegistry;
+
     @InjectMocks
     private AlertEventServiceImpl alertEventService;
 
@@ -0,0 +1,111 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.AlertEvaluationStatsDto;
+import com.elec5619.backend.entity.AlertEvent;
+import com.elec5619.backend.entity.ServerMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AlertIngestEvaluatorTest {
+    @Mock AlertSystemService alertSystemService;
+    @Mock PlatformTransactionManager transactionManager;
+    AlertIngestEvaluator evaluator;
+
+    @BeforeEach void setUp() {
+        MockitoAnnotations.openMocks(this);
+        evaluator = new AlertIngestEvaluator(alertSystemService, transactionManager);
+        ReflectionTestUtils.setField(evaluator, "enabled", true);
+        ReflectionTestUtils.setField(evaluator, "threads", 1);
+        ReflectionTestUtils.setField(evaluator, "queueCapacity", 1);
+    }
+
+    @AfterEach void tearDown() { evaluator.shutdown(); }
+
+    @Test void submit_evaluatesTheSampleAndRecordsAlertLatency() {
+        ServerMetrics sample = new ServerMetrics(1L);
+        when(alertSystemService.evaluateIngested(sample)).thenReturn(List.of(new AlertEvent()));
+        evaluator.start();
+
+        evaluator.submit(List.of(sample));
+
+        verify(alertSystemService, timeout(2000)).evaluateIngested(sample);
+        evaluator.shutdown();
+        AlertEvaluationStatsDto stats = evaluator.getStats();
+        assertEquals(1, stats.getSubmittedSamples());
+        assertEquals(1, stats.getEvaluations());
+        assertEquals(1, stats.getAlertsFired());
+        assertTrue(stats.getMaxAlertLatencyMs() >= stats.getAvgAlertLatencyMs());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test void submit_coalescesSamplesOfABusyServerIntoItsNewest() throws InterruptedException {
+        ServerMetrics first = new ServerMetrics(1L);
+        ServerMetrics second = new ServerMetrics(1L);
+        ServerMetrics newest = new ServerMetrics(1L);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(alertSystemService.evaluateIngested(first)).thenAnswer(inv -> {
+            running.countDown();
+            release.await(2, TimeUnit.SECONDS);
+            return List.of();
+        });
+        evaluator.start();
+
+        evaluator.submit(List.of(first));
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+        evaluator.submit(List.of(second));
+        evaluator.submit(List.of(newest));
+        release.countDown();
+
+        verify(alertSystemService, timeout(2000)).evaluateIngested(newest);
+        evaluator.shutdown();
+        verify(alertSystemService, never()).evaluateIngested(second);
+        AlertEvaluationStatsDto stats = evaluator.getStats();
+        assertEquals(3, stats.getSubmittedSamples());
+        assertEquals(1, stats.getCoalescedSamples());
+        assertEquals(2, stats.getEvaluations());
+    }
+
+    @Test void submit_whenTheQueueIsFull_leavesTheSampleToTheSweep() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ServerMetrics busy = new ServerMetrics(1L);
+        when(alertSystemService.evaluateIngested(busy)).thenAnswer(inv -> {
+            running.countDown();
+            release.await(2, TimeUnit.SECONDS);
+            return List.of();
+        });
+        evaluator.start();
+
+        evaluator.submit(List.of(busy));
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+        evaluator.submit(List.of(new ServerMetrics(2L), new ServerMetrics(3L)));
+        assertEquals(1, evaluator.getStats().getRejectedSamples());
+        assertEquals(1, evaluator.getStats().getQueueDepth());
+        release.countDown();
+
+        evaluator.shutdown();
+        assertEquals(2, evaluator.getStats().getEvaluations());
+    }
+
+    @Test void submit_whenDisabled_doesNothing() {
+        ReflectionTestUtils.setField(evaluator, "enabled", false);
+        evaluator.start();
+        evaluator.submit(List.of(new ServerMetrics(1L)));
+        assertEquals(0, evaluator.getStats().getSubmittedSamples());
+        verifyNoInteractions(alertSystemService);
+    }
+}
@@ -0,0 +1,121 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.AlertRule;
+import com.elec5619.backend.repository.AlertRuleRepository;
+import com.elec5619.backend.service.AlertRuleIndex.RuleSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AlertRuleIndexTest {
+    @Mock AlertRuleRepository alertRuleRepository;
+    @Mock MetricRegistry metricRegistry;
+    @Mock AlertStateTracker stateTracker;
+    @Mock PlatformTransactionManager transactionManager;
+    AlertRuleIndex index;
+
+    @BeforeEach void setUp() {
+        MockitoAnnotations.openMocks(this);
+        index = new AlertRuleIndex(alertRuleRepository, metricRegistry, stateTracker, transactionManager);
+    }
+
+    @Test void forServer_groupsRulesByMetric_andLoadsOnce() {
+        when(metricRegistry.resolve("gpu.0.temperature")).thenReturn(9);
+        when(alertRuleRepository.findByEnabled(true)).thenReturn(List.of(
+                rule(1L, 1L, "memory_usage", ">", 90.0),
+                rule(2L, 1L, "cpu_usage", ">=", 80.0),
+                rule(3L, 1L, "gpu.0.temperature", "<", 20.0),
+                rule(4L, 1L, "cpu_usage", "anomaly", 3.0),
+                rule(5L, 2L, "cpu_usage", ">", 50.0),
+                rule(6L, null, "disk_usage", ">", 95.0),
+                rule(7L, 1L, "cpu_usage", "~", 1.0)));
+
+        RuleSet rules = index.forServer(1L);
+
+        assertEquals(4, rules.size());
+        assertEquals(3, rules.groupCount());
+        assertEquals(0, rules.metricId(0));
+        assertEquals(2, rules.groupEnd(0) - rules.groupStart(0));
+        assertEquals(RuleSet.GE, rules.opcode(0));
+        assertEquals(80.0, rules.threshold(0));
+        assertEquals(RuleSet.ANOMALY, rules.opcode(1));
+        assertEquals(1, rules.metricId(1));
+        assertEquals(9, rules.metricId(2));
+        assertEquals(3L, rules.rule(rules.groupStart(2)).getRuleId());
+        assertEquals(1, index.forServer(2L).size());
+        assertEquals(0, index.forServer(3L).size());
+        assertEquals(6, index.all().size());
+        verify(alertRuleRepository, times(1)).findByEnabled(true);
+        verify(transactionManager).getTransaction(argThat(definition -> !definition.isReadOnly()));
+    }
+
+    @Test void putAndRemove_publishNewSnapshots_withoutChangingEarlierOnes() {
+        when(alertRuleRepository.findByEnabled(true)).thenReturn(List.of(rule(1L, 1L, "cpu_usage", ">", 80.0)));
+        RuleSet before = index.forServer(1L);
+
+        AlertRule updated = rule(1L, 1L, "cpu_usage", ">", 70.0);
+        index.put(updated);
+        index.put(rule(2L, 1L, "load_avg", ">", 4.0));
+        RuleSet after = index.forServer(1L);
+
+        assertEquals(80.0, before.threshold(0));
+        assertEquals(1, before.size());
+        assertEquals(70.0, after.threshold(0));
+        assertEquals(2, after.size());
+
+        updated.setEnabled(false);
+        index.put(updated);
+        index.remove(2L);
+        assertEquals(0, index.forServer(1L).size());
+        assertEquals(2, after.size());
+        // Rules leaving the index drop their pending and firing states
+        verify(stateTracker).removeRule(1L);
+        verify(stateTracker).removeRule(2L);
+    }
+
+    @Test void changesInsideATransaction_applyOnlyAfterCommit() {
+        when(alertRuleRepository.findByEnabled(true)).thenReturn(List.of());
+        assertEquals(0, index.forServer(1L).size());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.put(rule(1L, 1L, "cpu_usage", ">", 80.0));
+            assertEquals(0, index.forServer(1L).size());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(1, index.forServer(1L).size());
+    }
+
+    @Test void compare_matchesTheComparatorsOfRules() {
+        assertTrue(RuleSet.compare(RuleSet.GE, 80.0, 80.0));
+        assertFalse(RuleSet.compare(RuleSet.GT, 80.0, 80.0));
+        assertTrue(RuleSet.compare(RuleSet.LE, 80.0, 80.0));
+        assertFalse(RuleSet.compare(RuleSet.LT, 80.0, 80.0));
+        assertTrue(RuleSet.compare(RuleSet.EQ, 80.0, 80.0));
+        assertTrue(RuleSet.compare(RuleSet.NE, 80.5, 80.0));
+        assertFalse(RuleSet.compare(RuleSet.ANOMALY, 80.0, 1.0));
+    }
+
+    private static AlertRule rule(Long ruleId, Long serverId, String metric, String comparator, double threshold) {
+        AlertRule rule = new AlertRule();
+        rule.setRuleId(ruleId);
+        rule.setServerId(serverId);
+        rule.setRuleName("rule-" + ruleId);
+        rule.setTargetMetric(metric);
+        rule.setComparator(comparator);
+        rule.setThreshold(threshold);
+        rule.setEnabled(true);
+        return rule;
+    }
+}
@@ -24,6 +24,7 @@ class AlertRuleServiceImplTest {
 
     @Mock private AlertRuleRepository alertRuleRepository;
     @Mock private AlertEventRepository alertEventRepository;
+    @Mock private AlertRuleIndex ruleIndex;
     @InjectMocks private AlertRuleServiceImpl service;
 
     private AlertRule rule;
@@ -74,6 +75,7 @@ class AlertRuleServiceImplTest {
         assertEquals("cpu_medium", saved.getRuleName());
         assertEquals("medium", saved.getSeverity());
         assertEquals(false, saved.getEnabled());
+        verify(ruleIndex).put(saved);
 
         when(alertRuleRepository.findById(2L)).thenReturn(Optional.empty());
         assertThrows(IllegalArgumentException.class, () -> service.updateAlertRule(2L, input));
@@ -87,6 +89,7 @@ class AlertRuleServiceImplTest {
         service.deleteAlertRule(1L);
         verify(alertEventRepository).deleteByAlertRuleRuleId(1L);
         verify(alertRuleRepository).delete(rule);
+        verify(ruleIndex).remove(1L);
     }
 
     @Test
@@ -95,6 +98,7 @@ class AlertRuleServiceImplTest {
         when(alertRuleRepository.save(any(AlertRule.class))).thenAnswer(inv -> inv.getArgument(0));
         AlertRule toggled = service.toggleAlertRuleStatus(1L, false);
         assertFalse(toggled.getEnabled());
+        verify(ruleIndex).put(toggled);
 
         when(alertRuleRepository.findById(9L)).thenReturn(Optional.empty());
         assertThrows(IllegalArgumentException.class, () -> service.toggleAlertRuleStatus(9L, true));
@@ -0,0 +1,172 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.AlertEvent;
+import com.elec5619.backend.entity.AlertRuleState;
+import com.elec5619.backend.repository.AlertRuleStateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class AlertStateTrackerTest {
+    static final long MINUTE = 60_000;
+
+    @Mock AlertRuleStateRepository stateRepository;
+    @Mock PlatformTransactionManager transactionManager;
+    AlertStateTracker tracker;
+    List<Long> fired = new ArrayList<>();
+    long t0;
+
+    @BeforeEach void setUp() {
+        MockitoAnnotations.openMocks(this);
+        tracker = newTracker();
+        t0 = System.currentTimeMillis();
+    }
+
+    @Test void matchingRule_isPendingUntilItsDurationHeld_thenFiresOnce() {
+        assertFalse(tracker.onMatch(10L, 1L, 0, 1, 91.0, t0));
+        assertFalse(tracker.onMatch(10L, 1L, 0, 1, 95.0, t0 + 30_000));
+        assertFalse(tracker.isFiring(10L, 1L));
+        assertTrue(tracker.onMatch(10L, 1L, 0, 1, 93.0, t0 + MINUTE));
+        assertFalse(tracker.onMatch(10L, 1L, 0, 1, 93.0, t0 + MINUTE + 1_000));
+        assertTrue(tracker.isFiring(10L, 1L));
+
+        tracker.onFired(10L, 1L, 7L);
+        assertEquals(7L, tracker.onClear(10L, 1L));
+        assertEquals(0, tracker.size());
+        assertNull(tracker.onClear(10L, 1L));
+    }
+
+    @Test void durationIsInMinutes_conditionHeldForLessNeverFires() {
+        assertFalse(tracker.onMatch(10L, 1L, 0, 5, 91.0, t0));
+        assertFalse(tracker.onMatch(10L, 1L, 0, 5, 91.0, t0 + 10_000));
+        assertFalse(tracker.onMatch(10L, 1L, 0, 5, 91.0, t0 + 4 * MINUTE));
+
+        tracker.advance(t0 + 5 * MINUTE - 2_000);
+
+        assertTrue(fired.isEmpty());
+        assertFalse(tracker.isFiring(10L, 1L));
+        assertTrue(tracker.onMatch(10L, 1L, 0, 5, 91.0, t0 + 5 * MINUTE));
+    }
+
+    @Test void pendingRule_clearedBeforeItsDuration_neverFires() {
+        assertFalse(tracker.onMatch(10L, 1L, 0, 5, 91.0, t0));
+        assertNull(tracker.onClear(10L, 1L));
+
+        tracker.advance(t0 + 6 * MINUTE);
+
+        assertTrue(fired.isEmpty());
+        assertFalse(tracker.onMatch(10L, 1L, 0, 5, 91.0, t0 + 6 * MINUTE));
+    }
+
+    @Test void expiredDuration_firesFromTheTimingWheelWithoutAnotherSample() {
+        assertFalse(tracker.onMatch(10L, 1L, 0, 1, 91.0, t0));
+        assertFalse(tracker.onMatch(11L, 1L, 1, 60, 42.0, t0));
+
+        tracker.advance(t0 + MINUTE - 1_000);
+        assertTrue(fired.isEmpty());
+        tracker.advance(t0 + MINUTE + 1_100);
+
+        assertEquals(List.of(10L), fired);
+        assertTrue(tracker.isFiring(10L, 1L));
+        assertFalse(tracker.isFiring(11L, 1L));
+        // The event raised by the handler is resolved when the condition clears
+        assertEquals(100L, tracker.onClear(10L, 1L));
+        // A match after the wheel fired does not fire again
+        assertFalse(tracker.onMatch(11L, 1L, 1, 60, 42.0, t0 + MINUTE + 1_100));
+    }
+
+    @Test void zeroDuration_firesOnTheFirstMatch() {
+        assertTrue(tracker.onMatch(10L, 1L, 0, 0, 91.0, t0));
+        tracker.advance(t0 + 5_000);
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test void failedFiring_goesBackToPending_andTheNextMatchRaisesItAgain() {
+        assertTrue(tracker.onMatch(10L, 1L, 0, 0, 91.0, t0));
+        tracker.onFireFailed(10L, 1L);
+        assertFalse(tracker.isFiring(10L, 1L));
+        assertTrue(tracker.onMatch(10L, 1L, 0, 0, 92.0, t0 + 1_000));
+
+        // A handler failing on the timing wheel leaves the rule pending too
+        tracker.setFiringHandler((ruleId, serverId, metricId, value) -> {
+            throw new IllegalStateException("database down");
+        });
+        assertFalse(tracker.onMatch(11L, 1L, 1, 1, 42.0, t0));
+        tracker.advance(t0 + MINUTE + 1_100);
+        assertFalse(tracker.isFiring(11L, 1L));
+        assertNull(tracker.onClear(11L, 1L));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test void removeRule_dropsItsStatesOnEveryServer_andTheyNeverFire() {
+        assertFalse(tracker.onMatch(10L, 1L, 0, 1, 91.0, t0));
+        assertFalse(tracker.onMatch(10L, 2L, 0, 1, 91.0, t0));
+        assertFalse(tracker.onMatch(11L, 1L, 0, 1, 91.0, t0));
+
+        assertEquals(2, tracker.removeRule(10L));
+        tracker.advance(t0 + 2 * MINUTE);
+
+        assertEquals(List.of(11L), fired);
+        assertEquals(1, tracker.size());
+        assertFalse(tracker.isFiring(10L, 1L));
+        assertTrue(tracker.isFiring(11L, 1L));
+        assertEquals(0, tracker.removeRule(10L));
+    }
+
+    @Test void checkpoint_writesChangedStates_andRestoreReschedulesPendingOnes() {
+        tracker.checkpoint();
+        verifyNoInteractions(stateRepository);
+
+        tracker.onMatch(10L, 1L, 0, 0, 91.0, t0);
+        tracker.onFired(10L, 1L, 7L);
+        tracker.onMatch(11L, 2L, 1, 1, 42.0, t0);
+        tracker.checkpoint();
+
+        ArgumentCaptor<List<AlertRuleState>> rows = ArgumentCaptor.forClass(List.class);
+        verify(stateRepository).deleteAllInBatch();
+        verify(stateRepository).saveAll(rows.capture());
+        assertEquals(2, rows.getValue().size());
+        AlertRuleState firing = rows.getValue().stream().filter(r -> r.getRuleId() == 10L).findFirst().orElseThrow();
+        assertEquals(AlertStateTracker.FIRING, firing.getStatus());
+        assertEquals(7L, firing.getEventId());
+        AlertRuleState pending = rows.getValue().stream().filter(r -> r.getRuleId() == 11L).findFirst().orElseThrow();
+        assertEquals(AlertStateTracker.PENDING, pending.getStatus());
+        tracker.checkpoint();
+        verify(stateRepository, times(1)).saveAll(anyList());
+
+        AlertStateTracker restored = newTracker();
+        when(stateRepository.findAll()).thenReturn(rows.getValue());
+        restored.restore();
+
+        assertEquals(2, restored.size());
+        assertTrue(restored.isFiring(10L, 1L));
+        restored.advance(t0 + MINUTE + 1_100);
+        assertEquals(List.of(11L), fired);
+        assertEquals(7L, restored.onClear(10L, 1L));
+    }
+
+    private AlertStateTracker newTracker() {
+        AlertStateTracker created = new AlertStateTracker(stateRepository, transactionManager);
+        ReflectionTestUtils.setField(created, "tickMillis", 1000L);
+        ReflectionTestUtils.setField(created, "wheelSize", 8);
+        created.init();
+        created.setFiringHandler((ruleId, serverId, metricId, value) -> {
+            fired.add(ruleId);
+            AlertEvent event = new AlertEvent();
+            event.setEventId(100L);
+            return event;
+        });
+        return created;
+    }
+}
@@ -4,16 +4,19 @@ import com.elec5619.backend.entity.AlertEvent;
 import com.elec5619.backend.entity.AlertRule;
 import com.elec5619.backend.entity.ServerMetrics;
 import com.elec5619.backend.repository.ServerMetricsRepository;
+import com.elec5619.backend.service.AlertRuleIndex.RuleSet;
 import com.elec5619.backend.service.impl.AlertSystemServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -26,6 +29,13 @@ class AlertSystemServiceEdgeTest {
     @Mock private AlertEventService alertEventService;
     @Mock private ServerMetricsRepository serverMetricsRepository;
     @Mock private NotificationService notificationService;
+    @Mock private MetricsLastValueCache lastValueCache;
+    @Mock private MetricRegistry metricRegistry;
+    @Mock private MetricsAnomalyDetector anomalyDetector;
+    @Mock private MetricsForecastService forecastService;
+    @Mock private AlertRuleIndex ruleIndex;
+    @Mock private AlertStateTracker stateTracker;
+    @Mock private AlertActiveRegistry activeRegistry;
 
     @InjectMocks private AlertSystemServiceImpl service;
 
@@ -62,36 +72,199 @@ class AlertSystemServiceEdgeTest {
         when(serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(1L)).thenReturn(metrics);
         AlertRule disabled = new AlertRule();
         disabled.setEnabled(false);
-        when(alertRuleService.getAlertRulesByServerId(1L)).thenReturn(List.of(disabled));
+        RuleSet rules = RuleSet.compile(List.of(disabled), metricRegistry);
+        when(ruleIndex.forServer(1L)).thenReturn(rules);
         List<AlertEvent> list = service.evaluateMetrics(1L);
         assertTrue(list.isEmpty());
     }
 
     @Test
     void evaluateMetrics_byServerId_thresholdEdge_triggersOnce_noDuplicate() {
+        heldForDuration();
         when(serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(1L)).thenReturn(metrics);
-        when(alertRuleService.getAlertRulesByServerId(1L)).thenReturn(List.of(rule));
-        when(alertEventService.getAlertEventsWithFilters(eq(10L), eq(1L), eq("firing"), any(), any()))
-                .thenReturn(List.of()); // first time: no duplicates
+        RuleSet rules = RuleSet.compile(List.of(rule), metricRegistry);
+        when(ruleIndex.forServer(1L)).thenReturn(rules);
         when(alertEventService.createAlertEvent(any(AlertEvent.class))).thenAnswer(inv -> inv.getArgument(0));
 
         List<AlertEvent> first = service.evaluateMetrics(1L);
         assertEquals(1, first.size());
 
-        // Second call within window should skip as duplicate
-        when(alertEventService.getAlertEventsWithFilters(eq(10L), eq(1L), eq("firing"), any(), any()))
-                .thenReturn(List.of(new AlertEvent()));
+        // Second call within window should skip as duplicate, adopting the firing event
+        when(activeRegistry.activeEventId(eq(10L), eq(1L), any())).thenReturn(Optional.of(42L));
         List<AlertEvent> second = service.evaluateMetrics(1L);
         assertTrue(second.isEmpty());
+        verify(alertEventService, times(1)).createAlertEvent(any(AlertEvent.class));
+        verify(stateTracker).onFired(10L, 1L, 42L);
+    }
+
+    @Test
+    void evaluateMetrics_failedAlertCreation_putsTheRuleBackToPending() {
+        heldForDuration();
+        when(serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(1L)).thenReturn(metrics);
+        RuleSet rules = RuleSet.compile(List.of(rule), metricRegistry);
+        when(ruleIndex.forServer(1L)).thenReturn(rules);
+        when(alertEventService.createAlertEvent(any(AlertEvent.class))).thenThrow(new RuntimeException("db down"));
+
+        assertTrue(service.evaluateMetrics(1L).isEmpty());
+
+        verify(stateTracker).onFireFailed(10L, 1L);
+        verify(stateTracker, never()).onFired(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void evaluateMetrics_missingMetric_leavesTheRuleStateAlone() {
+        metrics.setCpuUsage(null);
+        when(serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(1L)).thenReturn(metrics);
+        RuleSet rules = RuleSet.compile(List.of(rule), metricRegistry);
+        when(ruleIndex.forServer(1L)).thenReturn(rules);
+
+        assertTrue(service.evaluateMetrics(1L).isEmpty());
+
+        verify(stateTracker, never()).onClear(anyLong(), anyLong());
+        verify(stateTracker, never()).onMatch(anyLong(), anyLong(), anyInt(), anyInt(), anyDouble(), anyLong());
     }
 
     @Test
     void evaluateMetrics_withProvidedMetrics_handlesException_andReturnsEmpty() {
-        when(alertRuleService.getAlertRulesByEnabled(true)).thenThrow(new RuntimeException("x"));
+        when(ruleIndex.all()).thenThrow(new RuntimeException("x"));
         List<AlertEvent> list = service.evaluateMetrics(metrics);
         assertTrue(list.isEmpty());
     }
 
+    @Test
+    void evaluateMetrics_customMetricRule_resolvesNameOnceAndReadsPackedValue() {
+        heldForDuration();
+        rule.setTargetMetric("gpu.0.temperature");
+        rule.setThreshold(80.0);
+        metrics.setCustomMetrics(new int[] {9}, new double[] {85.0});
+        when(metricRegistry.resolve("gpu.0.temperature")).thenReturn(9);
+        RuleSet rules = RuleSet.compile(List.of(rule), metricRegistry);
+        when(ruleIndex.all()).thenReturn(rules);
+        when(alertEventService.createAlertEvent(any(AlertEvent.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        List<AlertEvent> list = service.evaluateMetrics(metrics);
+
+        assertEquals(1, list.size());
+        assertEquals(85.0, list.get(0).getTriggeredValue());
+        verify(metricRegistry, times(1)).resolve("gpu.0.temperature");
+    }
+
+    @Test
+    void evaluateMetrics_anomalyRule_firesOnlyBeyondThresholdSigma() {
+        heldForDuration();
+        rule.setComparator("anomaly");
+        rule.setThreshold(3.0);
+        RuleSet rules = RuleSet.compile(List.of(rule), metricRegistry);
+        when(ruleIndex.all()).thenReturn(rules);
+        when(anomalyDetector.getScore(1L, 0)).thenReturn(2.5, -4.2);
+        when(alertEventService.createAlertEvent(any(AlertEvent.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        assertTrue(service.evaluateMetrics(metrics).isEmpty());
+        List<AlertEvent> list = service.evaluateMetrics(metrics);
+
+        assertEquals(1, list.size());
+        assertEquals(0.7, list.get(0).getTriggeredValue());
+        assertTrue(list.get(0).getSummary().contains("sigma"));
+    }
+
+    @Test
+    void evaluateMetrics_forecastRule_firesWhenExhaustionIsWithinThresholdHours() {
+        heldForDuration();
+        rule.setTargetMetric("disk_usage");
+        rule.setComparator("forecast");
+        rule.setThreshold(24.0);
+        metrics.setDiskUsage(81.0);
+        RuleSet rules = RuleSet.compile(List.of(rule), metricRegistry);
+        when(ruleIndex.all()).thenReturn(rules);
+        when(forecastService.getHoursToFull(1L, 2)).thenReturn(null, 30.0, 9.5);
+        when(alertEventService.createAlertEvent(any(AlertEvent.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        assertTrue(service.evaluateMetrics(metrics).isEmpty());
+        assertTrue(service.evaluateMetrics(metrics).isEmpty());
+        List<AlertEvent> list = service.evaluateMetrics(metrics);
+
+        assertEquals(1, list.size());
+        assertEquals(81.0, list.get(0).getTriggeredValue());
+        assertTrue(list.get(0).getSummary().contains("9.5 hours"));
+    }
+
+    @Test
+    void evaluateIngested_usesTheGivenSampleAndOnlyTheRulesOfItsServer() {
+        heldForDuration();
+        metrics.setCpuUsage(0.9);
+        RuleSet rules = RuleSet.compile(List.of(rule), metricRegistry);
+        when(ruleIndex.forServer(1L)).thenReturn(rules);
+        when(alertEventService.createAlertEvent(any(AlertEvent.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        List<AlertEvent> list = service.evaluateIngested(metrics);
+
+        assertEquals(1, list.size());
+        assertEquals(0.9, list.get(0).getTriggeredValue());
+        verify(serverMetricsRepository, never()).findTopByServerIdOrderByCollectedAtDesc(anyLong());
+        verify(ruleIndex, never()).all();
+    }
+
+    @Test
+    void evaluateIngested_withoutServer_returnsEmpty() {
+        metrics.setServerId(null);
+        assertTrue(service.evaluateIngested(metrics).isEmpty());
+        assertTrue(service.evaluateIngested(null).isEmpty());
+        verifyNoInteractions(ruleIndex);
+    }
+
+    @Test
+    void evaluateMetrics_pendingRule_firesNothingUntilItsDurationHeld() {
+        rule.setDuration(60);
+        when(serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(1L)).thenReturn(metrics);
+        RuleSet rules = RuleSet.compile(List.of(rule), metricRegistry);
+        when(ruleIndex.forServer(1L)).thenReturn(rules);
+
+        assertTrue(service.evaluateMetrics(1L).isEmpty());
+
+        verify(stateTracker).onMatch(eq(10L), eq(1L), eq(0), eq(60), eq(0.7), anyLong());
+        verify(alertEventService, never()).createAlertEvent(any());
+    }
+
+    @Test
+    void evaluateMetrics_conditionCleared_resolvesTheFiringEvent() {
+        metrics.setCpuUsage(0.5);
+        when(serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(1L)).thenReturn(metrics);
+        RuleSet rules = RuleSet.compile(List.of(rule), metricRegistry);
+        when(ruleIndex.forServer(1L)).thenReturn(rules);
+        when(stateTracker.onClear(10L, 1L)).thenReturn(42L);
+
+        assertTrue(service.evaluateMetrics(1L).isEmpty());
+
+        verify(alertEventService).resolveAlertEvent(42L);
+        verify(stateTracker, never()).onMatch(anyLong(), anyLong(), anyInt(), anyInt(), anyDouble(), anyLong());
+    }
+
+    @Test
+    void expiredPendingRule_firesThroughTheStateTrackerHandler() {
+        ArgumentCaptor<AlertStateTracker.FiringHandler> handler = ArgumentCaptor.forClass(AlertStateTracker.FiringHandler.class);
+        verify(stateTracker).setFiringHandler(handler.capture());
+        when(ruleIndex.rule(10L)).thenReturn(rule);
+        when(alertEventService.createAlertEvent(any(AlertEvent.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        AlertEvent event = handler.getValue().fire(10L, 1L, 0, 0.9);
+
+        assertEquals(0.9, event.getTriggeredValue());
+        assertEquals("firing", event.getStatus());
+
+        // A rule deleted while pending goes back to inactive
+        assertNull(handler.getValue().fire(11L, 1L, 0, 0.9));
+        verify(stateTracker).onClear(11L, 1L);
+    }
+
+    @Test
+    void validateAlertRule_anomalyNeedsPositiveSigma() {
+        rule.setComparator("anomaly");
+        rule.setThreshold(3.0);
+        assertTrue(service.validateAlertRule(rule));
+        rule.setThreshold(0.0);
+        assertFalse(service.validateAlertRule(rule));
+    }
+
     @Test
     void validateAlertRule_happy_and_badInputs() {
         assertTrue(service.validateAlertRule(rule));
@@ -104,6 +277,9 @@ class AlertSystemServiceEdgeTest {
         bad.setSeverity("LOW");
         assertFalse(service.validateAlertRule(bad));
     }
-}
-
 
+    // The rule has held for its duration, so a match fires right away
+    private void heldForDuration() {
+        when(stateTracker.onMatch(anyLong(), anyLong(), anyInt(), anyInt(), anyDouble(), anyLong())).thenReturn(true);
+    }
+}
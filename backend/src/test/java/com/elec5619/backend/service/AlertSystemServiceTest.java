@@ -4,6 +4,7 @@ import com.elec5619.backend.entity.AlertEvent;
 import com.elec5619.backend.entity.AlertRule;
 import com.elec5619.backend.entity.ServerMetrics;
 import com.elec5619.backend.repository.ServerMetricsRepository;
+import com.elec5619.backend.service.AlertRuleIndex.RuleSet;
 import com.elec5619.backend.service.impl.AlertSystemServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,6 +19,8 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -38,6 +41,27 @@ class AlertSystemServiceTest {
     @Mock
     private NotificationService notificationService;
 
+    @Mock
+    private MetricsLastValueCache lastValueCache;
+
+    @Mock
+    private MetricRegistry metricRegistry;
+
+    @Mock
+    private MetricsAnomalyDetector anomalyDetector;
+
+    @Mock
+    private MetricsForecastService forecastService;
+
+    @Mock
+    private AlertRuleIndex ruleIndex;
+
+    @Mock
+    private AlertStateTracker stateTracker;
+
+    @Mock
+    private AlertActiveRegistry activeRegistry;
+
     @InjectMocks
     private AlertSystemServiceImpl alertSystemService;
 
@@ -87,7 +111,8 @@ class AlertSystemServiceTest {
         List<AlertRule> enabledRules = Arrays.asList(testAlertRule);
 
         when(serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(serverId)).thenReturn(testMetrics);
-        when(alertRuleService.getAlertRulesByServerId(serverId)).thenReturn(projectRules);
+        when(ruleIndex.forServer(serverId)).thenReturn(RuleSet.compile(projectRules, metricRegistry));
+        when(stateTracker.onMatch(eq(1L), eq(serverId), eq(0), eq(1), eq(85.0), anyLong())).thenReturn(true);
         when(alertEventService.createAlertEvent(any(AlertEvent.class))).thenReturn(testAlertEvent);
 
         // When
@@ -100,8 +125,9 @@ class AlertSystemServiceTest {
         assertEquals("CRITICAL", result.get(0).getAlertRule().getSeverity());
 
         verify(serverMetricsRepository, times(1)).findTopByServerIdOrderByCollectedAtDesc(serverId);
-        verify(alertRuleService, times(1)).getAlertRulesByServerId(serverId);
+        verify(ruleIndex, times(1)).forServer(serverId);
         verify(alertEventService, times(1)).createAlertEvent(any(AlertEvent.class));
+        verify(stateTracker).onFired(1L, serverId, 1L);
         verify(notificationService, never()).sendAlertNotifications(any());
     }
 
@@ -123,7 +149,7 @@ class AlertSystemServiceTest {
         List<AlertRule> enabledRules = Arrays.asList(testAlertRule);
 
         when(serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(serverId)).thenReturn(lowCpuMetrics);
-        when(alertRuleService.getAlertRulesByServerId(serverId)).thenReturn(projectRules);
+        when(ruleIndex.forServer(serverId)).thenReturn(RuleSet.compile(projectRules, metricRegistry));
         // no event expected, do not stub create
 
         // When
@@ -134,7 +160,7 @@ class AlertSystemServiceTest {
         assertTrue(result.isEmpty());
 
         verify(serverMetricsRepository, times(1)).findTopByServerIdOrderByCollectedAtDesc(serverId);
-        verify(alertRuleService, times(1)).getAlertRulesByServerId(serverId);
+        verify(ruleIndex, times(1)).forServer(serverId);
         verify(alertEventService, never()).createAlertEvent(any());
         verify(notificationService, never()).sendAlertNotifications(any());
     }
@@ -148,7 +174,7 @@ class AlertSystemServiceTest {
         List<AlertRule> projectRules = Arrays.asList(testAlertRule);
 
         when(serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(serverId)).thenReturn(testMetrics);
-        when(alertRuleService.getAlertRulesByServerId(serverId)).thenReturn(projectRules);
+        when(ruleIndex.forServer(serverId)).thenReturn(RuleSet.compile(projectRules, metricRegistry));
         // no event expected, do not stub create
 
         // When
@@ -159,7 +185,7 @@ class AlertSystemServiceTest {
         assertTrue(result.isEmpty());
 
         verify(serverMetricsRepository, times(1)).findTopByServerIdOrderByCollectedAtDesc(serverId);
-        verify(alertRuleService, times(1)).getAlertRulesByServerId(serverId);
+        verify(ruleIndex, times(1)).forServer(serverId);
         verify(alertEventService, never()).createAlertEvent(any());
         verify(notificationService, never()).sendAlertNotifications(any());
     }
@@ -180,7 +206,7 @@ class AlertSystemServiceTest {
         assertTrue(result.isEmpty());
 
         verify(serverMetricsRepository, times(1)).findTopByServerIdOrderByCollectedAtDesc(serverId);
-        verify(alertRuleService, never()).getAlertRulesByServerId(any());
+        verify(ruleIndex, never()).forServer(any());
         verify(alertEventService, never()).createAlertEvent(any());
         verify(notificationService, never()).sendAlertNotifications(any());
     }
@@ -198,7 +224,7 @@ class AlertSystemServiceTest {
         assertTrue(result.isEmpty());
 
         verify(serverMetricsRepository, times(1)).findTopByServerIdOrderByCollectedAtDesc(null);
-        verify(alertRuleService, never()).getAlertRulesByServerId(any());
+        verify(ruleIndex, never()).forServer(any());
         verify(alertEventService, never()).createAlertEvent(any());
         verify(notificationService, never()).sendAlertNotifications(any());
     }
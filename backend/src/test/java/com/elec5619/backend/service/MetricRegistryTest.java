@@ -0,0 +1,122 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.BackendApplication;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.util.MetricValues;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(MetricRegistry.class)
+// AlertRuleTestMain in this package scans every component; use the application configuration instead
+@ContextConfiguration(classes = BackendApplication.class)
+class MetricRegistryTest {
+    @Autowired MetricRegistry registry;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Test
+    void builtInMetricsKeepTheirPositionalIds() {
+        for (int m = 0; m < MetricValues.COUNT; m++) {
+            assertEquals(m, registry.resolve(MetricValues.NAMES[m]));
+            assertEquals(MetricValues.NAMES[m], registry.nameOf(m));
+        }
+        assertEquals(-1, registry.resolve("gpu.unknown"));
+    }
+
+    @Test
+    void intern_registersOnceAndIsVisibleToOtherInstances() {
+        int id = registry.intern("disk.sda.iops");
+        assertTrue(id >= MetricValues.COUNT);
+        assertEquals(id, registry.intern("disk.sda.iops"));
+        assertEquals("disk.sda.iops", registry.nameOf(id));
+
+        MetricRegistry other = new MetricRegistry(jdbcTemplate, transactionManager);
+        other.refresh();
+        assertEquals(id, other.resolve("disk.sda.iops"));
+
+        assertThrows(IllegalArgumentException.class, () -> registry.intern("Disk IOPS"));
+        assertThrows(IllegalArgumentException.class, () -> registry.intern("9lives"));
+    }
+
+    @Test
+    void encode_movesFreeFormMetricsIntoColumnsAndPackedIds() {
+        ServerMetrics sample = new ServerMetrics(1L);
+        sample.setCpuUsage(10.0);
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("cpu_usage", 99.0);
+        metrics.put("memory_usage", 40.0);
+        metrics.put("net.eth0.rx", 1200.0);
+        metrics.put("gpu.0.usage", null);
+        sample.setMetrics(metrics);
+
+        registry.encode(sample);
+
+        assertNull(sample.getMetrics());
+        assertEquals(10.0, sample.getCpuUsage());
+        assertEquals(40.0, sample.getMemoryUsage());
+        assertEquals(1, sample.getCustomMetricCount());
+        assertEquals(1200.0, sample.getMetricValue(registry.resolve("net.eth0.rx")));
+        assertEquals(-1, registry.resolve("gpu.0.usage"));
+    }
+
+    @Test
+    void encode_rejectsWholeSampleBeforeRegisteringAnyName() {
+        ServerMetrics sample = new ServerMetrics(1L);
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("fan.speed", 800.0);
+        metrics.put("fan.ratio", Double.POSITIVE_INFINITY);
+        sample.setMetrics(metrics);
+
+        assertThrows(IllegalArgumentException.class, () -> registry.encode(sample));
+        assertEquals(-1, registry.resolve("fan.speed"));
+    }
+
+    @Test
+    void encode_rejectsTooManyCustomMetricsOrAFullRegistryBeforeRegisteringAnyName() {
+        ServerMetrics crowded = new ServerMetrics(1L);
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("cpu_usage", 20.0);
+        for (int i = 0; i <= MetricValues.MAX_CUSTOM_PER_SAMPLE; i++) {
+            metrics.put("probe.p" + i, (double) i);
+        }
+        crowded.setMetrics(metrics);
+
+        assertThrows(IllegalArgumentException.class, () -> registry.encode(crowded));
+        assertEquals(-1, registry.resolve("probe.p0"));
+        assertNull(crowded.getCpuUsage());
+
+        MetricRegistry small = new MetricRegistry(jdbcTemplate, transactionManager);
+        small.refresh();
+        ReflectionTestUtils.setField(small, "maxMetrics", small.getNames().size() + 1);
+        ServerMetrics sample = new ServerMetrics(1L);
+        Map<String, Double> two = new LinkedHashMap<>();
+        two.put("sensor.f1", 1.0);
+        two.put("sensor.f2", 2.0);
+        sample.setMetrics(two);
+
+        assertThrows(IllegalArgumentException.class, () -> small.encode(sample));
+        assertEquals(-1, small.resolve("sensor.f1"));
+    }
+
+    @Test
+    void intern_failsWhenRegistryIsFull() {
+        MetricRegistry small = new MetricRegistry(jdbcTemplate, transactionManager);
+        small.refresh();
+        ReflectionTestUtils.setField(small, "maxMetrics", small.getNames().size() + 1);
+        small.intern("sensor.t1");
+        assertThrows(IllegalArgumentException.class, () -> small.intern("sensor.t2"));
+        assertEquals(-1, small.resolve("sensor.t2"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsAnomalyDetectorTest {
+    @TempDir Path dir;
+    LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+    MetricsAnomalyDetector detector;
+
+    @BeforeEach void setUp() {
+        detector = newDetector();
+    }
+
+    private MetricsAnomalyDetector newDetector() {
+        MetricsAnomalyDetector d = new MetricsAnomalyDetector();
+        ReflectionTestUtils.setField(d, "enabled", true);
+        ReflectionTestUtils.setField(d, "alpha", 0.1);
+        ReflectionTestUtils.setField(d, "minSamples", 20);
+        ReflectionTestUtils.setField(d, "checkpointFile", dir.resolve("anomaly-state.bin").toString());
+        return d;
+    }
+
+    private static ServerMetrics sample(long serverId, LocalDateTime at, Double cpu) {
+        ServerMetrics m = new ServerMetrics(serverId);
+        m.setCollectedAt(at);
+        m.setCpuUsage(cpu);
+        return m;
+    }
+
+    // 50 +/- 2 alternating, one sample per minute
+    private void feedBaseline(MetricsAnomalyDetector d, int from, int to) {
+        for (int i = from; i < to; i++) {
+            d.onMetricsIngested(List.of(sample(1L, start.plusMinutes(i), i % 2 == 0 ? 48.0 : 52.0)));
+        }
+    }
+
+    @Test void score_isNaNDuringWarmUp_thenFlagsDeviations() {
+        feedBaseline(detector, 0, 10);
+        assertTrue(Double.isNaN(detector.getScore(1L, 0)));
+
+        feedBaseline(detector, 10, 40);
+        assertTrue(Math.abs(detector.getScore(1L, 0)) < 2);
+
+        detector.update(sample(1L, start.plusHours(2), 90.0));
+        assertTrue(detector.getScore(1L, 0) > 5);
+        // Metrics without values and unknown servers have no score
+        assertTrue(Double.isNaN(detector.getScore(1L, 1)));
+        assertTrue(Double.isNaN(detector.getScore(2L, 0)));
+    }
+
+    @Test void olderSamplesAreIgnored() {
+        feedBaseline(detector, 0, 40);
+        double before = detector.getScore(1L, 0);
+        detector.update(sample(1L, start, 500.0));
+        assertEquals(before, detector.getScore(1L, 0));
+    }
+
+    @Test void checkpoint_restoresBaselinesWithoutWarmUp() {
+        feedBaseline(detector, 0, 40);
+        detector.checkpoint();
+
+        MetricsAnomalyDetector restarted = newDetector();
+        restarted.restore();
+        assertEquals(1, restarted.getServerCount());
+        restarted.update(sample(1L, start.plusHours(2), 90.0));
+        assertTrue(restarted.getScore(1L, 0) > 5);
+
+        // Samples already folded in before the checkpoint are not applied twice
+        restarted.update(sample(1L, start.plusMinutes(39), 90.0));
+        assertTrue(restarted.getScore(1L, 0) > 5);
+    }
+}
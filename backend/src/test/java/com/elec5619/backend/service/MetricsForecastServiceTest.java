@@ -0,0 +1,57 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsForecastServiceTest {
+    MetricsForecastService service;
+    LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @BeforeEach void setUp() {
+        service = new MetricsForecastService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "metricNames", "disk_usage,memory_usage");
+        ReflectionTestUtils.setField(service, "windowHours", 24);
+        ReflectionTestUtils.setField(service, "buckets", 48);
+        ReflectionTestUtils.setField(service, "minSamples", 10);
+        ReflectionTestUtils.setField(service, "capacity", 100.0);
+        service.init();
+    }
+
+    private void ingest(long serverId, int hours, double diskStart, double diskPerHour, double memory) {
+        for (int i = 0; i <= hours; i++) {
+            ServerMetrics m = new ServerMetrics(serverId);
+            m.setCollectedAt(start.plusHours(i));
+            m.setDiskUsage(diskStart + diskPerHour * i);
+            m.setMemoryUsage(memory);
+            m.setCpuUsage(99.0);
+            service.onMetricsIngested(List.of(m));
+        }
+    }
+
+    @Test void hoursToFull_followsRisingTrend() {
+        ingest(1L, 12, 40, 2, 60);
+        // 64% after 12 hours, rising 2% per hour
+        assertEquals(18.0, service.getHoursToFull(1L, 2), 1e-6);
+        // Flat memory and a metric that is not forecast
+        assertNull(service.getHoursToFull(1L, 1));
+        assertNull(service.getHoursToFull(1L, 0));
+        assertNull(service.getHoursToFull(2L, 2));
+    }
+
+    @Test void hoursToFull_needsEnoughSamples_andIsDroppedOnEvict() {
+        ingest(1L, 5, 40, 2, 60);
+        assertNull(service.getHoursToFull(1L, 2));
+        ingest(2L, 12, 95, 1, 60);
+        assertEquals(0.0, service.getHoursToFull(2L, 2), 1e-9);
+        service.evict(2L);
+        assertNull(service.getHoursToFull(2L, 2));
+    }
+}
@@ -0,0 +1,65 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.repository.ServerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsHotTierTest {
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock ServerRepository serverRepository;
+    MetricsHotTier hotTier;
+
+    @BeforeEach void setUp() {
+        MockitoAnnotations.openMocks(this);
+        hotTier = new MetricsHotTier(jdbcTemplate, serverRepository);
+        ReflectionTestUtils.setField(hotTier, "enabled", true);
+        ReflectionTestUtils.setField(hotTier, "maxSamplesPerServer", 1000);
+        ReflectionTestUtils.setField(hotTier, "memoryBudgetBytes", 1L << 20);
+        // As after the preload, with history covered from the start of the window
+        ReflectionTestUtils.setField(hotTier, "loadedFrom", 0L);
+        ReflectionTestUtils.setField(hotTier, "ready", true);
+    }
+
+    private static ServerMetrics sample(long serverId, LocalDateTime at, double cpu) {
+        ServerMetrics m = new ServerMetrics(serverId);
+        m.setCollectedAt(at);
+        m.setCpuUsage(cpu);
+        return m;
+    }
+
+    @Test void servesSamplesOfServersWithBuiltInMetricsOnly() {
+        LocalDateTime now = LocalDateTime.now();
+        hotTier.onMetricsIngested(List.of(sample(1L, now.minusMinutes(1), 10), sample(1L, now, 20)));
+
+        assertEquals(20.0, hotTier.getLatest(1L).orElseThrow().getCpuUsage());
+        assertEquals(2, hotTier.getRange(1L, now.minusHours(1), now).orElseThrow().size());
+    }
+
+    @Test void customMetrics_sendSampleReadsToTheDatabase_butKeepScans() {
+        LocalDateTime now = LocalDateTime.now();
+        ServerMetrics custom = sample(1L, now, 20);
+        custom.setCustomMetrics(new int[] {7}, new double[] {1200.0});
+        hotTier.onMetricsIngested(List.of(sample(1L, now.minusMinutes(1), 10), custom));
+
+        assertTrue(hotTier.getLatest(1L).isEmpty());
+        assertTrue(hotTier.getRange(1L, now.minusHours(1), now).isEmpty());
+        List<Double> cpu = new ArrayList<>();
+        assertTrue(hotTier.scan(1L, now.minusHours(1), now, (timestamp, values) -> cpu.add(values[0])));
+        assertEquals(List.of(10.0, 20.0), cpu);
+
+        hotTier.evict(1L);
+        hotTier.onMetricsIngested(List.of(sample(1L, now.plusSeconds(1), 30)));
+        assertEquals(30.0, hotTier.getLatest(1L).orElseThrow().getCpuUsage());
+    }
+}
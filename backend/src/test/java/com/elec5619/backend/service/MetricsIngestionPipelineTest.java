@@ -0,0 +1,133 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsIngestStatsDto;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.repository.ServerMetricsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class MetricsIngestionPipelineTest {
+    @Mock ServerMetricsRepository serverMetricsRepository;
+    @Mock MetricsWriteAheadLog writeAheadLog;
+    @Mock MetricsRangeCache rangeCache;
+    @Mock PlatformTransactionManager transactionManager;
+    MetricsIngestionPipeline pipeline;
+
+    @BeforeEach void setUp() {
+        MockitoAnnotations.openMocks(this);
+        pipeline = new MetricsIngestionPipeline(serverMetricsRepository, writeAheadLog, rangeCache, transactionManager);
+        ReflectionTestUtils.setField(pipeline, "asyncEnabled", true);
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 2);
+        ReflectionTestUtils.setField(pipeline, "batchSize", 10);
+        ReflectionTestUtils.setField(pipeline, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(pipeline, "writerThreads", 1);
+    }
+
+    @AfterEach void tearDown() { pipeline.stop(); }
+
+    @Test void offer_flushesQueuedSamplesInBatches() {
+        pipeline.start();
+        assertTrue(pipeline.offer(new ServerMetrics(1L)));
+        assertTrue(pipeline.offer(new ServerMetrics(2L)));
+
+        verify(serverMetricsRepository, timeout(2000).atLeastOnce()).batchInsert(anyList());
+        // Committed samples invalidate the range cache buckets loaded before the commit
+        verify(rangeCache, timeout(2000).atLeastOnce()).invalidate(anyList());
+        pipeline.stop();
+        MetricsIngestStatsDto stats = pipeline.getStats();
+        assertEquals(2, stats.getAcceptedSamples());
+        assertEquals(2, stats.getFlushedSamples());
+        assertEquals(0, stats.getQueueDepth());
+    }
+
+    @Test void flushDurable_retriesTransientFailures_untilTheBatchIsWritten() {
+        ReflectionTestUtils.setField(pipeline, "running", true);
+        when(serverMetricsRepository.batchInsert(anyList()))
+                .thenThrow(new TransientDataAccessResourceException("timeout"))
+                .thenReturn(2);
+
+        Boolean flushed = ReflectionTestUtils.invokeMethod(pipeline, "flushDurable",
+                List.of(new ServerMetrics(1L), new ServerMetrics(2L)));
+
+        assertTrue(flushed);
+        verify(serverMetricsRepository, times(2)).batchInsert(anyList());
+        assertEquals(2, pipeline.getStats().getFlushedSamples());
+        assertEquals(0, pipeline.getStats().getDeadLetteredSamples());
+    }
+
+    @Test void flushDurable_permanentFailure_writesRowByRow_andDeadLettersRejectedRows() {
+        ReflectionTestUtils.setField(pipeline, "running", true);
+        when(serverMetricsRepository.batchInsert(anyList())).thenAnswer(inv -> {
+            List<ServerMetrics> rows = inv.getArgument(0);
+            if (rows.size() > 1 || rows.get(0).getServerId() == 2L) {
+                throw new DataIntegrityViolationException("unknown server");
+            }
+            return 1;
+        });
+
+        Boolean flushed = ReflectionTestUtils.invokeMethod(pipeline, "flushDurable",
+                List.of(new ServerMetrics(1L), new ServerMetrics(2L), new ServerMetrics(3L)));
+
+        // The checkpoint may advance past the rejected row
+        assertTrue(flushed);
+        verify(serverMetricsRepository, times(4)).batchInsert(anyList());
+        MetricsIngestStatsDto stats = pipeline.getStats();
+        assertEquals(2, stats.getFlushedSamples());
+        assertEquals(1, stats.getDeadLetteredSamples());
+    }
+
+    @Test void flush_permanentFailure_dropsOnlyTheRejectedRows() {
+        ReflectionTestUtils.setField(pipeline, "running", true);
+        when(serverMetricsRepository.batchInsert(anyList())).thenAnswer(inv -> {
+            List<ServerMetrics> rows = inv.getArgument(0);
+            if (rows.size() > 1 || rows.get(0).getServerId() == 2L) {
+                throw new DataIntegrityViolationException("unknown server");
+            }
+            return 1;
+        });
+
+        ReflectionTestUtils.invokeMethod(pipeline, "flush",
+                List.of(new ServerMetrics(1L), new ServerMetrics(2L), new ServerMetrics(3L)));
+
+        MetricsIngestStatsDto stats = pipeline.getStats();
+        assertEquals(2, stats.getFlushedSamples());
+        assertEquals(1, stats.getDeadLetteredSamples());
+        assertEquals(0, stats.getDroppedSamples());
+    }
+
+    @Test void offer_walBacklogFull_isRejected_andBacklogIsReported() throws Exception {
+        ReflectionTestUtils.setField(pipeline, "running", true);
+        when(writeAheadLog.isEnabled()).thenReturn(true);
+        when(writeAheadLog.pendingBytes()).thenReturn(4096L);
+        when(writeAheadLog.getMaxPendingBytes()).thenReturn(4096L);
+
+        assertTrue(pipeline.offer(new ServerMetrics(1L)));
+        when(writeAheadLog.isFull()).thenReturn(true);
+        assertFalse(pipeline.offer(new ServerMetrics(1L)));
+        verify(writeAheadLog, times(1)).append(any());
+
+        MetricsIngestStatsDto stats = pipeline.getStats();
+        assertEquals(1, stats.getQueueDepth());
+        assertEquals(1, stats.getRejectedSamples());
+        assertEquals(4096L, stats.getWalPendingBytes());
+        assertEquals(4096L, stats.getWalMaxPendingBytes());
+    }
+
+    @Test void offer_withoutStart_isRejected() {
+        assertFalse(pipeline.offer(new ServerMetrics(1L)));
+        assertEquals(1, pipeline.getStats().getRejectedSamples());
+    }
+}
@@ -0,0 +1,65 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsLastValueCacheStatsDto;
+import com.elec5619.backend.entity.ServerMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsLastValueCacheTest {
+    @Mock JdbcTemplate jdbcTemplate;
+    MetricsLastValueCache cache;
+
+    @BeforeEach void setUp() {
+        MockitoAnnotations.openMocks(this);
+        cache = new MetricsLastValueCache(jdbcTemplate);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+    }
+
+    private static ServerMetrics sample(long serverId, LocalDateTime at, double cpu) {
+        ServerMetrics m = new ServerMetrics(serverId);
+        m.setCollectedAt(at);
+        m.setCpuUsage(cpu);
+        return m;
+    }
+
+    @Test void ingest_keepsNewestSamplePerServer() {
+        LocalDateTime now = LocalDateTime.now();
+        cache.onMetricsIngested(List.of(sample(1L, now, 10), sample(2L, now, 20)));
+        cache.onMetricsIngested(List.of(sample(1L, now.minusMinutes(1), 99)));
+        cache.onMetricsIngested(List.of(sample(2L, now.plusSeconds(5), 25)));
+
+        assertEquals(10.0, cache.get(1L).orElseThrow().getCpuUsage());
+        assertEquals(25.0, cache.get(2L).orElseThrow().getCpuUsage());
+    }
+
+    @Test void cachedSampleIsACopy() {
+        ServerMetrics original = sample(1L, LocalDateTime.now(), 10);
+        cache.put(original);
+        original.setCpuUsage(50.0);
+        assertEquals(10.0, cache.get(1L).orElseThrow().getCpuUsage());
+    }
+
+    @Test void stats_countHitsAndMisses() {
+        cache.put(sample(1L, LocalDateTime.now(), 10));
+        cache.get(1L);
+        cache.get(1L);
+        cache.get(3L);
+        cache.evict(1L);
+        assertTrue(cache.get(1L).isEmpty());
+
+        MetricsLastValueCacheStatsDto stats = cache.getStats();
+        assertEquals(2, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(0, stats.getServerCount());
+        assertEquals(0.5, stats.getHitRate());
+    }
+}
@@ -0,0 +1,157 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsQueryDto;
+import com.elec5619.backend.dto.MetricsSeriesDto;
+import com.elec5619.backend.repository.ServerMetricsAggregateRepository;
+import com.elec5619.backend.repository.ServerMetricsRepository;
+import com.elec5619.backend.util.MetricTime;
+import com.elec5619.backend.util.MetricValues;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MetricsQueryServiceTest {
+    @Mock ServerMetricsRepository serverMetricsRepository;
+    @Mock MetricsHotTier hotTier;
+    MetricRegistry registry;
+    MetricsQueryService service;
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    @BeforeEach void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new MetricRegistry(mock(JdbcTemplate.class), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(registry, "maxMetrics", 100);
+        service = new MetricsQueryService(serverMetricsRepository, hotTier, registry);
+        ReflectionTestUtils.setField(service, "defaultPoints", 300);
+        ReflectionTestUtils.setField(service, "maxPoints", 100);
+        ReflectionTestUtils.setField(service, "maxSeries", 20);
+    }
+
+    private static MetricsQueryDto query(List<Long> serverIds, List<String> functions, long step) {
+        MetricsQueryDto query = new MetricsQueryDto();
+        query.setServerIds(serverIds);
+        query.setMetrics(List.of("cpu_usage"));
+        query.setFunctions(functions);
+        query.setStartTime(BASE);
+        query.setEndTime(BASE.plusMinutes(2).minusSeconds(1));
+        query.setStep(step);
+        return query;
+    }
+
+    private static MetricsSeriesDto.Series series(MetricsSeriesDto result, long serverId, String function) {
+        return result.getSeries().stream()
+                .filter(s -> s.getServerId() == serverId && s.getFunction().equals(function))
+                .findFirst().orElseThrow();
+    }
+
+    @Test void query_hotTierBucketsComputedInMemory() {
+        // cpu 0..11 every 10s over two minutes
+        doAnswer(inv -> {
+            MetricsHotTier.SampleVisitor visitor = inv.getArgument(3);
+            double[] values = new double[MetricValues.COUNT];
+            Arrays.fill(values, Double.NaN);
+            for (int i = 0; i < 12; i++) {
+                values[0] = i;
+                visitor.accept(MetricTime.toMillis(BASE.plusSeconds(i * 10L)), values);
+            }
+            return true;
+        }).when(hotTier).scan(eq(1L), any(), any(), any());
+
+        MetricsSeriesDto result = service.query(query(List.of(1L), List.of("avg", "min", "max", "p95", "last", "count"), 60));
+
+        assertArrayEquals(new long[] {MetricTime.toMillis(BASE), MetricTime.toMillis(BASE.plusMinutes(1))}, result.getTimestamps());
+        assertEquals(6, result.getSeries().size());
+        assertArrayEquals(new Double[] {2.5, 8.5}, series(result, 1, "avg").getValues());
+        assertArrayEquals(new Double[] {0.0, 6.0}, series(result, 1, "min").getValues());
+        assertArrayEquals(new Double[] {5.0, 11.0}, series(result, 1, "max").getValues());
+        assertArrayEquals(new Double[] {5.0, 11.0}, series(result, 1, "last").getValues());
+        assertArrayEquals(new Double[] {6.0, 6.0}, series(result, 1, "count").getValues());
+        assertEquals(4.75, series(result, 1, "p95").getValues()[0], 1e-9);
+        assertEquals(MetricsQueryService.SOURCE_HOT_TIER, series(result, 1, "avg").getSource());
+        verifyNoInteractions(serverMetricsRepository);
+    }
+
+    @Test void query_uncoveredServersAggregatedByOneDatabaseQuery() {
+        when(hotTier.scan(anyLong(), any(), any(), any())).thenReturn(false);
+        when(serverMetricsRepository.aggregateBuckets(anyCollection(), any(), anyList(), any(), any(), anyLong(), any()))
+                .thenAnswer(inv -> {
+                    ServerMetricsAggregateRepository.BucketHandler handler = inv.getArgument(6);
+                    handler.accept(2L, MetricTime.toMillis(BASE.plusMinutes(1)), new double[] {42.0, 3});
+                    return 1;
+                });
+
+        MetricsSeriesDto result = service.query(query(List.of(1L, 2L), List.of("avg", "count"), 60));
+
+        verify(serverMetricsRepository).aggregateBuckets(eq(List.of(1L, 2L)), any(), anyList(),
+                eq(BASE), any(), eq(60L), any());
+        assertArrayEquals(new Double[] {null, null}, series(result, 1, "avg").getValues());
+        assertArrayEquals(new Double[] {0.0, 0.0}, series(result, 1, "count").getValues());
+        assertArrayEquals(new Double[] {null, 42.0}, series(result, 2, "avg").getValues());
+        assertArrayEquals(new Double[] {0.0, 3.0}, series(result, 2, "count").getValues());
+        assertEquals(MetricsQueryService.SOURCE_DATABASE, series(result, 2, "avg").getSource());
+    }
+
+    @Test void query_customMetricsAggregatedFromValueTable() {
+        int gpu = registry.intern("gpu.0.usage");
+        when(hotTier.scan(anyLong(), any(), any(), any())).thenReturn(false);
+        when(serverMetricsRepository.aggregateBuckets(anyCollection(), any(), anyList(), any(), any(), anyLong(), any()))
+                .thenAnswer(inv -> {
+                    ServerMetricsAggregateRepository.BucketHandler handler = inv.getArgument(6);
+                    handler.accept(1L, MetricTime.toMillis(BASE), new double[] {10.0});
+                    return 1;
+                });
+        when(serverMetricsRepository.aggregateCustomBuckets(anyCollection(), any(), anyList(), any(), any(), anyLong(), any()))
+                .thenAnswer(inv -> {
+                    ServerMetricsAggregateRepository.BucketHandler handler = inv.getArgument(6);
+                    handler.accept(1L, MetricTime.toMillis(BASE.plusMinutes(1)), new double[] {77.0});
+                    return 1;
+                });
+        MetricsQueryDto query = query(List.of(1L), List.of("max"), 60);
+        query.setMetrics(List.of("gpu.0.usage", "cpu_usage"));
+
+        MetricsSeriesDto result = service.query(query);
+
+        verify(serverMetricsRepository).aggregateCustomBuckets(eq(List.of(1L)), eq(new int[] {gpu}), anyList(),
+                eq(BASE), any(), eq(60L), any());
+        assertEquals("gpu.0.usage", result.getSeries().get(0).getMetric());
+        assertArrayEquals(new Double[] {null, 77.0}, result.getSeries().get(0).getValues());
+        assertEquals("cpu_usage", result.getSeries().get(1).getMetric());
+        assertArrayEquals(new Double[] {10.0, null}, result.getSeries().get(1).getValues());
+    }
+
+    @Test void query_stepDerivedFromDefaultPoints() {
+        MetricsQueryDto query = query(List.of(1L), null, 60);
+        query.setStep(null);
+        query.setMaxPoints(50);
+        query.setEndTime(BASE.plusHours(1));
+
+        MetricsSeriesDto result = service.query(query);
+
+        assertTrue(result.getTimestamps().length <= 50);
+        assertEquals("avg", result.getSeries().get(0).getFunction());
+    }
+
+    @Test void query_rejectsUnknownNamesAndOversizedResults() {
+        assertThrows(IllegalArgumentException.class, () -> service.query(query(List.of(1L), List.of("median"), 60)));
+        MetricsQueryDto unknownMetric = query(List.of(1L), null, 60);
+        unknownMetric.setMetrics(List.of("gpu_usage"));
+        assertThrows(IllegalArgumentException.class, () -> service.query(unknownMetric));
+        assertThrows(IllegalArgumentException.class, () -> service.query(query(List.of(1L), null, 1)));
+        MetricsQueryDto allMetrics = query(List.of(1L, 2L, 3L), List.of("avg"), 60);
+        allMetrics.setMetrics(null);
+        assertThrows(IllegalArgumentException.class, () -> service.query(allMetrics));
+    }
+}
@@ -0,0 +1,125 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsRangeCacheStatsDto;
+import com.elec5619.backend.entity.ServerMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRangeCacheTest {
+    MetricsRangeCache cache;
+    List<LocalDateTime[]> loads = new ArrayList<>();
+    // Hour-aligned, so the last hour is still open
+    LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+
+    @BeforeEach void setUp() {
+        cache = new MetricsRangeCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "settleSeconds", 0L);
+    }
+
+    // One point per hour with the hour of day as CPU usage, skipping the hour 3 hours ago
+    private BiFunction<LocalDateTime, LocalDateTime, List<ServerMetrics>> loader(long serverId) {
+        return (from, to) -> {
+            loads.add(new LocalDateTime[] {from, to});
+            List<ServerMetrics> series = new ArrayList<>();
+            for (LocalDateTime t = to.truncatedTo(ChronoUnit.HOURS); !t.isBefore(from); t = t.minusHours(1)) {
+                if (t.equals(currentHour.minusHours(3))) {
+                    continue;
+                }
+                ServerMetrics point = new ServerMetrics(serverId);
+                point.setCollectedAt(t);
+                point.setCpuUsage((double) t.getHour());
+                series.add(point);
+            }
+            return series;
+        };
+    }
+
+    private List<ServerMetrics> query(int hours) {
+        return cache.getSeries(1L, currentHour.minusHours(hours), currentHour.plusMinutes(10), 3600, loader(1L));
+    }
+
+    @Test void closedBucketsAreServedFromCache_andOnlyTheOpenBucketIsReloaded() {
+        List<ServerMetrics> first = query(6);
+        assertEquals(6, first.size());
+        assertEquals(currentHour, first.get(0).getCollectedAt());
+        assertEquals(currentHour.minusHours(6), loads.get(0)[0]);
+
+        List<ServerMetrics> second = query(6);
+        assertEquals(6, second.size());
+        assertEquals(2, loads.size());
+        assertEquals(currentHour, loads.get(1)[0]);
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getCollectedAt(), second.get(i).getCollectedAt());
+        }
+
+        // A wider window only loads from its oldest uncached bucket
+        assertEquals(8, query(8).size());
+        assertEquals(currentHour.minusHours(8), loads.get(2)[0]);
+
+        MetricsRangeCacheStatsDto stats = cache.getStats();
+        assertEquals(8, stats.getEntries());
+        assertEquals(12, stats.getHits());
+        assertEquals(8, stats.getMisses());
+    }
+
+    @Test void lateSampleInvalidatesItsBucket() {
+        query(6);
+        ServerMetrics late = new ServerMetrics(1L);
+        late.setCollectedAt(currentHour.minusHours(5).plusMinutes(30));
+        cache.onMetricsIngested(List.of(late));
+
+        query(6);
+        assertEquals(currentHour.minusHours(5), loads.get(1)[0]);
+        assertEquals(1, cache.getStats().getInvalidations());
+    }
+
+    @Test void loadRacingWithAnInvalidation_isReturnedButNotCached() {
+        ServerMetrics late = new ServerMetrics(1L);
+        late.setCollectedAt(currentHour.minusHours(5).plusMinutes(30));
+        BiFunction<LocalDateTime, LocalDateTime, List<ServerMetrics>> racing = (from, to) -> {
+            // The sample is ingested after the loader read its buckets
+            List<ServerMetrics> series = loader(1L).apply(from, to);
+            cache.invalidate(List.of(late));
+            return series;
+        };
+
+        assertEquals(6, cache.getSeries(1L, currentHour.minusHours(6), currentHour.plusMinutes(10), 3600, racing).size());
+        assertEquals(0, cache.getStats().getEntries());
+
+        query(6);
+        assertEquals(currentHour.minusHours(6), loads.get(1)[0]);
+        assertEquals(6, cache.getStats().getEntries());
+    }
+
+    @Test void leastRecentlyUsedBucketsAreEvicted() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 12);
+        for (long serverId = 1; serverId <= 7; serverId++) {
+            cache.getSeries(serverId, currentHour.minusHours(2), currentHour, 3600, loader(serverId));
+        }
+        assertEquals(12, cache.getStats().getEntries());
+        assertEquals(2, cache.getStats().getEvictions());
+
+        cache.evict(7L);
+        assertEquals(10, cache.getStats().getEntries());
+    }
+
+    @Test void onlyStepsEveryRollupTierKeepsAreCacheable() {
+        assertTrue(cache.isCacheable(30));
+        assertTrue(cache.isCacheable(300));
+        assertTrue(cache.isCacheable(86400));
+        assertFalse(cache.isCacheable(90));
+        assertFalse(cache.isCacheable(420));
+        assertFalse(cache.isCacheable(0));
+    }
+}
@@ -0,0 +1,93 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.BackendApplication;
+import com.elec5619.backend.config.IdSequenceMigration;
+import com.elec5619.backend.entity.Project;
+import com.elec5619.backend.entity.ProjectStatus;
+import com.elec5619.backend.entity.Server;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.entity.ServerStatus;
+import com.elec5619.backend.repository.ProjectRepository;
+import com.elec5619.backend.repository.ServerMetricsRepository;
+import com.elec5619.backend.repository.ServerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "app.metrics.retention.default-days=7",
+        "app.metrics.retention.delete-batch-size=3"
+})
+@Import({MetricsRetentionService.class, IdSequenceMigration.class})
+// AlertRuleTestMain in this package scans every component; use the application configuration instead
+@ContextConfiguration(classes = BackendApplication.class)
+class MetricsRetentionServiceTest {
+    @Autowired MetricsRetentionService retentionService;
+    @Autowired ServerRepository serverRepository;
+    @Autowired ProjectRepository projectRepository;
+    @Autowired ServerMetricsRepository serverMetricsRepository;
+
+    private Server server(String name) {
+        Server s = new Server();
+        s.setServerName(name);
+        s.setIpAddress("10.0.0.1");
+        s.setStatus(ServerStatus.online);
+        return serverRepository.saveAndFlush(s);
+    }
+
+    private void metrics(Server server, int... daysAgo) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ServerMetrics> samples = new ArrayList<>();
+        for (int days : daysAgo) {
+            for (int i = 0; i < 4; i++) {
+                ServerMetrics m = new ServerMetrics(server.getId());
+                m.setCpuUsage(1.0);
+                m.setCollectedAt(now.minusDays(days).minusMinutes(i));
+                samples.add(m);
+            }
+        }
+        // Written as ingestion does; a JPA save would overwrite collected_at (@CreationTimestamp)
+        serverMetricsRepository.batchInsert(samples);
+    }
+
+    @Test
+    void applyRetention_usesLongestProjectRetentionPerServer() {
+        Server longLived = server("long");
+        Server standalone = server("standalone");
+        Project project = new Project();
+        project.setProjectName("archive");
+        project.setStatus(ProjectStatus.PLANNED);
+        project.setMetricsRetentionDays(30);
+        project.setServers(Set.of(longLived));
+        projectRepository.saveAndFlush(project);
+
+        metrics(longLived, 2, 10, 40);
+        metrics(standalone, 2, 10, 40);
+        assertEquals(30, retentionService.getLongestRetentionDays());
+
+        long removed = retentionService.applyRetention();
+
+        assertEquals(12, removed);
+        assertEquals(8, serverMetricsRepository.countByServerId(longLived.getId()));
+        assertEquals(4, serverMetricsRepository.countByServerId(standalone.getId()));
+        assertFalse(retentionService.isPartitioned());
+    }
+
+    @Test
+    void partitionNames_roundTrip() {
+        LocalDate day = LocalDate.of(2025, 3, 9);
+        assertEquals("server_metrics_p20250309", MetricsRetentionService.partitionName(day));
+        assertEquals(day, MetricsRetentionService.partitionDay("server_metrics_p20250309"));
+        assertNull(MetricsRetentionService.partitionDay(MetricsRetentionService.DEFAULT_PARTITION));
+    }
+}
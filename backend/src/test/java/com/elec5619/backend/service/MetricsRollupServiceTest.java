@@ -0,0 +1,177 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.MetricRollup;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.repository.MetricRollupRepository;
+import com.elec5619.backend.repository.ServerRepository;
+import com.elec5619.backend.util.MetricAggregate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MetricsRollupServiceTest {
+    @Mock MetricRollupRepository rollupRepository;
+    @Mock ServerRepository serverRepository;
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+    MetricsRollupService service;
+
+    @BeforeEach void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new MetricsRollupService(rollupRepository, serverRepository, jdbcTemplate, transactionManager);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "retentionDaysOneMinute", 7);
+        ReflectionTestUtils.setField(service, "retentionDaysFiveMinutes", 30);
+        ReflectionTestUtils.setField(service, "retentionDaysOneHour", 365);
+        ReflectionTestUtils.setField(service, "ready", true);
+    }
+
+    private static ServerMetrics sample(LocalDateTime at, double cpu) {
+        ServerMetrics m = new ServerMetrics(1L);
+        m.setCollectedAt(at);
+        m.setCpuUsage(cpu);
+        return m;
+    }
+
+    @Test void selectResolution_picksCoarsestRetainedTierWithinStep() {
+        LocalDateTime now = LocalDateTime.now();
+        assertEquals(MetricsRollupService.Resolution.ONE_HOUR, service.selectResolution(now.minusDays(20), 7200));
+        assertEquals(MetricsRollupService.Resolution.FIVE_MINUTES, service.selectResolution(now.minusDays(2), 600));
+        assertEquals(MetricsRollupService.Resolution.ONE_MINUTE, service.selectResolution(now.minusDays(2), 60));
+        assertNull(service.selectResolution(now.minusDays(60), 600));
+        assertNull(service.selectResolution(now.minusHours(1), 30));
+    }
+
+    @Test @SuppressWarnings("unchecked")
+    void flush_upsertsPartialAggregatesPerResolution() {
+        LocalDateTime t = LocalDateTime.of(2025, 1, 1, 10, 0, 10);
+        service.onMetricsIngested(List.of(sample(t, 10), sample(t.plusSeconds(20), 30)));
+        service.flush();
+
+        ArgumentCaptor<List<MetricRollup>> captor = ArgumentCaptor.forClass(List.class);
+        verify(rollupRepository).upsertAll(captor.capture());
+        List<MetricRollup> rollups = captor.getValue();
+        assertEquals(3, rollups.size());
+        MetricRollup minute = rollups.stream().filter(r -> r.getResolutionSeconds() == 60).findFirst().orElseThrow();
+        assertEquals(LocalDateTime.of(2025, 1, 1, 10, 0), minute.getBucketStart());
+        assertEquals(0, minute.getMetricId());
+        assertEquals(2L, minute.getSampleCount());
+        assertEquals(10.0, minute.getMinValue());
+        assertEquals(30.0, minute.getMaxValue());
+        assertEquals(30.0, minute.getLastValue());
+
+        service.flush();
+        verifyNoMoreInteractions(rollupRepository);
+    }
+
+    @Test void flush_failure_requeuesPartials() {
+        LocalDateTime t = LocalDateTime.of(2025, 1, 1, 10, 0);
+        when(rollupRepository.upsertAll(anyList())).thenThrow(new RuntimeException("db down")).thenReturn(3);
+        service.onMetricsIngested(List.of(sample(t, 10)));
+        service.flush();
+        service.flush();
+        verify(rollupRepository, times(2)).upsertAll(argThat(list -> list.size() == 3));
+        // The failed batch rolled back whole before it was requeued
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test void getSeries_mergesStoredAndPendingBucketsIntoSteps() {
+        LocalDateTime now = LocalDateTime.now().withSecond(0).withNano(0);
+        LocalDateTime start = now.minusHours(2);
+        MetricRollup stored = new MetricRollup();
+        stored.setServerId(1L);
+        stored.setResolutionSeconds(300);
+        stored.setMetricId(0);
+        stored.setBucketStart(start.withMinute(0));
+        stored.setMinValue(10.0);
+        stored.setMaxValue(20.0);
+        stored.setSumValue(30.0);
+        stored.setSampleCount(2L);
+        stored.setLastValue(20.0);
+        stored.setLastAt(start.withMinute(0));
+        when(rollupRepository.findByServerIdAndResolutionSecondsAndBucketStartBetweenOrderByBucketStartAsc(
+                eq(1L), eq(300), any(), any())).thenReturn(List.of(stored));
+        service.onMetricsIngested(List.of(sample(now.minusMinutes(1), 50)));
+
+        List<ServerMetrics> series = service.getSeries(1L, start, now, 600).orElseThrow();
+        assertEquals(2, series.size());
+        assertEquals(50.0, series.get(0).getCpuUsage());
+        assertEquals(15.0, series.get(1).getCpuUsage());
+        assertNull(series.get(1).getMemoryUsage());
+    }
+
+    @Test void getSeries_whileAFlushIsWritten_stillSeesTheFlushingBuckets() {
+        LocalDateTime now = LocalDateTime.now().withSecond(0).withNano(0);
+        service.onMetricsIngested(List.of(sample(now.minusMinutes(1), 50)));
+        List<List<ServerMetrics>> seenDuringFlush = new ArrayList<>();
+        // The table does not hold the batch until upsertAll returns
+        when(rollupRepository.upsertAll(anyList())).thenAnswer(inv -> {
+            seenDuringFlush.add(service.getSeries(1L, now.minusHours(1), now, 60).orElseThrow());
+            return 3;
+        });
+
+        service.flush();
+
+        assertEquals(1, seenDuringFlush.get(0).size());
+        assertEquals(50.0, seenDuringFlush.get(0).get(0).getCpuUsage());
+        // Once written, the buckets are read from the table only
+        assertTrue(service.getSeries(1L, now.minusHours(1), now, 60).orElseThrow().isEmpty());
+    }
+
+    @Test void summarize_readsWholeHoursFromTheHourTier_andTheEdgesFromFiveMinuteBuckets() {
+        LocalDateTime end = LocalDateTime.now().withMinute(20).withSecond(0).withNano(0);
+        LocalDateTime start = end.minusHours(3).minusMinutes(5);
+        MetricRollup hour = new MetricRollup();
+        hour.setMetricId(0);
+        hour.setBucketStart(start.plusHours(1).withMinute(0));
+        hour.setMinValue(10.0);
+        hour.setMaxValue(30.0);
+        hour.setSumValue(240.0);
+        hour.setSampleCount(12L);
+        when(rollupRepository.findByServerIdAndResolutionSecondsAndBucketStartBetweenOrderByBucketStartAsc(
+                eq(1L), eq(3600), any(), any())).thenReturn(List.of(hour));
+        service.onMetricsIngested(List.of(sample(end.minusMinutes(1), 90), sample(start.plusMinutes(2), 5)));
+
+        MetricAggregate cpu = service.summarize(1L, start, end).orElseThrow()[0];
+
+        assertEquals(14, cpu.getCount());
+        assertEquals(5.0, cpu.getMin());
+        assertEquals(90.0, cpu.getMax());
+        assertEquals(335.0, cpu.getSum());
+        // The leading partial hour, the whole hours and the trailing partial hour
+        verify(rollupRepository).findByServerIdAndResolutionSecondsAndBucketStartBetweenOrderByBucketStartAsc(
+                1L, 3600, start.plusHours(1).withMinute(0), end.withMinute(0).minusNanos(1_000_000));
+        verify(rollupRepository, times(2)).findByServerIdAndResolutionSecondsAndBucketStartBetweenOrderByBucketStartAsc(
+                eq(1L), eq(300), any(), any());
+    }
+
+    @Test void getSeries_notReady_fallsBack() {
+        ReflectionTestUtils.setField(service, "ready", false);
+        LocalDateTime now = LocalDateTime.now();
+        assertTrue(service.getSeries(1L, now.minusDays(1), now, 3600).isEmpty());
+    }
+
+    @Test void aggregate_bucketsRawSamplesNewestFirst() {
+        LocalDateTime t = LocalDateTime.of(2025, 1, 1, 10, 0);
+        List<ServerMetrics> series = service.aggregate(1L,
+                List.of(sample(t.plusSeconds(70), 40), sample(t.plusSeconds(10), 10), sample(t.plusSeconds(20), 20)), 60);
+        assertEquals(2, series.size());
+        assertEquals(t.plusMinutes(1), series.get(0).getCollectedAt());
+        assertEquals(40.0, series.get(0).getCpuUsage());
+        assertEquals(15.0, series.get(1).getCpuUsage());
+    }
+}
@@ -0,0 +1,126 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsPercentileSummaryDto;
+import com.elec5619.backend.entity.MetricSketch;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.repository.MetricSketchRepository;
+import com.elec5619.backend.util.QuantileSketch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MetricsSketchServiceTest {
+    @Mock MetricSketchRepository sketchRepository;
+    MetricsSketchService service;
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    @BeforeEach void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new MetricsSketchService(sketchRepository);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "metricNames", "cpu_usage, memory_usage,bogus");
+        ReflectionTestUtils.setField(service, "bucketMinutes", 60);
+        ReflectionTestUtils.setField(service, "retentionDays", 365);
+        service.init();
+    }
+
+    private static List<ServerMetrics> samples(long serverId, LocalDateTime at, int from, int to) {
+        List<ServerMetrics> samples = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            ServerMetrics m = new ServerMetrics(serverId);
+            m.setCollectedAt(at.plusSeconds(i));
+            m.setCpuUsage((double) i);
+            samples.add(m);
+        }
+        return samples;
+    }
+
+    private static MetricsPercentileSummaryDto.MetricPercentiles cpu(MetricsPercentileSummaryDto dto) {
+        return dto.getMetrics().stream().filter(m -> m.getMetric().equals("cpu_usage")).findFirst().orElseThrow();
+    }
+
+    @Test void getPercentiles_includesPendingSketchesOfRequestedServers() {
+        service.onMetricsIngested(samples(1L, HOUR, 1, 100));
+        service.onMetricsIngested(samples(2L, HOUR, 1000, 1100));
+
+        MetricsPercentileSummaryDto dto = service.getPercentiles(List.of(1L), HOUR.plusMinutes(30), HOUR.plusHours(1));
+        assertEquals(2, dto.getMetrics().size());
+        MetricsPercentileSummaryDto.MetricPercentiles cpu = cpu(dto);
+        assertEquals(100L, cpu.getCount());
+        assertEquals(1.0, cpu.getMin());
+        assertEquals(100.0, cpu.getMax());
+        // Lower-rank median of 1..100, not the interpolated 50.5
+        assertEquals(50.0, cpu.getP50(), 50.0 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(95.0, cpu.getP95(), 95.0 * QuantileSketch.RELATIVE_ACCURACY);
+        MetricsPercentileSummaryDto.MetricPercentiles memory = dto.getMetrics().stream()
+                .filter(m -> m.getMetric().equals("memory_usage")).findFirst().orElseThrow();
+        assertEquals(0L, memory.getCount());
+        assertNull(memory.getP95());
+    }
+
+    @Test @SuppressWarnings("unchecked")
+    void flush_mergesIntoStoredSketchOfSameBucket() {
+        QuantileSketch stored = new QuantileSketch();
+        for (int i = 101; i <= 200; i++) {
+            stored.add(i);
+        }
+        MetricSketch row = new MetricSketch();
+        row.setId(5L);
+        row.setServerId(1L);
+        row.setMetricId(0);
+        row.setBucketStart(HOUR);
+        row.setSampleCount(100L);
+        row.setData(stored.toByteArray());
+        when(sketchRepository.findByServerIdInAndBucketStartIn(anyCollection(), anyCollection())).thenReturn(List.of(row));
+
+        service.onMetricsIngested(samples(1L, HOUR, 1, 100));
+        service.flush();
+
+        ArgumentCaptor<List<MetricSketch>> captor = ArgumentCaptor.forClass(List.class);
+        verify(sketchRepository).saveAll(captor.capture());
+        List<MetricSketch> saved = captor.getValue();
+        assertEquals(1, saved.size());
+        assertSame(row, saved.get(0));
+        assertEquals(200L, row.getSampleCount());
+        QuantileSketch merged = QuantileSketch.fromByteArray(row.getData());
+        assertEquals(1.0, merged.getMin());
+        assertEquals(200.0, merged.getMax());
+
+        service.flush();
+        verify(sketchRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test void flush_failure_requeuesPendingSketches() {
+        when(sketchRepository.saveAll(anyList())).thenThrow(new RuntimeException("db down"));
+        service.onMetricsIngested(samples(1L, HOUR, 1, 10));
+        service.flush();
+
+        MetricsPercentileSummaryDto dto = service.getPercentiles(List.of(1L), HOUR, HOUR.plusMinutes(59));
+        assertEquals(10L, cpu(dto).getCount());
+    }
+
+    @Test void evict_dropsPendingAndStoredSketches() {
+        service.onMetricsIngested(samples(1L, HOUR, 1, 10));
+        service.evict(1L);
+
+        verify(sketchRepository).deleteByServerId(1L);
+        assertEquals(0L, cpu(service.getPercentiles(List.of(1L), HOUR, HOUR.plusHours(1))).getCount());
+    }
+
+    @Test void cleanupExpiredSketches_deletesBeyondRetention() {
+        service.cleanupExpiredSketches();
+        verify(sketchRepository).deleteByBucketStartBefore(argThat(t -> t.isBefore(LocalDateTime.now().minusDays(364))));
+    }
+}
@@ -0,0 +1,111 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.dto.MetricsRankedServerDto;
+import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.entity.ServerStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MetricsTopKServiceTest {
+    @Mock JdbcTemplate jdbcTemplate;
+    MetricsLastValueCache cache;
+    MetricsTopKService service;
+
+    @BeforeEach void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        cache = new MetricsLastValueCache(jdbcTemplate);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        MetricRegistry registry = new MetricRegistry(mock(JdbcTemplate.class), mock(PlatformTransactionManager.class));
+        service = new MetricsTopKService(cache, registry, jdbcTemplate);
+        ReflectionTestUtils.setField(service, "maxK", 100);
+
+        // Servers 1-3 belong to project 7; server 4 is offline
+        ResultSet servers = mock(ResultSet.class);
+        when(servers.getLong(1)).thenReturn(1L, 2L, 3L, 4L);
+        when(servers.getString(2)).thenReturn("web-1", "web-2", "db-1", "db-2");
+        when(servers.getString(3)).thenReturn("online", "online", "online", "offline");
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (int row = 0; row < 4; row++) {
+                handler.processRow(servers);
+            }
+            return null;
+        }).when(jdbcTemplate).query(eq("SELECT id, server_name, status FROM servers"), any(RowCallbackHandler.class));
+        ResultSet members = mock(ResultSet.class);
+        when(members.getLong(1)).thenReturn(7L);
+        when(members.getLong(2)).thenReturn(1L, 2L, 3L);
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (int row = 0; row < 3; row++) {
+                handler.processRow(members);
+            }
+            return null;
+        }).when(jdbcTemplate).query(eq("SELECT project_id, server_id FROM project_servers"), any(RowCallbackHandler.class));
+        service.refresh();
+    }
+
+    private void latest(long serverId, Double cpu, double disk) {
+        ServerMetrics m = new ServerMetrics(serverId);
+        m.setCollectedAt(LocalDateTime.now());
+        m.setCpuUsage(cpu);
+        m.setDiskUsage(disk);
+        cache.put(m);
+    }
+
+    private static List<Long> ids(List<MetricsRankedServerDto> ranked) {
+        return ranked.stream().map(MetricsRankedServerDto::getServerId).collect(Collectors.toList());
+    }
+
+    @Test void rank_returnsHighestOrLowestBestFirst() {
+        latest(1L, 40.0, 10);
+        latest(2L, 90.0, 50);
+        latest(3L, 70.0, 30);
+        latest(4L, 95.0, 80);
+        latest(5L, null, 99);
+
+        List<MetricsRankedServerDto> top = service.rank("cpu_usage", 2, true, null, null);
+        assertEquals(List.of(4L, 2L), ids(top));
+        assertEquals(1, top.get(0).getRank());
+        assertEquals(95.0, top.get(0).getValue());
+        assertEquals("db-2", top.get(0).getServerName());
+
+        assertEquals(List.of(1L, 3L, 2L), ids(service.rank("cpu_usage", 3, false, null, null)));
+        // Server 5 has no CPU value and is not known to the directory yet
+        assertEquals(List.of(5L, 4L), ids(service.rank("disk_usage", 2, true, null, null)));
+        assertNull(service.rank("disk_usage", 1, true, null, null).get(0).getStatus());
+    }
+
+    @Test void rank_scopesByProjectAndStatus_andBreaksTiesByServerId() {
+        latest(1L, 50.0, 10);
+        latest(2L, 50.0, 10);
+        latest(3L, 20.0, 10);
+        latest(4L, 99.0, 10);
+
+        assertEquals(List.of(1L, 2L), ids(service.rank("cpu_usage", 2, true, 7L, null)));
+        assertEquals(List.of(1L, 2L, 3L), ids(service.rank("cpu_usage", 5, true, null, ServerStatus.online)));
+        assertEquals(List.of(4L), ids(service.rank("cpu_usage", 5, true, null, ServerStatus.offline)));
+        assertTrue(service.rank("cpu_usage", 5, true, 8L, null).isEmpty());
+    }
+
+    @Test void rank_rejectsUnknownMetricAndOutOfRangeK() {
+        assertThrows(IllegalArgumentException.class, () -> service.rank("no_such_metric", 5, true, null, null));
+        assertThrows(IllegalArgumentException.class, () -> service.rank("cpu_usage", 0, true, null, null));
+        assertThrows(IllegalArgumentException.class, () -> service.rank("cpu_usage", 101, true, null, null));
+    }
+}
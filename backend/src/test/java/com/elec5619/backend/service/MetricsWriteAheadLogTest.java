@@ -0,0 +1,115 @@
+package com.elec5619.backend.service;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsWriteAheadLogTest {
+    @TempDir Path dir;
+    MetricsWriteAheadLog wal;
+
+    @AfterEach void tearDown() throws Exception {
+        if (wal != null) wal.close();
+    }
+
+    private MetricsWriteAheadLog openWal(long segmentSize) throws Exception {
+        MetricsWriteAheadLog log = new MetricsWriteAheadLog();
+        ReflectionTestUtils.setField(log, "enabled", true);
+        ReflectionTestUtils.setField(log, "directory", dir.toString());
+        ReflectionTestUtils.setField(log, "segmentSizeBytes", segmentSize);
+        ReflectionTestUtils.setField(log, "fsyncPolicy", MetricsWriteAheadLog.FsyncPolicy.NONE);
+        log.open();
+        return log;
+    }
+
+    private static ServerMetrics sample(long serverId, double cpu) {
+        ServerMetrics m = new ServerMetrics(serverId);
+        m.setCpuUsage(cpu);
+        m.setCollectedAt(LocalDateTime.of(2025, 1, 1, 0, 0).plusSeconds(serverId));
+        return m;
+    }
+
+    @Test void appendAndRead_roundTripsSamplesAcrossSegments() throws Exception {
+        wal = openWal(200);
+        for (long i = 1; i <= 10; i++) wal.append(sample(i, i * 1.5));
+        assertTrue(wal.segmentCount() > 1);
+
+        MetricsWriteAheadLog.ReadResult result = wal.read(wal.getCheckpoint(), 100);
+        assertEquals(10, result.getRecords().size());
+        ServerMetrics last = result.getRecords().get(9);
+        assertEquals(10L, last.getServerId());
+        assertEquals(15.0, last.getCpuUsage());
+        assertNull(last.getMemoryUsage());
+        assertEquals(sample(10, 0).getCollectedAt(), last.getCollectedAt());
+    }
+
+    @Test void isFull_onceTheUncheckpointedBacklogReachesTheCap() throws Exception {
+        wal = openWal(1 << 20);
+        wal.append(sample(1, 1.0));
+        long recordBytes = wal.pendingBytes();
+        ReflectionTestUtils.setField(wal, "maxPendingBytes", 2 * recordBytes);
+        assertFalse(wal.isFull());
+
+        wal.append(sample(2, 2.0));
+        assertTrue(wal.isFull());
+
+        wal.checkpoint(wal.read(wal.getCheckpoint(), 10).getEnd());
+        assertFalse(wal.isFull());
+    }
+
+    @Test void appendAndRead_roundTripsCustomMetrics() throws Exception {
+        wal = openWal(1 << 20);
+        ServerMetrics withCustom = sample(1, 2.5);
+        withCustom.setCustomMetrics(new int[] {7, 12}, new double[] {81.0, -3.25});
+        wal.append(withCustom);
+        wal.append(sample(2, 3.5));
+
+        List<ServerMetrics> records = wal.read(wal.getCheckpoint(), 10).getRecords();
+        assertEquals(2, records.size());
+        assertEquals(2.5, records.get(0).getCpuUsage());
+        assertArrayEquals(new int[] {7, 12}, records.get(0).getCustomMetricIds());
+        assertEquals(-3.25, records.get(0).getMetricValue(12));
+        assertEquals(0, records.get(1).getCustomMetricCount());
+    }
+
+    @Test void checkpoint_replaysOnlyUnflushedRecordsAfterReopen() throws Exception {
+        wal = openWal(200);
+        for (long i = 1; i <= 6; i++) wal.append(sample(i, i));
+        MetricsWriteAheadLog.ReadResult first = wal.read(wal.getCheckpoint(), 4);
+        wal.checkpoint(first.getEnd());
+        wal.close();
+
+        wal = openWal(200);
+        List<ServerMetrics> replayed = wal.read(wal.getCheckpoint(), 100).getRecords();
+        assertEquals(List.of(5L, 6L), replayed.stream().map(ServerMetrics::getServerId).toList());
+        assertTrue(wal.pendingBytes() > 0);
+    }
+
+    @Test void open_truncatesTornTail() throws Exception {
+        wal = openWal(1 << 20);
+        wal.append(sample(1, 1));
+        wal.append(sample(2, 2));
+        wal.close();
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.getFileName().toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        wal = openWal(1 << 20);
+        wal.append(sample(3, 3));
+        List<ServerMetrics> records = wal.read(wal.getCheckpoint(), 100).getRecords();
+        assertEquals(List.of(1L, 2L, 3L), records.stream().map(ServerMetrics::getServerId).toList());
+    }
+}
@@ -1,6 +1,10 @@
 package com.elec5619.backend.service;
 
+import com.elec5619.backend.dto.MetricsBatchResultDto;
+import com.elec5619.backend.dto.MetricsPercentileSummaryDto;
+import com.elec5619.backend.entity.Server;
 import com.elec5619.backend.entity.ServerMetrics;
+import com.elec5619.backend.repository.ProjectRepository;
 import com.elec5619.backend.repository.ServerMetricsRepository;
 import com.elec5619.backend.repository.ServerRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,16 +12,38 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.transaction.PlatformTransactionManager;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class ServerMetricsServiceTest {
     @Mock ServerMetricsRepository serverMetricsRepository;
     @Mock ServerRepository serverRepository;
+    @Mock MetricsHotTier hotTier;
+    @Mock MetricsRollupService rollupService;
+    @Mock MetricsChunkService chunkService;
+    @Mock MetricsRetentionService retentionService;
+    @Mock MetricsLastValueCache lastValueCache;
+    @Mock MetricsSketchService sketchService;
+    @Mock ProjectRepository projectRepository;
+    @Mock MetricRegistry metricRegistry;
+    @Mock MetricsTopKService topKService;
+    @Mock MetricsAnomalyDetector anomalyDetector;
+    @Mock MetricsForecastService forecastService;
+    @Mock MetricsRangeCache rangeCache;
+    @Mock AlertIngestEvaluator alertEvaluator;
+    @Mock MetricsIngestionPipeline ingestionPipeline;
+    @Mock PlatformTransactionManager transactionManager;
+    @Spy List<MetricsIngestListener> ingestListeners = new ArrayList<>();
     @InjectMocks ServerMetricsService service;
 
     @BeforeEach void setUp() { MockitoAnnotations.openMocks(this); }
@@ -36,16 +62,129 @@ class ServerMetricsServiceTest {
         assertSame(metrics, result.get());
     }
 
+    @Test void getLatestMetrics_servedFromHotTier() {
+        ServerMetrics metrics = new ServerMetrics(1L);
+        when(hotTier.getLatest(1L)).thenReturn(Optional.of(metrics));
+        assertSame(metrics, service.getLatestMetrics(1L).get());
+        verify(serverMetricsRepository, never()).findTopByServerIdOrderByCollectedAtDesc(any());
+    }
+
+    @Test void getLatestMetrics_servedFromLastValueCache() {
+        ServerMetrics metrics = new ServerMetrics(1L);
+        when(lastValueCache.get(1L)).thenReturn(Optional.of(metrics));
+        assertSame(metrics, service.getLatestMetrics(1L).get());
+        verify(hotTier, never()).getLatest(any());
+        verify(serverMetricsRepository, never()).findTopByServerIdOrderByCollectedAtDesc(any());
+    }
+
+    @Test void getLatestMetrics_databaseHitIsCached() {
+        ServerMetrics metrics = new ServerMetrics(6L);
+        when(serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(6L)).thenReturn(metrics);
+        service.getLatestMetrics(6L);
+        verify(lastValueCache).put(metrics);
+    }
+
+    @Test void getMetricsForServer_rangeFallsBackWhenHotTierMisses() {
+        LocalDateTime now = LocalDateTime.now();
+        List<ServerMetrics> hot = List.of(new ServerMetrics(4L));
+        when(hotTier.getRange(4L, now.minusHours(1), now)).thenReturn(Optional.of(hot));
+        assertSame(hot, service.getMetricsForServer(4L, now.minusHours(1), now));
+
+        when(hotTier.getRange(4L, now.minusDays(7), now)).thenReturn(Optional.empty());
+        when(serverMetricsRepository.findByServerIdAndCollectedAtBetweenOrderByCollectedAtDesc(4L, now.minusDays(7), now))
+                .thenReturn(List.of());
+        assertTrue(service.getMetricsForServer(4L, now.minusDays(7), now).isEmpty());
+        verify(serverMetricsRepository).findByServerIdAndCollectedAtBetweenOrderByCollectedAtDesc(4L, now.minusDays(7), now);
+    }
+
+    @Test void getMetricsForServer_sealedPartDecodedFromChunks() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime sealedUntil = now.minusDays(1);
+        ServerMetrics recent = new ServerMetrics(5L);
+        ServerMetrics sealed = new ServerMetrics(5L);
+        when(hotTier.getRange(eq(5L), any(), any())).thenReturn(Optional.empty());
+        when(chunkService.getSealedUntil(5L)).thenReturn(sealedUntil);
+        when(serverMetricsRepository.findByServerIdAndCollectedAtBetweenOrderByCollectedAtDesc(5L, sealedUntil, now))
+                .thenReturn(List.of(recent));
+        when(chunkService.getRange(5L, now.minusDays(30), now, sealedUntil)).thenReturn(List.of(sealed));
+
+        List<ServerMetrics> result = service.getMetricsForServer(5L, now.minusDays(30), now);
+        assertEquals(List.of(recent, sealed), result);
+    }
+
+    @Test void getDownsampledMetrics_scansChunksThenStreamsTheUnsealedTail() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime end = start.plusHours(2);
+        LocalDateTime sealedUntil = start.plusHours(1);
+        when(hotTier.scan(eq(7L), any(), any(), any())).thenReturn(false);
+        when(chunkService.getSealedUntil(7L)).thenReturn(sealedUntil);
+        doAnswer(inv -> {
+            MetricsHotTier.SampleVisitor visitor = inv.getArgument(4);
+            double[] values = new double[7];
+            Arrays.fill(values, Double.NaN);
+            values[0] = 90.0;
+            visitor.accept(com.elec5619.backend.util.MetricTime.toMillis(start.plusMinutes(10)), values);
+            return null;
+        }).when(chunkService).scan(eq(7L), eq(start), eq(end), eq(sealedUntil), any());
+        when(serverMetricsRepository.streamByServerIdAndCollectedAtBetween(eq(7L), eq(sealedUntil), eq(end), any()))
+                .thenAnswer(inv -> {
+                    java.util.function.Consumer<ServerMetrics> consumer = inv.getArgument(3);
+                    ServerMetrics sample = new ServerMetrics(7L);
+                    sample.setCollectedAt(start.plusMinutes(100));
+                    sample.setCpuUsage(5.0);
+                    consumer.accept(sample);
+                    return 1L;
+                });
+
+        List<ServerMetrics> result = service.getDownsampledMetrics(7L, start, end, 4);
+        assertEquals(2, result.size());
+        assertEquals(start.plusMinutes(100), result.get(0).getCollectedAt());
+        assertEquals(5.0, result.get(0).getCpuUsage());
+        assertEquals(90.0, result.get(1).getCpuUsage());
+        verify(hotTier).scan(eq(7L), eq(sealedUntil), eq(end), any());
+    }
+
     @Test void getLatestMetrics_notFound() {
         when(serverMetricsRepository.findTopByServerIdOrderByCollectedAtDesc(2L)).thenReturn(null);
         assertTrue(service.getLatestMetrics(2L).isEmpty());
     }
 
-    @Test void getMetricsForServer_withPagination() {
-        List<ServerMetrics> list = Collections.singletonList(new ServerMetrics());
-        when(serverMetricsRepository.findMetricsByServerIdWithPagination(3L, 10, 0)).thenReturn(list);
-        List<ServerMetrics> result = service.getMetricsForServer(3L, 10, 0);
-        assertEquals(1, result.size());
+    @Test void getMetricsForServer_withKeysetPagination() {
+        List<ServerMetrics> first = Collections.singletonList(new ServerMetrics());
+        List<ServerMetrics> next = List.of(new ServerMetrics(), new ServerMetrics());
+        LocalDateTime cursor = LocalDateTime.of(2025, 1, 1, 0, 0);
+        when(serverMetricsRepository.findFirstPageByServerId(3L, 10)).thenReturn(first);
+        when(serverMetricsRepository.findPageByServerIdBefore(3L, cursor, 42L, 10)).thenReturn(next);
+        assertEquals(1, service.getMetricsForServer(3L, 10, null, null).size());
+        assertEquals(2, service.getMetricsForServer(3L, 10, cursor, 42L).size());
+        service.getMetricsForServer(3L, 10, cursor, null);
+        verify(serverMetricsRepository).findPageByServerIdBefore(3L, cursor, Long.MIN_VALUE, 10);
+    }
+
+    @Test void getMetricsForServer_withStep_usesRollupsOrAggregatesRaw() {
+        LocalDateTime now = LocalDateTime.now();
+        List<ServerMetrics> rolledUp = List.of(new ServerMetrics(5L));
+        when(rollupService.getSeries(5L, now.minusDays(30), now, 3600)).thenReturn(Optional.of(rolledUp));
+        assertSame(rolledUp, service.getMetricsForServer(5L, now.minusDays(30), now, 3600));
+
+        List<ServerMetrics> raw = List.of(new ServerMetrics(5L), new ServerMetrics(5L));
+        List<ServerMetrics> aggregated = List.of(new ServerMetrics(5L));
+        when(rollupService.getSeries(5L, now.minusMinutes(10), now, 30)).thenReturn(Optional.empty());
+        when(serverMetricsRepository.findByServerIdAndCollectedAtBetweenOrderByCollectedAtDesc(5L, now.minusMinutes(10), now))
+                .thenReturn(raw);
+        when(rollupService.aggregate(5L, raw, 30)).thenReturn(aggregated);
+        assertSame(aggregated, service.getMetricsForServer(5L, now.minusMinutes(10), now, 30));
+    }
+
+    @Test void saveMetrics_notifiesIngestListeners() {
+        MetricsIngestListener listener = mock(MetricsIngestListener.class);
+        ingestListeners.add(listener);
+        ServerMetrics metrics = new ServerMetrics(1L);
+        when(serverMetricsRepository.save(metrics)).thenReturn(metrics);
+        service.saveMetrics(metrics);
+        var inOrder = inOrder(listener, alertEvaluator);
+        inOrder.verify(listener).onMetricsIngested(List.of(metrics));
+        inOrder.verify(alertEvaluator).submit(List.of(metrics));
     }
 
     @Test void getAllMetrics_inTimeRange() {
@@ -56,10 +195,93 @@ class ServerMetricsServiceTest {
         assertEquals(1, result.size());
     }
 
-    @Test void cleanupOldMetrics_invokesRepoDelete() {
-        doNothing().when(serverMetricsRepository).deleteByCollectedAtBefore(any());
-        service.cleanupOldMetrics(30);
-        verify(serverMetricsRepository).deleteByCollectedAtBefore(any());
+    @Test void cleanupOldMetrics_delegatesToRetention() {
+        when(retentionService.applyRetention()).thenReturn(3L);
+        assertEquals(3L, service.cleanupOldMetrics());
+        verify(serverMetricsRepository, never()).deleteByCollectedAtBefore(any());
+    }
+    @Test void saveMetricsBatch_reportsPerItemResults() {
+        Server known = new Server(); known.setId(1L);
+        when(serverRepository.findAllById(any())).thenReturn(List.of(known));
+
+        ServerMetrics ok = new ServerMetrics(1L); ok.setCpuUsage(12.5);
+        ServerMetrics unknown = new ServerMetrics(99L);
+        ServerMetrics missingId = new ServerMetrics();
+        ServerMetrics notFinite = new ServerMetrics(1L); notFinite.setCpuUsage(Double.NaN);
+
+        MetricsBatchResultDto result = service.saveMetricsBatch(Arrays.asList(ok, unknown, missingId, null, notFinite));
+
+        assertEquals(5, result.getReceived());
+        assertEquals(1, result.getAccepted());
+        assertEquals(4, result.getRejected());
+        assertTrue(result.getResults().get(0).isAccepted());
+        assertFalse(result.getResults().get(1).isAccepted());
+        assertEquals("Malformed sample", result.getResults().get(3).getError());
+        assertNotNull(ok.getCollectedAt());
+        verify(serverMetricsRepository).batchInsert(List.of(ok));
+    }
+
+    @Test void acceptMetrics_unknownServer_isRejectedBeforeQueueing() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service.acceptMetrics(new ServerMetrics(99L)));
+
+        assertEquals("Unknown server ID: 99", e.getMessage());
+        verify(serverRepository).findAllById(Set.of(99L));
+        verifyNoInteractions(metricRegistry, serverMetricsRepository, ingestionPipeline);
     }
+
+    @Test void acceptMetrics_looksAServerUpOnce_withoutCountingCacheLookups() {
+        Server known = new Server(); known.setId(1L);
+        when(serverRepository.findAllById(Set.of(1L))).thenReturn(List.of(known));
+        when(ingestionPipeline.isAsyncEnabled()).thenReturn(true);
+        when(ingestionPipeline.offer(any())).thenReturn(true);
+
+        assertTrue(service.acceptMetrics(new ServerMetrics(1L)));
+        assertTrue(service.acceptMetrics(new ServerMetrics(1L)));
+
+        verify(serverRepository, times(1)).findAllById(any());
+        verify(lastValueCache, never()).get(any());
+
+        // A deleted server is looked up again
+        service.evictServer(1L);
+        when(serverRepository.findAllById(Set.of(1L))).thenReturn(List.of());
+        assertThrows(IllegalArgumentException.class, () -> service.acceptMetrics(new ServerMetrics(1L)));
+    }
+
+    @Test void saveMetricsBatch_allRejected_skipsInsert() {
+        MetricsBatchResultDto result = service.saveMetricsBatch(Collections.singletonList(new ServerMetrics()));
+        assertEquals(0, result.getAccepted());
+        verify(serverMetricsRepository, never()).batchInsert(any());
+    }
+    @Test void saveMetricsBatch_rejectsInvalidCustomMetrics_andWritesPackedValues() {
+        Server known = new Server(); known.setId(1L);
+        when(serverRepository.findAllById(any())).thenReturn(List.of(known));
+        ServerMetrics custom = new ServerMetrics(1L);
+        custom.setMetrics(Map.of("gpu.0.usage", 55.0));
+        ServerMetrics badName = new ServerMetrics(1L);
+        badName.setMetrics(Map.of("GPU Usage", 1.0));
+        doAnswer(inv -> {
+            ServerMetrics sample = inv.getArgument(0);
+            sample.setCustomMetrics(new int[] {7}, new double[] {55.0});
+            return null;
+        }).when(metricRegistry).encode(custom);
+        doThrow(new IllegalArgumentException("Invalid metric name: GPU Usage")).when(metricRegistry).encode(badName);
+
+        MetricsBatchResultDto result = service.saveMetricsBatch(List.of(custom, badName));
+
+        assertEquals(1, result.getAccepted());
+        assertEquals("Invalid metric name: GPU Usage", result.getResults().get(1).getError());
+        assertEquals(55.0, custom.getMetricValue(7));
+        verify(serverMetricsRepository).batchInsert(List.of(custom));
+    }
+
     // TODO: Add tests for generateFakeMetrics, generateFakeMetricsForAllServers, and all private helpers if needed.
+
+    @Test void getProjectPercentileSummary_mergesSketchesOfProjectServers() {
+        LocalDateTime now = LocalDateTime.now();
+        MetricsPercentileSummaryDto summary = new MetricsPercentileSummaryDto();
+        when(projectRepository.findServerIdsByProjectId(9L)).thenReturn(List.of(1L, 2L));
+        when(sketchService.getPercentiles(List.of(1L, 2L), now.minusDays(7), now)).thenReturn(summary);
+        assertSame(summary, service.getProjectPercentileSummary(9L, now.minusDays(7), now));
+    }
 }
@@ -0,0 +1,95 @@
+package com.elec5619.backend.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class MetricChunkCodecTest {
+
+    private static double[] sample(double cpu, double memory) {
+        double[] values = new double[MetricValues.COUNT];
+        Arrays.fill(values, Double.NaN);
+        values[0] = cpu;
+        values[1] = memory;
+        return values;
+    }
+
+    @Test
+    void roundtrip_irregularTimestampsAndValues() {
+        Random random = new Random(42);
+        int count = 2000;
+        long[] timestamps = new long[count];
+        double[][] values = new double[count][];
+        long t = 1_700_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            // Mostly regular interval with jitter, plus occasional long gaps and duplicates
+            t += i % 500 == 0 ? 3_600_000L : i % 97 == 0 ? 0 : 5000 + random.nextInt(3000) - 1500;
+            timestamps[i] = t;
+            values[i] = sample(random.nextDouble() * 100, i % 10 == 0 ? Double.NaN : -random.nextGaussian());
+        }
+        MetricChunkEncoder encoder = new MetricChunkEncoder();
+        for (int i = 0; i < count; i++) {
+            encoder.append(timestamps[i], values[i]);
+        }
+        assertEquals(timestamps[0], encoder.firstTimestamp());
+        assertEquals(timestamps[count - 1], encoder.lastTimestamp());
+
+        MetricChunkDecoder decoder = new MetricChunkDecoder(encoder.toByteArray());
+        assertEquals(count, decoder.count());
+        for (int i = 0; i < count; i++) {
+            assertTrue(decoder.next());
+            assertEquals(timestamps[i], decoder.timestamp());
+            for (int m = 0; m < MetricValues.COUNT; m++) {
+                assertEquals(Double.doubleToRawLongBits(values[i][m]), Double.doubleToRawLongBits(decoder.value(m)));
+            }
+        }
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    void slowlyChangingGaugesCompressWell() {
+        MetricChunkEncoder encoder = new MetricChunkEncoder();
+        int count = 1440;
+        for (int i = 0; i < count; i++) {
+            encoder.append(1_700_000_000_000L + i * 60_000L, sample(i % 60 < 30 ? 12.5 : 13.0, 48.25));
+        }
+        byte[] data = encoder.toByteArray();
+        // A raw row is 7 doubles, a timestamp and an id
+        assertTrue(data.length * 10 < count * 72, "chunk is " + data.length + " bytes");
+    }
+
+    @Test
+    void decoderIsReusableAcrossChunks() {
+        MetricChunkEncoder first = new MetricChunkEncoder();
+        first.append(1000, sample(1, 2));
+        first.append(2000, sample(3, 4));
+        MetricChunkEncoder second = new MetricChunkEncoder();
+        second.append(5000, sample(7, 8));
+
+        MetricChunkDecoder decoder = new MetricChunkDecoder(first.toByteArray());
+        while (decoder.next()) {
+            assertTrue(decoder.timestamp() <= 2000);
+        }
+        decoder.reset(second.toByteArray());
+        assertTrue(decoder.next());
+        assertEquals(5000, decoder.timestamp());
+        assertEquals(8.0, decoder.values()[1]);
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    void append_rejectsTimestampsGoingBackwards() {
+        MetricChunkEncoder encoder = new MetricChunkEncoder();
+        encoder.append(2000, sample(1, 1));
+        assertThrows(IllegalArgumentException.class, () -> encoder.append(1000, sample(1, 1)));
+    }
+
+    @Test
+    void reset_rejectsUnknownFormat() {
+        MetricChunkDecoder decoder = new MetricChunkDecoder();
+        assertThrows(IllegalArgumentException.class, () -> decoder.reset(new byte[] {9, 0, 0, 0, 0}));
+    }
+}
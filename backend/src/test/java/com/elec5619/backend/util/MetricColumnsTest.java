@@ -0,0 +1,68 @@
+package com.elec5619.backend.util;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricColumnsTest {
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final long START_MILLIS = 1_735_689_600_000L;
+
+    private static ServerMetrics sample(int minute, Double cpu) {
+        ServerMetrics sample = new ServerMetrics(1L);
+        sample.setCollectedAt(START.plusMinutes(minute));
+        sample.setCpuUsage(cpu);
+        sample.setMemoryUsage(40.0 + minute);
+        return sample;
+    }
+
+    @Test void newestFirstSamplesAreWrittenOldestFirstAsJsonColumns() throws Exception {
+        MetricColumns columns = MetricColumns.of(List.of(sample(2, 30.0), sample(1, null), sample(0, 10.0)));
+        assertEquals(3, columns.size());
+
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(json)) {
+            columns.writeJson(generator, 1L);
+        }
+        String expectedTimes = START_MILLIS + "," + (START_MILLIS + 60_000) + "," + (START_MILLIS + 120_000);
+        assertTrue(json.toString().startsWith("{\"serverId\":1,\"count\":3,\"timestamps\":[" + expectedTimes + "],"
+                + "\"cpu_usage\":[10.0,null,30.0],\"memory_usage\":[40.0,41.0,42.0],\"disk_usage\":[null,null,null]"),
+                json.toString());
+    }
+
+    @Test void binaryEncodingIsLittleEndianFloat64Columns() {
+        MetricColumns columns = MetricColumns.of(List.of(sample(1, 20.0), sample(0, 10.0), sample(2, null)));
+        ByteBuffer binary = ByteBuffer.wrap(columns.toBinary()).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(8 + 8 * 3 * (1 + MetricValues.COUNT), binary.capacity());
+        assertEquals(3, binary.getInt(0));
+        assertEquals(1 + MetricValues.COUNT, binary.getInt(4));
+        // Unordered input is sorted by time; columns follow each other in metric ID order
+        assertEquals((double) START_MILLIS, binary.getDouble(8));
+        assertEquals((double) START_MILLIS + 120_000, binary.getDouble(8 + 2 * 8));
+        int cpu = 8 + 3 * 8;
+        assertEquals(10.0, binary.getDouble(cpu));
+        assertEquals(20.0, binary.getDouble(cpu + 8));
+        assertTrue(Double.isNaN(binary.getDouble(cpu + 16)));
+        int memory = cpu + 3 * 8;
+        assertEquals(42.0, binary.getDouble(memory + 16));
+        assertEquals("timestamps," + String.join(",", MetricValues.NAMES), MetricColumns.BINARY_COLUMNS);
+    }
+
+    @Test void samplesWithoutTimeAreSkipped() {
+        ServerMetrics undated = new ServerMetrics(1L);
+        undated.setCpuUsage(99.0);
+        MetricColumns columns = MetricColumns.of(List.of(sample(0, 10.0), undated));
+        assertEquals(1, columns.size());
+        assertEquals(8 + 8 * (1 + MetricValues.COUNT), columns.toBinary().length);
+    }
+}
@@ -0,0 +1,76 @@
+package com.elec5619.backend.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class MetricRingBufferTest {
+
+    private static double[] sample(double cpu) {
+        double[] values = new double[MetricRingBuffer.METRIC_COUNT];
+        Arrays.fill(values, Double.NaN);
+        values[0] = cpu;
+        return values;
+    }
+
+    @Test
+    void add_overwritesOldestAndMovesCoverage() {
+        MetricRingBuffer buffer = new MetricRingBuffer(3, 0);
+        for (long t = 1; t <= 5; t++) {
+            buffer.add(t * 1000, sample(t));
+        }
+        assertEquals(3, buffer.size());
+        assertEquals(3000, buffer.timestampAt(0));
+        assertEquals(5.0, buffer.valueAt(0, 2));
+        assertTrue(Double.isNaN(buffer.valueAt(1, 2)));
+        assertFalse(buffer.covers(2000));
+        assertTrue(buffer.covers(2001));
+    }
+
+    @Test
+    void add_lateSampleIsInsertedInOrder() {
+        MetricRingBuffer buffer = new MetricRingBuffer(4, 0);
+        buffer.add(1000, sample(1));
+        buffer.add(3000, sample(3));
+        buffer.add(2000, sample(2));
+        assertEquals(2000, buffer.timestampAt(1));
+        assertEquals(3.0, buffer.valueAt(0, 2));
+        assertEquals(1, buffer.indexOfFirstAtOrAfter(2000));
+        assertEquals(2, buffer.indexOfFirstAfter(2000));
+    }
+
+    @Test
+    void merge_prependsHistoryAndSkipsDuplicates() {
+        MetricRingBuffer buffer = new MetricRingBuffer(4, Long.MAX_VALUE);
+        buffer.add(3000, sample(3));
+        long[] timestamps = {1000, 2000, 3000};
+        double[][] values = new double[MetricRingBuffer.METRIC_COUNT][3];
+        for (double[] column : values) {
+            Arrays.fill(column, Double.NaN);
+        }
+        values[0] = new double[]{1, 2, 30};
+        buffer.setCoverageStart(500);
+        buffer.merge(timestamps, values, 3);
+        assertEquals(3, buffer.size());
+        assertEquals(1000, buffer.timestampAt(0));
+        assertEquals(3.0, buffer.valueAt(0, 2));
+        assertTrue(buffer.covers(500));
+    }
+
+    @Test
+    void evictBeforeAndResize_keepNewestSamples() {
+        MetricRingBuffer buffer = new MetricRingBuffer(8, 0);
+        for (long t = 1; t <= 6; t++) {
+            buffer.add(t * 1000, sample(t));
+        }
+        assertEquals(2, buffer.evictBefore(3000));
+        buffer.resize(2);
+        assertEquals(2, buffer.size());
+        assertEquals(5000, buffer.timestampAt(0));
+        assertEquals(2 * MetricRingBuffer.BYTES_PER_SAMPLE, buffer.heapBytes() - (MetricRingBuffer.METRIC_COUNT + 2) * 16);
+        assertTrue(buffer.covers(4001));
+        assertFalse(buffer.covers(4000));
+    }
+}
@@ -0,0 +1,81 @@
+package com.elec5619.backend.util;
+
+import com.elec5619.backend.entity.ServerMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinMaxDownsamplerTest {
+    private static final long START = 1_735_689_600_000L; // 2025-01-01T00:00:00Z
+    private static final long SECOND = 1000L;
+
+    private static double[] values(double cpu, double memory) {
+        double[] values = new double[MetricValues.COUNT];
+        Arrays.fill(values, Double.NaN);
+        values[0] = cpu;
+        values[1] = memory;
+        return values;
+    }
+
+    @Test void keepsEverySpikeWithinTheOutputBound() {
+        // One hour at 1s with a one-sample spike; 60 buckets of a minute each
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(START, START + 3600 * SECOND - 1, 60);
+        for (int i = 0; i < 3600; i++) {
+            double cpu = i == 1234 ? 99.0 : 10.0 + (i % 7);
+            downsampler.add(START + i * SECOND, values(cpu, 50.0));
+        }
+        assertEquals(3600, downsampler.sampleCount());
+
+        List<ServerMetrics> result = downsampler.toMetrics(1L);
+        assertTrue(result.size() <= 120);
+        assertEquals(99.0, result.stream().mapToDouble(ServerMetrics::getCpuUsage).max().getAsDouble());
+        assertEquals(10.0, result.stream().mapToDouble(ServerMetrics::getCpuUsage).min().getAsDouble());
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i).getCollectedAt().isBefore(result.get(i - 1).getCollectedAt()));
+        }
+    }
+
+    @Test void orderOfExtremesIsPreservedWithinABucket() {
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(START, START + 60 * SECOND - 1, 1);
+        // cpu falls to its minimum after its maximum; memory rises; arrival order is shuffled
+        downsampler.add(START + 40 * SECOND, values(1.0, 80.0));
+        downsampler.add(START + 10 * SECOND, values(9.0, 20.0));
+        downsampler.add(START + 20 * SECOND, values(5.0, 50.0));
+
+        List<ServerMetrics> result = downsampler.toMetrics(3L);
+        assertEquals(2, result.size());
+        ServerMetrics later = result.get(0);
+        ServerMetrics earlier = result.get(1);
+        assertEquals(MetricTime.toDateTime(START + 40 * SECOND), later.getCollectedAt());
+        assertEquals(MetricTime.toDateTime(START + 10 * SECOND), earlier.getCollectedAt());
+        assertEquals(9.0, earlier.getCpuUsage());
+        assertEquals(1.0, later.getCpuUsage());
+        assertEquals(20.0, earlier.getMemoryUsage());
+        assertEquals(80.0, later.getMemoryUsage());
+        assertNull(earlier.getDiskUsage());
+        assertEquals(3L, earlier.getServerId());
+    }
+
+    @Test void singleSampleBucketsAndOutOfRangeSamples() {
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(START, START + 10 * SECOND - 1, 10);
+        ServerMetrics inRange = new ServerMetrics(1L);
+        inRange.setCollectedAt(MetricTime.toDateTime(START + 3 * SECOND));
+        inRange.setCpuUsage(42.0);
+        ServerMetrics outOfRange = new ServerMetrics(1L);
+        outOfRange.setCollectedAt(MetricTime.toDateTime(START + 10 * SECOND));
+        outOfRange.setCpuUsage(1.0);
+        downsampler.add(inRange);
+        downsampler.add(outOfRange);
+        downsampler.add(new ServerMetrics(1L));
+
+        List<ServerMetrics> result = downsampler.toMetrics(1L);
+        assertEquals(1, downsampler.sampleCount());
+        assertEquals(1, result.size());
+        assertEquals(42.0, result.get(0).getCpuUsage());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 0, 0, 3), result.get(0).getCollectedAt());
+    }
+}
@@ -0,0 +1,82 @@
+package com.elec5619.backend.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class QuantileSketchTest {
+
+    private static double exact(double[] sorted, double q) {
+        return sorted[(int) Math.floor(q * (sorted.length - 1))];
+    }
+
+    @Test
+    void quantiles_withinRelativeAccuracy() {
+        Random random = new Random(7);
+        double[] values = new double[10000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            // CPU-like values plus a long tail
+            values[i] = i % 50 == 0 ? 80 + random.nextDouble() * 20 : 5 + random.nextDouble() * 40;
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (double q : new double[] {0.0, 0.5, 0.9, 0.95, 0.99, 1.0}) {
+            double expected = exact(values, q);
+            assertEquals(expected, sketch.quantile(q), expected * QuantileSketch.RELATIVE_ACCURACY, "q=" + q);
+        }
+        assertEquals(values.length, sketch.getCount());
+        assertEquals(values[0], sketch.getMin());
+        assertEquals(values[values.length - 1], sketch.getMax());
+    }
+
+    @Test
+    void merge_equalsSketchOfAllValues() {
+        Random random = new Random(11);
+        QuantileSketch left = new QuantileSketch();
+        QuantileSketch right = new QuantileSketch();
+        QuantileSketch all = new QuantileSketch();
+        for (int i = 0; i < 5000; i++) {
+            double value = random.nextGaussian() * 10;
+            (i % 2 == 0 ? left : right).add(value);
+            all.add(value);
+        }
+        left.merge(right);
+        for (double q : new double[] {0.01, 0.5, 0.95, 0.99}) {
+            assertEquals(all.quantile(q), left.quantile(q), 0.0);
+        }
+        assertEquals(all.getCount(), left.getCount());
+    }
+
+    @Test
+    void roundtrip_preservesCountsAndBounds() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (double v : new double[] {0.0, -3.5, 12.25, 12.3, 1e6, Double.NaN}) {
+            sketch.add(v);
+        }
+        QuantileSketch decoded = QuantileSketch.fromByteArray(sketch.toByteArray());
+        assertEquals(5, decoded.getCount());
+        assertEquals(-3.5, decoded.getMin());
+        assertEquals(1e6, decoded.getMax());
+        assertEquals(sketch.quantile(0.5), decoded.quantile(0.5), 0.0);
+        assertEquals(0.0, decoded.quantile(0.25), 0.0);
+
+        assertTrue(Double.isNaN(new QuantileSketch().quantile(0.5)));
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromByteArray(new byte[] {9}));
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromByteArray(new byte[] {1, 0, 0}));
+    }
+
+    @Test
+    void wideRange_collapsesLowestBinsOnly() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(Math.pow(10, -8 + i * 0.03));
+        }
+        double p99 = Math.pow(10, -8 + 989 * 0.03);
+        assertEquals(p99, sketch.quantile(0.99), p99 * QuantileSketch.RELATIVE_ACCURACY);
+        assertTrue(sketch.toByteArray().length < 4 * QuantileSketch.MAX_BINS);
+    }
+}
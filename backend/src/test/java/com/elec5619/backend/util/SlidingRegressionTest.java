@@ -0,0 +1,54 @@
+package com.elec5619.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingRegressionTest {
+    private static final long HOUR = 3_600_000L;
+    private static final long START = 1_735_689_600_000L; // 2025-01-01T00:00:00Z
+
+    @Test void fitsLinearTrendAndPredictsTimeToLimit() {
+        SlidingRegression regression = new SlidingRegression(24 * HOUR, 48);
+        // 50% rising 1% per hour, one sample every 10 minutes for 6 hours
+        for (int i = 0; i <= 36; i++) {
+            regression.add(START + i * HOUR / 6, 50 + i / 6.0);
+        }
+        assertEquals(37, regression.count());
+        assertEquals(1.0, regression.slope(), 1e-9);
+        assertEquals(56.0, regression.predict(START + 6 * HOUR), 1e-9);
+        assertEquals(44.0, regression.hoursUntil(100), 1e-6);
+    }
+
+    @Test void flatOrFallingTrendNeverReachesLimit() {
+        SlidingRegression regression = new SlidingRegression(24 * HOUR, 48);
+        assertTrue(Double.isNaN(regression.slope()));
+        regression.add(START, 70);
+        assertTrue(Double.isNaN(regression.hoursUntil(100)));
+        for (int i = 1; i <= 10; i++) {
+            regression.add(START + i * HOUR, 70 - i);
+        }
+        assertTrue(Double.isNaN(regression.hoursUntil(100)));
+        assertEquals(0.0, regression.hoursUntil(50));
+    }
+
+    @Test void oldBucketsExpireAsWindowSlides() {
+        SlidingRegression regression = new SlidingRegression(4 * HOUR, 4);
+        // A falling first day, then a rising trend that alone should be fitted
+        for (int i = 0; i < 24; i++) {
+            regression.add(START + i * HOUR, 90 - i);
+        }
+        for (int i = 24; i < 48; i++) {
+            regression.add(START + i * HOUR, 10 + 2 * (i - 24));
+        }
+        assertEquals(4, regression.count());
+        assertEquals(2.0, regression.slope(), 1e-9);
+        // Samples older than the window are ignored
+        regression.add(START, 99);
+        assertEquals(4, regression.count());
+        // A gap longer than the window empties it
+        regression.add(START + 100 * HOUR, 10);
+        assertEquals(1, regression.count());
+        assertTrue(Double.isNaN(regression.slope()));
+    }
+}
@@ -0,0 +1,77 @@
+package com.elec5619.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+    private static final long START = 1_735_689_600_000L; // 2025-01-01T00:00:00Z
+
+    @Test void entriesExpireAtTheirDeadlineRoundedUpToATick() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 4, START + 300);
+        wheel.schedule("a", START + 2500);
+        wheel.schedule("b", START + 3000);
+        wheel.schedule("past", START - 10_000);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(START + 999, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(START + 1000, expired::add);
+        assertEquals(List.of("past"), expired);
+        wheel.advance(START + 2999, expired::add);
+        assertEquals(List.of("past"), expired);
+        wheel.advance(START + 3000, expired::add);
+        assertEquals(List.of("past", "a", "b"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test void distantDeadlinesCascadeThroughUpperLevels() {
+        // 4 buckets of 1s: levels span 4s, 16s, 64s and 256s
+        TimingWheel<Long> wheel = new TimingWheel<>(1000, 4, START);
+        Random random = new Random(7);
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (long i = 0; i < 500; i++) {
+            long deadline = START + random.nextInt(300_000);
+            deadlines.put(i, deadline);
+            wheel.schedule(i, deadline);
+        }
+        assertEquals(500, wheel.size());
+
+        Map<Long, Long> expiredAt = new HashMap<>();
+        for (long now = START; now <= START + 301_000; now += 250) {
+            long time = now;
+            wheel.advance(now, item -> expiredAt.put(item, time));
+        }
+
+        assertEquals(500, expiredAt.size());
+        assertEquals(0, wheel.size());
+        for (Map.Entry<Long, Long> e : expiredAt.entrySet()) {
+            long deadline = deadlines.get(e.getKey());
+            assertTrue(e.getValue() >= deadline, "expired early");
+            assertTrue(e.getValue() < deadline + 1000, "expired more than a tick late");
+        }
+    }
+
+    @Test void largeJumpsExpireEverythingDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 8, START);
+        wheel.schedule("soon", START + 5_000);
+        wheel.schedule("later", START + 600_000);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(START + 3_600_000, expired::add);
+
+        assertEquals(List.of("soon", "later"), expired);
+        assertEquals(START + 3_600_000, wheel.currentTime());
+    }
+
+    @Test void rejectsInvalidWheels() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<>(0, 8, START));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<>(1000, 1, START));
+    }
+}